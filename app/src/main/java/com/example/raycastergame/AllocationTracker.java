@@ -0,0 +1,73 @@
+package com.example.raycastergame;
+
+// --- Allocation Tracker Class ---
+// Counts the bytes the calling thread allocates inside the tick and render sections of each
+// frame, so the paths that run every frame can be held to allocating nothing. Where the counts
+// come from depends on the runtime: GameView reads ART's per-thread allocation counter, tests read
+// the JVM's. Per frame, bytesLastFrame holds the last finished frame's count for each section;
+// totalBytes and allocatingFrames accumulate from the last reset(). Nothing here allocates.
+public final class AllocationTracker {
+
+    // Bytes allocated by the current thread since some fixed point, or -1 if unknown
+    public interface Counter {
+        long threadAllocatedBytes();
+    }
+
+    public static final int TICK = 0;
+    public static final int RENDER = 1;
+    public static final int SECTION_COUNT = 2;
+    public static final String[] SECTION_NAMES = { "tick", "render" };
+
+    public boolean enabled = false;
+    private final Counter counter;
+    private final long[] started = new long[SECTION_COUNT];
+    private final long[] thisFrame = new long[SECTION_COUNT];
+
+    public final long[] bytesLastFrame = new long[SECTION_COUNT];
+    public final long[] totalBytes = new long[SECTION_COUNT];
+    public final int[] allocatingFrames = new int[SECTION_COUNT]; // Frames where the section allocated anything
+    public int frames = 0;
+
+    public AllocationTracker(Counter counter) {
+        this.counter = counter;
+    }
+
+    public void begin(int section) {
+        if (!enabled) return;
+        started[section] = counter.threadAllocatedBytes();
+    }
+
+    // Sections may be entered several times a frame (one tick each); the bytes add up.
+    public void end(int section) {
+        if (!enabled) return;
+        long now = counter.threadAllocatedBytes();
+        if (now >= 0 && started[section] >= 0) thisFrame[section] += now - started[section];
+    }
+
+    public void endFrame() {
+        if (!enabled) return;
+        for (int s = 0; s < SECTION_COUNT; s++) {
+            long bytes = thisFrame[s];
+            bytesLastFrame[s] = bytes;
+            totalBytes[s] += bytes;
+            if (bytes > 0) allocatingFrames[s]++;
+            thisFrame[s] = 0;
+        }
+        frames++;
+    }
+
+    // Drops what the current frame has counted so far, for frames that aren't steady state.
+    public void discardFrame() {
+        for (int s = 0; s < SECTION_COUNT; s++) thisFrame[s] = 0;
+    }
+
+    public void reset() {
+        for (int s = 0; s < SECTION_COUNT; s++) {
+            thisFrame[s] = 0;
+            bytesLastFrame[s] = 0;
+            totalBytes[s] = 0;
+            allocatingFrames[s] = 0;
+        }
+        frames = 0;
+    }
+}
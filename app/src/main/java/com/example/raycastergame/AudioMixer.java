@@ -0,0 +1,302 @@
+package com.example.raycastergame;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+// --- Audio Mixer Class ---
+// Mixes preloaded mono PCM samples into an interleaved 16-bit stereo buffer for a fixed number of
+// voices. Every voice has a position in the world; its gain falls off with the distance to the
+// listener and its pan follows the angle to it relative to the listener's facing, the same
+// distToPlayer and playerAngle the renderer uses. When all voices are busy a new sound takes the
+// quietest one, or is dropped if it would be quieter still, so far-away emitters are the first to
+// go. Emitters past MAX_DISTANCE are never started.
+//
+// The game thread talks to the mixer through a lock-free single-producer/single-consumer command
+// ring (the same scheme as InputQueue); the mixer thread drains it at the start of each render().
+// Samples are registered before the mixer thread starts. Nothing on either side of the ring or in
+// render() allocates.
+public final class AudioMixer {
+
+    public static final int SAMPLE_RATE = 22050;
+    public static final float MAX_DISTANCE = 16f;  // Emitters farther away than this are silent
+    private static final float ROLLOFF = 0.35f;    // How quickly gain falls with distance; see distanceGain
+
+    private static final int PLAY = 0;     // sample, key, x, y, volume, loop
+    private static final int STOP = 1;     // key
+    private static final int LISTENER = 2; // x, y, angle
+    private static final int STOP_ALL = 3;
+
+    // --- Samples, registered up front ---
+    private short[][] samples = new short[8][];
+    private int sampleCount = 0;
+
+    // --- Voices (mixer thread only) ---
+    private final int maxVoices;
+    private final int[] voiceSample;   // -1 when the voice is free
+    private final int[] voicePosition; // Next frame to play
+    private final int[] voiceKey;      // Caller's handle for a sound it keeps updating, 0 for one-shots
+    private final boolean[] voiceLoop;
+    private final float[] voiceX, voiceY, voiceVolume;
+    private final float[] voiceGainL, voiceGainR; // Gains the last buffer ended on, ramped from each buffer
+    private float listenerX, listenerY;
+    private double listenerAngle;
+    private final int[] mix;
+    public int stolen = 0;  // Voices taken over by a louder sound
+    public int dropped = 0; // Sounds not started: too far away, or quieter than every playing voice
+
+    // --- Command ring ---
+    private final int mask;
+    private final int[] commandOps, commandSamples, commandKeys;
+    private final float[] commandX, commandY, commandVolume;
+    private final double[] commandAngle;
+    private final boolean[] commandLoop;
+    private final AtomicLong head = new AtomicLong(); // Next command to run, written by the mixer thread
+    private final AtomicLong tail = new AtomicLong(); // Next free slot, written by the game thread
+    private long cachedHead = 0;
+    public long commandsDropped = 0;                  // Game thread side: commands lost to a full ring
+
+    public AudioMixer(int maxVoices, int maxFramesPerRender, int commandCapacityPowerOfTwo) {
+        if (Integer.bitCount(commandCapacityPowerOfTwo) != 1) throw new IllegalArgumentException("capacity must be a power of two");
+        this.maxVoices = maxVoices;
+        voiceSample = new int[maxVoices];
+        voicePosition = new int[maxVoices];
+        voiceKey = new int[maxVoices];
+        voiceLoop = new boolean[maxVoices];
+        voiceX = new float[maxVoices];
+        voiceY = new float[maxVoices];
+        voiceVolume = new float[maxVoices];
+        voiceGainL = new float[maxVoices];
+        voiceGainR = new float[maxVoices];
+        Arrays.fill(voiceSample, -1);
+        mix = new int[maxFramesPerRender * 2];
+
+        mask = commandCapacityPowerOfTwo - 1;
+        commandOps = new int[commandCapacityPowerOfTwo];
+        commandSamples = new int[commandCapacityPowerOfTwo];
+        commandKeys = new int[commandCapacityPowerOfTwo];
+        commandX = new float[commandCapacityPowerOfTwo];
+        commandY = new float[commandCapacityPowerOfTwo];
+        commandVolume = new float[commandCapacityPowerOfTwo];
+        commandAngle = new double[commandCapacityPowerOfTwo];
+        commandLoop = new boolean[commandCapacityPowerOfTwo];
+    }
+
+    // Registers a mono sample at SAMPLE_RATE and returns its id. Call before the mixer thread starts.
+    public int addSample(short[] pcm) {
+        if (sampleCount == samples.length) samples = Arrays.copyOf(samples, sampleCount * 2);
+        samples[sampleCount] = pcm;
+        return sampleCount++;
+    }
+
+    // --- Game thread side ---
+
+    // Starts a sound at a world position. With a non-zero key, playing it again while a voice with
+    // that key is still going only moves it, so a looping emitter is simply re-sent every tick; if
+    // its voice was stolen or it was out of range, that same call brings it back.
+    public boolean play(int sample, int key, float x, float y, float volume, boolean loop) {
+        return offer(PLAY, sample, key, x, y, volume, 0, loop);
+    }
+
+    public boolean stop(int key) {
+        return offer(STOP, 0, key, 0, 0, 0, 0, false);
+    }
+
+    public boolean stopAll() {
+        return offer(STOP_ALL, 0, 0, 0, 0, 0, 0, false);
+    }
+
+    public boolean setListener(float x, float y, double angle) {
+        return offer(LISTENER, 0, 0, x, y, 0, angle, false);
+    }
+
+    private boolean offer(int op, int sample, int key, float x, float y, float volume, double angle, boolean loop) {
+        long t = tail.get();
+        if (t - cachedHead > mask) {
+            cachedHead = head.get();
+            if (t - cachedHead > mask) {
+                commandsDropped++;
+                return false;
+            }
+        }
+        int i = (int)t & mask;
+        commandOps[i] = op;
+        commandSamples[i] = sample;
+        commandKeys[i] = key;
+        commandX[i] = x;
+        commandY[i] = y;
+        commandVolume[i] = volume;
+        commandAngle[i] = angle;
+        commandLoop[i] = loop;
+        tail.lazySet(t + 1); // Publishes the slot writes above to the mixer thread
+        return true;
+    }
+
+    // --- Mixer thread side ---
+
+    // Renders frames of interleaved stereo into out[0 .. frames * 2).
+    public void render(short[] out, int frames) {
+        if (frames * 2 > mix.length) throw new IllegalArgumentException("at most " + mix.length / 2 + " frames per render");
+        long spanStart = Tracer.begin();
+        runCommands();
+        int samplesOut = frames * 2;
+        Arrays.fill(mix, 0, samplesOut, 0);
+        float step = 1f / frames;
+
+        for (int v = 0; v < maxVoices; v++) {
+            int id = voiceSample[v];
+            if (id < 0) continue;
+            float targetL, targetR;
+            float gain = gain(v);
+            if (gain > 0) {
+                float pan = pan(v); // -1 left .. 1 right, equal-power
+                double theta = (pan + 1) * (Math.PI / 4);
+                targetL = gain * (float)Math.cos(theta);
+                targetR = gain * (float)Math.sin(theta);
+            } else {
+                targetL = 0;
+                targetR = 0;
+            }
+            // Ramp from last buffer's gains so moving emitters don't click
+            float gainL = voiceGainL[v], gainR = voiceGainR[v];
+            short[] pcm = samples[id];
+            if (gainL == 0 && gainR == 0 && targetL == 0 && targetR == 0) {
+                // Out of range: keep time without mixing
+                int position = voicePosition[v] + frames;
+                if (position >= pcm.length) {
+                    if (voiceLoop[v]) position %= pcm.length;
+                    else voiceSample[v] = -1;
+                }
+                voicePosition[v] = position;
+                continue;
+            }
+            float stepL = (targetL - gainL) * step, stepR = (targetR - gainR) * step;
+            int position = voicePosition[v];
+            boolean loop = voiceLoop[v];
+            for (int f = 0, o = 0; f < frames; f++, o += 2) {
+                if (position >= pcm.length) {
+                    if (!loop) break;
+                    position = 0;
+                }
+                int s = pcm[position++];
+                gainL += stepL;
+                gainR += stepR;
+                mix[o] += (int)(s * gainL);
+                mix[o + 1] += (int)(s * gainR);
+            }
+            voiceGainL[v] = targetL;
+            voiceGainR[v] = targetR;
+            voicePosition[v] = position;
+            if (!loop && position >= pcm.length) voiceSample[v] = -1;
+        }
+
+        for (int i = 0; i < samplesOut; i++) {
+            int s = mix[i];
+            out[i] = (short)(s > Short.MAX_VALUE ? Short.MAX_VALUE : s < Short.MIN_VALUE ? Short.MIN_VALUE : s);
+        }
+        Tracer.end(Tracer.AUDIO_MIX, spanStart);
+    }
+
+    private void runCommands() {
+        long h = head.get();
+        long t = tail.get();
+        for (; h != t; h++) {
+            int i = (int)h & mask;
+            switch (commandOps[i]) {
+                case PLAY: start(commandSamples[i], commandKeys[i], commandX[i], commandY[i], commandVolume[i], commandLoop[i]); break;
+                case STOP:
+                    for (int v = 0; v < maxVoices; v++) {
+                        if (voiceKey[v] == commandKeys[i]) voiceSample[v] = -1;
+                    }
+                    break;
+                case STOP_ALL: Arrays.fill(voiceSample, -1); break;
+                case LISTENER:
+                    listenerX = commandX[i];
+                    listenerY = commandY[i];
+                    listenerAngle = commandAngle[i];
+                    break;
+            }
+        }
+        head.lazySet(h); // Hands the slots back to the game thread
+    }
+
+    private void start(int sample, int key, float x, float y, float volume, boolean loop) {
+        if (sample < 0 || sample >= sampleCount) return;
+        if (key != 0) {
+            for (int v = 0; v < maxVoices; v++) {
+                if (voiceSample[v] >= 0 && voiceKey[v] == key) {
+                    voiceX[v] = x;
+                    voiceY[v] = y;
+                    voiceVolume[v] = volume;
+                    return;
+                }
+            }
+        }
+        float gain = volume * distanceGain(x, y);
+        if (gain <= 0) {
+            dropped++;
+            return;
+        }
+        // A free voice, or else the quietest one if the new sound beats it
+        int voice = -1;
+        float quietest = Float.MAX_VALUE;
+        for (int v = 0; v < maxVoices; v++) {
+            if (voiceSample[v] < 0) {
+                voice = v;
+                quietest = -1;
+                break;
+            }
+            float g = gain(v);
+            if (g < quietest) {
+                quietest = g;
+                voice = v;
+            }
+        }
+        if (quietest >= gain && quietest >= 0) {
+            dropped++;
+            return;
+        }
+        if (quietest >= 0) stolen++;
+        voiceSample[voice] = sample;
+        voicePosition[voice] = 0;
+        voiceKey[voice] = key;
+        voiceLoop[voice] = loop;
+        voiceX[voice] = x;
+        voiceY[voice] = y;
+        voiceVolume[voice] = volume;
+        voiceGainL[voice] = 0;
+        voiceGainR[voice] = 0;
+    }
+
+    private float gain(int v) {
+        return voiceVolume[v] * distanceGain(voiceX[v], voiceY[v]);
+    }
+
+    private float distanceGain(float x, float y) {
+        float distance = (float)Math.hypot(x - listenerX, y - listenerY);
+        if (distance >= MAX_DISTANCE) return 0;
+        // Fades to exactly zero at MAX_DISTANCE instead of cutting off
+        return (1f - distance / MAX_DISTANCE) / (1f + ROLLOFF * distance);
+    }
+
+    private float pan(int v) {
+        double dx = voiceX[v] - listenerX, dy = voiceY[v] - listenerY;
+        if (dx * dx + dy * dy < 1e-6) return 0;
+        // Angle relative to where the listener faces; positive angles turn towards +y, which the
+        // raycaster draws on the right of the screen
+        double relative = Math.atan2(dy, dx) - listenerAngle;
+        return (float)Math.sin(relative);
+    }
+
+    // --- Inspection (mixer thread, or any thread once it has stopped) ---
+
+    public int activeVoices() {
+        int n = 0;
+        for (int v = 0; v < maxVoices; v++) if (voiceSample[v] >= 0) n++;
+        return n;
+    }
+
+    public boolean isPlaying(int key) {
+        for (int v = 0; v < maxVoices; v++) if (voiceSample[v] >= 0 && voiceKey[v] == key) return true;
+        return false;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.raycastergame;
+
+import java.nio.BufferUnderflowException;
+import java.util.Arrays;
+
+// --- Bit Buffer Class ---
+// Packs values of any width from 1 to 64 bits back to back into a byte array, most significant
+// bit first, for the co-op packets. Written by the sender, then the same buffer type reads the
+// received bytes back field by field; reading past the end throws BufferUnderflowException, as
+// a ByteBuffer would. The array grows while writing, so a buffer reused for every packet stops
+// allocating once it has seen the largest one.
+public final class BitBuffer {
+
+    public byte[] data;
+    private int position = 0; // In bits
+    private int limit = 0;    // In bits, while reading
+
+    public BitBuffer(int capacityBytes) {
+        data = new byte[capacityBytes];
+    }
+
+    // Starts a new packet to write.
+    public void clear() {
+        position = 0;
+        limit = 0;
+    }
+
+    // Starts reading the first length bytes of data, as received.
+    public void flip(int length) {
+        position = 0;
+        limit = length * 8;
+    }
+
+    // Bytes written so far, counting a partly filled last byte.
+    public int bytes() { return (position + 7) >> 3; }
+
+    public int bitPosition() { return position; }
+
+    public int remainingBits() { return limit - position; }
+
+    public void write(long value, int bits) {
+        int needed = (position + bits + 7) >> 3;
+        if (needed > data.length) data = Arrays.copyOf(data, Math.max(needed, data.length * 2));
+        for (int i = bits - 1; i >= 0; i--) {
+            int index = position >> 3;
+            int mask = 0x80 >>> (position & 7);
+            if (((value >>> i) & 1) != 0) data[index] |= mask;
+            else data[index] &= ~mask;
+            position++;
+        }
+    }
+
+    public void writeBoolean(boolean value) { write(value ? 1 : 0, 1); }
+
+    // Two's complement in the given width; value must fit.
+    public void writeSigned(int value, int bits) { write(value & ((1L << bits) - 1), bits); }
+
+    // Non-negative value in 7-bit groups, each followed by a bit saying whether another follows:
+    // 8 bits up to 127, 16 up to 16383.
+    public void writeVar(int value) {
+        do {
+            write(value & 0x7F, 7);
+            value >>>= 7;
+            writeBoolean(value != 0);
+        } while (value != 0);
+    }
+
+    public long read(int bits) {
+        if (position + bits > limit) throw new BufferUnderflowException();
+        long value = 0;
+        for (int i = 0; i < bits; i++) {
+            value = (value << 1) | ((data[position >> 3] >>> (7 - (position & 7))) & 1);
+            position++;
+        }
+        return value;
+    }
+
+    public int readInt(int bits) { return (int)read(bits); }
+
+    public boolean readBoolean() { return read(1) != 0; }
+
+    public int readSigned(int bits) {
+        long value = read(bits);
+        return (int)(value << (64 - bits) >> (64 - bits));
+    }
+
+    public int readVar() {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (shift > 28) throw new BufferUnderflowException(); // More groups than an int holds
+            value |= readInt(7) << shift;
+            if (!readBoolean()) return value;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.raycastergame;
+
+// --- Camera Class ---
+// The view model shared by the wall raycaster and the sprite pass. Everything that depends only on
+// the resolution and field of view (each column's camera-space ray and the projection scale) is
+// tabulated by setViewport/setFieldOfView, so a frame only has to rotate by the player's angle.
+public class Camera {
+
+    // Fixed-point ray directions keep 29 fraction bits (components stay below 4 up to the 120 degree
+    // FOV cap): at 16.16 a near-axis ray's small component loses enough precision to bend grazing walls.
+    public static final int DIR_BITS = 29;
+
+    public int width, height;
+    public float fieldOfView;
+    public double tanHalfFov;
+    public int rebuilds = 0;
+
+    // Per column: cameraX runs from -1 at the left edge to 1 at the right. The column's camera-space
+    // ray is (1, raySide[x]), i.e. one unit forward and tan(fov/2) * cameraX to the side.
+    public double[] cameraX = new double[0];
+    public double[] raySide = new double[0];
+    public int[] raySideFixed = new int[0]; // raySide with DIR_BITS fraction bits
+
+    // --- Per-frame rotation, set by setAngle ---
+    public double angle = Double.NaN;
+    public double dirX, dirY, planeX, planeY;
+    public int dirXFixed, dirYFixed;
+
+    // World-to-camera projection for sprites: for an offset (dx, dy) from the player,
+    // side = m00 * dx + m01 * dy and depth = m10 * dx + m11 * dy. The inverse of the
+    // [plane dir] matrix collapses to these because its determinant is -tan(fov/2).
+    public double m00, m01, m10, m11;
+
+    public void setViewport(int w, int h) {
+        if (w == width && h == height) return;
+        width = w;
+        height = h;
+        rebuild();
+    }
+
+    public void setFieldOfView(float fov) {
+        if (fov == fieldOfView) return;
+        fieldOfView = fov;
+        rebuild();
+    }
+
+    private void rebuild() {
+        tanHalfFov = Math.tan(Math.toRadians(fieldOfView / 2.0));
+        if (cameraX.length != width) {
+            cameraX = new double[width];
+            raySide = new double[width];
+            raySideFixed = new int[width];
+        }
+        for (int x = 0; x < width; x++) {
+            cameraX[x] = 2.0 * x / width - 1.0;
+            raySide[x] = tanHalfFov * cameraX[x];
+            raySideFixed[x] = (int)Math.round(raySide[x] * (1 << DIR_BITS));
+        }
+        rebuilds++;
+        angle = Double.NaN; // Force the projection to be rebuilt with the new scale
+    }
+
+    public void setAngle(double playerAngle) {
+        if (playerAngle == angle) return;
+        angle = playerAngle;
+        dirX = Math.cos(playerAngle);
+        dirY = Math.sin(playerAngle);
+        planeX = -dirY * tanHalfFov;
+        planeY = dirX * tanHalfFov;
+        dirXFixed = (int)Math.round(dirX * (1 << DIR_BITS));
+        dirYFixed = (int)Math.round(dirY * (1 << DIR_BITS));
+
+        double invTan = 1.0 / tanHalfFov;
+        m00 = -dirY * invTan;
+        m01 = dirX * invTan;
+        m10 = dirX;
+        m11 = dirY;
+    }
+
+    // Screen column of a camera-space point in front of the camera.
+    public double screenX(double side, double depth) {
+        return width / 2.0 * (1.0 + side / depth);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.raycastergame;
+
+// --- Command Buffer Class ---
+// Side effects an entity wants to have on the world during the parallel entity phase (spawning a
+// rocket, hurting or healing either player, finishing the level, raising an event). Each worker chunk records into its
+// own buffer; GameWorld applies the buffers afterwards in chunk order, which is sprite order, so
+// the outcome does not depend on how many threads ran the phase. Grows but never shrinks, so a
+// steady game does not allocate here.
+public final class CommandBuffer {
+
+    public static final int SPAWN_ROCKET = 0;  // startX, startY, targetX, targetY
+    public static final int DAMAGE_PLAYER = 1; // amount
+    public static final int HEAL_PLAYER = 2;   // amount
+    public static final int NEXT_LEVEL = 3;
+    public static final int EVENT = 4;         // event, x, y[, amount]
+    public static final int DAMAGE_GUEST = 5;  // amount
+    public static final int HEAL_GUEST = 6;    // amount
+
+    private static final int ARGS = 4;
+
+    private int count = 0;
+    private int[] ops = new int[32];
+    private float[] args = new float[32 * ARGS];
+
+    public void add(int op, float a, float b, float c, float d) {
+        if (count == ops.length) {
+            int[] newOps = new int[count * 2];
+            float[] newArgs = new float[count * 2 * ARGS];
+            System.arraycopy(ops, 0, newOps, 0, count);
+            System.arraycopy(args, 0, newArgs, 0, count * ARGS);
+            ops = newOps;
+            args = newArgs;
+        }
+        ops[count] = op;
+        int base = count * ARGS;
+        args[base] = a;
+        args[base + 1] = b;
+        args[base + 2] = c;
+        args[base + 3] = d;
+        count++;
+    }
+
+    public void add(int op, float a) {
+        add(op, a, 0, 0, 0);
+    }
+
+    public int size() { return count; }
+    public int op(int i) { return ops[i]; }
+    public float arg(int i, int n) { return args[i * ARGS + n]; }
+
+    public void clear() {
+        count = 0;
+    }
+}
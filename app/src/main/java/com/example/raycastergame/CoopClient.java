@@ -0,0 +1,294 @@
+package com.example.raycastergame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.BufferUnderflowException;
+
+// --- Co-op Client Class ---
+// The guest's end of a two-player game. It owns no simulation, only a GameWorld used as a view:
+// worldMap, sprites and the HUD counters come from the host's snapshots, and the light map is
+// kept from those sprites the way the host keeps its own. The view's player is the guest and
+// view.guest stands for the host's player, so the same raycasting and sprite drawing serve
+// either end.
+//
+// The guest's own movement is predicted. Each input is applied locally at once through the same
+// GameWorld.Guest.step the host uses, and kept until a snapshot says the host has played it.
+// Then the guest is put back where the host has it and the inputs still in flight are replayed
+// on top. With the same map, the replay lands exactly where the host will, so a correction only
+// shows up (and counts in mispredictions) around level changes. Everything else is shown
+// INTERPOLATION_TICKS behind the newest snapshot, blended between the two received snapshots
+// either side of that moment. The render clock runs at one tick per tick and only drifts back
+// towards its target slowly, so a few lost snapshots in a row cause no visible jump.
+//
+// host may be a broadcast address (with link.setBroadcast) to find a host on the local network:
+// the first one whose snapshot arrives becomes the host, and packets from anyone else are ignored.
+public final class CoopClient implements Closeable {
+
+    public static final int INTERPOLATION_TICKS = 3;
+    public static final int INPUT_HISTORY = 128; // Power of two
+    public static final int MAX_INPUTS_PER_PACKET = 32;
+
+    public final GameWorld view;
+    public final NetLink link;
+    private SocketAddress host;
+    private final NetState[] received = new NetState[CoopHost.HISTORY];
+    private NetState newest;
+    private final BitBuffer in = new BitBuffer(2048), out = new BitBuffer(256);
+    private int viewMapVersion = 0;
+
+    // Inputs by sequence number, quantized as sent, and where each one was predicted to leave the guest
+    private final int[] inputMoveX = new int[INPUT_HISTORY], inputMoveY = new int[INPUT_HISTORY], inputLook = new int[INPUT_HISTORY];
+    private final boolean[] inputShoot = new boolean[INPUT_HISTORY];
+    private final float[] predictedX = new float[INPUT_HISTORY], predictedY = new float[INPUT_HISTORY];
+    private int inputSeq = 0;
+    private int ackedInput = 0;
+    private final double[] predicted = new double[3]; // Guest x, y, angle
+
+    private double renderTick = -1;
+    // The view's sprites by host id, sorted; swapped with the scratch copy on every rebuild
+    private GameWorld.Sprite[] shown = new GameWorld.Sprite[64], shownScratch = new GameWorld.Sprite[64];
+    private int shownCount = 0;
+
+    // --- Stats ---
+    public int bytesLastTick;   // Input payload sent this tick
+    public long snapshotsReceived, snapshotsSkipped, mispredictions, droppedInputs, badPackets;
+    public long ticks, tickNanosLast, tickNanosTotal;
+
+    public CoopClient(int wallTextureCount, InetSocketAddress host, InetSocketAddress bindTo, long lossSeed) throws IOException {
+        this.view = new GameWorld(wallTextureCount);
+        this.host = host;
+        this.link = new NetLink(bindTo, lossSeed);
+        for (int i = 0; i < received.length; i++) received[i] = new NetState();
+    }
+
+    // Whether a snapshot has arrived, so the view has a map and sprites.
+    public boolean connected() { return newest != null; }
+
+    NetState newestState() { return newest; }
+
+    public int inputSequence() { return inputSeq; }
+
+    public double renderTick() { return renderTick; }
+
+    public void tick(float moveX, float moveY, float lookDelta, boolean shoot) throws IOException {
+        long t0 = System.nanoTime();
+        receiveSnapshots();
+        if (connected()) {
+            if (inputSeq - ackedInput < INPUT_HISTORY) {
+                int slot = ++inputSeq & (INPUT_HISTORY - 1);
+                inputMoveX[slot] = NetState.quantizeMove(moveX);
+                inputMoveY[slot] = NetState.quantizeMove(moveY);
+                inputLook[slot] = NetState.quantizeLook(lookDelta);
+                inputShoot[slot] = shoot;
+                predictStep(slot);
+            } else {
+                droppedInputs++; // Nothing acknowledged for too long; hold still until something is
+            }
+        }
+        sendInputs();
+        if (connected()) updateView();
+        tickNanosLast = System.nanoTime() - t0;
+        tickNanosTotal += tickNanosLast;
+        ticks++;
+    }
+
+    private void predictStep(int slot) {
+        view.guest.step(predicted, NetState.move(inputMoveX[slot]), NetState.move(inputMoveY[slot]), NetState.look(inputLook[slot]));
+        predictedX[slot] = (float)predicted[0];
+        predictedY[slot] = (float)predicted[1];
+    }
+
+    // Every input the host hasn't acknowledged, oldest first; before the first snapshot, an empty
+    // packet just to announce the client.
+    private void sendInputs() throws IOException {
+        int first = ackedInput + 1;
+        int count = Math.min(inputSeq - ackedInput, MAX_INPUTS_PER_PACKET);
+        out.clear();
+        out.write(NetLink.PACKET_INPUT, NetLink.PACKET_TYPE_BITS);
+        out.write(newest == null ? 0 : newest.tick, 32);
+        out.write(first, 32);
+        out.write(count, 6);
+        for (int seq = first; seq < first + count; seq++) {
+            int slot = seq & (INPUT_HISTORY - 1);
+            out.writeSigned(inputMoveX[slot], NetState.MOVE_BITS);
+            out.writeSigned(inputMoveY[slot], NetState.MOVE_BITS);
+            out.writeSigned(inputLook[slot], NetState.LOOK_BITS);
+            out.writeBoolean(inputShoot[slot]);
+        }
+        link.send(out, host);
+        bytesLastTick = out.bytes();
+    }
+
+    private void receiveSnapshots() throws IOException {
+        SocketAddress from;
+        while ((from = link.receive(in)) != null) {
+            if (newest != null && !from.equals(host)) {
+                snapshotsSkipped++; // Another host answering the same broadcast
+                continue;
+            }
+            try {
+                if (in.readInt(NetLink.PACKET_TYPE_BITS) != NetLink.PACKET_SNAPSHOT) {
+                    badPackets++;
+                    continue;
+                }
+                int tick = in.readInt(32);
+                int baseTick = in.readInt(32);
+                NetState base = null;
+                if (baseTick != 0) {
+                    base = received[baseTick & (CoopHost.HISTORY - 1)];
+                    if (base.tick != baseTick) base = null;
+                }
+                // Late or repeated, or against a baseline this client no longer has
+                if ((newest != null && tick <= newest.tick) || (baseTick != 0 && (base == null || tick - baseTick >= CoopHost.HISTORY))) {
+                    snapshotsSkipped++;
+                    continue;
+                }
+                NetState state = received[tick & (CoopHost.HISTORY - 1)];
+                try {
+                    state.decode(tick, base, in);
+                } catch (BufferUnderflowException e) {
+                    state.tick = 0; // Half decoded; not a baseline for anything
+                    throw e;
+                }
+                newest = state;
+                host = from;
+                snapshotsReceived++;
+                applyMap(state);
+                reconcile(state);
+            } catch (BufferUnderflowException e) {
+                badPackets++;
+            }
+        }
+    }
+
+    private void applyMap(NetState state) {
+        if (state.mapVersion == viewMapVersion) return;
+        int n = GameWorld.MAP_SIZE;
+        if (view.worldMap == null) view.worldMap = new int[n][n];
+        for (int y = 0; y < n; y++) System.arraycopy(state.cells, y * n, view.worldMap[y], 0, n);
+        view.rebuildAfterRestore();
+        viewMapVersion = state.mapVersion;
+    }
+
+    // Restarts the prediction from where the host has the guest after its newest played input.
+    private void reconcile(NetState state) {
+        int played = state.lastGuestInput;
+        if (played < ackedInput || played > inputSeq) return; // Not from this client's run of inputs
+        if (played > 0 && inputSeq - played < INPUT_HISTORY) {
+            int slot = played & (INPUT_HISTORY - 1);
+            if (predictedX[slot] != state.guestX || predictedY[slot] != state.guestY) mispredictions++;
+        }
+        ackedInput = played;
+        predicted[0] = state.guestX;
+        predicted[1] = state.guestY;
+        predicted[2] = state.guestAngle;
+        for (int seq = played + 1; seq <= inputSeq; seq++) predictStep(seq & (INPUT_HISTORY - 1));
+    }
+
+    private void updateView() {
+        double target = newest.tick - INTERPOLATION_TICKS;
+        if (renderTick < 0 || Math.abs(target - renderTick) > CoopHost.HISTORY / 2) renderTick = target;
+        else renderTick += 1 + Math.max(-0.1, Math.min(0.1, (target - renderTick) * 0.1));
+        if (renderTick > newest.tick) renderTick = newest.tick; // Ran out of snapshots; hold the newest
+
+        // The received states either side of the render clock
+        NetState before = null, after = null;
+        for (int back = 0; back < CoopHost.HISTORY; back++) {
+            NetState s = received[(newest.tick - back) & (CoopHost.HISTORY - 1)];
+            if (s.tick != newest.tick - back || s.tick <= 0) continue;
+            if (s.tick >= renderTick) after = s;
+            if (s.tick <= renderTick) {
+                before = s;
+                break;
+            }
+        }
+        if (after == null) after = newest;
+        if (before == null || before.mapVersion != after.mapVersion) before = after;
+        float t = after.tick == before.tick ? 1f : (float)((renderTick - before.tick) / (after.tick - before.tick));
+
+        view.level = newest.level;
+        view.score = newest.score;
+        view.playerHealth = newest.guestHealth; // The view's player is the guest
+        view.guest.health = newest.health;
+        view.gameOver = newest.gameOver;
+        view.playerX = (float)predicted[0];
+        view.playerY = (float)predicted[1];
+        view.playerAngle = predicted[2];
+        view.guest.joined = true;
+        view.guest.x = lerp(before.hostX, after.hostX, t);
+        view.guest.y = lerp(before.hostY, after.hostY, t);
+        double from = NetState.angle(before.hostAngle), turn = NetState.angle(after.hostAngle) - from;
+        if (turn > Math.PI) turn -= 2 * Math.PI;
+        else if (turn < -Math.PI) turn += 2 * Math.PI;
+        view.guest.angle = from + turn * t;
+        showSprites(before, after, t);
+    }
+
+    private static float lerp(int from, int to, float t) {
+        return NetState.position(from) + (NetState.position(to) - NetState.position(from)) * t;
+    }
+
+    // Makes view.sprites the sprites of after, moved between their places in before and after, and
+    // brings the view's light map along: lights of sprites gone are taken out, the rest are moved.
+    // A sprite keeps its object for as long as it exists, so only spawns allocate.
+    private void showSprites(NetState before, NetState after, float t) {
+        if (shownScratch.length < after.spriteCount) {
+            shownScratch = new GameWorld.Sprite[Math.max(after.spriteCount, shownScratch.length * 2)];
+        }
+        int old = 0, lit = 0;
+        for (int i = 0; i < after.spriteCount; i++) {
+            int id = after.ids[i];
+            while (old < shownCount && shown[old].id < id) dropLight(shown[old++]);
+            GameWorld.Sprite s = old < shownCount && shown[old].id == id ? shown[old++] : null;
+            int b = before.indexOf(id);
+            float x = b < 0 ? NetState.position(after.xs[i]) : lerp(before.xs[b], after.xs[i], t);
+            float y = b < 0 ? NetState.position(after.ys[i]) : lerp(before.ys[b], after.ys[i], t);
+            if (s == null) {
+                switch (after.types[i]) {
+                    case NetState.ENEMY: s = view.new Enemy(x, y); break;
+                    case NetState.ROCKET: s = view.new Rocket(x, y, x, y, 0f, lit < GameWorld.MAX_LIT_ROCKETS); break;
+                    case NetState.PORTAL: s = view.new Portal(x, y); break;
+                    default: s = view.new Medkit(x, y); break;
+                }
+                s.id = id;
+            }
+            s.x = x;
+            s.y = y;
+            if (s instanceof GameWorld.Enemy) ((GameWorld.Enemy) s).health = after.healths[i];
+            s.distToPlayer = Math.hypot(view.playerX - x, view.playerY - y);
+            if (s instanceof GameWorld.Rocket && s.light != null) lit++;
+            shownScratch[i] = s;
+        }
+        while (old < shownCount) dropLight(shown[old++]);
+        for (int i = after.spriteCount; i < shownCount; i++) shown[i] = null;
+        GameWorld.Sprite[] swap = shown;
+        shown = shownScratch;
+        shownScratch = swap;
+        shownCount = after.spriteCount;
+
+        view.sprites.clear();
+        for (int i = 0; i < shownCount; i++) view.sprites.add(shown[i]);
+        view.updateLights();
+    }
+
+    // Takes a sprite that is no longer shown out of the view's light map.
+    private void dropLight(GameWorld.Sprite s) {
+        if (s.light != null) view.lightMap.remove(s.light);
+    }
+
+    // Tells the host this guest is gone, once; if that is lost, the host times the guest out.
+    @Override
+    public void close() throws IOException {
+        try {
+            if (connected() && link.isOpen()) {
+                out.clear();
+                out.write(NetLink.PACKET_LEAVE, NetLink.PACKET_TYPE_BITS);
+                link.send(out, host);
+            }
+        } finally {
+            link.close();
+        }
+    }
+}
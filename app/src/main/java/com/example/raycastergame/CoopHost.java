@@ -0,0 +1,148 @@
+package com.example.raycastergame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.BufferUnderflowException;
+
+// --- Co-op Host Class ---
+// The authoritative end of a two-player game. It runs the GameWorld as usual with the local
+// player's input, plays the guest's inputs as they arrive from the client, and after every tick
+// sends the client a NetState delta-encoded against the newest state the client has
+// acknowledged. The last HISTORY states sent are kept for that. If the acknowledged one is older
+// (or there is none yet) the state goes in full. Snapshots are never resent. A lost one just
+// means the next delta starts from an older baseline.
+//
+// Snapshot packet: type, int tick, int baseline tick (0 for a full state), then NetState.encode.
+// Input packet: type, int newest snapshot tick the client holds, int sequence number of the first
+// input, 6-bit count, then per input moveX and moveY (NetState.MOVE_BITS, signed), lookDelta
+// (NetState.LOOK_BITS, signed) and a shoot bit. Each input packet repeats every input not yet
+// acknowledged, so a lost one costs nothing but latency.
+// Leave packet: type only. The guest is dropped on it, or after GUEST_TIMEOUT_TICKS without an
+// input packet when the leave is lost or the client just vanishes. Either way its avatar leaves
+// the maze, snapshots stop, and the next client to send anything becomes the guest.
+public final class CoopHost implements Closeable {
+
+    public static final int HISTORY = 32; // Power of two
+    public static final int GUEST_TIMEOUT_TICKS = 5 * GameWorld.TICKS_PER_SECOND;
+
+    public final GameWorld world;
+    public final NetLink link;
+    private final NetState[] sent = new NetState[HISTORY];
+    private final BitBuffer packet = new BitBuffer(2048);
+    private SocketAddress client;
+    private int tick = 0;
+    private int ackedTick = 0;
+    private int heardTick = 0; // Host tick of the guest's last input packet
+
+    // --- Stats ---
+    public int bytesLastTick;           // Snapshot payload sent after the last tick
+    public long snapshotBytes;
+    public int fullSnapshots, deltaSnapshots;
+    public int badPackets;
+    public int guestsLeft, guestsTimedOut;
+    public long ticks, tickNanosLast, tickNanosTotal; // Whole host tick: inputs, simulation, snapshot
+
+    public CoopHost(GameWorld world, InetSocketAddress bindTo, long lossSeed) throws IOException {
+        this.world = world;
+        this.link = new NetLink(bindTo, lossSeed);
+        for (int i = 0; i < HISTORY; i++) sent[i] = new NetState();
+    }
+
+    public int tick() { return tick; }
+
+    public boolean hasGuest() { return client != null; }
+
+    public void tick(float moveX, float moveY, float lookDelta, boolean shoot) throws IOException {
+        long t0 = System.nanoTime();
+        receiveInputs();
+        if (client != null && tick - heardTick > GUEST_TIMEOUT_TICKS) {
+            guestsTimedOut++;
+            dropGuest();
+        }
+        world.tick(moveX, moveY, lookDelta, shoot);
+        tick++;
+        bytesLastTick = 0;
+        if (client != null) sendSnapshot();
+        tickNanosLast = System.nanoTime() - t0;
+        tickNanosTotal += tickNanosLast;
+        ticks++;
+    }
+
+    // The state sent after the given tick, while it is still kept.
+    NetState sentState(int tick) {
+        NetState state = sent[tick & (HISTORY - 1)];
+        return state.tick == tick ? state : null;
+    }
+
+    private void receiveInputs() throws IOException {
+        SocketAddress from;
+        while ((from = link.receive(packet)) != null) {
+            try {
+                int type = packet.readInt(NetLink.PACKET_TYPE_BITS);
+                if (type == NetLink.PACKET_LEAVE) {
+                    if (from.equals(client)) {
+                        guestsLeft++;
+                        dropGuest();
+                    }
+                    continue;
+                }
+                if (type != NetLink.PACKET_INPUT) {
+                    badPackets++;
+                    continue;
+                }
+                if (client != null && !client.equals(from)) continue;
+                int ack = packet.readInt(32);
+                int first = packet.readInt(32);
+                int count = packet.readInt(6);
+                if (client == null) {
+                    client = from; // The first client to say anything is the guest
+                    world.guest.joined = true;
+                    world.guest.lastInput = first - 1; // A client dropped but still running carries on from its own numbering
+                }
+                heardTick = tick;
+                if (ack > ackedTick && ack <= tick) ackedTick = ack;
+                for (int i = 0; i < count; i++) {
+                    float mx = NetState.move(packet.readSigned(NetState.MOVE_BITS));
+                    float my = NetState.move(packet.readSigned(NetState.MOVE_BITS));
+                    float look = NetState.look(packet.readSigned(NetState.LOOK_BITS));
+                    boolean fire = packet.readBoolean();
+                    world.guest.queue(first + i, mx, my, look, fire);
+                }
+            } catch (BufferUnderflowException e) {
+                badPackets++;
+            }
+        }
+    }
+
+    // Forgets the guest: its avatar leaves the world, and the next guest starts from a full state.
+    private void dropGuest() {
+        client = null;
+        ackedTick = 0;
+        world.guest.leave();
+    }
+
+    private void sendSnapshot() throws IOException {
+        NetState state = sent[tick & (HISTORY - 1)];
+        state.capture(world, tick);
+        NetState base = ackedTick > 0 && tick - ackedTick < HISTORY ? sentState(ackedTick) : null;
+
+        packet.clear();
+        packet.write(NetLink.PACKET_SNAPSHOT, NetLink.PACKET_TYPE_BITS);
+        packet.write(tick, 32);
+        packet.write(base == null ? 0 : base.tick, 32);
+        state.encode(base, packet);
+        link.send(packet, client);
+
+        bytesLastTick = packet.bytes();
+        snapshotBytes += bytesLastTick;
+        if (base == null) fullSnapshots++;
+        else deltaSnapshots++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        link.close();
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.raycastergame;
+
+// --- Depth Hierarchy Class ---
+// Min/max pyramid over the raycaster's per-column wall depths, rebuilt whenever the walls are
+// recast. Level 0 holds the columns; every level above halves the count, each node keeping the
+// nearest and farthest wall under it, up to a single root after log2(width) levels. classify()
+// answers whether a sprite spanning some columns at some depth is behind the walls in every
+// column, in front of them in every column, or neither, from about 2 * log2(width) nodes instead
+// of one comparison per column, and usually stops after the first few.
+//
+// Stored as an implicit binary tree over a power-of-two number of leaves: node 1 is the root,
+// node n has children 2n and 2n + 1, and column x is leaf size + x.
+public final class DepthHierarchy {
+
+    public static final int HIDDEN = 0;    // A wall is at least as near in every column
+    public static final int VISIBLE = 1;   // In front of the wall in every column
+    public static final int PARTIAL = 2;   // Some columns each way; test them one by one
+
+    private int size = 0;   // Leaves, a power of two >= width
+    public int width = 0;
+    public int levels = 0;
+    private double[] min = new double[0];
+    private double[] max = new double[0];
+
+    public void build(double[] depthBuffer, int width) {
+        width = Math.min(width, depthBuffer.length);
+        int leaves = 1;
+        while (leaves < width) leaves <<= 1;
+        if (leaves != size) {
+            size = leaves;
+            min = new double[2 * size];
+            max = new double[2 * size];
+        }
+        this.width = width;
+        levels = Integer.numberOfTrailingZeros(size) + 1;
+        for (int x = 0; x < width; x++) {
+            min[size + x] = depthBuffer[x];
+            max[size + x] = depthBuffer[x];
+        }
+        // Padding leaves never decide anything: callers clamp their ranges to the screen
+        for (int x = width; x < size; x++) {
+            min[size + x] = Double.POSITIVE_INFINITY;
+            max[size + x] = Double.NEGATIVE_INFINITY;
+        }
+        for (int n = size - 1; n >= 1; n--) {
+            min[n] = Math.min(min[2 * n], min[2 * n + 1]);
+            max[n] = Math.max(max[2 * n], max[2 * n + 1]);
+        }
+    }
+
+    // How columns [left, right) compare with something drawn at depth: the per-column test is
+    // depthBuffer[x] > depth. An empty range (off screen) counts as hidden.
+    public int classify(int left, int right, double depth) {
+        if (left < 0) left = 0;
+        if (right > width) right = width;
+        if (left >= right) return HIDDEN;
+        boolean anyVisible = false, anyHidden = false;
+        // Bottom-up walk over the O(log n) nodes that exactly cover the range
+        for (int l = left + size, r = right + size; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) != 0) {
+                if (max[l] > depth) anyVisible = true;
+                if (min[l] <= depth) anyHidden = true;
+                l++;
+            }
+            if ((r & 1) != 0) {
+                r--;
+                if (max[r] > depth) anyVisible = true;
+                if (min[r] <= depth) anyHidden = true;
+            }
+            if (anyVisible && anyHidden) return PARTIAL;
+        }
+        return anyVisible ? VISIBLE : HIDDEN;
+    }
+
+    // Nearest and farthest wall over the whole screen, from the root.
+    public double nearest() { return width == 0 ? Double.POSITIVE_INFINITY : min[1]; }
+    public double farthest() { return width == 0 ? Double.NEGATIVE_INFINITY : max[1]; }
+}
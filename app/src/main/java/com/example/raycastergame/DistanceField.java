@@ -0,0 +1,153 @@
+package com.example.raycastergame;
+
+// --- Distance Field Class ---
+// Per-cell Chebyshev distance to the nearest wall, rebuilt whenever a level is generated. A cell
+// at distance d has only empty cells within d - 1 in every direction (the map edge counts as a
+// wall), so a grid ray can jump straight to where it leaves that square and resume the DDA there
+// without missing a wall. Open areas then cost a few jumps instead of one step per cell.
+public class DistanceField {
+
+    public final int size;
+    // distance[y * size + x]: 0 on walls, 1 next to a wall, and so on
+    public final int[] distance;
+    private int[][] worldMap;
+
+    public DistanceField(int size) {
+        this.size = size;
+        distance = new int[size * size];
+    }
+
+    // Two-pass chessboard distance transform; exact for the Chebyshev metric.
+    public void build(int[][] worldMap) {
+        this.worldMap = worldMap;
+        final int n = size;
+        final int[] d = distance;
+        for (int y = 0; y < n; y++) {
+            for (int x = 0; x < n; x++) {
+                if (worldMap[y][x] > 0) {
+                    d[y * n + x] = 0;
+                } else {
+                    int best = Math.min(get(x - 1, y), get(x - 1, y - 1));
+                    best = Math.min(best, Math.min(get(x, y - 1), get(x + 1, y - 1)));
+                    d[y * n + x] = best + 1;
+                }
+            }
+        }
+        for (int y = n - 1; y >= 0; y--) {
+            for (int x = n - 1; x >= 0; x--) {
+                int best = Math.min(get(x + 1, y), get(x + 1, y + 1));
+                best = Math.min(best, Math.min(get(x, y + 1), get(x - 1, y + 1)));
+                if (best + 1 < d[y * n + x]) d[y * n + x] = best + 1;
+            }
+        }
+    }
+
+    // Cells outside the map read as walls.
+    private int get(int x, int y) {
+        if (x < 0 || y < 0 || x >= size || y >= size) return 0;
+        return distance[y * size + x];
+    }
+
+    // Distance along (dirX, dirY) from (x, y) to the first wall, in units of the direction's length
+    // (so world units for a unit vector), capped at maxDist. Uses the same skipping DDA as Raycaster.
+    public double castRay(double x, double y, double dirX, double dirY, double maxDist) {
+        return castRay(x, y, dirX, dirY, maxDist, null, null, 0);
+    }
+
+    // As above, and also stores the wall that stopped the ray in cellOut[i] (mapY * size + mapX) and
+    // faceOut[i] (a LightMap.FACE_* constant), or -1 in both when the ray ran out first. A ray that
+    // starts inside a wall reports that cell with face -1; the map edge reports cell -1.
+    public double castRay(double x, double y, double dirX, double dirY, double maxDist, int[] cellOut, int[] faceOut, int i) {
+        final int[][] worldMap = this.worldMap;
+        int mapX = (int)x;
+        int mapY = (int)y;
+        if (cellOut != null) {
+            cellOut[i] = -1;
+            faceOut[i] = -1;
+        }
+        if (mapX < 0 || mapX >= size || mapY < 0 || mapY >= size) return 0;
+        if (worldMap[mapY][mapX] > 0) {
+            if (cellOut != null) cellOut[i] = mapY * size + mapX;
+            return 0;
+        }
+
+        double deltaDistX = (dirX == 0) ? 1e30 : Math.abs(1 / dirX);
+        double deltaDistY = (dirY == 0) ? 1e30 : Math.abs(1 / dirY);
+        int stepX = dirX < 0 ? -1 : 1;
+        int stepY = dirY < 0 ? -1 : 1;
+        double sideDistX = (dirX < 0 ? x - mapX : mapX + 1.0 - x) * deltaDistX;
+        double sideDistY = (dirY < 0 ? y - mapY : mapY + 1.0 - y) * deltaDistY;
+
+        while (true) {
+            int skip = distance[mapY * size + mapX] - 1;
+            if (skip > 0) {
+                double exitX = sideDistX + skip * deltaDistX;
+                double exitY = sideDistY + skip * deltaDistY;
+                if (exitX < exitY) {
+                    int steps = stepsAtOrBefore(sideDistY, deltaDistY, exitX, skip);
+                    mapX += stepX * skip;
+                    sideDistX = exitX;
+                    mapY += stepY * steps;
+                    sideDistY += steps * deltaDistY;
+                } else {
+                    int steps = stepsBefore(sideDistX, deltaDistX, exitY, skip);
+                    mapY += stepY * skip;
+                    sideDistY = exitY;
+                    mapX += stepX * steps;
+                    sideDistX += steps * deltaDistX;
+                }
+            }
+
+            double entry;
+            int side;
+            if (sideDistX < sideDistY) {
+                entry = sideDistX;
+                sideDistX += deltaDistX;
+                mapX += stepX;
+                side = 0;
+            } else {
+                entry = sideDistY;
+                sideDistY += deltaDistY;
+                mapY += stepY;
+                side = 1;
+            }
+            if (entry >= maxDist) return maxDist;
+            if (mapX < 0 || mapX >= size || mapY < 0 || mapY >= size) return entry;
+            if (worldMap[mapY][mapX] > 0) {
+                if (cellOut != null) {
+                    cellOut[i] = mapY * size + mapX;
+                    faceOut[i] = LightMap.hitFace(side, stepX, stepY);
+                }
+                return entry;
+            }
+        }
+    }
+
+    // How many of the boundary crossings first, first + delta, ... (at most max) happen at or
+    // before t. Used when the ray leaves a skip square through the other axis: the DDA steps this
+    // axis on ties, so crossings at exactly t are taken first.
+    static int stepsAtOrBefore(double first, double delta, double t, int max) {
+        if (first > t) return 0;
+        int steps = (int)Math.min(max, (t - first) / delta + 1);
+        while (steps > 0 && first + (steps - 1) * delta > t) steps--;
+        while (steps < max && first + steps * delta <= t) steps++;
+        return steps;
+    }
+
+    // Same, for crossings strictly before t (this axis loses ties).
+    static int stepsBefore(double first, double delta, double t, int max) {
+        if (first >= t) return 0;
+        int steps = (int)Math.min(max, (t - first) / delta + 1);
+        while (steps > 0 && first + (steps - 1) * delta >= t) steps--;
+        while (steps < max && first + steps * delta < t) steps++;
+        return steps;
+    }
+
+    static int stepsAtOrBefore(long first, long delta, long t, int max) {
+        return first > t ? 0 : (int)Math.min(max, (t - first) / delta + 1);
+    }
+
+    static int stepsBefore(long first, long delta, long t, int max) {
+        return first >= t ? 0 : (int)Math.min(max, (t - first - 1) / delta + 1);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.raycastergame;
+
+// --- Frame Pacer Class ---
+// Decides, for every display vsync, whether to render a frame and how many fixed simulation ticks
+// are due. Rendering follows the panel's refresh rate (optionally capped to a whole divisor of it)
+// while the simulation keeps advancing at TICKS_PER_SECOND, so the game runs at the same speed
+// on 60, 90 and 120 Hz screens. Also tracks pacing quality: missed vsyncs and frame jitter.
+public class FramePacer {
+
+    public static final long TICK_NANOS = 1_000_000_000L / GameWorld.TICKS_PER_SECOND;
+    private static final int MAX_TICKS_PER_FRAME = 4;
+    private static final long MAX_FRAME_GAP_NANOS = 250_000_000L;
+
+    private long vsyncPeriodNanos = 1_000_000_000L / 60;
+    private int frameRateCap = 0; // 0 = render every vsync
+    private int vsyncStride = 1;
+
+    private long lastRenderedVsync = 0;
+    private long lastTickTime = 0;
+    private long tickAccumulator = 0;
+
+    // --- Pacing statistics (since the last reset) ---
+    public long framesRendered = 0;
+    public long missedVsyncs = 0;
+    public float jitterMs = 0;     // exponentially smoothed |interval - target|
+    public float maxJitterMs = 0;
+
+    public float getRefreshRate() { return 1e9f / vsyncPeriodNanos; }
+    public int getFrameRateCap() { return frameRateCap; }
+    public int getVsyncStride() { return vsyncStride; }
+
+    public void setRefreshRate(float hz) {
+        if (hz < 1) return;
+        long period = (long)(1e9 / hz);
+        if (period != vsyncPeriodNanos) {
+            vsyncPeriodNanos = period;
+            updateStride();
+        }
+    }
+
+    public void setFrameRateCap(int fps) {
+        frameRateCap = Math.max(0, fps);
+        updateStride();
+    }
+
+    // Render every n-th vsync so capped frames still land on vsync boundaries. The stride rounds up
+    // (with a small tolerance for panels reporting e.g. 60.2 Hz) so the cap is never exceeded.
+    private void updateStride() {
+        if (frameRateCap <= 0) {
+            vsyncStride = 1;
+        } else {
+            long capInterval = 1_000_000_000L / frameRateCap;
+            vsyncStride = (int)Math.max(1, (capInterval - capInterval / 50 + vsyncPeriodNanos - 1) / vsyncPeriodNanos);
+        }
+    }
+
+    public void reset() {
+        lastRenderedVsync = 0;
+        lastTickTime = 0;
+        tickAccumulator = 0;
+        framesRendered = 0;
+        missedVsyncs = 0;
+        jitterMs = 0;
+        maxJitterMs = 0;
+    }
+
+    // Returns true if a frame should be rendered for the vsync at frameTimeNanos.
+    public boolean onVsync(long frameTimeNanos) {
+        if (lastRenderedVsync == 0) {
+            lastRenderedVsync = frameTimeNanos;
+            framesRendered++;
+            return true;
+        }
+        long interval = frameTimeNanos - lastRenderedVsync;
+        long target = vsyncStride * vsyncPeriodNanos;
+        if (interval < target - vsyncPeriodNanos / 2) return false;
+
+        if (interval < MAX_FRAME_GAP_NANOS) {
+            long vsyncs = (interval + vsyncPeriodNanos / 2) / vsyncPeriodNanos;
+            if (vsyncs > vsyncStride) missedVsyncs += vsyncs - vsyncStride;
+            float jitter = Math.abs(interval - target) / 1e6f;
+            jitterMs += (jitter - jitterMs) * 0.1f;
+            if (jitter > maxJitterMs) maxJitterMs = jitter;
+        }
+        lastRenderedVsync = frameTimeNanos;
+        framesRendered++;
+        return true;
+    }
+
+    // Number of fixed simulation ticks to run before rendering the frame at frameTimeNanos.
+    public int ticksDue(long frameTimeNanos) {
+        if (lastTickTime == 0) {
+            lastTickTime = frameTimeNanos;
+            return 1;
+        }
+        long elapsed = Math.min(frameTimeNanos - lastTickTime, MAX_FRAME_GAP_NANOS);
+        lastTickTime = frameTimeNanos;
+        tickAccumulator += elapsed;
+        // Vsync timestamps wobble slightly; snap to a whole tick so a 60 Hz panel gets exactly one
+        // tick per frame instead of an occasional 0/2 pair.
+        long remainder = tickAccumulator % TICK_NANOS;
+        if (TICK_NANOS - remainder < 1_000_000L) tickAccumulator += TICK_NANOS - remainder;
+
+        int ticks = (int)(tickAccumulator / TICK_NANOS);
+        tickAccumulator -= ticks * TICK_NANOS;
+        if (ticks > MAX_TICKS_PER_FRAME) ticks = MAX_TICKS_PER_FRAME; // Drop the backlog after a hitch
+        return ticks;
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.raycastergame;
+
+import java.util.Arrays;
+
+// --- Frame Profiler Class ---
+// Collects per-phase CPU time for each rendered frame into fixed ring buffers and derives rolling
+// averages, p95/p99 and a frame-time histogram from them. Nothing here allocates after
+// construction, so it can stay switched on while measuring allocation-sensitive paths.
+public class FrameProfiler {
+
+    public static final int PHASE_UPDATE = 0;
+    public static final int PHASE_RAYCAST = 1;
+    public static final int PHASE_WALL_FILL = 2;
+    public static final int PHASE_SPRITES = 3;
+    public static final int PHASE_HUD = 4;
+    public static final int PHASE_CONTROLS = 5;
+    public static final int PHASE_POST = 6;
+    public static final int PHASE_OVERLAY = 7;
+    public static final int PHASE_COUNT = 8;
+    // Stats index for the frame-to-frame interval, stored after the phases
+    public static final int FRAME = PHASE_COUNT;
+    public static final String[] PHASE_NAMES = { "update", "raycast", "walls", "sprites", "hud", "controls", "post", "overlay", "frame" };
+
+    public static final int WINDOW = 240;
+    public static final int HISTOGRAM_BUCKETS = 40; // 1 ms per bucket, last bucket collects the tail
+    private static final int STATS_INTERVAL_FRAMES = 30;
+
+    public boolean enabled = false;
+
+    private final long[][] samples = new long[PHASE_COUNT + 1][WINDOW];
+    private final long[] current = new long[PHASE_COUNT];
+    private final long[] scratch = new long[WINDOW];
+    private int writeIndex = 0;
+    private int sampleCount = 0;
+    private int framesSinceStats = 0;
+    private long lastFrameEnd = 0;
+
+    // --- Derived stats, refreshed every STATS_INTERVAL_FRAMES frames ---
+    public final float[] avgMs = new float[PHASE_COUNT + 1];
+    public final float[] p95Ms = new float[PHASE_COUNT + 1];
+    public final float[] p99Ms = new float[PHASE_COUNT + 1];
+    public final int[] histogram = new int[HISTOGRAM_BUCKETS];
+    public int histogramMax = 0;
+
+    // --- Runtime GC stats, -1 when the runtime does not expose them ---
+    public float gcPerSecond = -1;
+    public float allocKbPerSecond = -1;
+    private long lastRuntimeSample = 0;
+    private long lastGcCount = -1;
+    private long lastBytesAllocated = -1;
+
+    // --- Input latency: touch sample timestamp to the end of the first frame drawn after it was
+    // applied. Smoothed average, plus the worst case over the last stats interval ---
+    public float inputLatencyMs = 0;
+    public float maxInputLatencyMs = 0;
+    private float intervalMaxInputLatencyMs = 0;
+
+    public void add(int phase, long nanos) {
+        current[phase] += nanos;
+    }
+
+    public void endFrame(long now) {
+        if (lastFrameEnd != 0) {
+            for (int p = 0; p < PHASE_COUNT; p++) {
+                samples[p][writeIndex] = current[p];
+            }
+            samples[FRAME][writeIndex] = now - lastFrameEnd;
+            writeIndex = (writeIndex + 1) % WINDOW;
+            if (sampleCount < WINDOW) sampleCount++;
+            if (++framesSinceStats >= STATS_INTERVAL_FRAMES) {
+                framesSinceStats = 0;
+                computeStats();
+            }
+        }
+        Arrays.fill(current, 0);
+        lastFrameEnd = now;
+    }
+
+    // Drops the frame interval across a pause so it does not show up as a giant hitch.
+    public void reset() {
+        Arrays.fill(current, 0);
+        lastFrameEnd = 0;
+    }
+
+    public void addInputLatency(long nanos) {
+        float ms = nanos / 1e6f;
+        inputLatencyMs = inputLatencyMs == 0 ? ms : inputLatencyMs + (ms - inputLatencyMs) * 0.1f;
+        if (ms > intervalMaxInputLatencyMs) intervalMaxInputLatencyMs = ms;
+    }
+
+    // Feeds cumulative GC counters (e.g. from the ART runtime stats); rates are taken once per second.
+    public boolean needsRuntimeSample(long now) {
+        return now - lastRuntimeSample >= 1_000_000_000L;
+    }
+
+    public void sampleRuntime(long now, long gcCount, long bytesAllocated) {
+        if (lastRuntimeSample != 0) {
+            float seconds = (now - lastRuntimeSample) / 1e9f;
+            gcPerSecond = (gcCount < 0 || lastGcCount < 0) ? -1 : (gcCount - lastGcCount) / seconds;
+            allocKbPerSecond = (bytesAllocated < 0 || lastBytesAllocated < 0) ? -1 : (bytesAllocated - lastBytesAllocated) / 1024f / seconds;
+        }
+        lastRuntimeSample = now;
+        lastGcCount = gcCount;
+        lastBytesAllocated = bytesAllocated;
+    }
+
+    private void computeStats() {
+        for (int p = 0; p <= PHASE_COUNT; p++) {
+            long sum = 0;
+            for (int i = 0; i < sampleCount; i++) {
+                scratch[i] = samples[p][i];
+                sum += scratch[i];
+            }
+            Arrays.sort(scratch, 0, sampleCount);
+            avgMs[p] = sum / (float)sampleCount / 1e6f;
+            p95Ms[p] = scratch[(int)((sampleCount - 1) * 0.95f)] / 1e6f;
+            p99Ms[p] = scratch[(int)((sampleCount - 1) * 0.99f)] / 1e6f;
+        }
+
+        maxInputLatencyMs = intervalMaxInputLatencyMs;
+        intervalMaxInputLatencyMs = 0;
+
+        Arrays.fill(histogram, 0);
+        histogramMax = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            int bucket = (int)(samples[FRAME][i] / 1_000_000L);
+            if (bucket >= HISTOGRAM_BUCKETS) bucket = HISTOGRAM_BUCKETS - 1;
+            if (++histogram[bucket] > histogramMax) histogramMax = histogram[bucket];
+        }
+    }
+
+    public boolean hasStats() {
+        return sampleCount >= STATS_INTERVAL_FRAMES;
+    }
+
+    //==============================================================================================
+    // --- Allocation-free text helpers for the overlay (Canvas.drawText(char[], ...)) ---
+    //==============================================================================================
+
+    public static int append(char[] out, int pos, String text) {
+        for (int i = 0; i < text.length() && pos < out.length; i++) out[pos++] = text.charAt(i);
+        return pos;
+    }
+
+    public static int appendPadded(char[] out, int pos, String text, int width) {
+        int end = pos + width;
+        pos = append(out, pos, text);
+        while (pos < end && pos < out.length) out[pos++] = ' ';
+        return pos;
+    }
+
+    // Writes value with a fixed number of decimals (0-3), right-aligned in width characters.
+    public static int appendFixed(char[] out, int pos, float value, int decimals, int width) {
+        boolean negative = value < 0;
+        if (negative) value = -value;
+        int scale = decimals == 0 ? 1 : decimals == 1 ? 10 : decimals == 2 ? 100 : 1000;
+        long scaled = (long)(value * scale + 0.5f);
+        long whole = scaled / scale;
+        long frac = scaled % scale;
+
+        int digits = 1;
+        for (long w = whole; w >= 10; w /= 10) digits++;
+        int length = digits + (decimals > 0 ? decimals + 1 : 0) + (negative ? 1 : 0);
+        for (int i = length; i < width && pos < out.length; i++) out[pos++] = ' ';
+        if (pos + length > out.length) return pos;
+
+        if (negative) out[pos++] = '-';
+        for (int i = digits - 1; i >= 0; i--) {
+            out[pos + i] = (char)('0' + whole % 10);
+            whole /= 10;
+        }
+        pos += digits;
+        if (decimals > 0) {
+            out[pos++] = '.';
+            for (int i = decimals - 1; i >= 0; i--) {
+                out[pos + i] = (char)('0' + frac % 10);
+                frac /= 10;
+            }
+            pos += decimals;
+        }
+        return pos;
+    }
+}
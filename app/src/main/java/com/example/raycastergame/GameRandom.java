@@ -0,0 +1,41 @@
+package com.example.raycastergame;
+
+import java.util.Random;
+
+// --- Game Random Class ---
+// java.util.Random with its 48-bit state exposed, so a snapshot can carry the level generator
+// mid-run. It runs the same generator and bit extraction as java.util.Random, so a seed produces
+// the same numbers as before and existing recordings still replay.
+public class GameRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state; // Assigned by setSeed, which Random's constructor calls
+
+    public GameRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int)(state >>> (48 - bits));
+    }
+
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+}
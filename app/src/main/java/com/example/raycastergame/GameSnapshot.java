@@ -0,0 +1,169 @@
+package com.example.raycastergame;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+// --- Game Snapshot Class ---
+// The complete state of a run between two ticks, packed into one byte array: map, every sprite
+// with its private state (enemy health and cooldown, rocket velocity), the player, the counters
+// and the level generator's random state. capture() is cheap enough for the UI thread in onPause;
+// the bytes are then written to disk elsewhere. Restoring continues the run exactly, as if it had
+// never been interrupted.
+//
+// Layout (big-endian):
+//   int MAGIC, int VERSION, long seed, long randomState, int wallTextureCount,
+//   int level, int score, int playerHealth, int shootTimer, long tick,
+//   float playerX, float playerY, double playerAngle,
+//   int mapSize, short[mapSize * mapSize] cells,
+//   int spriteCount, spriteCount x { byte type, float x, float y, type-specific fields }
+public final class GameSnapshot {
+
+    public static final int MAGIC = 0x4443534E; // "DCSN"
+    public static final int VERSION = 1;
+
+    private static final byte ENEMY = 0;  // int health, long lastShotTick
+    private static final byte ROCKET = 1; // float velX, float velY, byte lit
+    private static final byte PORTAL = 2;
+    private static final byte MEDKIT = 3;
+
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4 + 4 * 4 + 8 + 4 + 4 + 8 + 4;
+    private static final int MAX_SPRITE_BYTES = 1 + 4 + 4 + 4 + 8;
+
+    private GameSnapshot() {}
+
+    public static byte[] capture(GameWorld world) {
+        int mapSize = GameWorld.MAP_SIZE;
+        int size = HEADER_BYTES + mapSize * mapSize * 2 + 4 + world.sprites.size() * MAX_SPRITE_BYTES;
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).putInt(VERSION);
+        out.putLong(world.seed).putLong(world.random.getState()).putInt(world.wallTextureCount);
+        out.putInt(world.level).putInt(world.score).putInt(world.playerHealth).putInt(world.shootTimer);
+        out.putLong(world.tick);
+        out.putFloat(world.playerX).putFloat(world.playerY).putDouble(world.playerAngle);
+        out.putInt(mapSize);
+        for (int y = 0; y < mapSize; y++) {
+            int[] row = world.worldMap[y];
+            for (int x = 0; x < mapSize; x++) out.putShort((short)row[x]);
+        }
+
+        out.putInt(world.sprites.size());
+        for (int i = 0; i < world.sprites.size(); i++) {
+            GameWorld.Sprite s = world.sprites.get(i);
+            if (s instanceof GameWorld.Enemy) {
+                GameWorld.Enemy e = (GameWorld.Enemy) s;
+                out.put(ENEMY).putFloat(s.x).putFloat(s.y).putInt(e.health).putLong(e.lastShotTick);
+            } else if (s instanceof GameWorld.Rocket) {
+                GameWorld.Rocket r = (GameWorld.Rocket) s;
+                out.put(ROCKET).putFloat(s.x).putFloat(s.y).putFloat(r.velX).putFloat(r.velY).put((byte)(s.light != null ? 1 : 0));
+            } else if (s instanceof GameWorld.Portal) {
+                out.put(PORTAL).putFloat(s.x).putFloat(s.y);
+            } else if (s instanceof GameWorld.Medkit) {
+                out.put(MEDKIT).putFloat(s.x).putFloat(s.y);
+            } else {
+                throw new IllegalStateException("Unknown sprite " + s.getClass().getSimpleName());
+            }
+        }
+        byte[] bytes = new byte[out.position()];
+        System.arraycopy(out.array(), 0, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    // Replaces the world's run with the snapshot. The world must have been built for the same
+    // number of wall textures, since that shapes the levels still to be generated.
+    public static void restore(GameWorld world, byte[] snapshot) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(snapshot);
+        try {
+            if (in.getInt() != MAGIC) throw new IOException("Not a game snapshot");
+            int version = in.getInt();
+            if (version != VERSION) throw new IOException("Unsupported snapshot version " + version);
+            long seed = in.getLong();
+            long randomState = in.getLong();
+            int wallTextureCount = in.getInt();
+            if (wallTextureCount != world.wallTextureCount) {
+                throw new IOException("Snapshot is for " + wallTextureCount + " wall textures, not " + world.wallTextureCount);
+            }
+            int level = in.getInt(), score = in.getInt(), health = in.getInt(), shootTimer = in.getInt();
+            long tick = in.getLong();
+            float playerX = in.getFloat(), playerY = in.getFloat();
+            double playerAngle = in.getDouble();
+            int mapSize = in.getInt();
+            if (mapSize != GameWorld.MAP_SIZE) throw new IOException("Snapshot map size " + mapSize);
+            int[][] map = new int[mapSize][mapSize];
+            for (int y = 0; y < mapSize; y++) {
+                for (int x = 0; x < mapSize; x++) map[y][x] = in.getShort();
+            }
+
+            int spriteCount = in.getInt();
+            if (spriteCount < 0 || spriteCount > in.remaining() / 9) throw new IOException("Bad sprite count " + spriteCount);
+            world.sprites.clear();
+            for (int i = 0; i < spriteCount; i++) {
+                byte type = in.get();
+                float x = in.getFloat(), y = in.getFloat();
+                switch (type) {
+                    case ENEMY: {
+                        GameWorld.Enemy e = world.new Enemy(x, y);
+                        e.health = in.getInt();
+                        e.lastShotTick = in.getLong();
+                        world.sprites.add(e);
+                        break;
+                    }
+                    case ROCKET: {
+                        float velX = in.getFloat(), velY = in.getFloat();
+                        boolean lit = in.get() != 0;
+                        GameWorld.Rocket r = world.new Rocket(x, y, x + velX, y + velY, 0f, lit);
+                        r.velX = velX;
+                        r.velY = velY;
+                        world.sprites.add(r);
+                        break;
+                    }
+                    case PORTAL: world.sprites.add(world.new Portal(x, y)); break;
+                    case MEDKIT: world.sprites.add(world.new Medkit(x, y)); break;
+                    default: throw new IOException("Unknown sprite type " + type);
+                }
+            }
+
+            world.seed = seed;
+            world.random = new GameRandom(seed);
+            world.random.setState(randomState);
+            world.level = level;
+            world.score = score;
+            world.playerHealth = health;
+            world.shootTimer = shootTimer;
+            world.tick = tick;
+            world.gameOver = false;
+            world.playerX = playerX;
+            world.playerY = playerY;
+            world.playerAngle = playerAngle;
+            world.worldMap = map;
+            world.rebuildAfterRestore();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated snapshot", e);
+        }
+    }
+
+    // Writes through a temporary file and a rename, so a crash mid-write keeps the last good one.
+    public static void write(byte[] snapshot, File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(snapshot);
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            if (!file.delete() || !tmp.renameTo(file)) throw new IOException("could not replace " + file);
+        }
+    }
+
+    // The snapshot bytes, or null when there is no file.
+    public static byte[] read(File file) throws IOException {
+        if (!file.isFile()) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] bytes = new byte[(int)raf.length()];
+            raf.readFully(bytes);
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,859 @@
+package com.example.raycastergame;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// --- Game World Class ---
+// Holds the whole simulation (map, sprites, player) with no dependency on the View, so the
+// same code runs inside GameView and headlessly in ReplayRunner. Everything that affects the
+// outcome of a run is driven by the level seed and the per-tick input passed to tick().
+public class GameWorld {
+
+    public static final int MAP_SIZE = 64;
+    public static final int TICKS_PER_SECOND = 60;
+    public static final int TICK_MILLIS = 1000 / TICKS_PER_SECOND;
+    public static final int WEAPON_COOLDOWN_FRAMES = 10;
+    public static final int SHOT_PELLETS = 1;         // Rays per trigger pull, fanned PELLET_SPREAD apart
+    public static final float PELLET_SPREAD = 0.04f;  // Radians between neighbouring pellets
+    public static final int MAX_LIT_ROCKETS = 32; // Rockets past this many fly unlit; see ProjectileStress
+
+    // --- Events raised during a tick, collected in events for GameView's sounds and particles ---
+    public static final int EVENT_SHOT = 0;
+    public static final int EVENT_ROCKET_LAUNCH = 1;
+    public static final int EVENT_ROCKET_IMPACT = 2;
+    public static final int EVENT_PICKUP = 3;
+    public static final int EVENT_ENEMY_DEATH = 4;
+    public static final int EVENT_PLAYER_HIT = 5;
+    public static final int EVENT_COUNT = 6;
+
+    // --- Phase timing (nanoseconds accumulated while phaseTimingEnabled is set) ---
+    public static final int PHASE_INPUT = 0;
+    public static final int PHASE_MOVE = 1;
+    public static final int PHASE_SPRITES = 2;
+    public static final int PHASE_SPAWNS = 3;
+    public static final int PHASE_LIGHTS = 4;
+    public static final int PHASE_COUNT = 5;
+    public static final String[] PHASE_NAMES = { "input", "move", "sprites", "spawns", "lights" };
+
+    public boolean phaseTimingEnabled = false;
+    public final long[] phaseNanos = new long[PHASE_COUNT];
+
+    public int[][] worldMap;
+    public int mapVersion = 0; // Bumped whenever worldMap is regenerated
+    public final DistanceField distanceField = new DistanceField(MAP_SIZE);
+    public final LightMap lightMap = new LightMap(MAP_SIZE);
+    private final LightMap.Light muzzleFlash = new LightMap.Light(0xFFC896, 8f, false);
+    private int litRockets = 0; // Recounted by updateLights every tick
+    public float playerX, playerY;
+    public double playerAngle;
+    public int playerHealth;
+    public int score;
+    public int level = 1;
+    public int shootTimer = 0;
+    public long tick = 0;
+    public boolean gameOver = false;
+    public List<Sprite> sprites = new ArrayList<>();
+    int lastSpriteId = 0; // Sprites are numbered as they're created, for replication to match them up
+    public final Guest guest = new Guest();
+    // EVENT entries (event, x, y, amount) from the last tick, in the order they happened. Output only:
+    // nothing in the simulation reads them back, so replays are unaffected.
+    public final CommandBuffer events = new CommandBuffer();
+
+    // --- Parallel entity phase ---
+    // Sprites update against a frozen Snapshot of the shared state and record their effects on the
+    // world into a per-chunk CommandBuffer; the buffers are applied afterwards in sprite order, so
+    // any thread count produces the same run as the serial path for a given seed and input.
+    public int minChunkSize = 256; // Fewer sprites than this per chunk aren't worth a thread hop
+    public final Snapshot snapshot = new Snapshot();
+    private WorkerPool workerPool;
+    private CommandBuffer[] commandBuffers = { new CommandBuffer() };
+    private int chunkCount = 1;
+    private final WorkerPool.Job spriteJob = this::updateSpriteChunk;
+
+    private final RayQuery shotQuery = new RayQuery(SHOT_PELLETS);
+    private final RayQuery sightQuery = new RayQuery(64); // Read-only while sprites update
+
+    // Rockets that hit something, kept for the next launch so enemy fire doesn't allocate
+    private final ArrayList<Rocket> rocketPool = new ArrayList<>();
+    public int rocketsAllocated = 0; // Only grows when more rockets are in flight than ever before
+    private final float[] walked = new float[2];
+    // Maze carving scratch, reused by every generateLevel
+    private final boolean[] carveVisited = new boolean[MAP_SIZE * MAP_SIZE];
+    private final int[] carveStack = new int[MAP_SIZE * MAP_SIZE];
+    private final int[] carveNeighbors = new int[4];
+
+    final int wallTextureCount;
+    GameRandom random = new GameRandom(0); // Package-private so GameSnapshot can carry its state
+    long seed;
+
+    public GameWorld(int wallTextureCount) {
+        this.wallTextureCount = wallTextureCount;
+    }
+
+    public long getSeed() { return seed; }
+
+    // Spreads the sprite phase over this many threads (the caller counts as one). 1 is serial.
+    public void setParallelism(int threads) {
+        if (workerPool != null) workerPool.shutdown();
+        workerPool = threads > 1 ? new WorkerPool(threads) : null;
+        commandBuffers = new CommandBuffer[Math.max(1, threads)];
+        for (int i = 0; i < commandBuffers.length; i++) commandBuffers[i] = new CommandBuffer();
+    }
+
+    public int getParallelism() {
+        return commandBuffers.length;
+    }
+
+    public void startGame(long seed) {
+        this.seed = seed;
+        random = new GameRandom(seed);
+        level = 1;
+        score = 0;
+        playerHealth = 100;
+        guest.leave();
+        shootTimer = 0;
+        tick = 0;
+        gameOver = false;
+        generateLevel();
+    }
+
+    // Advances the simulation by one fixed step using the input gathered since the last tick.
+    public void tick(float moveX, float moveY, float lookDelta, boolean shoot) {
+        if (gameOver) return;
+        long traceStart = Tracer.begin();
+        long t0 = phaseTimingEnabled ? System.nanoTime() : 0;
+
+        tick++;
+        events.clear();
+        if (shootTimer > 0) shootTimer--;
+        playerAngle += lookDelta;
+        if (shoot) playerShoot();
+        if (guest.joined) guest.play();
+
+        for (int i = 0; i < sprites.size(); i++) {
+            Sprite s = sprites.get(i);
+            s.distToPlayer = Math.hypot(playerX - s.x, playerY - s.y);
+        }
+        long t1 = phaseTimingEnabled ? System.nanoTime() : 0;
+
+        walk(playerX, playerY, playerAngle, moveX, moveY, walked);
+        playerX = walked[0];
+        playerY = walked[1];
+        long t2 = phaseTimingEnabled ? System.nanoTime() : 0;
+
+        snapshot.playerX = playerX;
+        snapshot.playerY = playerY;
+        snapshot.guestJoined = guest.joined;
+        snapshot.guestX = guest.x;
+        snapshot.guestY = guest.y;
+        snapshot.tick = tick;
+        traceSightLines();
+        int spriteCount = sprites.size();
+        chunkCount = Math.max(1, Math.min(commandBuffers.length, spriteCount / Math.max(1, minChunkSize)));
+        if (workerPool != null && chunkCount > 1) {
+            workerPool.run(spriteJob, chunkCount);
+        } else {
+            chunkCount = 1;
+            updateSpriteChunk(0);
+        }
+        long t3 = phaseTimingEnabled ? System.nanoTime() : 0;
+
+        applyCommands(spriteCount);
+        long t4 = phaseTimingEnabled ? System.nanoTime() : 0;
+
+        updateLights();
+
+        if (phaseTimingEnabled) {
+            long t5 = System.nanoTime();
+            phaseNanos[PHASE_INPUT] += t1 - t0;
+            phaseNanos[PHASE_MOVE] += t2 - t1;
+            phaseNanos[PHASE_SPRITES] += t3 - t2;
+            phaseNanos[PHASE_SPAWNS] += t4 - t3;
+            phaseNanos[PHASE_LIGHTS] += t5 - t4;
+        }
+        Tracer.end(Tracer.UPDATE, traceStart);
+    }
+
+    // One batched wall query for every enemy close enough to care whether it can see the player,
+    // and the guest when there is one.
+    private void traceSightLines() {
+        sightQuery.clear();
+        for (int i = 0; i < sprites.size(); i++) {
+            Sprite s = sprites.get(i);
+            if (!(s instanceof Enemy)) continue;
+            Enemy e = (Enemy) s;
+            e.sightRay = e.distToPlayer < Enemy.LINE_OF_SIGHT_RANGE ? addSightRay(e, playerX, playerY) : -1;
+            boolean guestInRange = guest.joined && Math.hypot(guest.x - e.x, guest.y - e.y) < Enemy.LINE_OF_SIGHT_RANGE;
+            e.guestSightRay = guestInRange ? addSightRay(e, guest.x, guest.y) : -1;
+        }
+        sightQuery.run(this);
+    }
+
+    private int addSightRay(Enemy e, float targetX, float targetY) {
+        double toX = targetX - e.x, toY = targetY - e.y;
+        double dist = Math.hypot(toX, toY);
+        if (dist == 0) return -1;
+        return sightQuery.add(e.x, e.y, toX / dist, toY / dist, dist, RayQuery.WALLS);
+    }
+
+    // Updates the contiguous run of sprites belonging to one chunk. Runs on a pool thread, so it
+    // may only touch the sprites in its own range and its own command buffer.
+    private void updateSpriteChunk(int chunk) {
+        int n = sprites.size();
+        int from = (int)((long)n * chunk / chunkCount);
+        int to = (int)((long)n * (chunk + 1) / chunkCount);
+        CommandBuffer out = commandBuffers[chunk];
+        out.clear();
+        for (int i = from; i < to; i++) {
+            Sprite s = sprites.get(i);
+            long spanStart = Tracer.begin();
+            s.update(snapshot, out);
+            Tracer.end(s.traceName(), spanStart);
+        }
+    }
+
+    // Applies the recorded effects in chunk order (which is sprite order), drops dead sprites and
+    // finally moves to the next level if a portal was reached.
+    private void applyCommands(int updatedCount) {
+        boolean nextLevel = false;
+        for (int c = 0; c < chunkCount; c++) {
+            CommandBuffer buffer = commandBuffers[c];
+            for (int i = 0; i < buffer.size(); i++) {
+                switch (buffer.op(i)) {
+                    case CommandBuffer.SPAWN_ROCKET:
+                        spawnRocket(buffer.arg(i, 0), buffer.arg(i, 1), buffer.arg(i, 2), buffer.arg(i, 3), Rocket.ROCKET_SPEED);
+                        events.add(CommandBuffer.EVENT, EVENT_ROCKET_LAUNCH, buffer.arg(i, 0), buffer.arg(i, 1), 0);
+                        break;
+                    case CommandBuffer.DAMAGE_PLAYER:
+                        takeDamage((int)buffer.arg(i, 0));
+                        break;
+                    case CommandBuffer.HEAL_PLAYER:
+                        playerHeal((int)buffer.arg(i, 0));
+                        break;
+                    case CommandBuffer.DAMAGE_GUEST:
+                        guest.takeDamage((int)buffer.arg(i, 0));
+                        break;
+                    case CommandBuffer.HEAL_GUEST:
+                        guest.heal((int)buffer.arg(i, 0));
+                        break;
+                    case CommandBuffer.NEXT_LEVEL:
+                        nextLevel = true;
+                        break;
+                    case CommandBuffer.EVENT:
+                        events.add(CommandBuffer.EVENT, buffer.arg(i, 0), buffer.arg(i, 1), buffer.arg(i, 2), 0);
+                        break;
+                }
+            }
+            buffer.clear();
+        }
+
+        // Rockets spawned above sit past updatedCount and are always alive
+        int count = sprites.size();
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            Sprite s = sprites.get(i);
+            if (i >= updatedCount || s.isAlive) {
+                sprites.set(kept++, s);
+                continue;
+            }
+            if (s.light != null) lightMap.remove(s.light);
+            if (s instanceof Rocket) rocketPool.add((Rocket) s);
+        }
+        while (sprites.size() > kept) sprites.remove(sprites.size() - 1);
+
+        if (nextLevel) {
+            level++;
+            score += 100;
+            generateLevel();
+        }
+    }
+
+    // Adds a rocket flying from (startX, startY) towards the target at speed units per tick.
+    public Sprite spawnRocket(float startX, float startY, float targetX, float targetY, float speed) {
+        boolean lit = litRockets < MAX_LIT_ROCKETS;
+        Rocket rocket;
+        if (rocketPool.isEmpty()) {
+            rocket = new Rocket(startX, startY, targetX, targetY, speed, lit);
+            rocketsAllocated++;
+            rocketPool.ensureCapacity(rocketsAllocated); // So returning every rocket never grows it
+        } else {
+            rocket = rocketPool.remove(rocketPool.size() - 1);
+            rocket.launch(startX, startY, targetX, targetY, speed, lit);
+        }
+        if (rocket.light != null) litRockets++;
+        rocket.distToPlayer = Math.hypot(playerX - rocket.x, playerY - rocket.y);
+        sprites.add(rocket);
+        return rocket;
+    }
+
+    public void generateLevel() {
+        long traceStart = Tracer.begin();
+        if (worldMap == null) worldMap = new int[MAP_SIZE][MAP_SIZE];
+        mapVersion++;
+        for (int i = 0; i < sprites.size(); i++) {
+            if (sprites.get(i) instanceof Rocket) rocketPool.add((Rocket) sprites.get(i));
+        }
+        sprites.clear();
+        for (int y = 0; y < MAP_SIZE; y++) {
+            for (int x = 0; x < MAP_SIZE; x++) {
+                worldMap[y][x] = 1;
+            }
+        }
+
+        // Depth-first maze carving over odd cells; cells are packed as y * MAP_SIZE + x
+        boolean[] visited = carveVisited;
+        int[] stack = carveStack, neighbors = carveNeighbors;
+        Arrays.fill(visited, false);
+        int top = 0;
+        visited[MAP_SIZE + 1] = true;
+        worldMap[1][1] = 0;
+        stack[top++] = MAP_SIZE + 1;
+
+        while (top > 0) {
+            int current = stack[--top];
+            int cx = current % MAP_SIZE; int cy = current / MAP_SIZE;
+            int count = 0;
+            if (cx > 1 && !visited[current - 2]) neighbors[count++] = current - 2;
+            if (cx < MAP_SIZE - 2 && !visited[current + 2]) neighbors[count++] = current + 2;
+            if (cy > 1 && !visited[current - 2 * MAP_SIZE]) neighbors[count++] = current - 2 * MAP_SIZE;
+            if (cy < MAP_SIZE - 2 && !visited[current + 2 * MAP_SIZE]) neighbors[count++] = current + 2 * MAP_SIZE;
+
+            if (count > 0) {
+                stack[top++] = current;
+                int next = neighbors[random.nextInt(count)];
+                int nx = next % MAP_SIZE; int ny = next / MAP_SIZE;
+                worldMap[(ny + cy) / 2][(nx + cx) / 2] = 0;
+                worldMap[ny][nx] = 0;
+                visited[next] = true;
+                stack[top++] = next;
+            }
+        }
+
+        for (int y = 1; y < MAP_SIZE - 1; y++) {
+            for (int x = 1; x < MAP_SIZE - 1; x++) {
+                if (worldMap[y][x] == 0) { // If it's an empty floor space
+                    // --- FEATURE: Medkit --- Spawn enemies and medkits
+                    if (random.nextFloat() < 0.05) { // 5% chance for an enemy
+                        sprites.add(new Enemy(x + 0.5f, y + 0.5f));
+                    } else if (random.nextFloat() < 0.02) { // 2% chance for a medkit
+                        sprites.add(new Medkit(x + 0.5f, y + 0.5f));
+                    }
+                } else if (worldMap[y][x] == 1) { // If it's a generic wall
+                    worldMap[y][x] = random.nextInt(wallTextureCount) + 1;
+                }
+            }
+        }
+
+        playerX = 1.5f;
+        playerY = 1.5f;
+        playerAngle = 0;
+        guest.x = guest.y = 1.5f;
+        guest.angle = 0;
+
+        int exitX, exitY;
+        do {
+            exitX = random.nextInt(MAP_SIZE - 2) + 1;
+            exitY = random.nextInt(MAP_SIZE - 2) + 1;
+        } while(worldMap[exitY][exitX] != 0 || (Math.abs(exitX - playerX) + Math.abs(exitY - playerY)) < MAP_SIZE / 2.0);
+        sprites.add(new Portal(exitX + 0.5f, exitY + 0.5f));
+        distanceField.build(worldMap);
+        lightMap.reset(worldMap, distanceField);
+        updateLights(); // Bakes the portal and medkit lights into the fresh map
+        Tracer.end(Tracer.GENERATE_LEVEL, traceStart);
+    }
+
+    // Rebuilds what is derived from worldMap and the sprites after GameSnapshot replaced them.
+    void rebuildAfterRestore() {
+        mapVersion++;
+        distanceField.build(worldMap);
+        lightMap.reset(worldMap, distanceField);
+        updateLights();
+    }
+
+    // Orders sprites far to near for the painter's algorithm, by the distToPlayer of the last tick.
+    // Insertion sort: the order barely changes between frames, so this is close to one pass, and
+    // unlike Collections.sort it never allocates a merge buffer.
+    public void sortSpritesForDrawing() {
+        List<Sprite> list = sprites;
+        for (int i = 1; i < list.size(); i++) {
+            Sprite s = list.get(i);
+            double d = s.distToPlayer;
+            int j = i - 1;
+            while (j >= 0 && list.get(j).distToPlayer < d) {
+                list.set(j + 1, list.get(j));
+                j--;
+            }
+            list.set(j + 1, s);
+        }
+    }
+
+    // Moves sprite lights and the muzzle flash. Lights that haven't changed since the last tick
+    // cost nothing, so static portals and medkits are effectively baked into the light map.
+    // Moving rocket lights are re-applied every tick, which is why their number is capped. A co-op
+    // client's view calls it after each update, as it has no tick of its own.
+    void updateLights() {
+        lightMap.set(muzzleFlash, playerX, playerY, shootTimer / (float)WEAPON_COOLDOWN_FRAMES);
+        litRockets = 0;
+        for (int i = 0; i < sprites.size(); i++) {
+            Sprite s = sprites.get(i);
+            if (s.light == null) continue;
+            lightMap.set(s.light, s.x, s.y, 1f);
+            if (s instanceof Rocket) litRockets++;
+        }
+    }
+
+    // One tick of walking from (x, y) facing angle: the new position goes to out[0] and out[1],
+    // which stay at (x, y) if the step would end inside a wall. Both players and a co-op client's
+    // prediction of its own player move through here.
+    public void walk(float x, float y, double angle, float moveX, float moveY, float[] out) {
+        out[0] = x;
+        out[1] = y;
+        float moveSpeed = 0.05f;
+        if (Math.hypot(moveX, moveY) <= 0.01) return;
+        float forwardX = (float)Math.cos(angle) * moveY * moveSpeed;
+        float forwardY = (float)Math.sin(angle) * moveY * moveSpeed;
+        float strafeX = (float)Math.cos(angle + Math.PI / 2) * moveX * moveSpeed;
+        float strafeY = (float)Math.sin(angle + Math.PI / 2) * moveX * moveSpeed;
+        float newX = x + forwardX + strafeX;
+        float newY = y + forwardY + strafeY;
+        int mapX = (int)newX; int mapY = (int)newY;
+        if (mapX >= 0 && mapX < MAP_SIZE && mapY >= 0 && mapY < MAP_SIZE && worldMap[mapY][mapX] == 0) {
+            out[0] = newX;
+            out[1] = newY;
+        }
+    }
+
+    private void playerShoot() {
+        shootTimer = WEAPON_COOLDOWN_FRAMES;
+        shoot(playerX, playerY, playerAngle);
+    }
+
+    // Fires one trigger pull's pellets from (x, y); enemies hit score for whoever shot.
+    private void shoot(float x, float y, double facing) {
+        events.add(CommandBuffer.EVENT, EVENT_SHOT, x, y, 0);
+
+        shotQuery.clear();
+        for (int p = 0; p < SHOT_PELLETS; p++) {
+            double angle = facing + (p - (SHOT_PELLETS - 1) / 2.0) * PELLET_SPREAD;
+            shotQuery.add(x, y, Math.cos(angle), Math.sin(angle), 20, RayQuery.WALLS | RayQuery.SPRITES);
+        }
+        shotQuery.run(this);
+        for (int p = 0; p < shotQuery.count; p++) {
+            int hit = shotQuery.sprite[p];
+            if (hit < 0) continue;
+            Enemy enemy = (Enemy) sprites.get(hit);
+            if (!enemy.isAlive) continue; // An earlier pellet already killed it
+            enemy.takeDamage(50);
+            score += 10;
+        }
+    }
+
+    public void takeDamage(int amount) {
+        playerHealth -= amount;
+        events.add(CommandBuffer.EVENT, EVENT_PLAYER_HIT, playerX, playerY, amount);
+        if (playerHealth <= 0) {
+            playerHealth = 0;
+            gameOver = true;
+        }
+    }
+
+    // --- FEATURE: Medkit --- Method to heal the player ---
+    public void playerHeal(int amount) {
+        playerHealth += amount;
+        if (playerHealth > 100) {
+            playerHealth = 100;
+        }
+    }
+
+    //==============================================================================================
+    // --- NESTED CLASSES START ---
+    //==============================================================================================
+
+    // The shared state sprites may read during the entity phase, frozen before it starts.
+    public static final class Snapshot {
+        public float playerX, playerY;
+        public boolean guestJoined;
+        public float guestX, guestY;
+        public long tick;
+    }
+
+    // A second player, joined over the network through CoopHost. Its inputs are queued as they
+    // arrive and all played at the start of the next tick, in order, each one a full step of
+    // turning, walking and shooting. Where the guest stands after input n therefore depends only
+    // on its own inputs and the map, which is what lets the client predict it exactly. The guest
+    // shares the score. Enemies shoot at whichever player they see nearer, rockets hit either,
+    // either one can take a medkit or the portal. A guest out of health starts again from the
+    // level's start with full health; only the player running out ends the game.
+    public final class Guest {
+        public static final int QUEUE_SIZE = 64;
+        public boolean joined = false;
+        public float x = 1.5f, y = 1.5f;
+        public double angle;
+        public int health = 100;
+        public int shootTimer;
+        public int lastInput = 0; // Sequence number of the last input played
+        public final Avatar avatar = new Avatar();
+
+        private final float[] moveX = new float[QUEUE_SIZE], moveY = new float[QUEUE_SIZE], look = new float[QUEUE_SIZE];
+        private final boolean[] shoot = new boolean[QUEUE_SIZE];
+        private int queued = 0;
+        private final double[] stepState = new double[3];
+
+        // Queues input number seq. Anything but the next one expected is ignored, which drops
+        // the copies a lossy link resends; returns whether it was taken.
+        public boolean queue(int seq, float mx, float my, float lookDelta, boolean fire) {
+            if (seq != lastInput + queued + 1 || queued == QUEUE_SIZE) return false;
+            moveX[queued] = mx;
+            moveY[queued] = my;
+            look[queued] = lookDelta;
+            shoot[queued] = fire;
+            queued++;
+            return true;
+        }
+
+        public int queued() { return queued; }
+
+        // Turns, then walks, state = { x, y, angle } by one input. The client predicts with it too.
+        public void step(double[] state, float mx, float my, float lookDelta) {
+            state[2] += lookDelta;
+            walk((float)state[0], (float)state[1], state[2], mx, my, walked);
+            state[0] = walked[0];
+            state[1] = walked[1];
+        }
+
+        void play() {
+            for (int i = 0; i < queued; i++) {
+                stepState[0] = x;
+                stepState[1] = y;
+                stepState[2] = angle;
+                step(stepState, moveX[i], moveY[i], look[i]);
+                x = (float)stepState[0];
+                y = (float)stepState[1];
+                angle = stepState[2];
+                if (shootTimer > 0) shootTimer--;
+                if (shoot[i] && shootTimer == 0) {
+                    shootTimer = WEAPON_COOLDOWN_FRAMES;
+                    shoot(x, y, angle);
+                }
+            }
+            lastInput += queued;
+            queued = 0;
+        }
+
+        // Drops the guest from the run; the next one starts from the level's start with full health.
+        public void leave() {
+            joined = false;
+            x = y = 1.5f;
+            angle = 0;
+            health = 100;
+            shootTimer = 0;
+            lastInput = 0;
+            queued = 0;
+        }
+
+        void takeDamage(int amount) {
+            health -= amount;
+            if (health > 0) return;
+            health = 100;
+            x = y = 1.5f;
+            angle = 0;
+        }
+
+        void heal(int amount) {
+            health = Math.min(100, health + amount);
+        }
+
+        // The guest as a sprite standing where it is, for drawing only; it is never in sprites.
+        public Sprite avatar() {
+            avatar.x = x;
+            avatar.y = y;
+            avatar.distToPlayer = Math.hypot(playerX - x, playerY - y);
+            return avatar;
+        }
+    }
+
+    abstract class Sprite {
+        public int id;
+        public float x, y;
+        public double distToPlayer = 0;
+        public boolean isAlive = true;
+        public float scale = 1.0f;
+        public float hitRadius = 0; // Radius shots collide with; 0 for sprites that can't be hit
+        public LightMap.Light light; // Light this sprite casts, if any
+
+        Sprite() { id = ++lastSpriteId; }
+
+        Sprite(int id) { this.id = id; }
+
+        // Reads only this sprite, the snapshot and the (unchanging) map; effects go through out
+        public abstract void update(Snapshot view, CommandBuffer out);
+        public abstract int traceName();
+        // light is the packed LightMap value at the sprite's cell; emissive sprites ignore it.
+        // unoccluded means the depth hierarchy found the sprite in front of the walls in every
+        // column of screenRect, so nothing needs a per-column depth test.
+        public abstract void draw(Canvas canvas, Paint paint, RectF screenRect, double[] depthBuffer, double correctedDist, int light, boolean unoccluded);
+
+        // Fills the columns of [left, right) x [top, bottom) that are in front of the walls, one
+        // rect per visible run of columns; a single rect when unoccluded.
+        protected void fillVisible(Canvas canvas, Paint paint, float left, float top, float right, float bottom,
+                                   double[] depthBuffer, double correctedDist, boolean unoccluded) {
+            int from = Math.max(0, (int)left);
+            int to = Math.min(depthBuffer.length, (int)right);
+            if (unoccluded) {
+                if (from < to) canvas.drawRect(from, top, to, bottom, paint);
+                return;
+            }
+            int runStart = -1;
+            for (int i = from; i <= to; i++) {
+                boolean visible = i < to && depthBuffer[i] > correctedDist;
+                if (visible) {
+                    if (runStart < 0) runStart = i;
+                } else if (runStart >= 0) {
+                    canvas.drawRect(runStart, top, i, bottom, paint);
+                    runStart = -1;
+                }
+            }
+        }
+    }
+
+    class Enemy extends Sprite {
+        int health = 100;
+        long lastShotTick = -SHOT_COOLDOWN_TICKS - 1;
+        private static final long SHOT_COOLDOWN_TICKS = 2000 / TICK_MILLIS;
+        static final float LINE_OF_SIGHT_RANGE = 10.0f;
+        int sightRay = -1; // This tick's ray to the player in sightQuery, -1 when out of range
+        int guestSightRay = -1;
+
+        public Enemy(float x, float y) {
+            this.x = x;
+            this.y = y;
+            this.hitRadius = 0.5f;
+        }
+
+        @Override
+        public int traceName() { return Tracer.ENEMY_UPDATE; }
+
+        @Override
+        public void update(Snapshot view, CommandBuffer out) {
+            boolean seesPlayer = hasLineOfSight(sightRay), seesGuest = hasLineOfSight(guestSightRay);
+            if ((seesPlayer || seesGuest) && view.tick - lastShotTick > SHOT_COOLDOWN_TICKS) {
+                lastShotTick = view.tick;
+                // The nearer of the players it can see
+                boolean atGuest = seesGuest && (!seesPlayer || Math.hypot(view.guestX - x, view.guestY - y) < Math.hypot(view.playerX - x, view.playerY - y));
+                float targetX = atGuest ? view.guestX : view.playerX;
+                float targetY = atGuest ? view.guestY : view.playerY;
+                double angleToTarget = Math.atan2(targetY - y, targetX - x);
+                float startX = x + (float)Math.cos(angleToTarget) * 0.5f;
+                float startY = y + (float)Math.sin(angleToTarget) * 0.5f;
+                out.add(CommandBuffer.SPAWN_ROCKET, startX, startY, targetX, targetY);
+            }
+        }
+
+        // Answered by the batched sight query traced before the sprite phase
+        private boolean hasLineOfSight(int ray) {
+            return ray >= 0 && sightQuery.distance[ray] >= sightQuery.maxDist[ray];
+        }
+
+        @Override
+        public void draw(Canvas canvas, Paint paint, RectF screenRect, double[] depthBuffer, double correctedDist, int light, boolean unoccluded) {
+            paint.setColor(LightMap.shade(Color.rgb(200, 0, 0), light));
+            fillVisible(canvas, paint, screenRect.left, screenRect.top, screenRect.right, screenRect.bottom, depthBuffer, correctedDist, unoccluded);
+
+            float healthRight = screenRect.left + screenRect.width() * (health / 100f);
+            float healthTop = screenRect.top - 20;
+            float healthBottom = screenRect.top - 10;
+            paint.setColor(Color.GREEN);
+            fillVisible(canvas, paint, screenRect.left, healthTop, healthRight, healthBottom, depthBuffer, correctedDist, unoccluded);
+        }
+
+        public void takeDamage(int amount) {
+            health -= amount;
+            if (health <= 0) {
+                isAlive = false;
+                score += 50;
+                events.add(CommandBuffer.EVENT, EVENT_ENEMY_DEATH, x, y, 0);
+            }
+        }
+    }
+
+    class Rocket extends Sprite {
+        float velX, velY;
+        static final float ROCKET_SPEED = 0.08f;
+        private static final float ROCKET_SCALE = 0.3f;
+        private static final float ROCKET_COLLISION_RADIUS = 0.5f;
+        private static final int ROCKET_DAMAGE = 10;
+
+        // Owned for life, so a pooled rocket relaunched lit needs no new light; light points at it only while lit
+        private final LightMap.Light lamp = new LightMap.Light(0xFFA030, 3f, true);
+
+        public Rocket(float startX, float startY, float targetX, float targetY, float speed, boolean lit) {
+            this.scale = ROCKET_SCALE;
+            launch(startX, startY, targetX, targetY, speed, lit);
+        }
+
+        // (Re)starts this rocket, fresh or from the pool
+        void launch(float startX, float startY, float targetX, float targetY, float speed, boolean lit) {
+            this.x = startX;
+            this.y = startY;
+            this.isAlive = true;
+            this.id = ++lastSpriteId; // A relaunched rocket is a new one as far as replication knows
+            this.light = lit ? lamp : null;
+            double angle = Math.atan2(targetY - y, targetX - x);
+            this.velX = (float) (Math.cos(angle) * speed);
+            this.velY = (float) (Math.sin(angle) * speed);
+        }
+
+        @Override
+        public int traceName() { return Tracer.ROCKET_UPDATE; }
+
+        @Override
+        // Swept collision: the whole segment travelled this tick is tested, so a rocket faster than a
+        // cell per tick still stops at the first wall it crosses and can't skip past the player.
+        public void update(Snapshot view, CommandBuffer out) {
+            // Fraction of this tick's step before the first wall; the map edge counts as a wall
+            double wallT = distanceField.castRay(x, y, velX, velY, 1.0);
+
+            double playerT = hitTime(view.playerX - x, view.playerY - y, wallT);
+            double guestT = view.guestJoined ? hitTime(view.guestX - x, view.guestY - y, wallT) : -1;
+            if (playerT >= 0 || guestT >= 0) {
+                boolean guestHit = guestT >= 0 && (playerT < 0 || guestT < playerT); // Whoever it reaches first
+                double t = guestHit ? guestT : playerT;
+                x += velX * t;
+                y += velY * t;
+                isAlive = false;
+                out.add(guestHit ? CommandBuffer.DAMAGE_GUEST : CommandBuffer.DAMAGE_PLAYER, ROCKET_DAMAGE);
+                out.add(CommandBuffer.EVENT, EVENT_ROCKET_IMPACT, x, y, 0);
+                return;
+            }
+
+            x += velX * wallT;
+            y += velY * wallT;
+            if (wallT < 1.0) {
+                isAlive = false;
+                out.add(CommandBuffer.EVENT, EVENT_ROCKET_IMPACT, x, y, 0);
+            }
+        }
+
+        // Fraction of this step at which the rocket comes closest to a player (toX, toY) away, if
+        // that is within the collision radius and before the wall at wallT; otherwise -1.
+        private double hitTime(double toX, double toY, double wallT) {
+            double speedSquared = velX * velX + velY * velY;
+            double t = speedSquared == 0 ? 0 : (toX * velX + toY * velY) / speedSquared;
+            t = Math.max(0, Math.min(wallT, t));
+            return Math.hypot(toX - t * velX, toY - t * velY) < ROCKET_COLLISION_RADIUS ? t : -1;
+        }
+
+        @Override
+        public void draw(Canvas canvas, Paint paint, RectF screenRect, double[] depthBuffer, double correctedDist, int light, boolean unoccluded) {
+            paint.setColor(Color.YELLOW);
+            fillVisible(canvas, paint, screenRect.left, screenRect.top, screenRect.right, screenRect.bottom, depthBuffer, correctedDist, unoccluded);
+        }
+    }
+
+    class Portal extends Sprite {
+        private static final float PORTAL_ACTIVATION_DISTANCE = 0.8f;
+
+        public Portal(float x, float y) {
+            this.x = x;
+            this.y = y;
+            this.light = new LightMap.Light(0xB040FF, 6f, true);
+        }
+        @Override
+        public int traceName() { return Tracer.PORTAL_UPDATE; }
+
+        @Override
+        public void update(Snapshot view, CommandBuffer out) {
+            if (distToPlayer < PORTAL_ACTIVATION_DISTANCE
+                    || (view.guestJoined && Math.hypot(view.guestX - x, view.guestY - y) < PORTAL_ACTIVATION_DISTANCE)) {
+                out.add(CommandBuffer.NEXT_LEVEL, 0);
+            }
+        }
+        @Override
+        public void draw(Canvas canvas, Paint paint, RectF screenRect, double[] depthBuffer, double correctedDist, int light, boolean unoccluded) {
+            // Pulse on the simulation clock so replays render identically
+            int c = (int)(Math.sin(tick * TICK_MILLIS / 200.0) * 127 + 128);
+            paint.setColor(Color.rgb(c, 0, c));
+            fillVisible(canvas, paint, screenRect.left, screenRect.top, screenRect.right, screenRect.bottom, depthBuffer, correctedDist, unoccluded);
+        }
+    }
+
+    // --- FEATURE: Medkit --- New sprite class for health packs ---
+    class Medkit extends Sprite {
+        private static final float ACTIVATION_DISTANCE = 0.6f;
+        private static final int HEAL_AMOUNT = 25;
+
+        public Medkit(float x, float y) {
+            this.x = x;
+            this.y = y;
+            this.scale = 0.4f; // Make medkits a bit smaller than a full wall tile
+            this.light = new LightMap.Light(0x60FF60, 2.5f, true);
+        }
+
+        @Override
+        public int traceName() { return Tracer.MEDKIT_UPDATE; }
+
+        @Override
+        public void update(Snapshot view, CommandBuffer out) {
+            boolean player = distToPlayer < ACTIVATION_DISTANCE;
+            if (player || (view.guestJoined && Math.hypot(view.guestX - x, view.guestY - y) < ACTIVATION_DISTANCE)) {
+                out.add(player ? CommandBuffer.HEAL_PLAYER : CommandBuffer.HEAL_GUEST, HEAL_AMOUNT);
+                out.add(CommandBuffer.EVENT, EVENT_PICKUP, x, y, 0);
+                isAlive = false; // Medkit is used up
+            }
+        }
+
+        @Override
+        public void draw(Canvas canvas, Paint paint, RectF screenRect, double[] depthBuffer, double correctedDist, int light, boolean unoccluded) {
+            // Draw Green Background
+            paint.setColor(LightMap.shade(Color.rgb(0, 150, 0), light));
+            fillVisible(canvas, paint, screenRect.left, screenRect.top, screenRect.right, screenRect.bottom, depthBuffer, correctedDist, unoccluded);
+
+            // Draw White Cross on top
+            paint.setColor(LightMap.shade(Color.WHITE, light));
+            float crossThickness = Math.max(2f, screenRect.width() / 4f);
+
+            // Horizontal bar
+            float horizTop = screenRect.centerY() - crossThickness / 2;
+            float horizBottom = screenRect.centerY() + crossThickness / 2;
+            fillVisible(canvas, paint, screenRect.left, horizTop, screenRect.right, horizBottom, depthBuffer, correctedDist, unoccluded);
+
+            // Vertical bar
+            float vertLeft = screenRect.centerX() - crossThickness / 2;
+            float vertRight = screenRect.centerX() + crossThickness / 2;
+            fillVisible(canvas, paint, vertLeft, screenRect.top, vertRight, screenRect.bottom, depthBuffer, correctedDist, unoccluded);
+        }
+    }
+
+    // The other co-op player, drawn by GameView from Guest.avatar(). Not a simulated sprite: it has
+    // no id, never updates and is never in sprites, so it can't be hit by shots.
+    class Avatar extends Sprite {
+        Avatar() {
+            super(0);
+            this.scale = 0.9f;
+        }
+
+        @Override
+        public int traceName() { return Tracer.SPRITE_DRAW; }
+
+        @Override
+        public void update(Snapshot view, CommandBuffer out) {}
+
+        @Override
+        public void draw(Canvas canvas, Paint paint, RectF screenRect, double[] depthBuffer, double correctedDist, int light, boolean unoccluded) {
+            // Blue body, narrower than a tile, with a lighter visor band at eye height
+            float inset = screenRect.width() * 0.25f;
+            paint.setColor(LightMap.shade(Color.rgb(40, 90, 220), light));
+            fillVisible(canvas, paint, screenRect.left + inset, screenRect.top, screenRect.right - inset, screenRect.bottom, depthBuffer, correctedDist, unoccluded);
+            float visorTop = screenRect.top + screenRect.height() * 0.15f;
+            paint.setColor(LightMap.shade(Color.rgb(150, 220, 255), light));
+            fillVisible(canvas, paint, screenRect.left + inset, visorTop, screenRect.right - inset, visorTop + screenRect.height() * 0.08f,
+                    depthBuffer, correctedDist, unoccluded);
+        }
+    }
+}
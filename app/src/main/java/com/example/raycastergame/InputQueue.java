@@ -0,0 +1,92 @@
+package com.example.raycastergame;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// --- Input Queue Class ---
+// Single-producer/single-consumer ring of timestamped touch samples, with no allocation per
+// event. The touch handler is the only producer and the simulation tick the only consumer. Today
+// both run on the UI thread (onTouchEvent and the Choreographer frame callback), so the queue is
+// effectively single-threaded and its value is the timestamps: samples are applied at tick
+// boundaries rather than mid-frame. Each side still owns one index and publishes it with an
+// ordered store, so the tick can move to its own thread without changing this class. Samples
+// are stored in parallel primitive arrays and copied out into a caller-owned Event.
+public class InputQueue {
+
+    public static final int DOWN = 0;
+    public static final int MOVE = 1;
+    public static final int UP = 2;
+
+    public static class Event {
+        public int type;
+        public int pointerId;
+        public float x, y;
+        public long timeNanos;
+    }
+
+    private final int mask;
+    private final int[] types;
+    private final int[] pointerIds;
+    private final float[] xs, ys;
+    private final long[] times;
+
+    private final AtomicLong head = new AtomicLong(); // Next slot to read, written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // Next slot to write, written by the producer
+    private long cachedHead = 0;                      // Producer's last view of head
+    public long dropped = 0;                          // Producer side: samples lost to a full queue
+
+    public InputQueue(int capacityPowerOfTwo) {
+        if (Integer.bitCount(capacityPowerOfTwo) != 1) throw new IllegalArgumentException("capacity must be a power of two");
+        mask = capacityPowerOfTwo - 1;
+        types = new int[capacityPowerOfTwo];
+        pointerIds = new int[capacityPowerOfTwo];
+        xs = new float[capacityPowerOfTwo];
+        ys = new float[capacityPowerOfTwo];
+        times = new long[capacityPowerOfTwo];
+    }
+
+    // --- Producer side ---
+
+    public boolean offer(int type, int pointerId, float x, float y, long timeNanos) {
+        long t = tail.get();
+        if (t - cachedHead > mask) {
+            cachedHead = head.get();
+            if (t - cachedHead > mask) {
+                dropped++;
+                return false;
+            }
+        }
+        int i = (int)t & mask;
+        types[i] = type;
+        pointerIds[i] = pointerId;
+        xs[i] = x;
+        ys[i] = y;
+        times[i] = timeNanos;
+        tail.lazySet(t + 1); // Publishes the slot writes above to the consumer
+        return true;
+    }
+
+    // --- Consumer side ---
+
+    // Takes the oldest sample if it was taken at or before untilNanos.
+    public boolean poll(long untilNanos, Event out) {
+        long h = head.get();
+        if (h == tail.get()) return false;
+        int i = (int)h & mask;
+        if (times[i] > untilNanos) return false;
+        out.type = types[i];
+        out.pointerId = pointerIds[i];
+        out.x = xs[i];
+        out.y = ys[i];
+        out.timeNanos = times[i];
+        head.lazySet(h + 1); // Hands the slot back to the producer
+        return true;
+    }
+
+    public int size() {
+        return (int)(tail.get() - head.get());
+    }
+
+    public void clear() {
+        head.set(tail.get());
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.raycastergame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+// --- Input Recording Class ---
+// Per-tick player input for one run plus the seed it started from. Together with GameWorld this
+// is enough to reproduce the run exactly, which ReplayRunner uses for soak and regression runs.
+//
+// File layout (big-endian, DataOutputStream):
+//   int magic 'DCRC', int version, long seed, int wallTextureCount, int tickCount,
+//   tickCount x { float moveX, float moveY, float lookDelta, byte flags },
+//   int endScore, int endHealth, int endLevel
+public class InputRecording {
+
+    public static final int MAGIC = 0x44435243; // "DCRC"
+    public static final int VERSION = 1;
+    public static final int FLAG_SHOOT = 1;
+
+    public final long seed;
+    public final int wallTextureCount;
+
+    private float[] moveX = new float[1024];
+    private float[] moveY = new float[1024];
+    private float[] lookDelta = new float[1024];
+    private byte[] flags = new byte[1024];
+    private int tickCount = 0;
+
+    public int endScore, endHealth, endLevel;
+
+    public InputRecording(long seed, int wallTextureCount) {
+        this.seed = seed;
+        this.wallTextureCount = wallTextureCount;
+    }
+
+    public void record(float mx, float my, float look, boolean shoot) {
+        if (tickCount == flags.length) {
+            int newSize = flags.length * 2;
+            moveX = Arrays.copyOf(moveX, newSize);
+            moveY = Arrays.copyOf(moveY, newSize);
+            lookDelta = Arrays.copyOf(lookDelta, newSize);
+            flags = Arrays.copyOf(flags, newSize);
+        }
+        moveX[tickCount] = mx;
+        moveY[tickCount] = my;
+        lookDelta[tickCount] = look;
+        flags[tickCount] = (byte)(shoot ? FLAG_SHOOT : 0);
+        tickCount++;
+    }
+
+    // Stores the outcome of the recorded run so a replay can be checked against it.
+    public void finish(GameWorld world) {
+        endScore = world.score;
+        endHealth = world.playerHealth;
+        endLevel = world.level;
+    }
+
+    public int getTickCount() { return tickCount; }
+    public float getMoveX(int tick) { return moveX[tick]; }
+    public float getMoveY(int tick) { return moveY[tick]; }
+    public float getLookDelta(int tick) { return lookDelta[tick]; }
+    public boolean isShoot(int tick) { return (flags[tick] & FLAG_SHOOT) != 0; }
+
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeLong(seed);
+        data.writeInt(wallTextureCount);
+        data.writeInt(tickCount);
+        for (int i = 0; i < tickCount; i++) {
+            data.writeFloat(moveX[i]);
+            data.writeFloat(moveY[i]);
+            data.writeFloat(lookDelta[i]);
+            data.writeByte(flags[i]);
+        }
+        data.writeInt(endScore);
+        data.writeInt(endHealth);
+        data.writeInt(endLevel);
+        data.flush();
+    }
+
+    public static InputRecording readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) throw new IOException("Not an input recording");
+        int version = data.readInt();
+        if (version != VERSION) throw new IOException("Unsupported recording version " + version);
+
+        InputRecording recording = new InputRecording(data.readLong(), data.readInt());
+        int ticks = data.readInt();
+        for (int i = 0; i < ticks; i++) {
+            float mx = data.readFloat();
+            float my = data.readFloat();
+            float look = data.readFloat();
+            byte f = data.readByte();
+            recording.record(mx, my, look, (f & FLAG_SHOOT) != 0);
+        }
+        recording.endScore = data.readInt();
+        recording.endHealth = data.readInt();
+        recording.endLevel = data.readInt();
+        return recording;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.raycastergame;
+
+// --- Light Map Class ---
+// Per-cell, per-face RGB light. Every cell has five entries: the four wall faces (only meaningful
+// on walls that border open floor) and the floor, which lights sprites standing in the cell.
+// reset() fills in the ambient light when a level is generated, and each Light adds its footprint
+// into the same accumulators. Moving or dimming a light subtracts its old footprint and adds the
+// new one, touching only the cells within its radius, so the renderer can shade a wall column or
+// a sprite with a single packed[] lookup.
+//
+// A renderer that caches shaded walls passes the entries it just drew to watch(); watchedVersion
+// then only moves when a light changes one of those, so a rocket across the map leaves the cache
+// alone while the muzzle flash or a rocket in view still invalidates it.
+//
+// Light values are per channel with UNIT (128) meaning "texture colour as-is"; packed[] holds
+// them clamped to 0..255 as 0x00RRGGBB.
+public class LightMap {
+
+    public static final int FACE_WEST = 0;  // Faces -x, hit by rays travelling +x
+    public static final int FACE_EAST = 1;
+    public static final int FACE_NORTH = 2; // Faces -y, hit by rays travelling +y
+    public static final int FACE_SOUTH = 3;
+    public static final int FLOOR = 4;
+    public static final int ENTRIES = 5;
+
+    public static final int UNIT = 128;
+    private static final int AMBIENT = UNIT;
+    private static final int AMBIENT_Y_FACES = UNIT * 7 / 10; // Cheap directional shading between wall orientations
+    private static final float FOG_DISTANCE = 20f;
+
+    private static final int[] FACE_DX = { -1, 1, 0, 0 };
+    private static final int[] FACE_DY = { 0, 0, -1, 1 };
+
+    // A point light. Owned by whoever moves it (a sprite, the muzzle flash); the map only
+    // remembers where its footprint was last applied so it can take it back out.
+    public static class Light {
+        public final int r, g, b;
+        public final float radius;
+        public final boolean occluded; // Walls cast shadows; costs one grid ray per lit entry
+        float appliedX, appliedY, appliedIntensity;
+        int appliedGeneration = -1; // Footprint is in the map only if this matches its generation
+
+        public Light(int color, float radius, boolean occluded) {
+            r = (color >> 16) & 0xFF;
+            g = (color >> 8) & 0xFF;
+            b = color & 0xFF;
+            this.radius = radius;
+            this.occluded = occluded;
+        }
+    }
+
+    public final int size;
+    public final int[] packed;
+    private final int[] red, green, blue;
+    public int version = 0; // Bumped whenever any entry changes
+    public int watchedVersion = 0; // Bumped when an entry passed to the last watch() changes, or on reset()
+    private final int[] watchedStamp;
+    private int watchStamp = 0;
+    private boolean watchedTouched = false;
+    private int generation = 0;  // Bumped by reset(), which drops every light's footprint
+    private int[][] worldMap;
+    private DistanceField distanceField;
+
+    public LightMap(int size) {
+        this.size = size;
+        int n = size * size * ENTRIES;
+        packed = new int[n];
+        red = new int[n];
+        green = new int[n];
+        blue = new int[n];
+        watchedStamp = new int[n];
+    }
+
+    public static int index(int mapX, int mapY, int face) {
+        return (mapY * GameWorld.MAP_SIZE + mapX) * ENTRIES + face;
+    }
+
+    // Face of a wall cell that a DDA ray hits, from the side it crossed and its step direction.
+    public static int hitFace(int side, int stepX, int stepY) {
+        if (side == 0) return stepX > 0 ? FACE_WEST : FACE_EAST;
+        return stepY > 0 ? FACE_NORTH : FACE_SOUTH;
+    }
+
+    public void reset(int[][] worldMap, DistanceField distanceField) {
+        this.worldMap = worldMap;
+        this.distanceField = distanceField;
+        for (int i = 0; i < packed.length; i++) {
+            int face = i % ENTRIES;
+            int level = face == FACE_NORTH || face == FACE_SOUTH ? AMBIENT_Y_FACES : AMBIENT;
+            red[i] = green[i] = blue[i] = level;
+            packed[i] = pack(level, level, level);
+        }
+        generation++;
+        version++;
+        watchedVersion++;
+    }
+
+    // Replaces the watched entries with every step-th of the first count (negative ones are skipped).
+    public void watch(int[] entries, int count, int step) {
+        watchStamp++;
+        for (int i = 0; i < count; i += step) {
+            if (entries[i] >= 0) watchedStamp[entries[i]] = watchStamp;
+        }
+    }
+
+    // Moves a light (or sets its brightness; 0 switches it off) and updates the cells it touches.
+    public void set(Light light, float x, float y, float intensity) {
+        boolean applied = light.appliedGeneration == generation;
+        if (intensity <= 0) {
+            if (applied) remove(light);
+            return;
+        }
+        if (applied && light.appliedX == x && light.appliedY == y && light.appliedIntensity == intensity) return;
+        if (applied) apply(light, light.appliedX, light.appliedY, light.appliedIntensity, -1);
+        light.appliedGeneration = generation;
+        light.appliedX = x;
+        light.appliedY = y;
+        light.appliedIntensity = intensity;
+        apply(light, x, y, intensity, 1);
+        changed();
+    }
+
+    public void remove(Light light) {
+        if (light.appliedGeneration != generation) return;
+        apply(light, light.appliedX, light.appliedY, light.appliedIntensity, -1);
+        light.appliedGeneration = -1;
+        changed();
+    }
+
+    private void changed() {
+        version++;
+        if (watchedTouched) watchedVersion++;
+        watchedTouched = false;
+    }
+
+    // Adds (sign 1) or subtracts (sign -1) a light's footprint. Both directions compute exactly
+    // the same integer contributions, so a light can be moved any number of times without drift.
+    private void apply(Light light, float lx, float ly, float intensity, int sign) {
+        final int[][] map = worldMap;
+        int minX = Math.max(0, (int)(lx - light.radius)), maxX = Math.min(size - 1, (int)(lx + light.radius));
+        int minY = Math.max(0, (int)(ly - light.radius)), maxY = Math.min(size - 1, (int)(ly + light.radius));
+        float scale = intensity * UNIT / 255f;
+        for (int cy = minY; cy <= maxY; cy++) {
+            for (int cx = minX; cx <= maxX; cx++) {
+                if (map[cy][cx] == 0) {
+                    light(light, lx, ly, scale, cx + 0.5f, cy + 0.5f, 1f, index(cx, cy, FLOOR), sign);
+                    continue;
+                }
+                for (int face = 0; face < 4; face++) {
+                    int nx = cx + FACE_DX[face], ny = cy + FACE_DY[face];
+                    if (nx < 0 || ny < 0 || nx >= size || ny >= size || map[ny][nx] != 0) continue;
+                    // Centre of the face, on the wall surface
+                    float px = cx + 0.5f + FACE_DX[face] * 0.5f;
+                    float py = cy + 0.5f + FACE_DY[face] * 0.5f;
+                    float facing = (FACE_DX[face] * (lx - px) + FACE_DY[face] * (ly - py));
+                    if (facing <= 0) continue;
+                    float dist = (float)Math.hypot(lx - px, ly - py);
+                    light(light, lx, ly, scale, px, py, facing / dist, index(cx, cy, face), sign);
+                }
+            }
+        }
+    }
+
+    private void light(Light light, float lx, float ly, float scale, float px, float py, float facing, int entry, int sign) {
+        float dx = px - lx, dy = py - ly;
+        float dist = (float)Math.hypot(dx, dy);
+        float falloff = 1f - dist / light.radius;
+        if (falloff <= 0) return;
+        if (light.occluded && dist > 0.01f) {
+            // Stop just short of the target so a face isn't shadowed by its own wall
+            float reach = dist - 0.02f;
+            if (distanceField.castRay(lx, ly, dx / dist, dy / dist, reach) < reach) return;
+        }
+        float k = scale * falloff * facing;
+        int r = (int)(light.r * k), g = (int)(light.g * k), b = (int)(light.b * k);
+        if ((r | g | b) == 0) return;
+        red[entry] += sign * r;
+        green[entry] += sign * g;
+        blue[entry] += sign * b;
+        packed[entry] = pack(red[entry], green[entry], blue[entry]);
+        if (watchedStamp[entry] == watchStamp) watchedTouched = true;
+    }
+
+    private static int pack(int r, int g, int b) {
+        r = Math.max(0, Math.min(255, r));
+        g = Math.max(0, Math.min(255, g));
+        b = Math.max(0, Math.min(255, b));
+        return (r << 16) | (g << 8) | b;
+    }
+
+    // Packed light for an entry, darkened by distance fog. Done once per column or sprite.
+    public int shadeAt(int entry, double distance) {
+        int light = entry < 0 ? pack(AMBIENT, AMBIENT, AMBIENT) : packed[entry];
+        int fog = (int)(256 * Math.max(0, 1.0 - distance / FOG_DISTANCE));
+        int r = (((light >> 16) & 0xFF) * fog) >> 8;
+        int g = (((light >> 8) & 0xFF) * fog) >> 8;
+        int b = ((light & 0xFF) * fog) >> 8;
+        return (r << 16) | (g << 8) | b;
+    }
+
+    // Applies a packed light (from shadeAt) to an opaque ARGB colour.
+    public static int shade(int color, int light) {
+        int r = (((color >> 16) & 0xFF) * ((light >> 16) & 0xFF)) >> 7;
+        int g = (((color >> 8) & 0xFF) * ((light >> 8) & 0xFF)) >> 7;
+        int b = ((color & 0xFF) * (light & 0xFF)) >> 7;
+        return 0xFF000000 | (Math.min(255, r) << 16) | (Math.min(255, g) << 8) | Math.min(255, b);
+    }
+}
@@ -2,6 +2,8 @@ package com.example.raycastergame; // Make sure this matches your project's pack
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
@@ -10,20 +12,36 @@ import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.RectF;
 import android.graphics.Typeface;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTrack;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
+import android.os.Debug;
+import android.os.Process;
+import android.os.StrictMode;
+import android.os.SystemClock;
+import android.view.Choreographer;
+import android.view.Display;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.WindowInsets;
 import android.view.WindowInsetsController;
 import androidx.appcompat.app.AppCompatActivity;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 // --- Main Activity Class ---
 public class MainActivity extends AppCompatActivity {
@@ -71,32 +89,100 @@ public class MainActivity extends AppCompatActivity {
     //==============================================================================================
     public class GameView extends View {
 
-        private enum QualityLevel { HIGH, MEDIUM, LOW }
+        // INTERLACED is HIGH's per-pixel texturing from half the rays: Raycaster.castInterlaced
+        private enum QualityLevel { HIGH, INTERLACED, MEDIUM, LOW }
         private enum GameState { MAIN_MENU, PLAYING, PAUSED, SETTINGS, AUTHORS, GAME_OVER }
         private GameState currentState = GameState.MAIN_MENU;
 
         public Paint paint;
-        private Handler handler;
-        private Runnable gameLoop;
+        private Choreographer.FrameCallback frameCallback;
+        private FramePacer pacer = new FramePacer();
         private boolean isPlaying = false;
-        private double[] depthBuffer;
-
-        public final int MAP_SIZE = 64;
-        public int[][] worldMap;
-        public PointF playerPos;
-        private double playerAngle;
-        private int playerHealth;
-        public int score;
+        private boolean frameLoopRunning = false;
+        private long lastRefreshRateCheck = 0;
+        private Raycaster raycaster = new Raycaster();
+        private Camera camera = new Camera();
+
+        private GameWorld world; // Created once the textures are in, since the level generator needs their count
+        private InputRecording recording;
         private int bestScore;
         private Random random = new Random();
-        private int level = 1;
-        public List<Sprite> sprites = new ArrayList<>();
-        private List<Sprite> spritesToAdd = new ArrayList<>();
+
+        // --- Staged startup ---
+        // The constructor only builds what the main menu draws; preferences and textures load on
+        // background threads and are handed to the UI thread with post(). PLAY waits for both.
+        private boolean prefsLoaded = false;
+        private boolean assetsReady = false;
+        private long timeToFirstFrameMs = -1; // Process start to the first onDraw
+        private long timeToPlayableMs = -1;   // Process start to the first frame with PLAY enabled
+
+        // --- Run snapshots ---
+        // A run interrupted by onPause is captured on the UI thread and written by snapshotWriter, a
+        // single thread so writes and deletes land in order. The next launch restores it straight
+        // into the pause screen instead of the main menu.
+        private static final String SNAPSHOT_FILE = "snapshot.dcsn";
+        private final ExecutorService snapshotWriter = Executors.newSingleThreadExecutor();
+        private byte[] pendingSnapshot; // Read at startup, applied once the world exists
+
+        // --- Audio ---
+        // The AudioMixer thread renders MIX_FRAMES at a time into an AudioTrack; the game thread
+        // only queues commands after each tick. Sounds are synthesized on the TextureLoader thread
+        // and registered before the mixer thread first starts.
+        private static final int MAX_VOICES = 12;
+        private static final int MIX_FRAMES = 256; // ~12 ms at AudioMixer.SAMPLE_RATE
+        private static final int PORTAL_HUM_KEY = 1;
+        private final AudioMixer mixer = new AudioMixer(MAX_VOICES, MIX_FRAMES, 256);
+        private final int[] soundSamples = new int[GameWorld.EVENT_COUNT]; // Sample id per event
+        private int portalHumSample = -1;
+        private Thread audioThread;
+        private volatile boolean audioRunning = false;
+
+        // --- Particles ---
+        // Cosmetic, spawned from the world's events after each tick and cleared with the level.
+        private static final int MAX_PARTICLES = 1024;
+        private static final int PARTICLE_BUDGET = 160; // New particles per frame; the rest are dropped
+        private final ParticleSystem particles = new ParticleSystem(MAX_PARTICLES, PARTICLE_BUDGET);
+        private int particleMapVersion = -1;
+
+        // --- Post-processing ---
+        // Optional full-screen passes over the 3D frame, split into bands across cores. With every
+        // pass off and no damage flash showing, drawGame draws straight to the screen; otherwise
+        // the scene goes through postBitmap and postPixels. The passes arrive from the
+        // PaletteBuilder thread shortly after startup.
+        private enum PostEffects { OFF, FOG, RETRO }
+        private static final String PALETTE_ASSET = "playpal.lmp"; // Optional DOOM PLAYPAL lump
+        private PostEffects postEffects = PostEffects.OFF;
+        private final PostProcessor post = new PostProcessor();
+        private PostProcessor.FogPass fogPass;
+        private PostProcessor.DamageFlashPass flashPass;
+        private int fogId = -1, flashId = -1, paletteId = -1, scanlineId = -1;
+        private Bitmap postBitmap;
+        private Canvas postCanvas;
+        private int[] postPixels;
+        private float damageFlash = 0; // 0 .. 1, raised when the player is hit and faded every tick
+
+        // --- Co-op ---
+        // HOST starts a run as usual and serves it through a CoopHost on COOP_PORT; the second
+        // player appears once a JOIN on the same network finds it, and goes again when that JOIN
+        // quits or falls silent (see CoopHost.GUEST_TIMEOUT_TICKS). JOIN broadcasts on COOP_PORT
+        // until a host answers, and draws its CoopClient's view world in place of its own. Both
+        // sockets are non-blocking and serviced from update(), between ticks, on the UI thread.
+        private static final int COOP_PORT = 47800;
+        private CoopHost coopHost;
+        private CoopClient coopClient;
+        private GameWorld soloWorld; // The real world while a client's view stands in for it
+        private StrictMode.ThreadPolicy soloThreadPolicy; // The UI thread's policy from before co-op allowed it the network
 
 
         private PointF moveVector = new PointF(0, 0);
+        private float pendingLookDelta = 0;
+        private boolean pendingShoot = false;
+        private final InputQueue inputQueue = new InputQueue(1024);
+        private final InputQueue.Event inputEvent = new InputQueue.Event();
+        private long oldestUnrenderedInput = 0; // Timestamp of the oldest sample applied since the last frame
 
         private RectF playButton, settingsButton, authorsButton, backButton;
+        private RectF hostButton, joinButton;
         private RectF fovUpButton, fovDownButton, sensUpButton, sensDownButton, qualityButton;
         private RectF pauseButton;
         private RectF resumeButton, quitButton;
@@ -114,16 +200,42 @@ public class MainActivity extends AppCompatActivity {
         private float fieldOfView = 66.0f;
         private QualityLevel graphicsQuality = QualityLevel.MEDIUM;
 
-        private int shootTimer = 0;
-        private static final int WEAPON_COOLDOWN_FRAMES = 10;
-
-        private List<Texture> textures = new ArrayList<>();
+        private List<Texture> textures = new ArrayList<>(); // Replaced wholesale when loading finishes
+        private static final String TEXTURE_ASSET_DIR = "textures";
+        private static final String TEXTURE_CACHE_FILE = "textures.dctx";
 
         private Paint uiPaint, textPaint, titlePaint;
         private int pressedButton = 0;
 
         private RectF reusableSpriteRect = new RectF();
-        private RectF reusableHealthBarRect = new RectF();
+
+        // Min/max pyramid over raycaster.depthBuffer, rebuilt with the walls. Sprites and particles
+        // behind the walls in every column are skipped, and those in front in every column are
+        // drawn without a per-column test. The counts are for the current frame.
+        private final DepthHierarchy depthHierarchy = new DepthHierarchy();
+        private int billboardsTested = 0, billboardsHidden = 0, billboardsUnoccluded = 0;
+
+        // --- Retained UI layers ---
+        private static final int HUD_LAYER_WIDTH = 480;
+        private static final int HUD_LAYER_HEIGHT = 260;
+        private RetainedLayer hudLayer = new RetainedLayer(4);
+        private final char[] hudText = new char[24];
+        private RetainedLayer menuLayer = new RetainedLayer(9);
+        private RetainedLayer sceneLayer = new RetainedLayer(5);
+        // Floor, ceiling and wall columns; reused (with the raycaster's depth buffer) while the
+        // camera, view settings and muzzle flash are unchanged, e.g. when standing still to aim
+        private RetainedLayer wallLayer = new RetainedLayer(9);
+
+        // --- Performance overlay ---
+        private FrameProfiler profiler = new FrameProfiler();
+        private RectF perfButton, traceButton, fpsCapButton, fixedPointButton, postButton;
+        private final char[] overlayText = new char[64];
+        private Paint overlayPaint;
+        // Bytes allocated by ticks and by drawGame, counted while the overlay is up. Debug's
+        // per-thread allocation counter is deprecated but still maintained by ART, and it is the
+        // only one that doesn't allocate to read.
+        @SuppressWarnings("deprecation")
+        private final AllocationTracker allocations = new AllocationTracker(() -> Debug.getThreadAllocSize());
 
         public GameView(Context context) {
             super(context);
@@ -142,22 +254,158 @@ public class MainActivity extends AppCompatActivity {
             titlePaint.setTypeface(Typeface.create(Typeface.SANS_SERIF, Typeface.BOLD));
             titlePaint.setShadowLayer(10, 0, 0, Color.BLACK);
 
-            loadBestScore();
-            loadTextures();
-            handler = new Handler();
-            gameLoop = () -> {
-                if (isPlaying) {
-                    update();
-                    invalidate();
-                    handler.postDelayed(gameLoop, 16);
+            overlayPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            overlayPaint.setTypeface(Typeface.create(Typeface.MONOSPACE, Typeface.BOLD));
+            overlayPaint.setTextAlign(Paint.Align.LEFT);
+            overlayPaint.setTextSize(26);
+
+            frameCallback = this::doFrame;
+            startLoading();
+        }
+
+        private void startLoading() {
+            final File snapshotFile = new File(getContext().getFilesDir(), SNAPSHOT_FILE);
+            new Thread(() -> {
+                final int best = loadBestScore();
+                byte[] snapshot = null;
+                try {
+                    snapshot = GameSnapshot.read(snapshotFile);
+                } catch (IOException e) {
+                    // Unreadable snapshot: start from the menu as usual
                 }
-            };
+                final byte[] saved = snapshot;
+                post(() -> {
+                    bestScore = Math.max(bestScore, best);
+                    pendingSnapshot = saved;
+                    prefsLoaded = true;
+                    onLoadStepDone();
+                });
+            }, "PrefsLoader").start();
+            new Thread(() -> {
+                final List<Texture> loaded = loadTextures();
+                final short[][] sounds = createSounds();
+                post(() -> {
+                    for (int i = 0; i < GameWorld.EVENT_COUNT; i++) soundSamples[i] = mixer.addSample(sounds[i]);
+                    portalHumSample = mixer.addSample(sounds[GameWorld.EVENT_COUNT]);
+                    textures = loaded;
+                    world = new GameWorld(textures.size() - 1);
+                    world.setParallelism(Math.min(4, Runtime.getRuntime().availableProcessors()));
+                    onLoadStepDone();
+                });
+            }, "TextureLoader").start();
+            // Not needed to play, so it doesn't hold up PLAY: the palette table takes tens of ms
+            new Thread(() -> {
+                final PostProcessor.PalettePass palette = new PostProcessor.PalettePass(loadPalette());
+                post(() -> addPostPasses(palette));
+            }, "PaletteBuilder").start();
+        }
+
+        private void onLoadStepDone() {
+            if (!prefsLoaded || world == null) return;
+            assetsReady = true;
+            if (pendingSnapshot != null) {
+                try {
+                    GameSnapshot.restore(world, pendingSnapshot);
+                    recording = null; // The input before the snapshot is gone, so this run can't be replayed
+                    inputQueue.clear();
+                    currentState = GameState.PAUSED;
+                } catch (IOException e) {
+                    discardSnapshot(); // Stale format or different textures
+                }
+                pendingSnapshot = null;
+            }
+            if (isPlaying) startAudio();
+            invalidate();
+        }
+
+        // Called from onPause: copies the run in memory now and leaves the disk write to snapshotWriter.
+        private void saveSnapshot() {
+            if (world == null || world.worldMap == null || world.gameOver) return;
+            if (currentState != GameState.PLAYING && currentState != GameState.PAUSED) return;
+            if (coopHost != null || coopClient != null) return; // The other player can't be resumed
+            final byte[] snapshot = GameSnapshot.capture(world);
+            final File file = new File(getContext().getFilesDir(), SNAPSHOT_FILE);
+            snapshotWriter.execute(() -> {
+                try {
+                    GameSnapshot.write(snapshot, file);
+                } catch (IOException e) {
+                    // Losing the snapshot only loses the resume point
+                }
+            });
+        }
+
+        // The run ended, so there is nothing to resume any more.
+        private void discardSnapshot() {
+            final File file = new File(getContext().getFilesDir(), SNAPSHOT_FILE);
+            snapshotWriter.execute(() -> {
+                if (file.exists() && !file.delete()) file.deleteOnExit();
+            });
+        }
+
+        // Cold-start milestones, measured from process start like the system's own startup metrics.
+        // Reaching playable also calls reportFullyDrawn(), which is what startup benchmarks against
+        // the release baseline profile record as time to full display.
+        private void markStartupFrame() {
+            if (timeToFirstFrameMs >= 0 && (timeToPlayableMs >= 0 || !assetsReady)) return;
+            long sinceStart = SystemClock.uptimeMillis() - Process.getStartUptimeMillis();
+            if (timeToFirstFrameMs < 0) timeToFirstFrameMs = sinceStart;
+            if (assetsReady && timeToPlayableMs < 0) {
+                timeToPlayableMs = sinceStart;
+                reportFullyDrawn();
+            }
+        }
+
+        // Vsync-driven game loop. It only runs while PLAYING; every other screen is redrawn on demand
+        // from touch input, so menus cost nothing between taps.
+        private void doFrame(long frameTimeNanos) {
+            if (!isPlaying || currentState != GameState.PLAYING) {
+                frameLoopRunning = false;
+                mixer.stopAll(); // Menus are silent; the portal hum is re-sent on the next tick
+                return;
+            }
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+
+            if (frameTimeNanos - lastRefreshRateCheck > 1_000_000_000L) {
+                // Variable refresh panels can switch rate at runtime
+                lastRefreshRateCheck = frameTimeNanos;
+                updateRefreshRate();
+            }
+            if (!pacer.onVsync(frameTimeNanos)) return;
+
+            int ticks = pacer.ticksDue(frameTimeNanos);
+            particles.beginFrame();
+            long t0 = profiler.enabled ? System.nanoTime() : 0;
+            allocations.begin(AllocationTracker.TICK);
+            for (int i = 0; i < ticks && currentState == GameState.PLAYING; i++) {
+                // When several ticks run in one frame, each gets the input sampled up to its own
+                // point in time; the last one takes everything still queued
+                long inputUntil = i == ticks - 1 ? Long.MAX_VALUE : frameTimeNanos - (ticks - 1 - i) * FramePacer.TICK_NANOS;
+                update(inputUntil);
+            }
+            allocations.end(AllocationTracker.TICK);
+            if (profiler.enabled) profiler.add(FrameProfiler.PHASE_UPDATE, System.nanoTime() - t0);
+            invalidate();
+        }
+
+        private void requestFrames() {
+            if (!isPlaying || frameLoopRunning || currentState != GameState.PLAYING) return;
+            frameLoopRunning = true;
+            pacer.reset();
+            updateRefreshRate();
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        }
+
+        private void updateRefreshRate() {
+            Display display = getDisplay();
+            if (display != null) pacer.setRefreshRate(display.getRefreshRate());
         }
 
         @Override
         protected void onSizeChanged(int w, int h, int oldw, int oldh) {
             super.onSizeChanged(w, h, oldw, oldh);
-            depthBuffer = new double[w];
+            raycaster.resize(w, h);
+            camera.setFieldOfView(fieldOfView);
+            camera.setViewport(w, h);
             float buttonWidth = w / 2.2f;
             float buttonHeight = h / 11f;
             float centerX = w / 2f;
@@ -166,6 +414,8 @@ public class MainActivity extends AppCompatActivity {
             playButton = new RectF(centerX - buttonWidth / 2, startY, centerX + buttonWidth / 2, startY + buttonHeight);
             settingsButton = new RectF(centerX - buttonWidth / 2, startY + buttonHeight * 1.3f, centerX + buttonWidth / 2, startY + buttonHeight * 2.3f);
             authorsButton = new RectF(centerX - buttonWidth / 2, startY + buttonHeight * 2.6f, centerX + buttonWidth / 2, startY + buttonHeight * 3.6f);
+            hostButton = new RectF(centerX - buttonWidth / 2, startY + buttonHeight * 3.9f, centerX - buttonWidth * 0.03f, startY + buttonHeight * 4.9f);
+            joinButton = new RectF(centerX + buttonWidth * 0.03f, startY + buttonHeight * 3.9f, centerX + buttonWidth / 2, startY + buttonHeight * 4.9f);
 
             float settingsStartY = h / 5f;
             qualityButton = new RectF(centerX - buttonWidth / 2, settingsStartY + buttonHeight * 1.5f, centerX + buttonWidth / 2, settingsStartY + buttonHeight * 2.5f);
@@ -182,6 +432,11 @@ public class MainActivity extends AppCompatActivity {
 
             int pauseSize = h / 15;
             pauseButton = new RectF(w - pauseSize * 1.5f, pauseSize * 0.5f, w - pauseSize * 0.5f, pauseSize * 1.5f);
+            perfButton = new RectF(w - pauseSize * 5.5f, pauseSize * 0.5f, w - pauseSize * 0.5f, pauseSize * 1.5f);
+            traceButton = new RectF(pauseSize * 0.5f, pauseSize * 0.5f, pauseSize * 5.5f, pauseSize * 1.5f);
+            fpsCapButton = new RectF(w * 0.75f, h - buttonHeight * 2.5f, w * 0.97f, h - buttonHeight * 1.5f);
+            fixedPointButton = new RectF(w * 0.03f, h - buttonHeight * 2.5f, w * 0.25f, h - buttonHeight * 1.5f);
+            postButton = new RectF(w * 0.03f, h - buttonHeight * 1.3f, w * 0.25f, h - buttonHeight * 0.3f);
 
             joystickRadius = h / 6f;
             joystickDefaultPos.set(joystickRadius * 1.5f, h - joystickRadius * 1.5f);
@@ -192,57 +447,125 @@ public class MainActivity extends AppCompatActivity {
             shootButton = new RectF(w - shootButtonSize * 1.5f, h - shootButtonSize * 1.5f, w - shootButtonSize * 0.5f, h - shootButtonSize * 0.5f);
         }
 
-        private void update() {
+        private void update(long inputUntilNanos) {
             if (currentState != GameState.PLAYING) return;
 
-            if (shootTimer > 0) shootTimer--;
-
-            for (Sprite s : sprites) {
-                s.distToPlayer = Math.hypot(playerPos.x - s.x, playerPos.y - s.y);
-            }
-            for (Sprite s : spritesToAdd) {
-                s.distToPlayer = Math.hypot(playerPos.x - s.x, playerPos.y - s.y);
-            }
-
-            float moveSpeed = 0.05f;
-            if (moveVector.length() > 0.01) {
-                float forwardX = (float)Math.cos(playerAngle) * moveVector.y * moveSpeed;
-                float forwardY = (float)Math.sin(playerAngle) * moveVector.y * moveSpeed;
-                float strafeX = (float)Math.cos(playerAngle + Math.PI / 2) * moveVector.x * moveSpeed;
-                float strafeY = (float)Math.sin(playerAngle + Math.PI / 2) * moveVector.x * moveSpeed;
-                float newX = playerPos.x + forwardX + strafeX;
-                float newY = playerPos.y + forwardY + strafeY;
-                handleCollisionAndMove(newX, newY);
+            // Touch input is only gathered between ticks; the world consumes it here so the
+            // exact same values can be recorded and replayed.
+            consumeInput(inputUntilNanos);
+            float lookDelta = pendingLookDelta;
+            boolean shoot = pendingShoot;
+            pendingLookDelta = 0;
+            pendingShoot = false;
+
+            if (recording != null) recording.record(moveVector.x, moveVector.y, lookDelta, shoot);
+            int healthBefore = world.playerHealth;
+            try {
+                if (coopClient != null) coopClient.tick(moveVector.x, moveVector.y, lookDelta, shoot);
+                else if (coopHost != null) coopHost.tick(moveVector.x, moveVector.y, lookDelta, shoot);
+                else world.tick(moveVector.x, moveVector.y, lookDelta, shoot);
+            } catch (IOException e) {
+                stopCoop(); // Network gone; the host's run carries on alone, a guest goes back to the menu
+                return;
             }
-
-            for (int i = sprites.size() - 1; i >= 0; i--) {
-                Sprite s = sprites.get(i);
-                s.update();
-                if (!s.isAlive) {
-                    sprites.remove(i);
-                }
+            queueSounds();
+            updateParticles();
+            updateDamageFlash();
+            // A client's view raises no events, so its own hits show as lost health
+            if (coopClient != null && world.playerHealth < healthBefore) {
+                damageFlash = Math.min(1, damageFlash + (healthBefore - world.playerHealth) / 25f);
             }
 
-            if (!spritesToAdd.isEmpty()) {
-                sprites.addAll(spritesToAdd);
-                spritesToAdd.clear();
+            if (world.gameOver) {
+                currentState = GameState.GAME_OVER;
+                if (world.score > bestScore) { bestScore = world.score; saveBestScore(); }
+                saveRecording();
+                discardSnapshot();
             }
         }
 
         @Override
         protected void onDraw(Canvas canvas) {
             super.onDraw(canvas);
+            long drawSpan = Tracer.begin();
 
-            if (currentState == GameState.PLAYING || currentState == GameState.PAUSED || currentState == GameState.GAME_OVER) {
+            if (currentState == GameState.PLAYING && world.worldMap == null) {
+                drawJoining(canvas); // A client that hasn't heard from a host yet has nothing to draw
+            } else if (currentState == GameState.PLAYING) {
+                allocations.begin(AllocationTracker.RENDER);
                 drawGame(canvas);
+                allocations.end(AllocationTracker.RENDER);
+                allocations.endFrame();
+                if (oldestUnrenderedInput != 0) {
+                    profiler.addInputLatency(System.nanoTime() - oldestUnrenderedInput);
+                    oldestUnrenderedInput = 0;
+                }
+            } else {
+                drawMenuLayer(canvas);
             }
+            Tracer.end(Tracer.DRAW, drawSpan);
+            markStartupFrame();
+
+            if (profiler.enabled) {
+                long t0 = System.nanoTime();
+                drawPerfOverlay(canvas);
+                profiler.add(FrameProfiler.PHASE_OVERLAY, System.nanoTime() - t0);
+                profiler.endFrame(System.nanoTime());
+            }
+        }
 
-            switch (currentState) {
-                case MAIN_MENU: drawMainMenu(canvas); break;
-                case SETTINGS: drawSettings(canvas); break;
-                case AUTHORS: drawAuthors(canvas); break;
-                case PAUSED: drawPauseMenu(canvas); break;
-                case GAME_OVER: drawGameOver(canvas); break;
+        // Every non-playing screen is static until one of its inputs changes, so it is rendered once
+        // into menuLayer (on top of the frozen game frame where there is one) and just blitted.
+        private void drawMenuLayer(Canvas canvas) {
+            boolean frozenScene = world != null && world.worldMap != null
+                    && (currentState == GameState.PAUSED || currentState == GameState.GAME_OVER || currentState == GameState.SETTINGS);
+            if (frozenScene) updateSceneLayer();
+
+            menuLayer.key(0, currentState.ordinal());
+            menuLayer.key(1, pressedButton);
+            menuLayer.key(2, frozenScene ? sceneLayer.rebuilds : -1);
+            if (currentState == GameState.SETTINGS) {
+                menuLayer.key(3, graphicsQuality.ordinal());
+                menuLayer.key(4, Float.floatToIntBits(fieldOfView));
+                menuLayer.key(5, Float.floatToIntBits(lookSensitivity));
+                menuLayer.key(6, (profiler.enabled ? 1 : 0) | (Tracer.isEnabled() ? 2 : 0));
+                menuLayer.key(7, pacer.getFrameRateCap());
+                menuLayer.key(8, raycaster.fixedPoint ? 1 : 0);
+            } else if (currentState == GameState.GAME_OVER) {
+                menuLayer.key(3, world.score);
+                menuLayer.key(4, bestScore);
+            } else if (currentState == GameState.MAIN_MENU) {
+                menuLayer.key(3, assetsReady ? 1 : 0);
+            }
+
+            if (menuLayer.prepare(getWidth(), getHeight())) {
+                Canvas layer = menuLayer.canvas;
+                if (frozenScene) {
+                    layer.drawBitmap(sceneLayer.bitmap, 0, 0, null);
+                } else if (currentState == GameState.SETTINGS) {
+                    layer.drawColor(Color.rgb(20, 20, 30));
+                }
+                switch (currentState) {
+                    case MAIN_MENU: drawMainMenu(layer); break;
+                    case SETTINGS: drawSettings(layer); break;
+                    case AUTHORS: drawAuthors(layer); break;
+                    case PAUSED: drawPauseMenu(layer); break;
+                    case GAME_OVER: drawGameOver(layer); break;
+                }
+            }
+            canvas.drawBitmap(menuLayer.bitmap, 0, 0, null);
+        }
+
+        // The world does not tick outside PLAYING, so the 3D view behind pause, game over and settings
+        // is raycast once and reused; only a settings change that affects the view re-renders it.
+        private void updateSceneLayer() {
+            sceneLayer.key(0, (int)world.tick);
+            sceneLayer.key(1, world.level);
+            sceneLayer.key(2, Float.floatToIntBits(fieldOfView));
+            sceneLayer.key(3, graphicsQuality.ordinal());
+            sceneLayer.key(4, raycaster.fixedPoint ? 1 : 0);
+            if (sceneLayer.prepare(getWidth(), getHeight())) {
+                drawGame(sceneLayer.canvas);
             }
         }
 
@@ -251,13 +574,22 @@ public class MainActivity extends AppCompatActivity {
             titlePaint.setTextSize(150);
             canvas.drawText("DOOMCASTER", canvas.getWidth() / 2f, canvas.getHeight() / 3.5f, titlePaint);
 
-            drawStyledButton(canvas, playButton, "PLAY", playButton.hashCode());
+            drawStyledButton(canvas, playButton, assetsReady ? "PLAY" : "LOADING...", playButton.hashCode());
             drawStyledButton(canvas, settingsButton, "SETTINGS", settingsButton.hashCode());
             drawStyledButton(canvas, authorsButton, "AUTHORS", authorsButton.hashCode());
+            drawStyledButton(canvas, hostButton, "HOST", hostButton.hashCode());
+            drawStyledButton(canvas, joinButton, "JOIN", joinButton.hashCode());
+        }
+
+        private void drawJoining(Canvas canvas) {
+            canvas.drawColor(Color.rgb(20, 20, 30));
+            textPaint.setTextSize(60);
+            textPaint.setTextAlign(Paint.Align.CENTER);
+            canvas.drawText("LOOKING FOR A HOST...", canvas.getWidth() / 2f, canvas.getHeight() / 2f, textPaint);
+            drawStyledButton(canvas, pauseButton, "II", pauseButton.hashCode());
         }
 
         private void drawSettings(Canvas canvas) {
-            drawGame(canvas);
             canvas.drawColor(Color.argb(200, 10, 10, 20));
 
             titlePaint.setTextSize(120);
@@ -280,6 +612,11 @@ public class MainActivity extends AppCompatActivity {
             canvas.drawText(String.format(Locale.US, "%.3f", lookSensitivity * 1000), canvas.getWidth() / 2f, sensDownButton.centerY() + 25, textPaint);
 
             drawStyledButton(canvas, backButton, "BACK", backButton.hashCode());
+            drawStyledButton(canvas, perfButton, profiler.enabled ? "PERF: ON" : "PERF: OFF", perfButton.hashCode());
+            drawStyledButton(canvas, traceButton, Tracer.isEnabled() ? "TRACE: SAVE" : "TRACE: OFF", traceButton.hashCode());
+            drawStyledButton(canvas, fixedPointButton, raycaster.fixedPoint ? "RAYS: FIXED" : "RAYS: FLOAT", fixedPointButton.hashCode());
+            drawStyledButton(canvas, postButton, "POST: " + postEffects.name(), postButton.hashCode());
+            drawStyledButton(canvas, fpsCapButton, pacer.getFrameRateCap() == 0 ? "FPS: MAX" : "FPS: " + pacer.getFrameRateCap(), fpsCapButton.hashCode());
         }
 
         private void drawAuthors(Canvas canvas) {
@@ -297,7 +634,7 @@ public class MainActivity extends AppCompatActivity {
             canvas.drawText("YOU DIED", canvas.getWidth() / 2f, canvas.getHeight() / 3f, titlePaint);
 
             textPaint.setTextSize(70);
-            canvas.drawText("Score: " + score, canvas.getWidth() / 2f, canvas.getHeight() / 2f, textPaint);
+            canvas.drawText("Score: " + world.score, canvas.getWidth() / 2f, canvas.getHeight() / 2f, textPaint);
             canvas.drawText("Best: " + bestScore, canvas.getWidth() / 2f, canvas.getHeight() / 2f + 80, textPaint);
 
             textPaint.setTextSize(40);
@@ -316,115 +653,115 @@ public class MainActivity extends AppCompatActivity {
         private void drawGame(Canvas canvas) {
             int screenWidth = getWidth();
             int screenHeight = getHeight();
-            paint.setColor(Color.rgb(40, 40, 40));
-            canvas.drawRect(0, 0, screenWidth, screenHeight / 2.0f, paint);
-            paint.setColor(Color.rgb(80, 80, 80));
-            canvas.drawRect(0, screenHeight / 2.0f, screenWidth, screenHeight, paint);
-
             int rayStep = graphicsQuality == QualityLevel.LOW ? 4 : (graphicsQuality == QualityLevel.MEDIUM ? 2 : 1);
 
-            double fovRadians = Math.toRadians(fieldOfView / 2.0);
-            double playerDirX = Math.cos(playerAngle);
-            double playerDirY = Math.sin(playerAngle);
-            double planeX = -playerDirY * Math.tan(fovRadians);
-            double planeY = playerDirX * Math.tan(fovRadians);
-
-
-            for (int x = 0; x < screenWidth; x += rayStep) {
-                double cameraX = 2.0 * x / screenWidth - 1.0;
-                double rayDirX = playerDirX + planeX * cameraX;
-                double rayDirY = playerDirY + planeY * cameraX;
-
-                int mapX = (int)playerPos.x;
-                int mapY = (int)playerPos.y;
-
-                double sideDistX, sideDistY;
-                double deltaDistX = (rayDirX == 0) ? 1e30 : Math.abs(1 / rayDirX);
-                double deltaDistY = (rayDirY == 0) ? 1e30 : Math.abs(1 / rayDirY);
-                double perpWallDist;
-
-                int stepX, stepY;
-                int hit = 0;
-                int side = 0;
-
-                if (rayDirX < 0) {
-                    stepX = -1;
-                    sideDistX = (playerPos.x - mapX) * deltaDistX;
-                } else {
-                    stepX = 1;
-                    sideDistX = (mapX + 1.0 - playerPos.x) * deltaDistX;
-                }
-                if (rayDirY < 0) {
-                    stepY = -1;
-                    sideDistY = (playerPos.y - mapY) * deltaDistY;
-                } else {
-                    stepY = 1;
-                    sideDistY = (mapY + 1.0 - playerPos.y) * deltaDistY;
-                }
-
-                while (hit == 0) {
-                    if (sideDistX < sideDistY) {
-                        sideDistX += deltaDistX;
-                        mapX += stepX;
-                        side = 0;
-                    } else {
-                        sideDistY += deltaDistY;
-                        mapY += stepY;
-                        side = 1;
-                    }
-                    if (mapX < 0 || mapX >= MAP_SIZE || mapY < 0 || mapY >= MAP_SIZE) {
-                        hit = 1;
-                        perpWallDist = 1000;
-                    } else if (worldMap[mapY][mapX] > 0) {
-                        hit = 1;
-                    }
-                }
-
-                if (side == 0) perpWallDist = (sideDistX - deltaDistX);
-                else          perpWallDist = (sideDistY - deltaDistY);
-
-                if (perpWallDist < 0.01) perpWallDist = 0.01;
-
-                depthBuffer[x] = perpWallDist;
-                for(int i = 1; i < rayStep && x + i < screenWidth; i++) {
-                    depthBuffer[x+i] = perpWallDist;
+            final boolean profiling = profiler.enabled;
+            long t0 = profiling ? System.nanoTime() : 0;
+            long t1 = t0;
+
+            long cameraAngle = Double.doubleToLongBits(world.playerAngle);
+            wallLayer.key(0, world.mapVersion);
+            wallLayer.key(1, Float.floatToIntBits(world.playerX));
+            wallLayer.key(2, Float.floatToIntBits(world.playerY));
+            wallLayer.key(3, (int)cameraAngle);
+            wallLayer.key(4, (int)(cameraAngle >>> 32));
+            wallLayer.key(5, Float.floatToIntBits(fieldOfView));
+            wallLayer.key(6, graphicsQuality.ordinal());
+            wallLayer.key(7, world.lightMap.watchedVersion); // Lights reaching the faces drawn last rebuild
+            wallLayer.key(8, raycaster.fixedPoint ? 1 : 0);
+            if (wallLayer.prepare(screenWidth, screenHeight)) {
+                Canvas wallCanvas = wallLayer.canvas;
+                paint.setColor(Color.rgb(40, 40, 40));
+                wallCanvas.drawRect(0, 0, screenWidth, screenHeight / 2.0f, paint);
+                paint.setColor(Color.rgb(80, 80, 80));
+                wallCanvas.drawRect(0, screenHeight / 2.0f, screenWidth, screenHeight, paint);
+
+                long span = Tracer.begin();
+                if (graphicsQuality == QualityLevel.INTERLACED) raycaster.castInterlaced(world, camera);
+                else raycaster.cast(world, camera, rayStep);
+                depthHierarchy.build(raycaster.depthBuffer, screenWidth);
+                world.lightMap.watch(raycaster.lightIndex, screenWidth, rayStep);
+                Tracer.end(Tracer.RAYCAST, span);
+                t1 = profiling ? System.nanoTime() : 0;
+
+                span = Tracer.begin();
+                for (int x = 0; x < screenWidth; x += rayStep) {
+                    int light = world.lightMap.shadeAt(raycaster.lightIndex[x], raycaster.depthBuffer[x]);
+                    drawWallColumn(wallCanvas, x, raycaster.drawStart[x], raycaster.drawEnd[x], rayStep, raycaster.textureId[x],
+                            raycaster.wallX[x], raycaster.lineHeight[x], light);
                 }
-
-                int lineHeight = (int)(screenHeight / perpWallDist);
-                int drawStart = -lineHeight / 2 + screenHeight / 2;
-                if(drawStart < 0) drawStart = 0;
-                int drawEnd = lineHeight / 2 + screenHeight / 2;
-                if(drawEnd >= screenHeight) drawEnd = screenHeight - 1;
-
-                int textureID = worldMap[mapY][mapX];
-
-                double wallX;
-                if (side == 0) wallX = playerPos.y + perpWallDist * rayDirY;
-                else           wallX = playerPos.x + perpWallDist * rayDirX;
-                wallX -= Math.floor(wallX);
-
-                drawWallColumn(canvas, x, drawStart, drawEnd, rayStep, textureID, side, wallX, perpWallDist, lineHeight);
+                Tracer.end(Tracer.WALL_FILL, span);
+            }
+            // With post-processing the 3D part goes to postBitmap first; the HUD never does
+            boolean postProcessing = preparePost(screenWidth, screenHeight);
+            Canvas scene = postProcessing ? postCanvas : canvas;
+            scene.drawBitmap(wallLayer.bitmap, 0, 0, null);
+            long t2 = profiling ? System.nanoTime() : 0;
+
+            drawSprites(scene);
+            drawParticles(scene);
+            long t3 = profiling ? System.nanoTime() : 0;
+
+            if (postProcessing) {
+                long postSpan = Tracer.begin();
+                postBitmap.getPixels(postPixels, 0, screenWidth, 0, 0, screenWidth, screenHeight);
+                if (post.isEnabled(fogId)) fogPass.setDepth(raycaster.depthBuffer, screenWidth, screenHeight);
+                post.process(postPixels, screenWidth, screenHeight);
+                postBitmap.setPixels(postPixels, 0, screenWidth, 0, 0, screenWidth, screenHeight);
+                canvas.drawBitmap(postBitmap, 0, 0, null);
+                Tracer.end(Tracer.POST, postSpan);
             }
-            drawSprites(canvas);
+            long tPost = profiling ? System.nanoTime() : 0;
+
+            long span = Tracer.begin();
             drawGameUI(canvas);
+            Tracer.end(Tracer.HUD, span);
+            long t4 = profiling ? System.nanoTime() : 0;
+
+            span = Tracer.begin();
             drawVisibleControls(canvas);
+            Tracer.end(Tracer.CONTROLS, span);
+
+            if (profiling) {
+                long t5 = System.nanoTime();
+                profiler.add(FrameProfiler.PHASE_RAYCAST, t1 - t0);
+                profiler.add(FrameProfiler.PHASE_WALL_FILL, t2 - t1);
+                profiler.add(FrameProfiler.PHASE_SPRITES, t3 - t2);
+                profiler.add(FrameProfiler.PHASE_POST, tPost - t3);
+                profiler.add(FrameProfiler.PHASE_HUD, t4 - tPost);
+                profiler.add(FrameProfiler.PHASE_CONTROLS, t5 - t4);
+            }
         }
 
-        private void drawWallColumn(Canvas canvas, int x, int drawStart, int drawEnd, int rayStep, int textureID, int side, double wallX, double distance, int lineHeight) {
+        // light is the column's packed LightMap value, already darkened by distance
+        private void drawWallColumn(Canvas canvas, int x, int drawStart, int drawEnd, int rayStep, int textureID, double wallX, int lineHeight, int light) {
             if (textureID < 0 || textureID >= textures.size()) textureID = 0;
             Texture texture = textures.get(textureID);
 
             switch(graphicsQuality) {
                 case HIGH:
+                case INTERLACED:
                     int texX = (int)(wallX * texture.width);
                     texX = Math.max(0, Math.min(texture.width - 1, texX));
 
+                    if (raycaster.fixedPoint) {
+                        // 16.16 texture stepping: one division per column instead of one per pixel
+                        int step = (texture.height << Raycaster.FRAC_BITS) / Math.max(1, lineHeight);
+                        int texPos = (drawStart - getHeight() / 2 + lineHeight / 2) * step;
+                        for (int y = drawStart; y < drawEnd; y++) {
+                            int texY = Math.max(0, Math.min(texture.height - 1, texPos >> Raycaster.FRAC_BITS));
+                            texPos += step;
+                            paint.setColor(LightMap.shade(texture.getPixel(texX, texY), light));
+                            canvas.drawRect(x, y, x + rayStep, y + 1, paint);
+                        }
+                        break;
+                    }
                     for (int y = drawStart; y < drawEnd; y++) {
                         int d = y * 256 - getHeight() * 128 + lineHeight * 128;
                         int texY = ((d * texture.height) / lineHeight) / 256;
                         texY = Math.max(0, Math.min(texture.height - 1, texY));
                         int color = texture.getPixel(texX, texY);
-                        int shadedColor = applyShading(color, distance, side);
+                        int shadedColor = LightMap.shade(color, light);
                         paint.setColor(shadedColor);
                         canvas.drawRect(x, y, x + rayStep, y + 1, paint);
                     }
@@ -433,210 +770,282 @@ public class MainActivity extends AppCompatActivity {
                     int texX_med = (int)(wallX * texture.width);
                     int texY_med = texture.height / 2;
                     int color_med = texture.getPixel(texX_med, texY_med);
-                    int shadedColor_med = applyShading(color_med, distance, side);
+                    int shadedColor_med = LightMap.shade(color_med, light);
                     paint.setColor(shadedColor_med);
                     canvas.drawRect(x, drawStart, x + rayStep, drawEnd, paint);
                     break;
                 case LOW:
                     int color_low = texture.fallbackColor;
-                    int shadedColor_low = applyShading(color_low, distance, side);
+                    int shadedColor_low = LightMap.shade(color_low, light);
                     paint.setColor(shadedColor_low);
                     canvas.drawRect(x, drawStart, x + rayStep, drawEnd, paint);
                     break;
             }
         }
 
-
-        private int applyShading(int color, double distance, int side) {
-            float flashIntensity = (shootTimer > 0) ? (float)Math.max(0, 1.0 - distance / 8.0) * (shootTimer / (float)WEAPON_COOLDOWN_FRAMES) : 0;
-            int r = Color.red(color); int g = Color.green(color); int b = Color.blue(color);
-            r = Math.min(255, (int)(r + 255 * flashIntensity));
-            g = Math.min(255, (int)(g + 200 * flashIntensity));
-            b = Math.min(255, (int)(b + 150 * flashIntensity));
-
-            double maxDist = 20.0;
-            double shade = Math.max(0, 1.0 - (distance / maxDist));
-            r *= shade; g *= shade; b *= shade;
-
-            if (side == 1) { r *= 0.7; g *= 0.7; b *= 0.7; }
-
-            return Color.rgb(r, g, b);
-        }
-
         private void startGame() {
-            level = 1;
-            score = 0;
-            playerHealth = 100;
-            generateLevel();
+            if (!assetsReady) return;
+            long seed = random.nextLong();
+            world.startGame(seed);
+            recording = new InputRecording(seed, textures.size() - 1);
+            inputQueue.clear();
+            pendingLookDelta = 0;
+            pendingShoot = false;
             currentState = GameState.PLAYING;
         }
 
-        private void generateLevel() {
-            worldMap = new int[MAP_SIZE][MAP_SIZE];
-            sprites.clear();
-            spritesToAdd.clear();
-            for (int y = 0; y < MAP_SIZE; y++) {
-                for (int x = 0; x < MAP_SIZE; x++) {
-                    worldMap[y][x] = 1;
+        // HOST or JOIN from the main menu. The link is non-blocking, so the UI thread is allowed to
+        // use the network: a send or receive returns at once whatever the network is doing. Only
+        // until stopCoop, which puts the old policy back.
+        private void startCoop(boolean hosting) {
+            if (!assetsReady) return;
+            if (soloThreadPolicy == null) soloThreadPolicy = StrictMode.getThreadPolicy();
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder(soloThreadPolicy).permitNetwork().build());
+            try {
+                if (hosting) {
+                    startGame();
+                    recording = null; // The guest's inputs aren't recorded, so the run can't be replayed
+                    coopHost = new CoopHost(world, new InetSocketAddress(COOP_PORT), random.nextLong());
+                } else {
+                    coopClient = new CoopClient(textures.size() - 1, new InetSocketAddress("255.255.255.255", COOP_PORT),
+                            new InetSocketAddress(0), random.nextLong());
+                    coopClient.link.setBroadcast(true);
+                    soloWorld = world;
+                    world = coopClient.view;
+                    wallLayer.discard(); // Two worlds can have equal map versions and poses
+                    sceneLayer.discard();
+                    inputQueue.clear();
+                    pendingLookDelta = 0;
+                    pendingShoot = false;
+                    currentState = GameState.PLAYING;
                 }
+            } catch (IOException e) {
+                stopCoop(); // Port taken or no network: back to the menu
+                currentState = GameState.MAIN_MENU;
             }
+        }
 
-            boolean[][] visited = new boolean[MAP_SIZE][MAP_SIZE];
-            ArrayList<PointF> stack = new ArrayList<>();
-            PointF current = new PointF(1, 1);
-            visited[(int)current.y][(int)current.x] = true;
-            worldMap[(int)current.y][(int)current.x] = 0;
-            stack.add(current);
-
-            while(!stack.isEmpty()) {
-                current = stack.remove(stack.size() - 1);
-                ArrayList<PointF> neighbors = new ArrayList<>();
-                int cx = (int)current.x; int cy = (int)current.y;
-                if (cx > 1 && !visited[cy][cx - 2]) neighbors.add(new PointF(cx - 2, cy));
-                if (cx < MAP_SIZE - 2 && !visited[cy][cx + 2]) neighbors.add(new PointF(cx + 2, cy));
-                if (cy > 1 && !visited[cy - 2][cx]) neighbors.add(new PointF(cx, cy - 2));
-                if (cy < MAP_SIZE - 2 && !visited[cy + 2][cx]) neighbors.add(new PointF(cx, cy + 2));
-
-                if (!neighbors.isEmpty()) {
-                    stack.add(current);
-                    PointF next = neighbors.get(random.nextInt(neighbors.size()));
-                    int nx = (int)next.x; int ny = (int)next.y;
-                    worldMap[(ny + cy) / 2][(nx + cx) / 2] = 0;
-                    worldMap[ny][nx] = 0;
-                    visited[ny][nx] = true;
-                    stack.add(next);
-                }
+        // Closes whichever end is open: a host's run goes on without the guest, a client gets its own
+        // world back.
+        private void stopCoop() {
+            try {
+                if (coopHost != null) coopHost.close();
+                if (coopClient != null) coopClient.close();
+            } catch (IOException e) {
+                // Closing a datagram channel has nothing left to lose
+            }
+            if (soloThreadPolicy != null) {
+                StrictMode.setThreadPolicy(soloThreadPolicy);
+                soloThreadPolicy = null;
             }
+            if (coopHost != null) world.guest.leave();
+            coopHost = null;
+            if (coopClient != null) {
+                coopClient = null;
+                world = soloWorld;
+                soloWorld = null;
+                wallLayer.discard();
+                sceneLayer.discard();
+                if (currentState == GameState.PLAYING) currentState = GameState.MAIN_MENU;
+            }
+        }
 
-            for (int y = 1; y < MAP_SIZE - 1; y++) {
-                for (int x = 1; x < MAP_SIZE - 1; x++) {
-                    if (worldMap[y][x] == 0) { // If it's an empty floor space
-                        // --- FEATURE: Medkit --- Spawn enemies and medkits
-                        if (random.nextFloat() < 0.05) { // 5% chance for an enemy
-                            sprites.add(new Enemy(x + 0.5f, y + 0.5f));
-                        } else if (random.nextFloat() < 0.02) { // 2% chance for a medkit
-                            sprites.add(new Medkit(x + 0.5f, y + 0.5f));
-                        }
-                    } else if (worldMap[y][x] == 1) { // If it's a generic wall
-                        worldMap[y][x] = random.nextInt(textures.size() - 1) + 1;
-                    }
-                }
+        // Turns the damage flash pass on while it shows and makes sure the offscreen frame matches
+        // the screen. False means no pass would change anything, so the scene is drawn directly.
+        private boolean preparePost(int w, int h) {
+            if (flashId < 0) return false; // Passes still loading
+            post.setEnabled(flashId, flashPass.setStrength(damageFlash));
+            if (post.activePasses() == 0) return false;
+            if (postBitmap == null || postBitmap.getWidth() != w || postBitmap.getHeight() != h) {
+                if (postBitmap != null) postBitmap.recycle();
+                postBitmap = Bitmap.createBitmap(Math.max(1, w), Math.max(1, h), Bitmap.Config.ARGB_8888);
+                postCanvas = new Canvas(postBitmap);
+                postPixels = new int[Math.max(1, w) * Math.max(1, h)];
             }
+            return true;
+        }
 
-            playerPos = new PointF(1.5f, 1.5f);
-            playerAngle = 0;
+        // Fog first so the palette snaps the fogged colours; the flash goes before the palette
+        // too, as DOOM's red palettes did, and scanlines last.
+        private void addPostPasses(PostProcessor.PalettePass palette) {
+            fogPass = new PostProcessor.FogPass(Color.rgb(18, 16, 24), 2.5f, 14f);
+            fogId = post.addPass("fog", fogPass);
+            flashPass = new PostProcessor.DamageFlashPass();
+            flashId = post.addPass("flash", flashPass);
+            paletteId = post.addPass("palette", palette);
+            scanlineId = post.addPass("scan", new PostProcessor.ScanlinePass(0.7f));
+            post.setParallelism(Math.min(4, Runtime.getRuntime().availableProcessors()));
+            applyPostEffects();
+        }
 
-            int exitX, exitY;
-            do {
-                exitX = random.nextInt(MAP_SIZE - 2) + 1;
-                exitY = random.nextInt(MAP_SIZE - 2) + 1;
-            } while(worldMap[exitY][exitX] != 0 || (Math.abs(exitX - playerPos.x) + Math.abs(exitY - playerPos.y)) < MAP_SIZE / 2.0);
-            sprites.add(new Portal(exitX + 0.5f, exitY + 0.5f));
+        private void applyPostEffects() {
+            if (fogId < 0) return;
+            post.setEnabled(fogId, postEffects != PostEffects.OFF);
+            post.setEnabled(paletteId, postEffects == PostEffects.RETRO);
+            post.setEnabled(scanlineId, postEffects == PostEffects.RETRO);
         }
 
-        private void handleCollisionAndMove(float newX, float newY) {
-            int mapX = (int)newX; int mapY = (int)newY;
-            if (mapX >= 0 && mapX < MAP_SIZE && mapY >= 0 && mapY < MAP_SIZE && worldMap[mapY][mapX] == 0) {
-                playerPos.set(newX, newY);
+        // Runs on the PaletteBuilder thread.
+        private int[] loadPalette() {
+            try (InputStream in = getContext().getAssets().open(PALETTE_ASSET)) {
+                byte[] lump = new byte[768];
+                int length = 0;
+                for (int n; length < lump.length && (n = in.read(lump, length, lump.length - length)) > 0; ) length += n;
+                int[] palette = PostProcessor.PalettePass.fromPlaypal(lump, length);
+                if (palette != null) return palette;
+            } catch (IOException e) {
+                // No PLAYPAL shipped: fall back to the built-in ramps
             }
+            return PostProcessor.PalettePass.rampPalette();
         }
 
-        private void playerShoot() {
-            shootTimer = WEAPON_COOLDOWN_FRAMES;
-
-            double eyeX = Math.cos(playerAngle); double eyeY = Math.sin(playerAngle);
-            for (double d = 0; d < 20; d += 0.1) {
-                double testX = playerPos.x + eyeX * d; double testY = playerPos.y + eyeY * d;
-
-                // --- BUG FIX: Add bounds check to prevent ArrayOutOfBoundsException ---
-                int mapX = (int)testX;
-                int mapY = (int)testY;
-                if (mapX < 0 || mapX >= MAP_SIZE || mapY < 0 || mapY >= MAP_SIZE) {
-                    break; // Ray has gone out of bounds
+        // Billboards in a single pass over the pool, depth-tested against the walls through the
+        // depth hierarchy and per column only where it can't decide. They aren't sorted against
+        // each other or the sprites: they are small and short-lived, so the order barely shows.
+        private void drawParticles(Canvas canvas) {
+            if (particles.live == 0) return;
+            long span = Tracer.begin();
+            final Camera cam = camera;
+            final double[] depthBuffer = raycaster.depthBuffer;
+            final int screenWidth = Math.min(cam.width, depthBuffer.length);
+            final int screenHeight = cam.height;
+            final ParticleSystem p = particles;
+            for (int i = 0; i < p.capacity; i++) {
+                if (p.life[i] == 0) continue;
+                double dx = p.x[i] - world.playerX;
+                double dy = p.y[i] - world.playerY;
+                double side = cam.m00 * dx + cam.m01 * dy;
+                double depth = cam.m10 * dx + cam.m11 * dy;
+                if (depth <= 0.1) continue;
+                double scale = screenHeight / depth;
+                float half = Math.max(1f, (float)(p.size[i] * scale * 0.5));
+                float centerX = (float)cam.screenX(side, depth);
+                float centerY = (float)(screenHeight / 2.0 + (0.5 - p.z[i]) * scale);
+                int left = Math.max(0, (int)(centerX - half));
+                int right = Math.min(screenWidth, (int)Math.ceil(centerX + half));
+                if (left >= right) continue;
+
+                billboardsTested++;
+                int occlusion = depthHierarchy.classify(left, right, depth);
+                if (occlusion == DepthHierarchy.HIDDEN) {
+                    billboardsHidden++;
+                    continue;
                 }
-
-                if (worldMap[mapY][mapX] > 0) break; // Use checked coordinates for wall collision
-
-                for (Sprite s : sprites) {
-                    if (s instanceof Enemy && s.isAlive && Math.hypot(s.x - testX, s.y - testY) < 0.5) {
-                        ((Enemy) s).takeDamage(50);
-                        score += 10;
-                        return; // Hit an enemy, stop the ray
+                int alpha = 255 - p.age[i] * 255 / p.life[i];
+                paint.setColor((alpha << 24) | p.color[i]);
+                if (occlusion == DepthHierarchy.VISIBLE) {
+                    billboardsUnoccluded++;
+                    canvas.drawRect(left, centerY - half, right, centerY + half, paint);
+                    continue;
+                }
+                int runStart = -1; // Visible columns are drawn as runs, one rect each
+                for (int col = left; col <= right; col++) {
+                    boolean visible = col < right && depthBuffer[col] > depth;
+                    if (visible) {
+                        if (runStart < 0) runStart = col;
+                    } else if (runStart >= 0) {
+                        canvas.drawRect(runStart, centerY - half, col, centerY + half, paint);
+                        runStart = -1;
                     }
                 }
             }
+            Tracer.end(Tracer.PARTICLES, span);
         }
 
-        public void takeDamage(int amount) {
-            playerHealth -= amount;
-            if (playerHealth <= 0) {
-                playerHealth = 0;
-                currentState = GameState.GAME_OVER;
-                if (score > bestScore) { bestScore = score; saveBestScore(); }
-            }
-        }
-
-        // --- FEATURE: Medkit --- Method to heal the player ---
-        public void playerHeal(int amount) {
-            playerHealth += amount;
-            if (playerHealth > 100) {
-                playerHealth = 100;
+        private void drawSprites(Canvas canvas) {
+            long span = Tracer.begin();
+            world.sortSpritesForDrawing();
+            Tracer.end(Tracer.SPRITE_SORT, span);
+
+            span = Tracer.begin();
+            billboardsTested = billboardsHidden = billboardsUnoccluded = 0;
+
+            // The other co-op player goes into the far-to-near order like any sprite
+            GameWorld.Sprite other = world.guest.joined ? world.guest.avatar() : null;
+            final List<GameWorld.Sprite> sprites = world.sprites;
+            for (int i = 0; i < sprites.size(); i++) {
+                GameWorld.Sprite s = sprites.get(i);
+                if (other != null && other.distToPlayer >= s.distToPlayer) {
+                    drawBillboard(canvas, other);
+                    other = null;
+                }
+                drawBillboard(canvas, s);
             }
+            if (other != null) drawBillboard(canvas, other);
+            Tracer.end(Tracer.SPRITE_DRAW, span);
         }
 
-        private void drawSprites(Canvas canvas) {
-            Collections.sort(sprites, (s1, s2) -> Double.compare(s2.distToPlayer, s1.distToPlayer));
-
-            final double dirX = Math.cos(playerAngle);
-            final double dirY = Math.sin(playerAngle);
-            final double planeX = -dirY * Math.tan(Math.toRadians(fieldOfView / 2.0));
-            final double planeY = dirX * Math.tan(Math.toRadians(fieldOfView / 2.0));
-
-            for (Sprite s : sprites) {
-                double spriteWorldX = s.x - playerPos.x;
-                double spriteWorldY = s.y - playerPos.y;
-                double invDet = 1.0 / (planeX * dirY - dirX * planeY);
-                double transformX = invDet * (dirY * spriteWorldX - dirX * spriteWorldY);
-                double transformY = invDet * (-planeY * spriteWorldX + planeX * spriteWorldY);
-
-                if (transformY > 0.1) {
-                    int screenWidth = getWidth();
-                    int screenHeight = getHeight();
-                    int spriteScreenXCenter = (int) (screenWidth / 2.0 * (1.0 + transformX / transformY));
-
-                    int spriteHeight = Math.abs((int) ((screenHeight / transformY) * s.scale));
-                    int spriteWidth = spriteHeight;
-
-                    float drawStartX = spriteScreenXCenter - spriteWidth / 2.0f;
-                    float drawStartY = -spriteHeight / 2.0f + screenHeight / 2.0f;
-
-                    reusableSpriteRect.set(drawStartX, drawStartY, drawStartX + spriteWidth, drawStartY + spriteHeight);
-                    double correctedDist = transformY;
-                    s.draw(canvas, reusableSpriteRect, depthBuffer, correctedDist);
+        // Projects one billboard, skips it if the walls hide it and draws it otherwise.
+        private void drawBillboard(Canvas canvas, GameWorld.Sprite s) {
+            // The camera was rotated to this frame's angle by the wall raycast
+            final Camera cam = camera;
+            final int screenHeight = cam.height;
+            double spriteWorldX = s.x - world.playerX;
+            double spriteWorldY = s.y - world.playerY;
+            double transformX = cam.m00 * spriteWorldX + cam.m01 * spriteWorldY;
+            double transformY = cam.m10 * spriteWorldX + cam.m11 * spriteWorldY;
+
+            if (transformY > 0.1) {
+                int spriteScreenXCenter = (int) cam.screenX(transformX, transformY);
+
+                int spriteHeight = Math.abs((int) ((screenHeight / transformY) * s.scale));
+                int spriteWidth = spriteHeight;
+
+                float drawStartX = spriteScreenXCenter - spriteWidth / 2.0f;
+                float drawStartY = -spriteHeight / 2.0f + screenHeight / 2.0f;
+
+                reusableSpriteRect.set(drawStartX, drawStartY, drawStartX + spriteWidth, drawStartY + spriteHeight);
+                double correctedDist = transformY;
+                billboardsTested++;
+                int occlusion = depthHierarchy.classify((int)reusableSpriteRect.left, (int)reusableSpriteRect.right, correctedDist);
+                if (occlusion == DepthHierarchy.HIDDEN) {
+                    billboardsHidden++;
+                    return;
                 }
+                boolean unoccluded = occlusion == DepthHierarchy.VISIBLE;
+                if (unoccluded) billboardsUnoccluded++;
+                int light = world.lightMap.shadeAt(LightMap.index((int)s.x, (int)s.y, LightMap.FLOOR), correctedDist);
+                s.draw(canvas, paint, reusableSpriteRect, raycaster.depthBuffer, correctedDist, light, unoccluded);
             }
         }
 
 
         private void drawGameUI(Canvas canvas) {
-            // Health bar background
-            paint.setColor(Color.rgb(80, 0, 0));
-            canvas.drawRect(20, 20, 20 + 200, 60, paint);
-            // Health bar foreground
-            paint.setColor(Color.RED);
-            canvas.drawRect(20, 20, 20 + (playerHealth * 2), 60, paint);
-            // Health text
-            textPaint.setTextSize(35);
-            textPaint.setTextAlign(Paint.Align.LEFT);
-            canvas.drawText("" + playerHealth, 25, 52, textPaint);
-
-            // Score and Level text
-            paint.setColor(Color.WHITE);
-            paint.setTextSize(50);
-            paint.setTextAlign(Paint.Align.LEFT);
-            canvas.drawText("Score: " + score, 20, 120, paint);
-            canvas.drawText("Best: " + bestScore, 20, 180, paint);
-            canvas.drawText("Lvl: " + level, 20, 240, paint);
+            // Health bar and stats only change on damage, pickups or score, so they are laid out
+            // into a small retained bitmap instead of building strings every frame.
+            hudLayer.key(0, world.playerHealth);
+            hudLayer.key(1, world.score);
+            hudLayer.key(2, bestScore);
+            hudLayer.key(3, world.level);
+            if (hudLayer.prepare(HUD_LAYER_WIDTH, HUD_LAYER_HEIGHT)) {
+                Canvas layer = hudLayer.canvas;
+                // Health bar background
+                paint.setColor(Color.rgb(80, 0, 0));
+                layer.drawRect(20, 20, 20 + 200, 60, paint);
+                // Health bar foreground
+                paint.setColor(Color.RED);
+                layer.drawRect(20, 20, 20 + (world.playerHealth * 2), 60, paint);
+                // Health text
+                textPaint.setTextSize(35);
+                textPaint.setTextAlign(Paint.Align.LEFT);
+                int n = FrameProfiler.appendFixed(hudText, 0, world.playerHealth, 0, 1);
+                layer.drawText(hudText, 0, n, 25, 52, textPaint);
+
+                // Score and Level text, formatted into a reused buffer rather than new strings
+                paint.setColor(Color.WHITE);
+                paint.setTextSize(50);
+                paint.setTextAlign(Paint.Align.LEFT);
+                n = FrameProfiler.append(hudText, 0, "Score: ");
+                n = FrameProfiler.appendFixed(hudText, n, world.score, 0, 1);
+                layer.drawText(hudText, 0, n, 20, 120, paint);
+                n = FrameProfiler.append(hudText, 0, "Best: ");
+                n = FrameProfiler.appendFixed(hudText, n, bestScore, 0, 1);
+                layer.drawText(hudText, 0, n, 20, 180, paint);
+                n = FrameProfiler.append(hudText, 0, "Lvl: ");
+                n = FrameProfiler.appendFixed(hudText, n, world.level, 0, 1);
+                layer.drawText(hudText, 0, n, 20, 240, paint);
+            }
+            canvas.drawBitmap(hudLayer.bitmap, 0, 0, null);
 
             // Gun
             int gunWidth = getWidth() / 4; int gunHeight = getHeight() / 3;
@@ -659,6 +1068,169 @@ public class MainActivity extends AppCompatActivity {
             drawButtonWithText(canvas, shootButton, "SHOOT");
         }
 
+        // Per-phase avg/p95/p99 table plus a frame-time histogram. Text goes through a reused char
+        // buffer so the overlay does not allocate while it is measuring.
+        private void drawPerfOverlay(Canvas canvas) {
+            if (profiler.needsRuntimeSample(System.nanoTime())) {
+                sampleRuntimeStats();
+            }
+
+            float lineHeight = overlayPaint.getTextSize() * 1.2f;
+            float left = getWidth() * 0.55f;
+            float top = getHeight() * 0.12f;
+            int rows = FrameProfiler.PHASE_COUNT + 11;
+            uiPaint.setStyle(Paint.Style.FILL);
+            uiPaint.setColor(Color.argb(170, 0, 0, 0));
+            canvas.drawRect(left - 10, top - lineHeight, getWidth() - 10, top + lineHeight * rows + 90, uiPaint);
+            overlayPaint.setColor(Color.WHITE);
+
+            if (!profiler.hasStats()) {
+                int n = FrameProfiler.append(overlayText, 0, "collecting...");
+                canvas.drawText(overlayText, 0, n, left, top, overlayPaint);
+                return;
+            }
+
+            int n = FrameProfiler.appendPadded(overlayText, 0, "ms", 9);
+            n = FrameProfiler.append(overlayText, n, "    avg    p95    p99");
+            canvas.drawText(overlayText, 0, n, left, top, overlayPaint);
+            for (int p = 0; p <= FrameProfiler.PHASE_COUNT; p++) {
+                n = FrameProfiler.appendPadded(overlayText, 0, FrameProfiler.PHASE_NAMES[p], 9);
+                n = FrameProfiler.appendFixed(overlayText, n, profiler.avgMs[p], 2, 7);
+                n = FrameProfiler.appendFixed(overlayText, n, profiler.p95Ms[p], 2, 7);
+                n = FrameProfiler.appendFixed(overlayText, n, profiler.p99Ms[p], 2, 7);
+                canvas.drawText(overlayText, 0, n, left, top + lineHeight * (p + 1), overlayPaint);
+            }
+
+            n = FrameProfiler.append(overlayText, 0, "gc/s ");
+            n = profiler.gcPerSecond < 0 ? FrameProfiler.append(overlayText, n, "  n/a") : FrameProfiler.appendFixed(overlayText, n, profiler.gcPerSecond, 1, 5);
+            n = FrameProfiler.append(overlayText, n, "  alloc KB/s ");
+            n = profiler.allocKbPerSecond < 0 ? FrameProfiler.append(overlayText, n, "n/a") : FrameProfiler.appendFixed(overlayText, n, profiler.allocKbPerSecond, 0, 1);
+            canvas.drawText(overlayText, 0, n, left, top + lineHeight * (FrameProfiler.PHASE_COUNT + 2), overlayPaint);
+
+            // Frame pacing: refresh rate / vsync stride, missed vsyncs and smoothed jitter
+            n = FrameProfiler.appendFixed(overlayText, 0, pacer.getRefreshRate(), 0, 1);
+            n = FrameProfiler.append(overlayText, n, "Hz /");
+            n = FrameProfiler.appendFixed(overlayText, n, pacer.getVsyncStride(), 0, 1);
+            n = FrameProfiler.append(overlayText, n, " missed ");
+            n = FrameProfiler.appendFixed(overlayText, n, pacer.missedVsyncs, 0, 1);
+            n = FrameProfiler.append(overlayText, n, " jitter ");
+            n = FrameProfiler.appendFixed(overlayText, n, pacer.jitterMs, 2, 1);
+            n = FrameProfiler.append(overlayText, n, "/");
+            n = FrameProfiler.appendFixed(overlayText, n, pacer.maxJitterMs, 2, 1);
+            n = FrameProfiler.append(overlayText, n, "ms");
+            canvas.drawText(overlayText, 0, n, left, top + lineHeight * (FrameProfiler.PHASE_COUNT + 3), overlayPaint);
+
+            // Wall column cache: frames that reused the previous raycast and wall fill
+            int wallFrames = wallLayer.reuses + wallLayer.rebuilds;
+            n = FrameProfiler.append(overlayText, 0, "wall cache ");
+            n = FrameProfiler.appendFixed(overlayText, n, wallFrames == 0 ? 0 : wallLayer.reuses * 100f / wallFrames, 1, 1);
+            n = FrameProfiler.append(overlayText, n, "% of ");
+            n = FrameProfiler.appendFixed(overlayText, n, wallFrames, 0, 1);
+            if (graphicsQuality == QualityLevel.INTERLACED) {
+                // Interlaced columns taken from last frame rather than cast again
+                long interlaced = raycaster.reprojected + raycaster.reprojectMisses;
+                n = FrameProfiler.append(overlayText, n, " reproj ");
+                n = FrameProfiler.appendFixed(overlayText, n, interlaced == 0 ? 0 : raycaster.reprojected * 100f / interlaced, 1, 1);
+                n = FrameProfiler.append(overlayText, n, "%");
+            }
+            canvas.drawText(overlayText, 0, n, left, top + lineHeight * (FrameProfiler.PHASE_COUNT + 4), overlayPaint);
+
+            // Touch sample to end of the frame that first shows it
+            n = FrameProfiler.append(overlayText, 0, "input ");
+            n = FrameProfiler.appendFixed(overlayText, n, profiler.inputLatencyMs, 1, 1);
+            n = FrameProfiler.append(overlayText, n, "/");
+            n = FrameProfiler.appendFixed(overlayText, n, profiler.maxInputLatencyMs, 1, 1);
+            n = FrameProfiler.append(overlayText, n, "ms dropped ");
+            n = FrameProfiler.appendFixed(overlayText, n, inputQueue.dropped, 0, 1);
+            canvas.drawText(overlayText, 0, n, left, top + lineHeight * (FrameProfiler.PHASE_COUNT + 5), overlayPaint);
+
+            // Cold start: process start to the first frame and to a playable menu
+            n = FrameProfiler.append(overlayText, 0, "startup frame ");
+            n = FrameProfiler.appendFixed(overlayText, n, timeToFirstFrameMs, 0, 1);
+            n = FrameProfiler.append(overlayText, n, " play ");
+            n = FrameProfiler.appendFixed(overlayText, n, timeToPlayableMs, 0, 1);
+            n = FrameProfiler.append(overlayText, n, "ms");
+            canvas.drawText(overlayText, 0, n, left, top + lineHeight * (FrameProfiler.PHASE_COUNT + 6), overlayPaint);
+
+            // Particles alive now, and spawned / dropped over the budget in the last frame
+            n = FrameProfiler.append(overlayText, 0, "particles ");
+            n = FrameProfiler.appendFixed(overlayText, n, particles.live, 0, 1);
+            n = FrameProfiler.append(overlayText, n, " +");
+            n = FrameProfiler.appendFixed(overlayText, n, particles.spawnedLastFrame, 0, 1);
+            n = FrameProfiler.append(overlayText, n, " dropped ");
+            n = FrameProfiler.appendFixed(overlayText, n, particles.droppedLastFrame, 0, 1);
+            canvas.drawText(overlayText, 0, n, left, top + lineHeight * (FrameProfiler.PHASE_COUNT + 7), overlayPaint);
+
+            // Post-processing: smoothed ms of each enabled pass (its slowest band)
+            n = FrameProfiler.append(overlayText, 0, "post");
+            if (post.activePasses() == 0) n = FrameProfiler.append(overlayText, n, " off");
+            for (int p = 0; p < post.passCount(); p++) {
+                if (!post.isEnabled(p)) continue;
+                n = FrameProfiler.append(overlayText, n, " ");
+                n = FrameProfiler.append(overlayText, n, post.passNames[p]);
+                n = FrameProfiler.append(overlayText, n, " ");
+                n = FrameProfiler.appendFixed(overlayText, n, post.passMs[p], 2, 1);
+            }
+            canvas.drawText(overlayText, 0, n, left, top + lineHeight * (FrameProfiler.PHASE_COUNT + 8), overlayPaint);
+
+            // Sprites and particles this frame settled by the depth hierarchy alone: skipped as
+            // hidden, or drawn whole without a per-column test
+            n = FrameProfiler.append(overlayText, 0, "occlusion hidden ");
+            n = FrameProfiler.appendFixed(overlayText, n, billboardsTested == 0 ? 0 : billboardsHidden * 100f / billboardsTested, 0, 1);
+            n = FrameProfiler.append(overlayText, n, "% whole ");
+            n = FrameProfiler.appendFixed(overlayText, n, billboardsTested == 0 ? 0 : billboardsUnoccluded * 100f / billboardsTested, 0, 1);
+            n = FrameProfiler.append(overlayText, n, "% of ");
+            n = FrameProfiler.appendFixed(overlayText, n, billboardsTested, 0, 1);
+            canvas.drawText(overlayText, 0, n, left, top + lineHeight * (FrameProfiler.PHASE_COUNT + 9), overlayPaint);
+
+            // Bytes the ticks and drawGame allocated in the last frame, and in how many frames
+            // since the overlay opened they allocated at all; both should stay at 0
+            n = FrameProfiler.append(overlayText, 0, "alloc B");
+            for (int sec = 0; sec < AllocationTracker.SECTION_COUNT; sec++) {
+                n = FrameProfiler.append(overlayText, n, " ");
+                n = FrameProfiler.append(overlayText, n, AllocationTracker.SECTION_NAMES[sec]);
+                n = FrameProfiler.append(overlayText, n, " ");
+                n = FrameProfiler.appendFixed(overlayText, n, allocations.bytesLastFrame[sec], 0, 1);
+                n = FrameProfiler.append(overlayText, n, " x");
+                n = FrameProfiler.appendFixed(overlayText, n, allocations.allocatingFrames[sec], 0, 1);
+            }
+            canvas.drawText(overlayText, 0, n, left, top + lineHeight * (FrameProfiler.PHASE_COUNT + 10), overlayPaint);
+
+            // Frame-time histogram, 1 ms per bar; the 16.6 ms budget is marked in red
+            float histTop = top + lineHeight * (FrameProfiler.PHASE_COUNT + 10) + 15;
+            float histHeight = 70;
+            float barWidth = (getWidth() - 20 - left) / FrameProfiler.HISTOGRAM_BUCKETS;
+            for (int b = 0; b < FrameProfiler.HISTOGRAM_BUCKETS; b++) {
+                float barHeight = profiler.histogram[b] * histHeight / Math.max(1, profiler.histogramMax);
+                uiPaint.setColor(b < 17 ? Color.GREEN : Color.YELLOW);
+                canvas.drawRect(left + b * barWidth, histTop + histHeight - barHeight, left + (b + 1) * barWidth - 1, histTop + histHeight, uiPaint);
+            }
+            uiPaint.setColor(Color.RED);
+            canvas.drawRect(left + 16.6f * barWidth, histTop, left + 16.6f * barWidth + 2, histTop + histHeight, uiPaint);
+        }
+
+        @SuppressWarnings("deprecation")
+        private void setAllocationTracking(boolean on) {
+            if (on) Debug.startAllocCounting();
+            else Debug.stopAllocCounting();
+            allocations.reset();
+            allocations.enabled = on;
+        }
+
+        // ART exposes cumulative GC counters as strings; this runs once per second, not per frame.
+        private void sampleRuntimeStats() {
+            long gcCount = -1, bytesAllocated = -1;
+            try {
+                String gc = Debug.getRuntimeStat("art.gc.gc-count");
+                String allocated = Debug.getRuntimeStat("art.gc.bytes-allocated");
+                if (gc != null) gcCount = Long.parseLong(gc);
+                if (allocated != null) bytesAllocated = Long.parseLong(allocated);
+            } catch (NumberFormatException e) {
+                // Leave the stat unavailable
+            }
+            profiler.sampleRuntime(System.nanoTime(), gcCount, bytesAllocated);
+        }
+
         private void drawStyledButton(Canvas canvas, RectF bounds, String text, int buttonId) {
             if (pressedButton == buttonId) {
                 uiPaint.setColor(Color.rgb(60, 60, 80));
@@ -706,10 +1278,16 @@ public class MainActivity extends AppCompatActivity {
                         case SETTINGS: handleSettingsTouch(x, y); break;
                         case AUTHORS: handleAuthorsTouch(x, y); break;
                         case PAUSED: handlePauseTouch(x, y); break;
-                        case GAME_OVER: currentState = GameState.MAIN_MENU; break;
+                        case GAME_OVER: stopCoop(); currentState = GameState.MAIN_MENU; break;
                     }
                 }
             }
+
+            if (currentState == GameState.PLAYING) {
+                requestFrames();
+            } else {
+                invalidate();
+            }
             return true;
         }
 
@@ -717,6 +1295,8 @@ public class MainActivity extends AppCompatActivity {
             if (playButton.contains(x, y)) { pressedButton = playButton.hashCode(); startGame(); }
             if (settingsButton.contains(x, y)) { pressedButton = settingsButton.hashCode(); currentState = GameState.SETTINGS; }
             if (authorsButton.contains(x, y)) { pressedButton = authorsButton.hashCode(); currentState = GameState.AUTHORS; }
+            if (hostButton.contains(x, y)) { pressedButton = hostButton.hashCode(); startCoop(true); }
+            if (joinButton.contains(x, y)) { pressedButton = joinButton.hashCode(); startCoop(false); }
         }
 
         private void handleSettingsTouch(float x, float y) {
@@ -728,10 +1308,26 @@ public class MainActivity extends AppCompatActivity {
                 graphicsQuality = QualityLevel.values()[nextOrdinal];
             }
 
-            if (fovDownButton.contains(x,y)) { pressedButton = fovDownButton.hashCode(); fieldOfView = Math.max(40, fieldOfView - 1); }
-            if (fovUpButton.contains(x,y)) { pressedButton = fovUpButton.hashCode(); fieldOfView = Math.min(120, fieldOfView + 1); }
+            if (fovDownButton.contains(x,y)) { pressedButton = fovDownButton.hashCode(); fieldOfView = Math.max(40, fieldOfView - 1); camera.setFieldOfView(fieldOfView); }
+            if (fovUpButton.contains(x,y)) { pressedButton = fovUpButton.hashCode(); fieldOfView = Math.min(120, fieldOfView + 1); camera.setFieldOfView(fieldOfView); }
             if (sensDownButton.contains(x,y)) { pressedButton = sensDownButton.hashCode(); lookSensitivity = Math.max(0.001f, lookSensitivity - 0.0005f); }
             if (sensUpButton.contains(x,y)) { pressedButton = sensUpButton.hashCode(); lookSensitivity = Math.min(0.01f, lookSensitivity + 0.0005f); }
+            if (perfButton.contains(x,y)) { pressedButton = perfButton.hashCode(); profiler.enabled = !profiler.enabled; profiler.reset(); wallLayer.reuses = wallLayer.rebuilds = 0; setAllocationTracking(profiler.enabled); }
+            if (fixedPointButton.contains(x,y)) { pressedButton = fixedPointButton.hashCode(); raycaster.fixedPoint = !raycaster.fixedPoint; }
+            if (postButton.contains(x,y)) {
+                pressedButton = postButton.hashCode();
+                postEffects = PostEffects.values()[(postEffects.ordinal() + 1) % PostEffects.values().length];
+                applyPostEffects();
+            }
+            if (fpsCapButton.contains(x,y)) {
+                pressedButton = fpsCapButton.hashCode();
+                int cap = pacer.getFrameRateCap();
+                pacer.setFrameRateCap(cap == 0 ? 60 : cap == 60 ? 30 : 0);
+            }
+            if (traceButton.contains(x,y)) {
+                pressedButton = traceButton.hashCode();
+                if (Tracer.isEnabled()) saveTrace(); else Tracer.start();
+            }
         }
 
         private void handleAuthorsTouch(float x, float y) {
@@ -740,74 +1336,98 @@ public class MainActivity extends AppCompatActivity {
 
         private void handlePauseTouch(float x, float y) {
             if (resumeButton.contains(x,y)) { pressedButton = resumeButton.hashCode(); currentState = GameState.PLAYING; }
-            if (quitButton.contains(x,y)) { pressedButton = quitButton.hashCode(); currentState = GameState.MAIN_MENU; }
+            if (quitButton.contains(x,y)) { pressedButton = quitButton.hashCode(); saveRecording(); discardSnapshot(); stopCoop(); currentState = GameState.MAIN_MENU; }
         }
 
+        // Producer side of the input pipeline. Only the pause button acts immediately; every other
+        // touch sample, including the historical ones Android batches into an ACTION_MOVE, is queued
+        // with its timestamp and applied by the simulation tick in consumeInput(). That tick also
+        // runs on the UI thread for now, so the queue orders input rather than handing it across threads.
         private void handleGameTouch(MotionEvent event) {
             int action = event.getActionMasked();
             int pointerIndex = event.getActionIndex();
-            int pointerId = event.getPointerId(pointerIndex);
-
-            if (action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_POINTER_DOWN) {
-                float x = event.getX(pointerIndex);
-                float y = event.getY(pointerIndex);
-                if (pauseButton.contains(x,y)) {
-                    currentState = GameState.PAUSED;
-                    return;
-                }
-            }
+            long eventTime = event.getEventTime() * 1_000_000L; // Same monotonic clock as Choreographer
 
             switch (action) {
                 case MotionEvent.ACTION_DOWN:
                 case MotionEvent.ACTION_POINTER_DOWN: {
                     float x = event.getX(pointerIndex);
                     float y = event.getY(pointerIndex);
-
-                    if (shootButton.contains(x, y)) {
-                        playerShoot();
-                    } else if (x < getWidth() / 2f && joystickPointerId == -1) {
-                        joystickPointerId = pointerId;
-                        joystickBase.set(x, y);
-                        joystickKnob.set(x, y);
-                    } else if (x >= getWidth() / 2f && lookPointerId == -1) {
-                        lookPointerId = pointerId;
-                        lastLookX = x;
+                    if (pauseButton.contains(x,y)) {
+                        currentState = GameState.PAUSED;
+                        return;
                     }
+                    inputQueue.offer(InputQueue.DOWN, event.getPointerId(pointerIndex), x, y, eventTime);
                     break;
                 }
                 case MotionEvent.ACTION_MOVE: {
+                    int pointers = event.getPointerCount();
+                    for (int h = 0; h < event.getHistorySize(); h++) {
+                        long time = event.getHistoricalEventTime(h) * 1_000_000L;
+                        for (int i = 0; i < pointers; i++) {
+                            inputQueue.offer(InputQueue.MOVE, event.getPointerId(i), event.getHistoricalX(i, h), event.getHistoricalY(i, h), time);
+                        }
+                    }
+                    for (int i = 0; i < pointers; i++) {
+                        inputQueue.offer(InputQueue.MOVE, event.getPointerId(i), event.getX(i), event.getY(i), eventTime);
+                    }
+                    break;
+                }
+                case MotionEvent.ACTION_UP:
+                case MotionEvent.ACTION_POINTER_UP:
+                    inputQueue.offer(InputQueue.UP, event.getPointerId(pointerIndex), event.getX(pointerIndex), event.getY(pointerIndex), eventTime);
+                    break;
+                case MotionEvent.ACTION_CANCEL:
                     for (int i = 0; i < event.getPointerCount(); i++) {
-                        int id = event.getPointerId(i);
-                        float px = event.getX(i);
-                        float py = event.getY(i);
+                        inputQueue.offer(InputQueue.UP, event.getPointerId(i), event.getX(i), event.getY(i), eventTime);
+                    }
+                    break;
+            }
+        }
 
-                        if (id == joystickPointerId) {
-                            float dx = px - joystickBase.x;
-                            float dy = py - joystickBase.y;
+        // Simulation side of the input pipeline: applies the queued samples taken up to untilNanos.
+        // Joystick and look state therefore only change between ticks, never halfway through a draw.
+        private void consumeInput(long untilNanos) {
+            InputQueue.Event e = inputEvent;
+            while (inputQueue.poll(untilNanos, e)) {
+                if (oldestUnrenderedInput == 0) oldestUnrenderedInput = e.timeNanos;
+                switch (e.type) {
+                    case InputQueue.DOWN:
+                        if (shootButton.contains(e.x, e.y)) {
+                            pendingShoot = true;
+                        } else if (e.x < getWidth() / 2f && joystickPointerId == -1) {
+                            joystickPointerId = e.pointerId;
+                            joystickBase.set(e.x, e.y);
+                            joystickKnob.set(e.x, e.y);
+                        } else if (e.x >= getWidth() / 2f && lookPointerId == -1) {
+                            lookPointerId = e.pointerId;
+                            lastLookX = e.x;
+                        }
+                        break;
+                    case InputQueue.MOVE:
+                        if (e.pointerId == joystickPointerId) {
+                            float dx = e.x - joystickBase.x;
+                            float dy = e.y - joystickBase.y;
                             double dist = Math.hypot(dx, dy);
                             if (dist > joystickRadius) {
                                 joystickKnob.set(joystickBase.x + dx / (float)dist * joystickRadius, joystickBase.y + dy / (float)dist * joystickRadius);
                             } else {
-                                joystickKnob.set(px, py);
+                                joystickKnob.set(e.x, e.y);
                             }
-                        } else if (id == lookPointerId) {
-                            float dx = px - lastLookX;
-                            playerAngle += dx * lookSensitivity;
-                            lastLookX = px;
+                        } else if (e.pointerId == lookPointerId) {
+                            pendingLookDelta += (e.x - lastLookX) * lookSensitivity;
+                            lastLookX = e.x;
                         }
-                    }
-                    break;
-                }
-                case MotionEvent.ACTION_UP:
-                case MotionEvent.ACTION_POINTER_UP: {
-                    if (pointerId == joystickPointerId) {
-                        joystickPointerId = -1;
-                        joystickBase.set(joystickDefaultPos);
-                        joystickKnob.set(joystickDefaultPos);
-                    } else if (pointerId == lookPointerId) {
-                        lookPointerId = -1;
-                    }
-                    break;
+                        break;
+                    case InputQueue.UP:
+                        if (e.pointerId == joystickPointerId) {
+                            joystickPointerId = -1;
+                            joystickBase.set(joystickDefaultPos);
+                            joystickKnob.set(joystickDefaultPos);
+                        } else if (e.pointerId == lookPointerId) {
+                            lookPointerId = -1;
+                        }
+                        break;
                 }
             }
 
@@ -828,24 +1448,227 @@ public class MainActivity extends AppCompatActivity {
             editor.apply();
         }
 
-        private void loadBestScore() {
+        // Runs on the PrefsLoader thread; the first SharedPreferences read hits the disk.
+        private int loadBestScore() {
             SharedPreferences prefs = getContext().getSharedPreferences("GamePrefs", Context.MODE_PRIVATE);
-            bestScore = prefs.getInt("bestScore", 0);
+            return prefs.getInt("bestScore", 0);
+        }
+
+        // Writes the current run's input recording off the UI thread so it can be replayed later
+        // with ReplayRunner.
+        private void saveRecording() {
+            if (recording == null) return;
+            final InputRecording finished = recording;
+            recording = null;
+            finished.finish(world);
+            final File dir = new File(getContext().getFilesDir(), "replays");
+            new Thread(() -> {
+                if (!dir.exists() && !dir.mkdirs()) return;
+                try (OutputStream out = new FileOutputStream(new File(dir, "last_run.dcrec"))) {
+                    finished.writeTo(out);
+                } catch (IOException e) {
+                    // A lost recording must never take the game down with it
+                }
+            }, "ReplayWriter").start();
+        }
+
+        // Stops tracing and dumps the ring buffer as a Chrome/Perfetto JSON trace under files/traces.
+        private void saveTrace() {
+            Tracer.stop();
+            final File dir = new File(getContext().getFilesDir(), "traces");
+            final File file = new File(dir, "trace-" + System.currentTimeMillis() + ".json");
+            new Thread(() -> {
+                if (!dir.exists() && !dir.mkdirs()) return;
+                try (OutputStream out = new FileOutputStream(file)) {
+                    Tracer.writeJson(out);
+                } catch (IOException e) {
+                    // Tracing is a debugging aid; never fail the game over it
+                }
+            }, "TraceWriter").start();
         }
 
         public void resume() {
-            if (currentState != GameState.PAUSED) {
-                isPlaying = true;
-                handler.post(gameLoop);
-            }
+            isPlaying = true;
+            if (assetsReady) startAudio();
+            profiler.reset();
+            requestFrames();
+            invalidate();
         }
         public void pause() {
             isPlaying = false;
+            stopAudio();
+            saveSnapshot();
+        }
+
+        // Hands this tick's sounds to the mixer, positioned relative to the player. The portal hum
+        // is a keyed loop re-sent every tick, which moves it along with the level's exit.
+        private void queueSounds() {
+            mixer.setListener(world.playerX, world.playerY, world.playerAngle);
+            CommandBuffer events = world.events;
+            for (int i = 0; i < events.size(); i++) {
+                mixer.play(soundSamples[(int)events.arg(i, 0)], 0, events.arg(i, 1), events.arg(i, 2), 1f, false);
+            }
+            for (int i = 0; i < world.sprites.size(); i++) {
+                GameWorld.Sprite s = world.sprites.get(i);
+                if (s instanceof GameWorld.Portal) {
+                    mixer.play(portalHumSample, PORTAL_HUM_KEY, s.x, s.y, 0.5f, true);
+                    break;
+                }
+            }
+        }
+
+        // Half a second to fade; each hit adds to it in proportion to the damage.
+        private void updateDamageFlash() {
+            damageFlash = Math.max(0, damageFlash - 1f / 30);
+            CommandBuffer events = world.events;
+            for (int i = 0; i < events.size(); i++) {
+                if ((int)events.arg(i, 0) == GameWorld.EVENT_PLAYER_HIT) {
+                    damageFlash = Math.min(1, damageFlash + events.arg(i, 3) / 25f);
+                }
+            }
+        }
+
+        // Explosions where rockets hit, blood where enemies die; then one step of the whole pool.
+        private void updateParticles() {
+            if (world.mapVersion != particleMapVersion) {
+                particles.clear(); // New level or restored run
+                particleMapVersion = world.mapVersion;
+            }
+            CommandBuffer events = world.events;
+            for (int i = 0; i < events.size(); i++) {
+                int event = (int)events.arg(i, 0);
+                float x = events.arg(i, 1), y = events.arg(i, 2);
+                if (event == GameWorld.EVENT_ROCKET_IMPACT) {
+                    particles.burst(ParticleSystem.EXPLOSION, x, y, 0.5f, 14);
+                    particles.burst(ParticleSystem.SPARK, x, y, 0.5f, 10);
+                } else if (event == GameWorld.EVENT_ENEMY_DEATH) {
+                    particles.burst(ParticleSystem.BLOOD, x, y, 0.5f, 24);
+                }
+            }
+            particles.update(world.worldMap);
+        }
+
+        private void startAudio() {
+            if (audioThread != null) return;
+            int minBytes = AudioTrack.getMinBufferSize(AudioMixer.SAMPLE_RATE, AudioFormat.CHANNEL_OUT_STEREO, AudioFormat.ENCODING_PCM_16BIT);
+            final AudioTrack track = new AudioTrack.Builder()
+                    .setAudioAttributes(new AudioAttributes.Builder()
+                            .setUsage(AudioAttributes.USAGE_GAME)
+                            .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                            .build())
+                    .setAudioFormat(new AudioFormat.Builder()
+                            .setSampleRate(AudioMixer.SAMPLE_RATE)
+                            .setChannelMask(AudioFormat.CHANNEL_OUT_STEREO)
+                            .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                            .build())
+                    .setBufferSizeInBytes(Math.max(minBytes, MIX_FRAMES * 4 * 2))
+                    .setTransferMode(AudioTrack.MODE_STREAM)
+                    .setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
+                    .build();
+            final short[] buffer = new short[MIX_FRAMES * 2];
+            audioRunning = true;
+            audioThread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+                track.play();
+                while (audioRunning) {
+                    mixer.render(buffer, MIX_FRAMES);
+                    track.write(buffer, 0, buffer.length); // Blocks until there is room, pacing the loop
+                }
+                track.pause();
+                track.flush();
+                track.release();
+            }, "AudioMixer");
+            audioThread.start();
+        }
+
+        // Waits for the mixer thread to finish its current buffer, so the next one started never
+        // renders alongside it.
+        private void stopAudio() {
+            if (audioThread == null) return;
+            audioRunning = false;
+            try {
+                audioThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            audioThread = null;
         }
 
-        private void loadTextures() {
-            textures.clear();
+        // Runs on the TextureLoader thread. Mono PCM at AudioMixer.SAMPLE_RATE, indexed by the
+        // GameWorld.EVENT_* ids, with the looping portal hum last.
+        private short[][] createSounds() {
+            Random random = new Random(7);
+            int rate = AudioMixer.SAMPLE_RATE;
+            short[][] sounds = new short[GameWorld.EVENT_COUNT + 1][];
+
+            short[] shot = new short[rate / 5]; // Noise burst with a fast decay
+            for (int i = 0; i < shot.length; i++) {
+                double envelope = Math.exp(-i / (rate * 0.03));
+                shot[i] = (short)((random.nextFloat() * 2 - 1) * 20000 * envelope);
+            }
+            sounds[GameWorld.EVENT_SHOT] = shot;
+
+            short[] launch = new short[rate / 3]; // Rising whoosh
+            double phase = 0;
+            for (int i = 0; i < launch.length; i++) {
+                double t = i / (double)launch.length;
+                phase += 2 * Math.PI * (200 + 500 * t) / rate;
+                double noise = random.nextFloat() * 2 - 1;
+                launch[i] = (short)((Math.sin(phase) * 0.5 + noise * 0.5) * 9000 * (1 - t));
+            }
+            sounds[GameWorld.EVENT_ROCKET_LAUNCH] = launch;
+
+            short[] impact = new short[rate / 2]; // Low thump under a noise tail
+            for (int i = 0; i < impact.length; i++) {
+                double envelope = Math.exp(-i / (rate * 0.08));
+                double thump = Math.sin(2 * Math.PI * 60 * i / rate);
+                double noise = random.nextFloat() * 2 - 1;
+                impact[i] = (short)((thump * 0.6 + noise * 0.4) * 22000 * envelope);
+            }
+            sounds[GameWorld.EVENT_ROCKET_IMPACT] = impact;
+
+            short[] pickup = new short[rate / 4]; // Two rising tones
+            for (int i = 0; i < pickup.length; i++) {
+                double frequency = i < pickup.length / 2 ? 660 : 990;
+                double envelope = 1 - (i % (pickup.length / 2)) / (double)(pickup.length / 2);
+                pickup[i] = (short)(Math.sin(2 * Math.PI * frequency * i / rate) * 12000 * envelope);
+            }
+            sounds[GameWorld.EVENT_PICKUP] = pickup;
+
+            short[] death = new short[rate / 2]; // Falling square-ish growl
+            phase = 0;
+            for (int i = 0; i < death.length; i++) {
+                double t = i / (double)death.length;
+                phase += 2 * Math.PI * (180 - 120 * t) / rate;
+                death[i] = (short)(Math.signum(Math.sin(phase)) * 8000 * (1 - t));
+            }
+            sounds[GameWorld.EVENT_ENEMY_DEATH] = death;
+
+            short[] hurt = new short[rate / 4]; // Short falling grunt
+            phase = 0;
+            for (int i = 0; i < hurt.length; i++) {
+                double t = i / (double)hurt.length;
+                phase += 2 * Math.PI * (140 - 60 * t) / rate;
+                hurt[i] = (short)((Math.sin(phase) * 0.8 + (random.nextFloat() * 2 - 1) * 0.2) * 14000 * (1 - t));
+            }
+            sounds[GameWorld.EVENT_PLAYER_HIT] = hurt;
+
+            // Whole number of cycles of both tones, so the loop point doesn't click
+            short[] hum = new short[rate];
+            for (int i = 0; i < hum.length; i++) {
+                double t = i / (double)rate;
+                hum[i] = (short)((Math.sin(2 * Math.PI * 55 * t) * 0.7 + Math.sin(2 * Math.PI * 110 * t) * 0.3) * 7000);
+            }
+            sounds[GameWorld.EVENT_COUNT] = hum;
+            return sounds;
+        }
+
+        // Runs on the TextureLoader thread and only touches the list it returns.
+        private List<Texture> loadTextures() {
+            List<Texture> textures = new ArrayList<>();
+            Random random = new Random();
             textures.add(new Texture(64,64, Color.MAGENTA));
+            if (loadTextureAssets(textures)) return textures;
 
             Texture bricks = new Texture(64, 64, Color.rgb(150, 100, 100));
             for (int x = 0; x < 64; x++) {
@@ -872,232 +1695,143 @@ public class MainActivity extends AppCompatActivity {
                 }
             }
             textures.add(wood);
+            return textures;
         }
 
-        class Texture {
-            public final int[] pixels;
-            public final int width, height;
-            public final int fallbackColor;
-
-            public Texture(int width, int height, int fallbackColor) {
-                this.width = width; this.height = height;
-                pixels = new int[width * height];
-                this.fallbackColor = fallbackColor;
-            }
-            public void setPixel(int x, int y, int color) { pixels[y * width + x] = color; }
-            public int getPixel(int x, int y) { return pixels[(y & (height - 1)) * width + (x & (width - 1))]; }
-        }
-
-        //==========================================================================================
-        // --- NESTED CLASSES START ---
-        //==========================================================================================
-
-        abstract class Sprite {
-            public float x, y;
-            public double distToPlayer = 0;
-            public boolean isAlive = true;
-            public float scale = 1.0f;
-            public abstract void update();
-            public abstract void draw(Canvas canvas, RectF screenRect, double[] depthBuffer, double correctedDist);
-        }
-
-        class Enemy extends Sprite {
-            private int health = 100;
-            private long lastShotTime = 0;
-            private static final long SHOT_COOLDOWN_MS = 2000;
-            private static final float LINE_OF_SIGHT_RANGE = 10.0f;
-            private static final float LINE_OF_SIGHT_STEP = 0.2f;
-
-
-            public Enemy(float x, float y) {
-                this.x = x;
-                this.y = y;
+        // Wall textures from assets/textures, in file name order. Each image is decoded once into the
+        // Texture pixel layout and kept in the raw cache under cacheDir; later launches map that file
+        // instead of decoding, unless an asset's bytes changed. Returns false when there are no
+        // usable images, leaving the procedural textures in charge.
+        private boolean loadTextureAssets(List<Texture> textures) {
+            String[] names;
+            try {
+                names = getContext().getAssets().list(TEXTURE_ASSET_DIR);
+            } catch (IOException e) {
+                return false;
             }
-
-            @Override
-            public void update() {
-                if (distToPlayer < LINE_OF_SIGHT_RANGE && hasLineOfSight() && System.currentTimeMillis() - lastShotTime > SHOT_COOLDOWN_MS) {
-                    lastShotTime = System.currentTimeMillis();
-                    double angleToPlayer = Math.atan2(playerPos.y - y, playerPos.x - x);
-                    float startX = x + (float)Math.cos(angleToPlayer) * 0.5f;
-                    float startY = y + (float)Math.sin(angleToPlayer) * 0.5f;
-                    spritesToAdd.add(new Rocket(startX, startY, playerPos));
-                }
-            }
-
-            private boolean hasLineOfSight() {
-                double angleToPlayer = Math.atan2(playerPos.y - y, playerPos.x - x);
-                double rayDirX = Math.cos(angleToPlayer);
-                double rayDirY = Math.sin(angleToPlayer);
-
-                for (double d = 0; d < distToPlayer; d += LINE_OF_SIGHT_STEP) {
-                    float testX = (float)(x + rayDirX * d);
-                    float testY = (float)(y + rayDirY * d);
-
-                    // --- BUG FIX: Add bounds check to prevent ArrayOutOfBoundsException ---
-                    int mapX = (int)testX;
-                    int mapY = (int)testY;
-                    if (mapX < 0 || mapX >= MAP_SIZE || mapY < 0 || mapY >= MAP_SIZE) {
-                        return false; // Path is blocked by going out of map
-                    }
-
-                    if (worldMap[mapY][mapX] > 0) { // Use checked coordinates
-                        return false;
+            if (names == null || names.length == 0) return false;
+            Arrays.sort(names);
+
+            File cacheFile = new File(getContext().getCacheDir(), TEXTURE_CACHE_FILE);
+            TextureCache cache = TextureCache.read(cacheFile);
+            cache.retainOnly(Arrays.asList(names));
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            options.inScaled = false;
+            for (String name : names) {
+                byte[] data;
+                int length;
+                try (InputStream in = getContext().getAssets().open(TEXTURE_ASSET_DIR + "/" + name)) {
+                    data = new byte[Math.max(in.available(), 4096)];
+                    length = 0;
+                    for (int n; (n = in.read(data, length, data.length - length)) > 0; ) {
+                        length += n;
+                        if (length == data.length) data = Arrays.copyOf(data, data.length * 2);
                     }
+                } catch (IOException e) {
+                    continue;
                 }
-                return true;
-            }
-
-            @Override
-            public void draw(Canvas canvas, RectF screenRect, double[] depthBuffer, double correctedDist) {
-                for (int i = (int)screenRect.left; i < (int)screenRect.right; i++) {
-                    if (i >= 0 && i < depthBuffer.length && depthBuffer[i] > correctedDist) {
-                        paint.setColor(Color.rgb(200, 0, 0));
-                        canvas.drawRect(i, screenRect.top, i + 1, screenRect.bottom, paint);
-                    }
-                }
-
-                float healthWidth = screenRect.width() * (health / 100f);
-                reusableHealthBarRect.set(screenRect.left, screenRect.top - 20, screenRect.left + healthWidth, screenRect.top - 10);
-
-                for (int i = (int)reusableHealthBarRect.left; i < (int)reusableHealthBarRect.right; i++) {
-                    if (i >= 0 && i < depthBuffer.length && depthBuffer[i] > correctedDist) {
-                        paint.setColor(Color.GREEN);
-                        canvas.drawRect(i, reusableHealthBarRect.top, i+1, reusableHealthBarRect.bottom, paint);
+                long hash = TextureCache.hash(data, length);
+                TextureCache.Entry entry = cache.get(name, hash);
+                if (entry == null) {
+                    Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, length, options);
+                    if (bitmap == null) continue; // Not an image
+                    // Texture lookups wrap with a mask, so round each side down to a power of two
+                    int w = Integer.highestOneBit(bitmap.getWidth());
+                    int h = Integer.highestOneBit(bitmap.getHeight());
+                    if (w != bitmap.getWidth() || h != bitmap.getHeight()) {
+                        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, w, h, true);
+                        bitmap.recycle();
+                        bitmap = scaled;
                     }
+                    int[] pixels = new int[w * h];
+                    bitmap.getPixels(pixels, 0, w, 0, 0, w, h);
+                    bitmap.recycle();
+                    entry = cache.put(name, hash, w, h, pixels);
                 }
+                textures.add(new Texture(entry.width, entry.height, entry.pixels));
             }
-
-            public void takeDamage(int amount) {
-                health -= amount;
-                if (health <= 0) {
-                    isAlive = false;
-                    score += 50;
+            if (cache.dirty) {
+                try {
+                    cache.write(cacheFile);
+                } catch (IOException e) {
+                    // Next launch just decodes again
                 }
             }
+            return textures.size() > 1;
         }
 
-        class Rocket extends Sprite {
-            private float velX, velY;
-            private static final float ROCKET_SPEED = 0.08f;
-            private static final float ROCKET_SCALE = 0.3f;
-            private static final float ROCKET_COLLISION_RADIUS = 0.5f;
-            private static final int ROCKET_DAMAGE = 10;
-
-            public Rocket(float startX, float startY, PointF target) {
-                this.x = startX;
-                this.y = startY;
-                this.scale = ROCKET_SCALE;
-                double angle = Math.atan2(target.y - y, target.x - x);
-                this.velX = (float) (Math.cos(angle) * ROCKET_SPEED);
-                this.velY = (float) (Math.sin(angle) * ROCKET_SPEED);
-            }
-
-            @Override
-            public void update() {
-                x += velX;
-                y += velY;
-                if (Math.hypot(x - playerPos.x, y - playerPos.y) < ROCKET_COLLISION_RADIUS) {
-                    isAlive = false;
-                    GameView.this.takeDamage(ROCKET_DAMAGE);
-                }
-                int mapX = (int)this.x;
-                int mapY = (int)this.y;
-                if (mapX >= 0 && mapX < MAP_SIZE && mapY >= 0 && mapY < MAP_SIZE) {
-                    if (worldMap[mapY][mapX] > 0) {
-                        isAlive = false;
-                    }
-                } else {
-                    isAlive = false;
-                }
+        // --- Retained UI layer ---
+        // An offscreen bitmap plus the values it was drawn from. Callers set the current values
+        // with key() and only redraw when prepare() reports that one of them (or the size) changed.
+        class RetainedLayer {
+            public Bitmap bitmap;
+            public Canvas canvas;
+            public int rebuilds = 0;
+            public int reuses = 0;
+            private final int[] keys;
+            private final int[] drawnKeys;
+            private boolean valid = false;
+
+            public RetainedLayer(int keyCount) {
+                keys = new int[keyCount];
+                drawnKeys = new int[keyCount];
             }
 
-            @Override
-            public void draw(Canvas canvas, RectF screenRect, double[] depthBuffer, double correctedDist) {
-                paint.setColor(Color.YELLOW);
-                for (int i = (int)screenRect.left; i < (int)screenRect.right; i++) {
-                    if (i >= 0 && i < depthBuffer.length && depthBuffer[i] > correctedDist) {
-                        canvas.drawRect(i, screenRect.top, i + 1, screenRect.bottom, paint);
-                    }
-                }
-            }
-        }
+            public void key(int slot, int value) { keys[slot] = value; }
 
-        class Portal extends Sprite {
-            private static final float PORTAL_ACTIVATION_DISTANCE = 0.8f;
+            // Forces a redraw on the next prepare(), for when the keys' source itself is swapped.
+            public void discard() { valid = false; }
 
-            public Portal(float x, float y) { this.x = x; this.y = y; }
-            @Override
-            public void update() {
-                if(distToPlayer < PORTAL_ACTIVATION_DISTANCE) {
-                    level++;
-                    score += 100;
-                    generateLevel();
+            // Returns true with a cleared canvas when the layer has to be redrawn.
+            public boolean prepare(int w, int h) {
+                if (bitmap == null || bitmap.getWidth() != w || bitmap.getHeight() != h) {
+                    if (bitmap != null) bitmap.recycle();
+                    bitmap = Bitmap.createBitmap(Math.max(1, w), Math.max(1, h), Bitmap.Config.ARGB_8888);
+                    canvas = new Canvas(bitmap);
+                    valid = false;
                 }
-            }
-            @Override
-            public void draw(Canvas canvas, RectF screenRect, double[] depthBuffer, double correctedDist) {
-                for (int i = (int)screenRect.left; i < (int)screenRect.right; i++) {
-                    if (i >= 0 && i < depthBuffer.length && depthBuffer[i] > correctedDist) {
-                        int c = (int)(Math.sin(System.currentTimeMillis() / 200.0) * 127 + 128);
-                        paint.setColor(Color.rgb(c, 0, c));
-                        canvas.drawRect(i, screenRect.top, i + 1, screenRect.bottom, paint);
-                    }
+                boolean dirty = !valid || !Arrays.equals(keys, drawnKeys);
+                if (dirty) System.arraycopy(keys, 0, drawnKeys, 0, keys.length);
+                // Slots a screen does not set this frame must read as 0 next frame
+                Arrays.fill(keys, 0);
+                if (!dirty) {
+                    reuses++;
+                    return false;
                 }
+
+                valid = true;
+                rebuilds++;
+                bitmap.eraseColor(Color.TRANSPARENT);
+                return true;
             }
         }
 
-        // --- FEATURE: Medkit --- New sprite class for health packs ---
-        class Medkit extends Sprite {
-            private static final float ACTIVATION_DISTANCE = 0.6f;
-            private static final int HEAL_AMOUNT = 25;
-
-            public Medkit(float x, float y) {
-                this.x = x;
-                this.y = y;
-                this.scale = 0.4f; // Make medkits a bit smaller than a full wall tile
-            }
+        class Texture {
+            public final int[] pixels;
+            public final int width, height;
+            public final int fallbackColor;
 
-            @Override
-            public void update() {
-                if (distToPlayer < ACTIVATION_DISTANCE) {
-                    GameView.this.playerHeal(HEAL_AMOUNT);
-                    isAlive = false; // Medkit is used up
-                }
+            public Texture(int width, int height, int fallbackColor) {
+                this.width = width; this.height = height;
+                pixels = new int[width * height];
+                this.fallbackColor = fallbackColor;
             }
-
-            @Override
-            public void draw(Canvas canvas, RectF screenRect, double[] depthBuffer, double correctedDist) {
-                // Draw Green Background
-                paint.setColor(Color.rgb(0, 150, 0));
-                for (int i = (int) screenRect.left; i < (int) screenRect.right; i++) {
-                    if (i >= 0 && i < depthBuffer.length && depthBuffer[i] > correctedDist) {
-                        canvas.drawRect(i, screenRect.top, i + 1, screenRect.bottom, paint);
-                    }
-                }
-
-                // Draw White Cross on top
-                paint.setColor(Color.WHITE);
-                float crossThickness = Math.max(2f, screenRect.width() / 4f);
-
-                // Horizontal bar
-                float horizTop = screenRect.centerY() - crossThickness / 2;
-                float horizBottom = screenRect.centerY() + crossThickness / 2;
-                for (int i = (int) screenRect.left; i < (int) screenRect.right; i++) {
-                    if (i >= 0 && i < depthBuffer.length && depthBuffer[i] > correctedDist) {
-                        canvas.drawRect(i, horizTop, i + 1, horizBottom, paint);
-                    }
-                }
-
-                // Vertical bar
-                float vertLeft = screenRect.centerX() - crossThickness / 2;
-                float vertRight = screenRect.centerX() + crossThickness / 2;
-                for (int i = (int) vertLeft; i < (int) vertRight; i++) {
-                    if (i >= 0 && i < depthBuffer.length && depthBuffer[i] > correctedDist) {
-                        canvas.drawRect(i, screenRect.top, i + 1, screenRect.bottom, paint);
-                    }
+            // Wraps decoded pixels; the low-quality colour is the average of a sparse sample
+            public Texture(int width, int height, int[] pixels) {
+                this.width = width; this.height = height;
+                this.pixels = pixels;
+                long r = 0, g = 0, b = 0;
+                int step = Math.max(1, pixels.length / 1024), n = 0;
+                for (int i = 0; i < pixels.length; i += step, n++) {
+                    r += (pixels[i] >> 16) & 0xFF;
+                    g += (pixels[i] >> 8) & 0xFF;
+                    b += pixels[i] & 0xFF;
                 }
+                this.fallbackColor = Color.rgb((int)(r / n), (int)(g / n), (int)(b / n));
             }
+            public void setPixel(int x, int y, int color) { pixels[y * width + x] = color; }
+            public int getPixel(int x, int y) { return pixels[(y & (height - 1)) * width + (x & (width - 1))]; }
         }
 
     } // --- GAMEVIEW CLASS END ---
@@ -0,0 +1,91 @@
+package com.example.raycastergame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+// --- Net Link Class ---
+// One non-blocking UDP socket for the co-op host or client, read and written from the game
+// thread between ticks: receive() returns null at once when nothing is waiting, and a send the
+// socket can't take right now is dropped like any other lost packet. lossPercent throws away
+// that share of outgoing packets before they reach the socket, from a seeded generator, so tests
+// can run the whole protocol over localhost with a reproducible amount of loss.
+public final class NetLink implements Closeable {
+
+    public static final int PACKET_SNAPSHOT = 1; // Host to client
+    public static final int PACKET_INPUT = 2;    // Client to host
+    public static final int PACKET_LEAVE = 3;    // Client to host, as it closes
+    public static final int PACKET_TYPE_BITS = 8;
+    public static final int MAX_PACKET = 65507;  // Largest UDP payload over IPv4
+
+    private final DatagramChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_PACKET);
+    private final GameRandom random;
+    public int lossPercent = 0;
+
+    public long packetsSent, packetsDropped, bytesSent;
+    public long packetsReceived, bytesReceived;
+
+    public NetLink(InetSocketAddress bindTo, long lossSeed) throws IOException {
+        channel = DatagramChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.bind(bindTo);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        random = new GameRandom(lossSeed);
+    }
+
+    // Lets send() go to a broadcast address, which a client does while it looks for a host.
+    public void setBroadcast(boolean on) throws IOException {
+        channel.setOption(StandardSocketOptions.SO_BROADCAST, on);
+    }
+
+    public boolean isOpen() { return channel.isOpen(); }
+
+    public InetSocketAddress localAddress() throws IOException {
+        return (InetSocketAddress) channel.getLocalAddress();
+    }
+
+    // Sends what has been written to packet. Counted as sent even when it is then lost.
+    public void send(BitBuffer packet, SocketAddress to) throws IOException {
+        int length = packet.bytes();
+        packetsSent++;
+        bytesSent += length;
+        if (lossPercent > 0 && random.nextInt(100) < lossPercent) {
+            packetsDropped++;
+            return;
+        }
+        buffer.clear();
+        buffer.put(packet.data, 0, length);
+        buffer.flip();
+        if (channel.send(buffer, to) == 0) packetsDropped++;
+    }
+
+    // Reads the next waiting packet into packet, ready to read, and returns its sender; null when
+    // nothing is waiting.
+    public SocketAddress receive(BitBuffer packet) throws IOException {
+        buffer.clear();
+        SocketAddress from = channel.receive(buffer);
+        if (from == null) return null;
+        buffer.flip();
+        int length = buffer.remaining();
+        if (packet.data.length < length) packet.data = new byte[length];
+        buffer.get(packet.data, 0, length);
+        packet.flip(length);
+        packetsReceived++;
+        bytesReceived += length;
+        return from;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.raycastergame;
+
+import java.nio.BufferUnderflowException;
+import java.util.Arrays;
+
+// --- Net State Class ---
+// What a co-op client needs to see of one host tick, quantized: the map, both players and their
+// health, the HUD counters and every sprite (by the id it was created with, sorted, with its type, position and
+// for enemies their health). Positions are in 1/256 of a cell (14 bits across the 64-cell map),
+// the host player's facing in 1/4096 of a turn. The guest's own position and facing go at full
+// precision, so the client can replay its unacknowledged inputs from exactly the host's result.
+//
+// encode() writes the state as changes from a baseline the client is known to hold (or from
+// nothing, for a full state): a changed bit per field, small position moves as 8-bit deltas,
+// one presence bit per baseline sprite and the new sprites in full. The map goes only when its
+// version differs from the baseline's, so in steady play a tick costs little more than what moved.
+public final class NetState {
+
+    public static final int ENEMY = 0;
+    public static final int ROCKET = 1;
+    public static final int PORTAL = 2;
+    public static final int MEDKIT = 3;
+    private static final int TYPE_BITS = 2;
+
+    public static final float POSITION_SCALE = 256f;
+    private static final int POSITION_BITS = 14;
+    private static final int MAX_POSITION = (1 << POSITION_BITS) - 1;
+    private static final int DELTA_BITS = 8;
+    private static final int ANGLE_BITS = 12;
+    private static final int HEALTH_BITS = 7;
+
+    // Guest input as sent by the client: moves in 1/127 steps, look in 1/4096 radian
+    public static final int MOVE_BITS = 8;
+    public static final int LOOK_BITS = 16;
+    private static final float LOOK_SCALE = 4096f;
+
+    private static final NetState BLANK = new NetState(); // Baseline of a full state
+
+    public int tick;
+    public int lastGuestInput;
+    public int level, score, health, guestHealth;
+    public boolean gameOver;
+    public int mapVersion;
+    public final int[] cells = new int[GameWorld.MAP_SIZE * GameWorld.MAP_SIZE];
+    public int hostX, hostY, hostAngle;
+    public float guestX, guestY;
+    public double guestAngle;
+
+    public int spriteCount;
+    public int[] ids = new int[64], types = new int[64], xs = new int[64], ys = new int[64], healths = new int[64];
+
+    public static int quantize(float position) {
+        return Math.max(0, Math.min(MAX_POSITION, Math.round(position * POSITION_SCALE)));
+    }
+
+    public static float position(int quantized) { return quantized / POSITION_SCALE; }
+
+    public static int quantizeAngle(double angle) {
+        double turns = angle / (2 * Math.PI);
+        return (int)Math.round((turns - Math.floor(turns)) * (1 << ANGLE_BITS)) & ((1 << ANGLE_BITS) - 1);
+    }
+
+    public static double angle(int quantized) { return quantized * (2 * Math.PI) / (1 << ANGLE_BITS); }
+
+    public static int quantizeMove(float move) { return Math.max(-127, Math.min(127, Math.round(move * 127))); }
+
+    public static float move(int quantized) { return quantized / 127f; }
+
+    public static int quantizeLook(float look) {
+        int max = (1 << (LOOK_BITS - 1)) - 1;
+        return Math.max(-max, Math.min(max, Math.round(look * LOOK_SCALE)));
+    }
+
+    public static float look(int quantized) { return quantized / LOOK_SCALE; }
+
+    public void capture(GameWorld world, int tick) {
+        this.tick = tick;
+        lastGuestInput = world.guest.lastInput;
+        level = world.level;
+        score = world.score;
+        health = world.playerHealth;
+        guestHealth = world.guest.health;
+        gameOver = world.gameOver;
+        if (mapVersion != world.mapVersion) {
+            int n = GameWorld.MAP_SIZE;
+            for (int y = 0; y < n; y++) System.arraycopy(world.worldMap[y], 0, cells, y * n, n);
+            mapVersion = world.mapVersion;
+        }
+        hostX = quantize(world.playerX);
+        hostY = quantize(world.playerY);
+        hostAngle = quantizeAngle(world.playerAngle);
+        guestX = world.guest.x;
+        guestY = world.guest.y;
+        guestAngle = world.guest.angle;
+
+        int count = world.sprites.size();
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            GameWorld.Sprite s = world.sprites.get(i);
+            ids[i] = s.id;
+            xs[i] = quantize(s.x);
+            ys[i] = quantize(s.y);
+            healths[i] = 0;
+            if (s instanceof GameWorld.Enemy) {
+                types[i] = ENEMY;
+                healths[i] = Math.max(0, Math.min((1 << HEALTH_BITS) - 1, ((GameWorld.Enemy) s).health));
+            } else if (s instanceof GameWorld.Rocket) {
+                types[i] = ROCKET;
+            } else if (s instanceof GameWorld.Portal) {
+                types[i] = PORTAL;
+            } else {
+                types[i] = MEDKIT;
+            }
+        }
+        spriteCount = count;
+        sortById(0);
+    }
+
+    // Writes this state as changes from base, which the reader must hold; null for a full state.
+    public void encode(NetState base, BitBuffer out) {
+        if (base == null) base = BLANK;
+        out.writeVar(lastGuestInput - base.lastGuestInput);
+        writeInt(out, level, base.level);
+        writeInt(out, score, base.score);
+        writeInt(out, health, base.health);
+        writeInt(out, guestHealth, base.guestHealth);
+        out.writeBoolean(gameOver);
+
+        boolean newMap = mapVersion != base.mapVersion;
+        out.writeBoolean(newMap);
+        if (newMap) {
+            int max = 0;
+            for (int cell : cells) max = Math.max(max, cell);
+            int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, max));
+            out.writeVar(mapVersion);
+            out.write(bits, 5);
+            for (int cell : cells) out.write(cell, bits);
+        }
+
+        writePosition(out, hostX, base.hostX);
+        writePosition(out, hostY, base.hostY);
+        out.writeBoolean(hostAngle != base.hostAngle);
+        if (hostAngle != base.hostAngle) out.write(hostAngle, ANGLE_BITS);
+        boolean guestMoved = guestX != base.guestX || guestY != base.guestY;
+        out.writeBoolean(guestMoved);
+        if (guestMoved) {
+            out.write(Float.floatToIntBits(guestX), 32);
+            out.write(Float.floatToIntBits(guestY), 32);
+        }
+        out.writeBoolean(guestAngle != base.guestAngle);
+        if (guestAngle != base.guestAngle) out.write(Double.doubleToLongBits(guestAngle), 64);
+
+        // Baseline sprites in id order: still there, and what changed
+        int j = 0;
+        for (int i = 0; i < base.spriteCount; i++) {
+            int id = base.ids[i];
+            while (j < spriteCount && ids[j] < id) j++;
+            boolean present = j < spriteCount && ids[j] == id;
+            out.writeBoolean(present);
+            if (!present) continue;
+            writePosition(out, xs[j], base.xs[i]);
+            writePosition(out, ys[j], base.ys[i]);
+            if (types[j] == ENEMY) {
+                out.writeBoolean(healths[j] != base.healths[i]);
+                if (healths[j] != base.healths[i]) out.write(healths[j], HEALTH_BITS);
+            }
+            j++;
+        }
+
+        // Then the sprites the baseline doesn't have, in full
+        int added = 0;
+        for (int k = 0, i = 0; k < spriteCount; k++) {
+            while (i < base.spriteCount && base.ids[i] < ids[k]) i++;
+            if (i >= base.spriteCount || base.ids[i] != ids[k]) added++;
+        }
+        out.writeVar(added);
+        int previousId = 0;
+        for (int k = 0, i = 0; k < spriteCount; k++) {
+            while (i < base.spriteCount && base.ids[i] < ids[k]) i++;
+            if (i < base.spriteCount && base.ids[i] == ids[k]) continue;
+            out.writeVar(ids[k] - previousId);
+            previousId = ids[k];
+            out.write(types[k], TYPE_BITS);
+            out.write(xs[k], POSITION_BITS);
+            out.write(ys[k], POSITION_BITS);
+            if (types[k] == ENEMY) out.write(healths[k], HEALTH_BITS);
+        }
+    }
+
+    // Reads a state written by encode() against the same base into this one, which must not be base.
+    public void decode(int tick, NetState base, BitBuffer in) {
+        if (base == null) base = BLANK;
+        this.tick = tick;
+        lastGuestInput = base.lastGuestInput + in.readVar();
+        level = readInt(in, base.level);
+        score = readInt(in, base.score);
+        health = readInt(in, base.health);
+        guestHealth = readInt(in, base.guestHealth);
+        gameOver = in.readBoolean();
+
+        if (in.readBoolean()) {
+            int version = in.readVar();
+            int bits = in.readInt(5);
+            for (int i = 0; i < cells.length; i++) cells[i] = in.readInt(bits);
+            mapVersion = version;
+        } else if (mapVersion != base.mapVersion) {
+            System.arraycopy(base.cells, 0, cells, 0, cells.length);
+            mapVersion = base.mapVersion;
+        }
+
+        hostX = readPosition(in, base.hostX);
+        hostY = readPosition(in, base.hostY);
+        hostAngle = in.readBoolean() ? in.readInt(ANGLE_BITS) : base.hostAngle;
+        if (in.readBoolean()) {
+            guestX = Float.intBitsToFloat(in.readInt(32));
+            guestY = Float.intBitsToFloat(in.readInt(32));
+        } else {
+            guestX = base.guestX;
+            guestY = base.guestY;
+        }
+        guestAngle = in.readBoolean() ? Double.longBitsToDouble(in.read(64)) : base.guestAngle;
+
+        ensureCapacity(base.spriteCount);
+        int count = 0;
+        for (int i = 0; i < base.spriteCount; i++) {
+            if (!in.readBoolean()) continue;
+            ids[count] = base.ids[i];
+            types[count] = base.types[i];
+            xs[count] = readPosition(in, base.xs[i]);
+            ys[count] = readPosition(in, base.ys[i]);
+            healths[count] = base.healths[i];
+            if (types[count] == ENEMY && in.readBoolean()) healths[count] = in.readInt(HEALTH_BITS);
+            count++;
+        }
+        int survivors = count;
+        int added = in.readVar();
+        if (added > in.remainingBits() / (TYPE_BITS + 2 * POSITION_BITS)) throw new BufferUnderflowException();
+        ensureCapacity(count + added);
+        int id = 0;
+        for (int k = 0; k < added; k++) {
+            id += in.readVar();
+            ids[count] = id;
+            types[count] = in.readInt(TYPE_BITS);
+            xs[count] = in.readInt(POSITION_BITS);
+            ys[count] = in.readInt(POSITION_BITS);
+            healths[count] = types[count] == ENEMY ? in.readInt(HEALTH_BITS) : 0;
+            count++;
+        }
+        spriteCount = count;
+        sortById(survivors); // New sprites usually have the highest ids already
+    }
+
+    // Index of the sprite with this id, or -1.
+    public int indexOf(int id) {
+        int lo = 0, hi = spriteCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ids[mid] < id) lo = mid + 1;
+            else if (ids[mid] > id) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private void ensureCapacity(int count) {
+        if (ids.length >= count) return;
+        int size = Math.max(count, ids.length * 2);
+        ids = Arrays.copyOf(ids, size);
+        types = Arrays.copyOf(types, size);
+        xs = Arrays.copyOf(xs, size);
+        ys = Arrays.copyOf(ys, size);
+        healths = Arrays.copyOf(healths, size);
+    }
+
+    // Insertion sort by id of everything from index from on into the sorted run before it.
+    private void sortById(int from) {
+        for (int i = Math.max(1, from); i < spriteCount; i++) {
+            int id = ids[i], type = types[i], x = xs[i], y = ys[i], h = healths[i];
+            int j = i - 1;
+            while (j >= 0 && ids[j] > id) {
+                ids[j + 1] = ids[j];
+                types[j + 1] = types[j];
+                xs[j + 1] = xs[j];
+                ys[j + 1] = ys[j];
+                healths[j + 1] = healths[j];
+                j--;
+            }
+            ids[j + 1] = id;
+            types[j + 1] = type;
+            xs[j + 1] = x;
+            ys[j + 1] = y;
+            healths[j + 1] = h;
+        }
+    }
+
+    private static void writeInt(BitBuffer out, int value, int base) {
+        out.writeBoolean(value != base);
+        if (value != base) out.writeVar(value);
+    }
+
+    private static int readInt(BitBuffer in, int base) {
+        return in.readBoolean() ? in.readVar() : base;
+    }
+
+    // Unchanged: 1 bit. A move under half a cell: 10 bits. Anything else: 16 bits.
+    private static void writePosition(BitBuffer out, int value, int base) {
+        out.writeBoolean(value != base);
+        if (value == base) return;
+        int delta = value - base;
+        boolean small = delta >= -(1 << (DELTA_BITS - 1)) && delta < (1 << (DELTA_BITS - 1));
+        out.writeBoolean(small);
+        if (small) out.writeSigned(delta, DELTA_BITS);
+        else out.write(value, POSITION_BITS);
+    }
+
+    private static int readPosition(BitBuffer in, int base) {
+        if (!in.readBoolean()) return base;
+        return in.readBoolean() ? base + in.readSigned(DELTA_BITS) : in.readInt(POSITION_BITS);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.raycastergame;
+
+import java.util.Random;
+
+// --- Particle System Class ---
+// Explosion, spark and blood particles in a fixed-capacity pool of parallel primitive arrays.
+// They are purely cosmetic: spawned by GameView from the world's events, stepped once per tick in
+// one loop over the pool, and drawn as depth-tested billboards after the sprites, outside the
+// sprite sort. Slots are handed out in ring order, so when the pool is full the particle a new
+// one replaces is always the oldest. At most budgetPerFrame particles are spawned between two
+// beginFrame() calls; the rest are dropped and counted.
+public final class ParticleSystem {
+
+    public static final int EXPLOSION = 0;
+    public static final int SPARK = 1;
+    public static final int BLOOD = 2;
+
+    private static final float GRAVITY = 0.004f; // Height units per tick squared
+    private static final float BOUNCE = 0.3f;    // Vertical speed kept when hitting the floor
+    private static final float FLOOR_DRAG = 0.6f;
+
+    public final int capacity;
+    public int budgetPerFrame;
+
+    // --- Pool, one slot per particle; life == 0 marks a free slot ---
+    public final float[] x, y, z;           // z is height above the floor, 0.5 at eye level
+    public final float[] velX, velY, velZ;  // Per tick
+    public final float[] size;              // World units
+    public final int[] color;               // RGB; the renderer fades it with age / life
+    public final int[] age, life;           // Ticks
+    private int cursor = 0;                 // Next slot to hand out, which is also the oldest
+    private final Random random = new Random(11);
+
+    // --- Counters ---
+    public int live = 0;
+    public int spawnedThisFrame = 0, droppedThisFrame = 0;
+    public int spawnedLastFrame = 0, droppedLastFrame = 0;
+    public long recycled = 0; // Live particles replaced by newer ones because the pool was full
+
+    public ParticleSystem(int capacity, int budgetPerFrame) {
+        this.capacity = capacity;
+        this.budgetPerFrame = budgetPerFrame;
+        x = new float[capacity];
+        y = new float[capacity];
+        z = new float[capacity];
+        velX = new float[capacity];
+        velY = new float[capacity];
+        velZ = new float[capacity];
+        size = new float[capacity];
+        color = new int[capacity];
+        age = new int[capacity];
+        life = new int[capacity];
+    }
+
+    // Starts a new spawn budget and publishes the last frame's counts.
+    public void beginFrame() {
+        spawnedLastFrame = spawnedThisFrame;
+        droppedLastFrame = droppedThisFrame;
+        spawnedThisFrame = 0;
+        droppedThisFrame = 0;
+    }
+
+    // A burst of count particles of one kind at a world position.
+    public void burst(int kind, float originX, float originY, float originZ, int count) {
+        for (int i = 0; i < count; i++) {
+            float angle = random.nextFloat() * (float)(Math.PI * 2);
+            switch (kind) {
+                case EXPLOSION: {
+                    float speed = 0.01f + random.nextFloat() * 0.02f;
+                    int c = random.nextInt(3);
+                    spawn(originX, originY, originZ, (float)Math.cos(angle) * speed, (float)Math.sin(angle) * speed,
+                            random.nextFloat() * 0.02f, 0.12f + random.nextFloat() * 0.1f,
+                            c == 0 ? 0xFFE080 : c == 1 ? 0xFF9020 : 0xC03010, 20 + random.nextInt(15));
+                    break;
+                }
+                case SPARK: {
+                    float speed = 0.04f + random.nextFloat() * 0.05f;
+                    spawn(originX, originY, originZ, (float)Math.cos(angle) * speed, (float)Math.sin(angle) * speed,
+                            0.02f + random.nextFloat() * 0.04f, 0.03f, 0xFFF0A0, 15 + random.nextInt(20));
+                    break;
+                }
+                case BLOOD: {
+                    float speed = 0.01f + random.nextFloat() * 0.03f;
+                    spawn(originX, originY, originZ, (float)Math.cos(angle) * speed, (float)Math.sin(angle) * speed,
+                            0.01f + random.nextFloat() * 0.03f, 0.05f + random.nextFloat() * 0.04f,
+                            0x900000 + random.nextInt(0x40) * 0x10000, 40 + random.nextInt(30));
+                    break;
+                }
+            }
+        }
+    }
+
+    // Claims the oldest slot, or drops the particle when this frame's budget is spent.
+    public boolean spawn(float px, float py, float pz, float vx, float vy, float vz, float particleSize, int rgb, int lifeTicks) {
+        if (spawnedThisFrame >= budgetPerFrame || lifeTicks <= 0) {
+            droppedThisFrame++;
+            return false;
+        }
+        int i = cursor;
+        cursor = cursor + 1 == capacity ? 0 : cursor + 1;
+        if (life[i] > 0) recycled++;
+        else live++;
+        x[i] = px;
+        y[i] = py;
+        z[i] = pz;
+        velX[i] = vx;
+        velY[i] = vy;
+        velZ[i] = vz;
+        size[i] = particleSize;
+        color[i] = rgb;
+        age[i] = 0;
+        life[i] = lifeTicks;
+        spawnedThisFrame++;
+        return true;
+    }
+
+    // One fixed tick: ages, moves and collides every live particle. Particles stop at walls and
+    // bounce on the floor.
+    public void update(int[][] map) {
+        if (live == 0) return;
+        int mapSize = map.length;
+        int alive = 0;
+        for (int i = 0; i < capacity; i++) {
+            if (life[i] == 0) continue;
+            if (++age[i] >= life[i]) {
+                life[i] = 0;
+                continue;
+            }
+            alive++;
+            float nx = x[i] + velX[i];
+            float ny = y[i] + velY[i];
+            int cellX = (int)nx, cellY = (int)ny;
+            if (cellX < 0 || cellY < 0 || cellX >= mapSize || cellY >= mapSize || map[cellY][cellX] != 0) {
+                velX[i] = 0;
+                velY[i] = 0;
+            } else {
+                x[i] = nx;
+                y[i] = ny;
+            }
+            float vz = velZ[i] - GRAVITY;
+            float nz = z[i] + vz;
+            if (nz < 0) {
+                nz = 0;
+                vz = -vz * BOUNCE;
+                velX[i] *= FLOOR_DRAG;
+                velY[i] *= FLOOR_DRAG;
+            }
+            z[i] = nz;
+            velZ[i] = vz;
+        }
+        live = alive;
+    }
+
+    public void clear() {
+        for (int i = 0; i < capacity; i++) life[i] = 0;
+        live = 0;
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.raycastergame;
+
+// --- Post Processor Class ---
+// Runs full-screen effects over the finished 3D frame (walls, sprites and particles; the HUD is
+// drawn afterwards) as an int[] of ARGB pixels. The frame is cut into horizontal bands, one per
+// thread of a WorkerPool, and each band runs every enabled pass in order while its rows are still
+// in cache, so there is one hand-off per frame rather than one per pass. Passes that map one
+// colour to another do it through tables built up front. With no pass enabled process() returns
+// false straight away and the caller draws the scene directly, skipping the pixel copies.
+//
+// Per-pass cost is measured per band; passMs holds the smoothed slowest band, which is what the
+// pass adds to the frame.
+public final class PostProcessor {
+
+    public interface Pass {
+        // Processes rows [fromRow, toRow) in place. Bands run concurrently, so a pass may only
+        // touch its own rows and must not write shared state.
+        void run(int[] pixels, int width, int height, int fromRow, int toRow);
+    }
+
+    public static final int MAX_PASSES = 8;
+    private static final int MAX_BANDS = 8;
+
+    private final Pass[] passes = new Pass[MAX_PASSES];
+    public final String[] passNames = new String[MAX_PASSES];
+    private final boolean[] enabled = new boolean[MAX_PASSES];
+    private int passCount = 0;
+
+    private WorkerPool pool;
+    private int bands = 1;
+    private final long[][] bandNanos = new long[MAX_BANDS][MAX_PASSES];
+    public final float[] passMs = new float[MAX_PASSES]; // Smoothed cost of each pass
+
+    // The frame being processed, read by the band job
+    private int[] framePixels;
+    private int frameWidth, frameHeight;
+    private final WorkerPool.Job bandJob = this::runBand;
+
+    public int addPass(String name, Pass pass) {
+        if (passCount == MAX_PASSES) throw new IllegalStateException("too many passes");
+        passes[passCount] = pass;
+        passNames[passCount] = name;
+        return passCount++;
+    }
+
+    public int passCount() {
+        return passCount;
+    }
+
+    public void setEnabled(int pass, boolean on) {
+        enabled[pass] = on;
+    }
+
+    public boolean isEnabled(int pass) {
+        return enabled[pass];
+    }
+
+    public int activePasses() {
+        int n = 0;
+        for (int p = 0; p < passCount; p++) if (enabled[p]) n++;
+        return n;
+    }
+
+    // Splits the frame over this many threads (the caller counts as one). 1 is serial.
+    public void setParallelism(int threads) {
+        if (pool != null) pool.shutdown();
+        bands = Math.max(1, Math.min(MAX_BANDS, threads));
+        pool = bands > 1 ? new WorkerPool(bands, "post-worker-") : null;
+    }
+
+    // Runs the enabled passes over the frame. Returns false, having done nothing, if there are none.
+    public boolean process(int[] pixels, int width, int height) {
+        if (activePasses() == 0) return false;
+        framePixels = pixels;
+        frameWidth = width;
+        frameHeight = height;
+        int chunks = Math.min(bands, height);
+        if (pool != null && chunks > 1) {
+            pool.run(bandJob, chunks);
+        } else {
+            chunks = 1;
+            runBand(0, 1);
+        }
+        for (int p = 0; p < passCount; p++) {
+            if (!enabled[p]) continue;
+            long slowest = 0;
+            for (int b = 0; b < chunks; b++) slowest = Math.max(slowest, bandNanos[b][p]);
+            passMs[p] += (slowest / 1e6f - passMs[p]) * 0.1f;
+        }
+        framePixels = null;
+        return true;
+    }
+
+    private void runBand(int band) {
+        runBand(band, Math.min(bands, frameHeight));
+    }
+
+    private void runBand(int band, int bandCount) {
+        int from = (int)((long)frameHeight * band / bandCount);
+        int to = (int)((long)frameHeight * (band + 1) / bandCount);
+        long[] nanos = bandNanos[band];
+        for (int p = 0; p < passCount; p++) {
+            if (!enabled[p]) continue;
+            long start = System.nanoTime();
+            passes[p].run(framePixels, frameWidth, frameHeight, from, to);
+            nanos[p] = System.nanoTime() - start;
+        }
+    }
+
+    public void shutdown() {
+        if (pool != null) pool.shutdown();
+        pool = null;
+    }
+
+    //==============================================================================================
+    // --- PASSES ---
+    //==============================================================================================
+
+    // Snaps every pixel to the nearest of 256 palette colours through a 15-bit (5:5:5) lookup
+    // table, 128 KB, built once in the constructor.
+    public static final class PalettePass implements Pass {
+        private final int[] table = new int[1 << 15];
+
+        public PalettePass(int[] palette) {
+            for (int key = 0; key < table.length; key++) {
+                // Centre of the 5-bit bucket
+                int r = ((key >> 10) & 31) * 8 + 4, g = ((key >> 5) & 31) * 8 + 4, b = (key & 31) * 8 + 4;
+                int best = 0, bestDist = Integer.MAX_VALUE;
+                for (int i = 0; i < palette.length; i++) {
+                    int c = palette[i];
+                    int dr = ((c >> 16) & 0xFF) - r, dg = ((c >> 8) & 0xFF) - g, db = (c & 0xFF) - b;
+                    // Weighted towards green, which the eye resolves best
+                    int dist = 3 * dr * dr + 4 * dg * dg + 2 * db * db;
+                    if (dist < bestDist) {
+                        bestDist = dist;
+                        best = c;
+                    }
+                }
+                table[key] = 0xFF000000 | best;
+            }
+        }
+
+        @Override
+        public void run(int[] pixels, int width, int height, int fromRow, int toRow) {
+            int[] table = this.table;
+            for (int i = fromRow * width, end = toRow * width; i < end; i++) {
+                int c = pixels[i];
+                pixels[i] = table[((c >> 9) & 0x7C00) | ((c >> 6) & 0x3E0) | ((c >> 3) & 0x1F)];
+            }
+        }
+
+        // A DOOM-style palette for when no PLAYPAL is supplied: 16 ramps of 16 shades, each from
+        // near black to the ramp's brightest colour.
+        public static int[] rampPalette() {
+            int[] bright = {
+                    0xFFFFFF, 0xFF2020, 0xFFC8A0, 0xE0B070, 0xA06830, 0x909040, 0x40FF40, 0x207020,
+                    0x4040FF, 0x80C0FF, 0xFF8000, 0xFFFF40, 0xC040FF, 0xFF80C0, 0xFFD700, 0xB0B0B0
+            };
+            int[] palette = new int[256];
+            for (int ramp = 0; ramp < 16; ramp++) {
+                int c = bright[ramp];
+                for (int shade = 0; shade < 16; shade++) {
+                    int scale = (shade + 1) * 16; // 16 .. 256, out of 256
+                    int r = ((c >> 16) & 0xFF) * scale >> 8, g = ((c >> 8) & 0xFF) * scale >> 8, b = (c & 0xFF) * scale >> 8;
+                    palette[ramp * 16 + shade] = (r << 16) | (g << 8) | b;
+                }
+            }
+            return palette;
+        }
+
+        // The first palette of a DOOM PLAYPAL lump (768 bytes of RGB), or null if it is too short.
+        public static int[] fromPlaypal(byte[] lump, int length) {
+            if (length < 768) return null;
+            int[] palette = new int[256];
+            for (int i = 0; i < 256; i++) {
+                palette[i] = ((lump[i * 3] & 0xFF) << 16) | ((lump[i * 3 + 1] & 0xFF) << 8) | (lump[i * 3 + 2] & 0xFF);
+            }
+            return palette;
+        }
+    }
+
+    // Blends towards a fog colour with distance. Each pixel's distance is the nearer of its
+    // column's wall (the raycaster's depth buffer) and the floor or ceiling seen through its row,
+    // so sprites and particles take the fog of the wall behind them. Per-column and per-row
+    // weights are computed once per frame, leaving a min and a blend per pixel.
+    public static final class FogPass implements Pass {
+        private final int fogColor;
+        private final float start, end;
+        private int[] columnWeight = new int[0]; // 0 .. 256
+        private int[] rowWeight = new int[0];
+
+        public FogPass(int fogColor, float start, float end) {
+            this.fogColor = fogColor & 0xFFFFFF;
+            this.start = start;
+            this.end = end;
+        }
+
+        // Call before process() with the depth buffer the frame was drawn with.
+        public void setDepth(double[] depthBuffer, int width, int height) {
+            if (columnWeight.length != width) columnWeight = new int[width];
+            if (rowWeight.length != height) {
+                rowWeight = new int[height];
+                for (int y = 0; y < height; y++) {
+                    // Walls are h / distance tall, so a floor row this far from the horizon is this far away
+                    double fromHorizon = Math.abs(y + 0.5 - height / 2.0);
+                    rowWeight[y] = weight(height / (2.0 * fromHorizon));
+                }
+            }
+            int n = Math.min(width, depthBuffer.length);
+            for (int x = 0; x < n; x++) columnWeight[x] = weight(depthBuffer[x]);
+            for (int x = n; x < width; x++) columnWeight[x] = 256;
+        }
+
+        private int weight(double distance) {
+            if (distance <= start) return 0;
+            if (distance >= end) return 256;
+            return (int)((distance - start) / (end - start) * 256);
+        }
+
+        @Override
+        public void run(int[] pixels, int width, int height, int fromRow, int toRow) {
+            if (columnWeight.length != width) return; // setDepth wasn't called for this size
+            int[] columnWeight = this.columnWeight;
+            int fogRB = fogColor & 0xFF00FF, fogG = fogColor & 0x00FF00;
+            for (int y = fromRow; y < toRow; y++) {
+                int rowW = rowWeight[y];
+                for (int x = 0, i = y * width; x < width; x++, i++) {
+                    int w = Math.min(rowW, columnWeight[x]);
+                    if (w == 0) continue;
+                    int c = pixels[i];
+                    int rb = ((c & 0xFF00FF) * (256 - w) + fogRB * w) >>> 8;
+                    int g = ((c & 0x00FF00) * (256 - w) + fogG * w) >>> 8;
+                    pixels[i] = 0xFF000000 | (rb & 0xFF00FF) | (g & 0x00FF00);
+                }
+            }
+        }
+    }
+
+    // Darkens every other row through a per-channel table.
+    public static final class ScanlinePass implements Pass {
+        private final int[] darken = new int[256];
+
+        public ScanlinePass(float brightness) {
+            for (int v = 0; v < 256; v++) darken[v] = Math.round(v * brightness);
+        }
+
+        @Override
+        public void run(int[] pixels, int width, int height, int fromRow, int toRow) {
+            int[] darken = this.darken;
+            for (int y = fromRow | 1; y < toRow; y += 2) { // Odd rows
+                for (int i = y * width, end = i + width; i < end; i++) {
+                    int c = pixels[i];
+                    pixels[i] = 0xFF000000 | (darken[(c >> 16) & 0xFF] << 16) | (darken[(c >> 8) & 0xFF] << 8) | darken[c & 0xFF];
+                }
+            }
+        }
+    }
+
+    // Red tint after the player is hurt. Channel tables for LEVELS strengths are built up front;
+    // setStrength picks one per frame.
+    public static final class DamageFlashPass implements Pass {
+        public static final int LEVELS = 16;
+        private final int[][] red = new int[LEVELS][256];
+        private final int[][] other = new int[LEVELS][256];
+        private int level = 0;
+
+        public DamageFlashPass() {
+            for (int l = 0; l < LEVELS; l++) {
+                float s = l / (float)(LEVELS - 1);
+                for (int v = 0; v < 256; v++) {
+                    red[l][v] = Math.min(255, Math.round(v + (255 - v) * 0.6f * s));
+                    other[l][v] = Math.round(v * (1 - 0.5f * s));
+                }
+            }
+        }
+
+        // 0 .. 1; returns whether there is anything to draw at this strength.
+        public boolean setStrength(float strength) {
+            level = Math.max(0, Math.min(LEVELS - 1, Math.round(strength * (LEVELS - 1))));
+            return level > 0;
+        }
+
+        @Override
+        public void run(int[] pixels, int width, int height, int fromRow, int toRow) {
+            int[] red = this.red[level], other = this.other[level];
+            for (int i = fromRow * width, end = toRow * width; i < end; i++) {
+                int c = pixels[i];
+                pixels[i] = 0xFF000000 | (red[(c >> 16) & 0xFF] << 16) | (other[(c >> 8) & 0xFF] << 8) | other[c & 0xFF];
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.raycastergame;
+
+import java.util.Arrays;
+import java.util.List;
+
+// --- Ray Query Class ---
+// A batch of gameplay rays traced together: the player's shot pellets, or every enemy's line of
+// sight to the player. Rays go in and results come out through parallel primitive arrays indexed
+// by the value add() returned, so a batch costs no allocation once the arrays have grown. Walls are
+// traced through the distance field (the same skipping DDA the renderer uses); sprites are exact
+// ray/circle tests against the sprites with a hitRadius, gathered once per batch rather than once
+// per ray step.
+//
+// One instance per caller and thread; run() is not safe to share.
+public class RayQuery {
+
+    public static final int WALLS = 1;   // Stop at the first wall
+    public static final int SPRITES = 2; // Report the nearest hittable sprite before the wall
+
+    // --- Inputs, one entry per ray ---
+    public double[] originX, originY, dirX, dirY; // Directions are unit vectors
+    public double[] maxDist;
+    public int[] flags;
+
+    // --- Outputs ---
+    public double[] distance; // Distance to the nearest hit, or maxDist when nothing was hit
+    public int[] cell;        // Wall cell hit (mapY * MAP_SIZE + mapX), -1 if none
+    public int[] face;        // LightMap.FACE_* of the wall face hit, -1 if none
+    public int[] sprite;      // Index into GameWorld.sprites of the sprite hit, -1 if none
+
+    public int count = 0;
+
+    // Hittable sprites, gathered at the start of run()
+    private double[] targetX = new double[64], targetY = new double[64], targetRadius = new double[64];
+    private int[] targetIndex = new int[64];
+    private int targetCount = 0;
+
+    public RayQuery(int initialCapacity) {
+        allocate(Math.max(1, initialCapacity));
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    // Queues a ray and returns its index into the input and output arrays.
+    public int add(double x, double y, double dirX, double dirY, double maxDist, int flags) {
+        if (count == originX.length) grow();
+        int i = count++;
+        originX[i] = x;
+        originY[i] = y;
+        this.dirX[i] = dirX;
+        this.dirY[i] = dirY;
+        this.maxDist[i] = maxDist;
+        this.flags[i] = flags;
+        return i;
+    }
+
+    public void run(GameWorld world) {
+        boolean wantSprites = false;
+        for (int i = 0; i < count; i++) wantSprites |= (flags[i] & SPRITES) != 0;
+        if (wantSprites) gatherTargets(world.sprites);
+
+        DistanceField field = world.distanceField;
+        for (int i = 0; i < count; i++) {
+            double limit = maxDist[i];
+            if ((flags[i] & WALLS) != 0) {
+                limit = field.castRay(originX[i], originY[i], dirX[i], dirY[i], limit, cell, face, i);
+            } else {
+                cell[i] = -1;
+                face[i] = -1;
+            }
+            distance[i] = limit;
+            sprite[i] = -1;
+            if ((flags[i] & SPRITES) != 0) traceSprites(i, limit);
+        }
+    }
+
+    // Nearest circle the ray enters before limit. A ray starting inside a circle hits it at 0.
+    private void traceSprites(int i, double limit) {
+        double x = originX[i], y = originY[i], dx = dirX[i], dy = dirY[i];
+        double best = limit;
+        int bestIndex = -1;
+        for (int t = 0; t < targetCount; t++) {
+            double toX = targetX[t] - x;
+            double toY = targetY[t] - y;
+            double along = toX * dx + toY * dy;
+            double perpSquared = toX * toX + toY * toY - along * along;
+            double r = targetRadius[t];
+            if (perpSquared >= r * r) continue;
+            double half = Math.sqrt(r * r - perpSquared);
+            if (along + half <= 0) continue; // Entirely behind the origin
+            double enter = Math.max(0, along - half);
+            if (enter < best) {
+                best = enter;
+                bestIndex = targetIndex[t];
+            }
+        }
+        if (bestIndex >= 0) {
+            distance[i] = best;
+            sprite[i] = bestIndex;
+            cell[i] = -1;
+            face[i] = -1;
+        }
+    }
+
+    private void gatherTargets(List<GameWorld.Sprite> sprites) {
+        targetCount = 0;
+        for (int s = 0; s < sprites.size(); s++) {
+            GameWorld.Sprite sprite = sprites.get(s);
+            if (!sprite.isAlive || sprite.hitRadius <= 0) continue;
+            if (targetCount == targetX.length) {
+                int n = targetCount * 2;
+                targetX = Arrays.copyOf(targetX, n);
+                targetY = Arrays.copyOf(targetY, n);
+                targetRadius = Arrays.copyOf(targetRadius, n);
+                targetIndex = Arrays.copyOf(targetIndex, n);
+            }
+            targetX[targetCount] = sprite.x;
+            targetY[targetCount] = sprite.y;
+            targetRadius[targetCount] = sprite.hitRadius;
+            targetIndex[targetCount] = s;
+            targetCount++;
+        }
+    }
+
+    private void allocate(int capacity) {
+        originX = new double[capacity];
+        originY = new double[capacity];
+        dirX = new double[capacity];
+        dirY = new double[capacity];
+        maxDist = new double[capacity];
+        flags = new int[capacity];
+        distance = new double[capacity];
+        cell = new int[capacity];
+        face = new int[capacity];
+        sprite = new int[capacity];
+    }
+
+    private void grow() {
+        int n = originX.length * 2;
+        originX = Arrays.copyOf(originX, n);
+        originY = Arrays.copyOf(originY, n);
+        dirX = Arrays.copyOf(dirX, n);
+        dirY = Arrays.copyOf(dirY, n);
+        maxDist = Arrays.copyOf(maxDist, n);
+        flags = Arrays.copyOf(flags, n);
+        distance = new double[n];
+        cell = new int[n];
+        face = new int[n];
+        sprite = new int[n];
+    }
+}
@@ -0,0 +1,428 @@
+package com.example.raycastergame;
+
+// --- Raycaster Class ---
+// Casts one DDA ray per screen column (every rayStep columns) against the world map and stores
+// the per-column hit in flat arrays. Column rays come from the Camera's precomputed tables.
+// GameView fills the wall columns from these arrays, and the same code runs headlessly for tests
+// and benchmarks.
+//
+// Two interchangeable paths produce the same arrays: the reference double-precision DDA, and a
+// 16.16 fixed-point DDA with table-based reciprocals for devices with weak FPUs. Both use the
+// world's DistanceField to jump across open space instead of stepping every empty cell.
+//
+// castInterlaced() casts only every other column, alternating odd and even between frames. A
+// column in between whose two neighbours hit the same wall face takes its hit from intersecting
+// its own ray with that face, exactly where the DDA would have stopped; the rest, at the edges
+// of faces, are cast after all.
+public class Raycaster {
+
+    // --- 16.16 fixed point ---
+    public static final int FRAC_BITS = 16;
+    public static final int ONE = 1 << FRAC_BITS;
+    private static final int DIR_BITS = Camera.DIR_BITS;
+    private static final long MAX_RECIPROCAL = 1L << 30; // 16384.0, far beyond any distance on the map
+    private static final int MIN_PERP_DIST = ONE / 100;   // 0.01, same clamp as the double path
+    private static final int RECIP_BITS = 10;
+    private static final int RECIP_SUB_BITS = 8;
+    // RECIP_TABLE[i] = 2^30 / (1 + i / 1024), one extra entry for interpolation
+    private static final int[] RECIP_TABLE = new int[(1 << RECIP_BITS) + 1];
+    static {
+        for (int i = 0; i < RECIP_TABLE.length; i++) {
+            RECIP_TABLE[i] = (int)Math.round((1L << 30) / (1.0 + i / (double)(1 << RECIP_BITS)));
+        }
+    }
+
+    public boolean fixedPoint = false;
+    public boolean skipEmptyCells = true;
+    public int width, height;
+
+    // DDA steps taken (each visits one map cell) and rays cast, for benchmarking the distance field
+    public long cellsVisited = 0;
+    public long raysCast = 0;
+    // Interlaced columns filled from their neighbours' face, and those that had to be cast instead
+    public long reprojected = 0;
+    public long reprojectMisses = 0;
+
+    private int interlaceParity = 0;
+
+    // Indexed by screen column; only every rayStep-th column is cast, except depthBuffer which is
+    // filled for every column so sprite clipping can test any x.
+    public double[] depthBuffer = new double[0];
+    public int[] lineHeight = new int[0];
+    public int[] drawStart = new int[0];
+    public int[] drawEnd = new int[0];
+    public int[] textureId = new int[0];
+    public int[] side = new int[0];
+    public double[] wallX = new double[0];
+    public int[] lightIndex = new int[0]; // LightMap entry of the face hit, -1 outside the map
+
+    public void resize(int w, int h) {
+        width = w;
+        height = h;
+        depthBuffer = new double[w];
+        lineHeight = new int[w];
+        drawStart = new int[w];
+        drawEnd = new int[w];
+        textureId = new int[w];
+        side = new int[w];
+        wallX = new double[w];
+        lightIndex = new int[w];
+    }
+
+    // Rotates the camera to the player's current angle and casts; the sprite pass reuses that rotation.
+    public void cast(GameWorld world, Camera camera, int rayStep) {
+        camera.setAngle(world.playerAngle);
+        if (fixedPoint) castFixed(world, camera, rayStep);
+        else castDouble(world, camera, rayStep);
+    }
+
+    // Like cast(world, camera, 1), from a little over half the rays.
+    public void castInterlaced(GameWorld world, Camera camera) {
+        camera.setAngle(world.playerAngle);
+        int parity = interlaceParity;
+        interlaceParity ^= 1;
+        castColumns(world, camera, parity, width, 2);
+        for (int x = parity ^ 1; x < width; x += 2) {
+            if (!reproject(world, camera, x)) {
+                castColumns(world, camera, x, x + 1, 1);
+                reprojectMisses++;
+            }
+        }
+    }
+
+    private void castColumns(GameWorld world, Camera camera, int from, int to, int stride) {
+        if (fixedPoint) castFixed(world, camera, from, to, stride, 1);
+        else castDouble(world, camera, from, to, stride, 1);
+    }
+
+    // Intersects column x's ray with the wall face both of its freshly cast neighbours hit. A wall
+    // between the two neighbouring rays would have to be narrower than the gap between them, so
+    // the face is what x sees too. Fails at the screen edges, where the neighbours see different
+    // faces, or if the intersection misses the face's cell. Done in double precision on both paths: it is a
+    // handful of operations per column.
+    private boolean reproject(GameWorld world, Camera camera, int x) {
+        if (x == 0 || x == width - 1) return false;
+        int index = lightIndex[x - 1];
+        if (index < 0 || lightIndex[x + 1] != index) return false;
+        int cell = index / LightMap.ENTRIES;
+        int face = index - cell * LightMap.ENTRIES;
+        int mapX = cell % GameWorld.MAP_SIZE;
+        int mapY = cell / GameWorld.MAP_SIZE;
+        int texture = world.worldMap[mapY][mapX];
+
+        final double posX = world.playerX;
+        final double posY = world.playerY;
+        double rayDirX = camera.dirX - camera.dirY * camera.raySide[x];
+        double rayDirY = camera.dirY + camera.dirX * camera.raySide[x];
+        // The ray's forward component is 1, so its parameter at the face is the perpendicular distance
+        double perpWallDist, hit;
+        int hitSide;
+        // Faces nearer than the DDA's 0.01 clamp are textured at the clamped distance, as it does
+        switch (face) {
+            case LightMap.FACE_WEST:
+            case LightMap.FACE_EAST:
+                if (face == LightMap.FACE_WEST ? rayDirX <= 0 : rayDirX >= 0) return false;
+                perpWallDist = ((face == LightMap.FACE_WEST ? mapX : mapX + 1) - posX) / rayDirX;
+                hit = posY + perpWallDist * rayDirY;
+                if (hit < mapY || hit >= mapY + 1) return false;
+                if (perpWallDist < 0.01) hit = posY + 0.01 * rayDirY;
+                hitSide = 0;
+                break;
+            case LightMap.FACE_NORTH:
+            case LightMap.FACE_SOUTH:
+                if (face == LightMap.FACE_NORTH ? rayDirY <= 0 : rayDirY >= 0) return false;
+                perpWallDist = ((face == LightMap.FACE_NORTH ? mapY : mapY + 1) - posY) / rayDirY;
+                hit = posX + perpWallDist * rayDirX;
+                if (hit < mapX || hit >= mapX + 1) return false;
+                if (perpWallDist < 0.01) hit = posX + 0.01 * rayDirX;
+                hitSide = 1;
+                break;
+            default:
+                return false;
+        }
+        if (perpWallDist < 0.01) perpWallDist = 0.01;
+
+        int screenHeight = height;
+        int lineH = (int)(screenHeight / perpWallDist);
+        int start = -lineH / 2 + screenHeight / 2;
+        if (start < 0) start = 0;
+        int end = lineH / 2 + screenHeight / 2;
+        if (end >= screenHeight) end = screenHeight - 1;
+
+        depthBuffer[x] = perpWallDist;
+        lineHeight[x] = lineH;
+        drawStart[x] = start;
+        drawEnd[x] = end;
+        textureId[x] = texture;
+        side[x] = hitSide;
+        wallX[x] = hit - Math.floor(hit);
+        lightIndex[x] = index;
+        reprojected++;
+        return true;
+    }
+
+    public void castDouble(GameWorld world, Camera camera, int rayStep) {
+        castDouble(world, camera, 0, width, rayStep, rayStep);
+    }
+
+    // Casts columns from, from + stride, ... below to; each also fills fill columns of the depth buffer.
+    private void castDouble(GameWorld world, Camera camera, int from, int to, int stride, int fill) {
+        final int screenWidth = width;
+        final int screenHeight = height;
+        final int[][] worldMap = world.worldMap;
+        final double posX = world.playerX;
+        final double posY = world.playerY;
+
+        final double playerDirX = camera.dirX;
+        final double playerDirY = camera.dirY;
+        final double[] raySide = camera.raySide;
+        final int[] distance = world.distanceField.distance;
+        final boolean skipping = skipEmptyCells;
+        long visited = 0;
+
+        for (int x = from; x < to; x += stride) {
+            double rayDirX = playerDirX - playerDirY * raySide[x];
+            double rayDirY = playerDirY + playerDirX * raySide[x];
+
+            int mapX = (int)posX;
+            int mapY = (int)posY;
+
+            double sideDistX, sideDistY;
+            double deltaDistX = (rayDirX == 0) ? 1e30 : Math.abs(1 / rayDirX);
+            double deltaDistY = (rayDirY == 0) ? 1e30 : Math.abs(1 / rayDirY);
+            double perpWallDist;
+
+            int stepX, stepY;
+            boolean outOfMap = false;
+            int hitSide = 0;
+
+            if (rayDirX < 0) {
+                stepX = -1;
+                sideDistX = (posX - mapX) * deltaDistX;
+            } else {
+                stepX = 1;
+                sideDistX = (mapX + 1.0 - posX) * deltaDistX;
+            }
+            if (rayDirY < 0) {
+                stepY = -1;
+                sideDistY = (posY - mapY) * deltaDistY;
+            } else {
+                stepY = 1;
+                sideDistY = (mapY + 1.0 - posY) * deltaDistY;
+            }
+
+            while (true) {
+                // Every cell within `skip` of this one is empty: jump to the last cell before the
+                // ray leaves that square, then take the step out of it as usual
+                int skip = skipping ? distance[mapY * GameWorld.MAP_SIZE + mapX] - 1 : 0;
+                if (skip > 0) {
+                    double exitX = sideDistX + skip * deltaDistX;
+                    double exitY = sideDistY + skip * deltaDistY;
+                    if (exitX < exitY) {
+                        int steps = DistanceField.stepsAtOrBefore(sideDistY, deltaDistY, exitX, skip);
+                        mapX += stepX * skip;
+                        sideDistX = exitX;
+                        mapY += stepY * steps;
+                        sideDistY += steps * deltaDistY;
+                    } else {
+                        int steps = DistanceField.stepsBefore(sideDistX, deltaDistX, exitY, skip);
+                        mapY += stepY * skip;
+                        sideDistY = exitY;
+                        mapX += stepX * steps;
+                        sideDistX += steps * deltaDistX;
+                    }
+                }
+                visited++;
+                if (sideDistX < sideDistY) {
+                    sideDistX += deltaDistX;
+                    mapX += stepX;
+                    hitSide = 0;
+                } else {
+                    sideDistY += deltaDistY;
+                    mapY += stepY;
+                    hitSide = 1;
+                }
+                if (mapX < 0 || mapX >= GameWorld.MAP_SIZE || mapY < 0 || mapY >= GameWorld.MAP_SIZE) {
+                    outOfMap = true;
+                    break;
+                } else if (worldMap[mapY][mapX] > 0) {
+                    break;
+                }
+            }
+
+            if (hitSide == 0) perpWallDist = (sideDistX - deltaDistX);
+            else              perpWallDist = (sideDistY - deltaDistY);
+
+            if (perpWallDist < 0.01) perpWallDist = 0.01;
+
+            depthBuffer[x] = perpWallDist;
+            for(int i = 1; i < fill && x + i < screenWidth; i++) {
+                depthBuffer[x+i] = perpWallDist;
+            }
+
+            int height = (int)(screenHeight / perpWallDist);
+            int start = -height / 2 + screenHeight / 2;
+            if(start < 0) start = 0;
+            int end = height / 2 + screenHeight / 2;
+            if(end >= screenHeight) end = screenHeight - 1;
+
+            double hitX;
+            if (hitSide == 0) hitX = posY + perpWallDist * rayDirY;
+            else              hitX = posX + perpWallDist * rayDirX;
+            hitX -= Math.floor(hitX);
+
+            lineHeight[x] = height;
+            drawStart[x] = start;
+            drawEnd[x] = end;
+            textureId[x] = outOfMap ? 0 : worldMap[mapY][mapX];
+            side[x] = hitSide;
+            wallX[x] = hitX;
+            lightIndex[x] = outOfMap ? -1 : LightMap.index(mapX, mapY, LightMap.hitFace(hitSide, stepX, stepY));
+            raysCast++;
+        }
+        cellsVisited += visited;
+    }
+
+    // Same DDA as castDouble, in 16.16 fixed point. The only floating-point work is converting each
+    // column's distance for the shared depth buffer.
+    public void castFixed(GameWorld world, Camera camera, int rayStep) {
+        castFixed(world, camera, 0, width, rayStep, rayStep);
+    }
+
+    private void castFixed(GameWorld world, Camera camera, int from, int to, int stride, int fill) {
+        final int screenWidth = width;
+        final int screenHeight = height;
+        final int[][] worldMap = world.worldMap;
+        final int posX = (int)(world.playerX * ONE);
+        final int posY = (int)(world.playerY * ONE);
+        final int fracX = posX & (ONE - 1);
+        final int fracY = posY & (ONE - 1);
+
+        final int dirX = camera.dirXFixed;
+        final int dirY = camera.dirYFixed;
+        final int[] raySide = camera.raySideFixed;
+        final int[] distance = world.distanceField.distance;
+        final boolean skipping = skipEmptyCells;
+        long visited = 0;
+
+        for (int x = from; x < to; x += stride) {
+            int rayDirX = dirX - (int)(((long)dirY * raySide[x]) >> DIR_BITS);
+            int rayDirY = dirY + (int)(((long)dirX * raySide[x]) >> DIR_BITS);
+
+            int mapX = posX >> FRAC_BITS;
+            int mapY = posY >> FRAC_BITS;
+
+            long deltaDistX = reciprocal(Math.abs(rayDirX), DIR_BITS);
+            long deltaDistY = reciprocal(Math.abs(rayDirY), DIR_BITS);
+            long sideDistX, sideDistY;
+            int stepX, stepY;
+            boolean outOfMap = false;
+            int hitSide = 0;
+
+            if (rayDirX < 0) {
+                stepX = -1;
+                sideDistX = (fracX * deltaDistX) >> FRAC_BITS;
+            } else {
+                stepX = 1;
+                sideDistX = ((ONE - fracX) * deltaDistX) >> FRAC_BITS;
+            }
+            if (rayDirY < 0) {
+                stepY = -1;
+                sideDistY = (fracY * deltaDistY) >> FRAC_BITS;
+            } else {
+                stepY = 1;
+                sideDistY = ((ONE - fracY) * deltaDistY) >> FRAC_BITS;
+            }
+
+            while (true) {
+                // Same jump as castDouble; in integers the step counts are exact
+                int skip = skipping ? distance[mapY * GameWorld.MAP_SIZE + mapX] - 1 : 0;
+                if (skip > 0) {
+                    long exitX = sideDistX + skip * deltaDistX;
+                    long exitY = sideDistY + skip * deltaDistY;
+                    if (exitX < exitY) {
+                        int steps = DistanceField.stepsAtOrBefore(sideDistY, deltaDistY, exitX, skip);
+                        mapX += stepX * skip;
+                        sideDistX = exitX;
+                        mapY += stepY * steps;
+                        sideDistY += steps * deltaDistY;
+                    } else {
+                        int steps = DistanceField.stepsBefore(sideDistX, deltaDistX, exitY, skip);
+                        mapY += stepY * skip;
+                        sideDistY = exitY;
+                        mapX += stepX * steps;
+                        sideDistX += steps * deltaDistX;
+                    }
+                }
+                visited++;
+                if (sideDistX < sideDistY) {
+                    sideDistX += deltaDistX;
+                    mapX += stepX;
+                    hitSide = 0;
+                } else {
+                    sideDistY += deltaDistY;
+                    mapY += stepY;
+                    hitSide = 1;
+                }
+                if (mapX < 0 || mapX >= GameWorld.MAP_SIZE || mapY < 0 || mapY >= GameWorld.MAP_SIZE) {
+                    outOfMap = true;
+                    break;
+                } else if (worldMap[mapY][mapX] > 0) {
+                    break;
+                }
+            }
+
+            long perp = hitSide == 0 ? sideDistX - deltaDistX : sideDistY - deltaDistY;
+            if (perp < MIN_PERP_DIST) perp = MIN_PERP_DIST;
+            if (perp > Integer.MAX_VALUE) perp = Integer.MAX_VALUE;
+
+            double perpWallDist = perp * (1.0 / ONE);
+            depthBuffer[x] = perpWallDist;
+            for(int i = 1; i < fill && x + i < screenWidth; i++) {
+                depthBuffer[x+i] = perpWallDist;
+            }
+
+            int height = (int)((screenHeight * reciprocal((int)perp)) >> FRAC_BITS);
+            int start = -height / 2 + screenHeight / 2;
+            if(start < 0) start = 0;
+            int end = height / 2 + screenHeight / 2;
+            if(end >= screenHeight) end = screenHeight - 1;
+
+            long hit = hitSide == 0 ? posY + ((perp * rayDirY) >> DIR_BITS) : posX + ((perp * rayDirX) >> DIR_BITS);
+
+            lineHeight[x] = height;
+            drawStart[x] = start;
+            drawEnd[x] = end;
+            textureId[x] = outOfMap ? 0 : worldMap[mapY][mapX];
+            side[x] = hitSide;
+            wallX[x] = (hit & (ONE - 1)) * (1.0 / ONE);
+            lightIndex[x] = outOfMap ? -1 : LightMap.index(mapX, mapY, LightMap.hitFace(hitSide, stepX, stepY));
+            raysCast++;
+        }
+        cellsVisited += visited;
+    }
+
+    // 1/v for a non-negative 16.16 value, also in 16.16 and saturated at MAX_RECIPROCAL. The value is
+    // normalised to 1.f x 2^e; the 10 mantissa bits after the leading one index RECIP_TABLE and the
+    // next 8 bits interpolate between entries, so the result is within about one 16.16 unit.
+    public static long reciprocal(int v) {
+        return reciprocal(v, FRAC_BITS);
+    }
+
+    // 1/v in 16.16 for a non-negative value with fracBits fraction bits.
+    static long reciprocal(int v, int fracBits) {
+        if (v <= 0) return MAX_RECIPROCAL;
+        int msb = 31 - Integer.numberOfLeadingZeros(v);
+        int mantissa = msb >= RECIP_BITS + RECIP_SUB_BITS
+                ? v >>> (msb - RECIP_BITS - RECIP_SUB_BITS)
+                : v << (RECIP_BITS + RECIP_SUB_BITS - msb);
+        int index = (mantissa >>> RECIP_SUB_BITS) & ((1 << RECIP_BITS) - 1);
+        int sub = mantissa & ((1 << RECIP_SUB_BITS) - 1);
+        long r = RECIP_TABLE[index] - (((long)(RECIP_TABLE[index] - RECIP_TABLE[index + 1]) * sub) >> RECIP_SUB_BITS);
+
+        // 1/v in 16.16 = 2^(fracBits + 16 - msb) / (1 + f) = r * 2^(fracBits - 14 - msb)
+        int shift = msb + 14 - fracBits;
+        long result = shift >= 0 ? r >> shift : r << -shift;
+        return Math.min(result, MAX_RECIPROCAL);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.raycastergame;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+
+// --- Replay Runner Class ---
+// Plays an InputRecording back through a fresh GameWorld as fast as possible, with no View and
+// no frame pacing. Reports ticks/sec and the per-phase split of the tick, and checks that the
+// run ends in exactly the recorded state, so a saved run doubles as a performance regression test.
+//
+// Usage: java com.example.raycastergame.ReplayRunner [-n repeats] [-threads n] [-trace out.json] recording.dcrec...
+public class ReplayRunner {
+
+    public static class Result {
+        public int ticks;
+        public long elapsedNanos;
+        public final long[] phaseNanos = new long[GameWorld.PHASE_COUNT];
+        public int score, health, level;
+        public boolean matches;
+
+        public double ticksPerSecond() {
+            return elapsedNanos == 0 ? 0 : ticks * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.US, "%d ticks in %.2f ms (%.0f ticks/s) score=%d health=%d level=%d %s",
+                    ticks, elapsedNanos / 1e6, ticksPerSecond(), score, health, level, matches ? "OK" : "MISMATCH"));
+            for (int p = 0; p < GameWorld.PHASE_COUNT; p++) {
+                sb.append(String.format(Locale.US, "%n  %-8s %8.3f us/tick", GameWorld.PHASE_NAMES[p],
+                        ticks == 0 ? 0 : phaseNanos[p] / 1e3 / ticks));
+            }
+            return sb.toString();
+        }
+    }
+
+    public static Result run(InputRecording recording) {
+        return run(recording, 1);
+    }
+
+    public static Result run(InputRecording recording, int threads) {
+        GameWorld world = new GameWorld(recording.wallTextureCount);
+        world.setParallelism(threads);
+        world.startGame(recording.seed);
+        world.phaseTimingEnabled = true;
+
+        Result result = new Result();
+        int ticks = recording.getTickCount();
+        long start = System.nanoTime();
+        for (int i = 0; i < ticks && !world.gameOver; i++) {
+            world.tick(recording.getMoveX(i), recording.getMoveY(i), recording.getLookDelta(i), recording.isShoot(i));
+            result.ticks++;
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+
+        System.arraycopy(world.phaseNanos, 0, result.phaseNanos, 0, GameWorld.PHASE_COUNT);
+        result.score = world.score;
+        result.health = world.playerHealth;
+        result.level = world.level;
+        world.setParallelism(1);
+        result.matches = result.ticks == ticks
+                && result.score == recording.endScore
+                && result.health == recording.endHealth
+                && result.level == recording.endLevel;
+        return result;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int repeats = 1;
+        int threads = 1;
+        String tracePath = null;
+        boolean allMatch = true;
+        for (int a = 0; a < args.length; a++) {
+            if (args[a].equals("-n") && a + 1 < args.length) {
+                repeats = Integer.parseInt(args[++a]);
+                continue;
+            }
+            if (args[a].equals("-threads") && a + 1 < args.length) {
+                threads = Integer.parseInt(args[++a]);
+                continue;
+            }
+            if (args[a].equals("-trace") && a + 1 < args.length) {
+                tracePath = args[++a];
+                Tracer.start();
+                continue;
+            }
+            InputRecording recording;
+            try (InputStream in = new FileInputStream(args[a])) {
+                recording = InputRecording.readFrom(in);
+            }
+            for (int r = 0; r < repeats; r++) {
+                Result result = run(recording, threads);
+                System.out.println(args[a] + " [" + (r + 1) + "/" + repeats + "] " + result);
+                allMatch &= result.matches;
+            }
+        }
+        if (tracePath != null) {
+            // The ring buffer keeps the most recent Tracer.CAPACITY spans of the last replay
+            Tracer.stop();
+            try (OutputStream out = new FileOutputStream(tracePath)) {
+                Tracer.writeJson(out);
+            }
+            System.out.println("Wrote " + Tracer.eventCount() + " trace events to " + tracePath);
+        }
+        if (!allMatch) System.exit(1);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.raycastergame;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// --- Texture Cache Class ---
+// Decoded texture pixels kept on disk in the exact layout Texture uses (row-major ARGB ints), so a
+// launch after the first maps one file and bulk-copies the pixels instead of decoding every image.
+// Each entry remembers the hash of the asset it was decoded from; an asset whose bytes changed
+// misses and is decoded again. The file is versioned and anything unreadable counts as empty.
+//
+// File layout (little-endian):
+//   int MAGIC, int VERSION, int entryCount
+//   per entry: int nameLength, name (UTF-8, padded to 4 bytes), long assetHash,
+//              int width, int height, int[width * height] pixels
+public class TextureCache {
+
+    public static final int MAGIC = 0x58544344; // "DCTX" read as little-endian bytes
+    public static final int VERSION = 1;
+    private static final int MAX_SIDE = 4096;   // Anything bigger is a corrupt header
+
+    public static class Entry {
+        public final String name;
+        public final long assetHash;
+        public final int width, height;
+        public final int[] pixels;
+
+        Entry(String name, long assetHash, int width, int height, int[] pixels) {
+            this.name = name;
+            this.assetHash = assetHash;
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    public boolean dirty = false; // Something was added or dropped since the file was read
+
+    // Hash of an asset's encoded bytes: CRC32 in the low half, length in the high half.
+    public static long hash(byte[] data, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        return ((long)length << 32) | crc.getValue();
+    }
+
+    public static TextureCache read(File file) {
+        TextureCache cache = new TextureCache();
+        if (file == null || !file.isFile()) return cache;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            cache.parse(mapped);
+        } catch (IOException | RuntimeException e) {
+            // A damaged cache only costs a re-decode
+            cache.entries.clear();
+            cache.dirty = true;
+        }
+        return cache;
+    }
+
+    private void parse(ByteBuffer in) {
+        if (in.remaining() < 12 || in.getInt() != MAGIC || in.getInt() != VERSION) {
+            dirty = true;
+            return;
+        }
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            int nameLength = in.getInt();
+            if (nameLength < 0 || nameLength > in.remaining()) throw new IllegalStateException("bad name length");
+            byte[] nameBytes = new byte[nameLength];
+            in.get(nameBytes);
+            in.position(in.position() + padding(nameLength));
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+            long assetHash = in.getLong();
+            int width = in.getInt();
+            int height = in.getInt();
+            if (width <= 0 || height <= 0 || width > MAX_SIDE || height > MAX_SIDE) throw new IllegalStateException("bad size");
+            // Before allocating: a damaged header must not cost up to MAX_SIDE^2 ints (and an OutOfMemoryError)
+            if ((long)width * height * 4 > in.remaining()) throw new IllegalStateException("pixels past the end");
+            int[] pixels = new int[width * height];
+            IntBuffer ints = in.asIntBuffer(); // Inherits the little-endian order
+            ints.get(pixels);
+            in.position(in.position() + pixels.length * 4);
+            entries.put(name, new Entry(name, assetHash, width, height, pixels));
+        }
+    }
+
+    // Cached pixels for the asset, or null if it isn't cached or was decoded from different bytes.
+    public Entry get(String name, long assetHash) {
+        Entry entry = entries.get(name);
+        return entry != null && entry.assetHash == assetHash ? entry : null;
+    }
+
+    public Entry put(String name, long assetHash, int width, int height, int[] pixels) {
+        Entry entry = new Entry(name, assetHash, width, height, pixels);
+        entries.put(name, entry);
+        dirty = true;
+        return entry;
+    }
+
+    // Drops entries for assets that no longer exist.
+    public void retainOnly(Collection<String> names) {
+        if (entries.keySet().retainAll(names)) dirty = true;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Writes to a temporary file and renames it over the old one, so a crash mid-write leaves
+    // either the old cache or the new one.
+    public void write(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp); FileChannel channel = out.getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(entries.size());
+            header.flip();
+            writeFully(channel, header);
+            for (Entry entry : entries.values()) {
+                byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer buffer = ByteBuffer.allocateDirect(4 + name.length + padding(name.length) + 16 + entry.pixels.length * 4)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(name.length).put(name);
+                for (int p = 0; p < padding(name.length); p++) buffer.put((byte)0);
+                buffer.putLong(entry.assetHash).putInt(entry.width).putInt(entry.height);
+                buffer.asIntBuffer().put(entry.pixels);
+                buffer.position(buffer.position() + entry.pixels.length * 4);
+                buffer.flip();
+                writeFully(channel, buffer);
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            if (!file.delete() || !tmp.renameTo(file)) throw new IOException("could not replace " + file);
+        }
+        dirty = false;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private static int padding(int length) {
+        return (4 - (length & 3)) & 3;
+    }
+}
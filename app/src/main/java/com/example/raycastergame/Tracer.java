@@ -0,0 +1,113 @@
+package com.example.raycastergame;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// --- Tracer Class ---
+// Span tracing for the engine stages. Spans are recorded into a preallocated ring buffer as
+// complete events (name, start, duration, thread), so the hot path never allocates and a wrapped
+// buffer never leaves half a span behind. writeJson() dumps the buffer in the Chrome trace-event
+// format, which chrome://tracing and ui.perfetto.dev both open.
+//
+// Usage:  long t = Tracer.begin(); ...work...; Tracer.end(Tracer.RAYCAST, t);
+public final class Tracer {
+
+    // --- Span names ---
+    public static final int UPDATE = 0;
+    public static final int GENERATE_LEVEL = 1;
+    public static final int ENEMY_UPDATE = 2;
+    public static final int ROCKET_UPDATE = 3;
+    public static final int PORTAL_UPDATE = 4;
+    public static final int MEDKIT_UPDATE = 5;
+    public static final int RAYCAST = 6;
+    public static final int WALL_FILL = 7;
+    public static final int SPRITE_SORT = 8;
+    public static final int SPRITE_DRAW = 9;
+    public static final int HUD = 10;
+    public static final int CONTROLS = 11;
+    public static final int DRAW = 12;
+    public static final int AUDIO_MIX = 13;
+    public static final int PARTICLES = 14;
+    public static final int POST = 15;
+    public static final String[] NAMES = {
+            "update", "generateLevel", "Enemy.update", "Rocket.update", "Portal.update", "Medkit.update",
+            "raycast", "wallFill", "spriteSort", "spriteDraw", "hud", "controls", "draw", "audioMix", "particles", "post"
+    };
+
+    public static final int CAPACITY = 1 << 16;
+    private static final int MASK = CAPACITY - 1;
+
+    private static volatile boolean enabled = false;
+    private static final int[] names = new int[CAPACITY];
+    private static final long[] starts = new long[CAPACITY];
+    private static final long[] durations = new long[CAPACITY];
+    private static final long[] threads = new long[CAPACITY];
+    private static final AtomicInteger writeIndex = new AtomicInteger();
+
+    private Tracer() {}
+
+    public static boolean isEnabled() { return enabled; }
+
+    public static void start() {
+        writeIndex.set(0);
+        enabled = true;
+    }
+
+    public static void stop() {
+        enabled = false;
+    }
+
+    public static long begin() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public static void end(int name, long start) {
+        if (!enabled || start == 0) return;
+        long now = System.nanoTime();
+        int i = writeIndex.getAndIncrement() & MASK;
+        names[i] = name;
+        starts[i] = start;
+        durations[i] = now - start;
+        threads[i] = Thread.currentThread().getId();
+    }
+
+    public static int eventCount() {
+        return Math.min(writeIndex.get(), CAPACITY);
+    }
+
+    // Writes the buffered spans, oldest first. Call after stop() so the buffer is not being written.
+    public static void writeJson(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        int total = writeIndex.get();
+        int count = Math.min(total, CAPACITY);
+        int first = total - count;
+        long origin = Long.MAX_VALUE;
+        for (int n = 0; n < count; n++) origin = Math.min(origin, starts[(first + n) & MASK]);
+
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        for (int n = 0; n < count; n++) {
+            int i = (first + n) & MASK;
+            if (n > 0) writer.write(',');
+            writer.write("\n{\"name\":\"");
+            writer.write(NAMES[names[i]]);
+            writer.write("\",\"cat\":\"engine\",\"ph\":\"X\",\"pid\":1,\"tid\":");
+            writer.write(Long.toString(threads[i]));
+            writer.write(",\"ts\":");
+            writer.write(micros(starts[i] - origin));
+            writer.write(",\"dur\":");
+            writer.write(micros(durations[i]));
+            writer.write('}');
+        }
+        writer.write("\n]}\n");
+        writer.flush();
+    }
+
+    private static String micros(long nanos) {
+        return (nanos / 1000) + "." + (char)('0' + (nanos / 100) % 10) + (char)('0' + (nanos / 10) % 10) + (char)('0' + nanos % 10);
+    }
+}
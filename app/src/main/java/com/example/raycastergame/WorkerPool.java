@@ -0,0 +1,83 @@
+package com.example.raycastergame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// --- Worker Pool Class ---
+// A fixed set of daemon threads that run numbered chunks of one job at a time, with the calling
+// thread taking chunk 0. Built for the per-tick entity phase: starting a job is a volatile write
+// and an unpark per worker, and nothing is allocated per job.
+public class WorkerPool {
+
+    public interface Job {
+        void run(int chunk);
+    }
+
+    private final Thread[] workers;
+    private volatile Job job;
+    private volatile int generation = 0;
+    private volatile int chunkCount = 0;
+    private volatile boolean shutdown = false;
+    private final AtomicInteger remaining = new AtomicInteger();
+    private volatile Thread caller;
+
+    public WorkerPool(int threads) {
+        this(threads, "entity-worker-");
+    }
+
+    public WorkerPool(int threads, String namePrefix) {
+        workers = new Thread[Math.max(0, threads - 1)];
+        for (int i = 0; i < workers.length; i++) {
+            final int chunk = i + 1;
+            workers[i] = new Thread(() -> workerLoop(chunk), namePrefix + chunk);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    public int threadCount() {
+        return workers.length + 1;
+    }
+
+    // Runs job.run(0 .. chunks-1) across the pool and returns once every chunk has finished.
+    public void run(Job job, int chunks) {
+        chunks = Math.min(chunks, threadCount());
+        if (chunks <= 1) {
+            job.run(0);
+            return;
+        }
+        this.job = job;
+        this.chunkCount = chunks;
+        this.caller = Thread.currentThread();
+        remaining.set(chunks - 1);
+        generation++;
+        for (int i = 0; i < chunks - 1; i++) LockSupport.unpark(workers[i]);
+
+        job.run(0);
+        while (remaining.get() > 0) {
+            LockSupport.parkNanos(this, 50_000L);
+        }
+        this.job = null;
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        for (Thread worker : workers) LockSupport.unpark(worker);
+    }
+
+    private void workerLoop(int chunk) {
+        int seen = 0;
+        while (!shutdown) {
+            int current = generation;
+            if (current == seen) {
+                LockSupport.park(this);
+                continue;
+            }
+            seen = current;
+            if (chunk < chunkCount) {
+                job.run(chunk);
+                if (remaining.decrementAndGet() == 0) LockSupport.unpark(caller);
+            }
+        }
+    }
+}
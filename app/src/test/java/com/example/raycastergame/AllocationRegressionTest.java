@@ -0,0 +1,199 @@
+package com.example.raycastergame;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives whole frames headlessly (a world tick with movement, turning, shooting and enemy
+ * rockets, then the non-Canvas half of drawGame: raycasting, the depth hierarchy, the sprite sort
+ * and occlusion tests, particles and post-processing) and fails if either half allocates a
+ * single byte once warmed up. The player circles an open arena with enemies kept in range, so
+ * rockets fly and enemies die every few seconds; killed enemies are replaced between frames.
+ * Frames where more rockets are in flight than ever before legitimately grow the rocket pool and
+ * are left out, but must stay rare. The JIT's escape analysis can remove short-lived garbage that
+ * ART would still allocate, so a pass here is necessary rather than sufficient; the PERF overlay's
+ * alloc row measures the real thing on a device.
+ */
+public class AllocationRegressionTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 180;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static AllocationTracker jvmTracker() {
+        long thread = Thread.currentThread().getId();
+        AllocationTracker tracker = new AllocationTracker(() -> THREADS.getThreadAllocatedBytes(thread));
+        tracker.enabled = true;
+        return tracker;
+    }
+
+    // The engine state one GameView frame touches, minus the Canvas
+    private static final class Frame {
+        final GameWorld world = TestWorlds.maze(4);
+        final Camera camera = new Camera();
+        final Raycaster raycaster = new Raycaster();
+        final DepthHierarchy depthHierarchy = new DepthHierarchy();
+        final ParticleSystem particles = new ParticleSystem(1024, 160);
+        final PostProcessor post = new PostProcessor();
+        final PostProcessor.FogPass fog = new PostProcessor.FogPass(0x121018, 2.5f, 14f);
+        final PostProcessor.DamageFlashPass flash = new PostProcessor.DamageFlashPass();
+        final int[] pixels = new int[WIDTH * HEIGHT];
+        final Random random = new Random(1);
+        int tick = 0;
+        int visibleSprites = 0;
+        int launches = 0, deaths = 0;
+
+        Frame() {
+            TestWorlds.makeArena(world, 2L);
+            world.sprites.clear(); // No portal, so the level never changes
+            int centre = GameWorld.MAP_SIZE / 2;
+            world.worldMap[centre][centre] = 0;
+            world.playerX = world.playerY = centre + 0.5f;
+            world.rebuildAfterRestore();
+            raycaster.resize(WIDTH, HEIGHT);
+            camera.setViewport(WIDTH, HEIGHT);
+            camera.setFieldOfView(66f);
+            post.setEnabled(post.addPass("fog", fog), true);
+            post.setEnabled(post.addPass("flash", flash), true);
+            post.setEnabled(post.addPass("palette", new PostProcessor.PalettePass(PostProcessor.PalettePass.rampPalette())), true);
+            post.setEnabled(post.addPass("scan", new PostProcessor.ScanlinePass(0.7f)), true);
+        }
+
+        // Tops the arena back up to 16 enemies near the player. Not part of a frame.
+        void restock() {
+            int enemies = 0;
+            for (int i = 0; i < world.sprites.size(); i++) {
+                if (world.sprites.get(i) instanceof GameWorld.Enemy) enemies++;
+            }
+            int n = GameWorld.MAP_SIZE;
+            while (enemies < 16) {
+                int x = (int)world.playerX - 5 + random.nextInt(11), y = (int)world.playerY - 5 + random.nextInt(11);
+                if (x <= 0 || y <= 0 || x >= n - 1 || y >= n - 1 || world.worldMap[y][x] != 0) continue;
+                world.sprites.add(world.new Enemy(x + 0.5f, y + 0.5f));
+                enemies++;
+            }
+        }
+
+        void tick() {
+            tick++;
+            world.playerHealth = 100; // Rockets keep landing; stay alive
+            world.tick((float)Math.cos(tick * 0.01), (float)Math.sin(tick * 0.013), 0.015f, tick % 12 == 0);
+            particles.beginFrame();
+            CommandBuffer events = world.events;
+            for (int i = 0; i < events.size(); i++) {
+                int event = (int)events.arg(i, 0);
+                if (event == GameWorld.EVENT_ROCKET_LAUNCH) launches++;
+                if (event == GameWorld.EVENT_ROCKET_IMPACT) particles.burst(ParticleSystem.EXPLOSION, events.arg(i, 1), events.arg(i, 2), 0.5f, 14);
+                else if (event == GameWorld.EVENT_ENEMY_DEATH) {
+                    particles.burst(ParticleSystem.BLOOD, events.arg(i, 1), events.arg(i, 2), 0.5f, 24);
+                    deaths++;
+                }
+            }
+            particles.update(world.worldMap);
+        }
+
+        void render() {
+            if ((tick & 1) == 0) raycaster.castInterlaced(world, camera);
+            else raycaster.cast(world, camera, 1);
+            depthHierarchy.build(raycaster.depthBuffer, WIDTH);
+
+            world.sortSpritesForDrawing();
+            visibleSprites = 0;
+            for (int i = 0; i < world.sprites.size(); i++) {
+                GameWorld.Sprite s = world.sprites.get(i);
+                double dx = s.x - world.playerX, dy = s.y - world.playerY;
+                double depth = camera.m10 * dx + camera.m11 * dy;
+                if (depth <= 0.1) continue;
+                int center = (int)camera.screenX(camera.m00 * dx + camera.m01 * dy, depth);
+                int half = (int)(HEIGHT / depth * s.scale / 2);
+                if (depthHierarchy.classify(center - half, center + half, depth) != DepthHierarchy.HIDDEN) visibleSprites++;
+            }
+
+            for (int i = 0; i < pixels.length; i++) pixels[i] = raycaster.textureId[i % WIDTH] * 0x304050;
+            fog.setDepth(raycaster.depthBuffer, WIDTH, HEIGHT);
+            flash.setStrength((tick % 60) / 60f);
+            post.process(pixels, WIDTH, HEIGHT);
+        }
+    }
+
+    @Test
+    public void trackerItselfDoesNotAllocate() {
+        AllocationTracker tracker = jvmTracker();
+        for (int i = 0; i < 20000; i++) {
+            tracker.begin(AllocationTracker.TICK);
+            tracker.end(AllocationTracker.TICK);
+            tracker.endFrame();
+        }
+        tracker.reset();
+        for (int i = 0; i < 1000; i++) {
+            tracker.begin(AllocationTracker.TICK);
+            tracker.end(AllocationTracker.TICK);
+            tracker.endFrame();
+        }
+        assertEquals(0, tracker.totalBytes[AllocationTracker.TICK]);
+        assertEquals(1000, tracker.frames);
+    }
+
+    @Test
+    public void steadyStateTickAndRenderAllocateNothing() {
+        Frame frame = new Frame();
+        AllocationTracker tracker = jvmTracker();
+        // Warm-up: JIT compilation, and the rocket pool and command buffers growing to size
+        for (int i = 0; i < 4000; i++) {
+            frame.restock();
+            frame.tick();
+            frame.render();
+        }
+
+        tracker.reset();
+        frame.launches = frame.deaths = 0;
+        int poolGrowth = 0;
+        for (int i = 0; i < 2400; i++) {
+            frame.restock();
+            int rockets = frame.world.rocketsAllocated;
+            tracker.begin(AllocationTracker.TICK);
+            frame.tick();
+            tracker.end(AllocationTracker.TICK);
+            tracker.begin(AllocationTracker.RENDER);
+            frame.render();
+            tracker.end(AllocationTracker.RENDER);
+            if (frame.world.rocketsAllocated != rockets) {
+                poolGrowth += frame.world.rocketsAllocated - rockets;
+                tracker.discardFrame();
+            }
+            tracker.endFrame();
+        }
+        for (int s = 0; s < AllocationTracker.SECTION_COUNT; s++) {
+            assertEquals(AllocationTracker.SECTION_NAMES[s] + " bytes over " + tracker.frames + " frames, in "
+                    + tracker.allocatingFrames[s] + " of them", 0, tracker.totalBytes[s]);
+        }
+        // The frames did the work that used to allocate
+        assertTrue("rockets launched: " + frame.launches, frame.launches >= 20);
+        assertTrue("enemies killed: " + frame.deaths, frame.deaths >= 5);
+        assertTrue(poolGrowth + " new rockets for " + frame.launches + " launches", poolGrowth * 5 < frame.launches);
+        assertTrue(frame.visibleSprites >= 0 && frame.raycaster.raysCast > 0);
+    }
+
+    @Test
+    public void enemyRocketsAreRecycled() {
+        GameWorld world = TestWorlds.maze(1);
+        world.sprites.clear();
+        world.playerX = world.playerY = 1000; // Out of the rockets' way
+        GameWorld.Sprite first = world.spawnRocket(1.5f, 1.5f, 1.5f, 0f, 0.8f); // Into the wall above within one tick
+        world.tick(0, 0, 0, false);
+        assertTrue(world.sprites.isEmpty());
+        GameWorld.Sprite second = world.spawnRocket(1.5f, 1.5f, 1.5f, 3f, 0.01f);
+        assertSame("the spent rocket is reused", first, second);
+        assertTrue(second.isAlive);
+        world.tick(0, 0, 0, false);
+        assertEquals(1, world.sprites.size());
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.raycastergame;
+
+import java.util.Locale;
+import java.util.Random;
+
+// --- Audio Mixer Benchmark ---
+// JVM microbenchmark of AudioMixer.render with 4, 12 and 32 voices of looping noise scattered
+// around the listener. Reports the cost per rendered buffer and how many times faster than real
+// time that is; a mixer thread needs the latter comfortably above 1 on the slowest device.
+// Not a unit test; run its main() from the IDE or the test classpath.
+//
+// Usage: java com.example.raycastergame.AudioMixerBenchmark [buffers]
+public class AudioMixerBenchmark {
+
+    private static final int FRAMES = 256;
+
+    static volatile long sink; // Keeps results alive past the JIT
+
+    public static void main(String[] args) {
+        int buffers = args.length >= 1 ? Integer.parseInt(args[0]) : 20000;
+        Random random = new Random(3L);
+        short[] noise = new short[AudioMixer.SAMPLE_RATE];
+        for (int i = 0; i < noise.length; i++) noise[i] = (short)(random.nextInt(16000) - 8000);
+        short[] out = new short[FRAMES * 2];
+        double bufferSeconds = FRAMES / (double)AudioMixer.SAMPLE_RATE;
+
+        for (int round = 0; round < 3; round++) { // The first round is JIT warm-up
+            for (int voices : new int[] { 4, 12, 32 }) {
+                AudioMixer mixer = new AudioMixer(voices, FRAMES, 1024);
+                int sample = mixer.addSample(noise);
+                for (int v = 0; v < voices; v++) {
+                    mixer.play(sample, v + 1, random.nextFloat() * 20 - 10, random.nextFloat() * 20 - 10, 1f, true);
+                }
+                long start = System.nanoTime();
+                for (int b = 0; b < buffers; b++) {
+                    mixer.setListener((b % 100) * 0.01f, 0, b * 0.001);
+                    mixer.render(out, FRAMES);
+                    sink += out[b & (out.length - 1)];
+                }
+                double micros = (System.nanoTime() - start) / 1e3 / buffers;
+                if (round > 0) {
+                    System.out.println(String.format(Locale.US, "%2d voices (%2d active)  %7.2f us/buffer  %6.0fx real time",
+                            voices, mixer.activeVoices(), micros, bufferSeconds * 1e6 / micros));
+                }
+            }
+        }
+    }
+}
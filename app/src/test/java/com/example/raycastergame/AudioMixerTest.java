@@ -0,0 +1,162 @@
+package com.example.raycastergame;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Renders the positional mixer headlessly: pan and distance falloff, voice stealing under the
+ * voice cap, keyed loops, clipping, and a render path that allocates nothing.
+ */
+public class AudioMixerTest {
+
+    private static final int FRAMES = 256;
+
+    private static short[] constant(int length, int value) {
+        short[] pcm = new short[length];
+        Arrays.fill(pcm, (short)value);
+        return pcm;
+    }
+
+    // Sum of |sample| per channel over the buffer: { left, right }
+    private static long[] levels(short[] out, int frames) {
+        long[] levels = new long[2];
+        for (int f = 0; f < frames; f++) {
+            levels[0] += Math.abs(out[f * 2]);
+            levels[1] += Math.abs(out[f * 2 + 1]);
+        }
+        return levels;
+    }
+
+    // Renders twice so the per-buffer gain ramp from silence has settled, and returns the levels.
+    private static long[] settledLevels(AudioMixer mixer, short[] out) {
+        mixer.render(out, FRAMES);
+        mixer.render(out, FRAMES);
+        return levels(out, FRAMES);
+    }
+
+    @Test
+    public void emitterAheadIsCentredAndToTheRightIsPannedRight() {
+        short[] out = new short[FRAMES * 2];
+        AudioMixer mixer = new AudioMixer(4, FRAMES, 16);
+        int tone = mixer.addSample(constant(FRAMES * 8, 10000));
+        mixer.setListener(10, 10, 0); // Facing +x
+        mixer.play(tone, 1, 13, 10, 1f, true);
+        long[] ahead = settledLevels(mixer, out);
+        assertTrue(ahead[0] > 0);
+        assertEquals(ahead[0], ahead[1], ahead[0] / 100);
+
+        // +y is to the player's right at angle 0; turning to face +y puts the emitter on the left
+        mixer.play(tone, 1, 10, 13, 1f, true);
+        long[] right = settledLevels(mixer, out);
+        assertTrue(right[1] > right[0] * 4);
+        mixer.setListener(10, 10, Math.PI);
+        long[] left = settledLevels(mixer, out);
+        assertTrue(left[0] > left[1] * 4);
+    }
+
+    @Test
+    public void gainFallsWithDistanceAndStopsAtMaxDistance() {
+        short[] out = new short[FRAMES * 2];
+        AudioMixer mixer = new AudioMixer(4, FRAMES, 16);
+        int tone = mixer.addSample(constant(FRAMES * 8, 10000));
+        mixer.play(tone, 1, 1, 0, 1f, true);
+        long near = settledLevels(mixer, out)[0];
+        mixer.play(tone, 1, 6, 0, 1f, true);
+        long far = settledLevels(mixer, out)[0];
+        assertTrue(near > far * 2);
+        assertTrue(far > 0);
+
+        mixer.play(tone, 1, AudioMixer.MAX_DISTANCE + 1, 0, 1f, true);
+        assertEquals(0, settledLevels(mixer, out)[0]);
+        mixer.play(tone, 0, AudioMixer.MAX_DISTANCE + 1, 0, 1f, false);
+        mixer.render(out, FRAMES);
+        assertEquals(1, mixer.dropped);
+    }
+
+    @Test
+    public void fullMixer_stealsTheQuietestVoiceForALouderSound() {
+        short[] out = new short[FRAMES * 2];
+        AudioMixer mixer = new AudioMixer(3, FRAMES, 16);
+        int tone = mixer.addSample(constant(FRAMES * 8, 1000));
+        mixer.play(tone, 1, 2, 0, 1f, true);
+        mixer.play(tone, 2, 9, 0, 1f, true);  // Quietest
+        mixer.play(tone, 3, 4, 0, 1f, true);
+        mixer.render(out, FRAMES);
+        assertEquals(3, mixer.activeVoices());
+
+        mixer.play(tone, 4, 12, 0, 1f, true); // Quieter than all of them: dropped
+        mixer.play(tone, 5, 1, 0, 1f, true);  // Louder: takes voice 2's place
+        mixer.render(out, FRAMES);
+        assertEquals(3, mixer.activeVoices());
+        assertEquals(1, mixer.stolen);
+        assertEquals(1, mixer.dropped);
+        assertFalse(mixer.isPlaying(2));
+        assertFalse(mixer.isPlaying(4));
+        assertTrue(mixer.isPlaying(5));
+    }
+
+    @Test
+    public void keyedLoopIsMovedNotRestartedAndOneShotsFreeTheirVoice() {
+        short[] out = new short[FRAMES * 2];
+        AudioMixer mixer = new AudioMixer(4, FRAMES, 64);
+        int loop = mixer.addSample(constant(FRAMES, 1000));
+        int shot = mixer.addSample(constant(FRAMES + FRAMES / 2, 1000));
+        for (int tick = 0; tick < 10; tick++) {
+            mixer.play(loop, 7, 1 + tick * 0.1f, 0, 1f, true);
+            mixer.render(out, FRAMES);
+        }
+        assertEquals(1, mixer.activeVoices());
+
+        mixer.play(shot, 0, 1, 0, 1f, false);
+        mixer.render(out, FRAMES);
+        assertEquals(2, mixer.activeVoices());
+        mixer.render(out, FRAMES);
+        assertEquals(1, mixer.activeVoices());
+        assertTrue(mixer.isPlaying(7));
+
+        mixer.stop(7);
+        mixer.render(out, FRAMES);
+        assertEquals(0, mixer.activeVoices());
+        assertEquals(0, levels(out, FRAMES)[0]);
+    }
+
+    @Test
+    public void loudMixClipsInsteadOfWrapping() {
+        short[] out = new short[FRAMES * 2];
+        AudioMixer mixer = new AudioMixer(8, FRAMES, 16);
+        int loud = mixer.addSample(constant(FRAMES * 4, Short.MAX_VALUE));
+        for (int i = 0; i < 8; i++) mixer.play(loud, 0, 0.01f * i, 0, 1f, false);
+        mixer.render(out, FRAMES);
+        mixer.render(out, FRAMES);
+        for (short s : out) assertTrue(s >= 0);
+        assertEquals(Short.MAX_VALUE, out[FRAMES]);
+    }
+
+    @Test
+    public void renderAndCommands_doNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        short[] out = new short[FRAMES * 2];
+        AudioMixer mixer = new AudioMixer(12, FRAMES, 256);
+        int tone = mixer.addSample(constant(FRAMES * 3, 3000));
+        int hum = mixer.addSample(constant(FRAMES * 2, 2000));
+        Runnable buffer = () -> {
+            for (int i = 0; i < 20; i++) mixer.play(tone, 0, (i * 7) % 15, (i * 3) % 11, 1f, false);
+            mixer.play(hum, 1, 5, 5, 0.5f, true);
+            mixer.setListener(3, 4, 0.3);
+            mixer.render(out, FRAMES);
+        };
+        for (int i = 0; i < 20000; i++) buffer.run(); // JIT warm-up, so compilation doesn't count
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 1000; i++) buffer.run();
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertEquals("bytes allocated over 1000 buffers", 0, allocated);
+    }
+}
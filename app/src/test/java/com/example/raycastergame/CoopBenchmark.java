@@ -0,0 +1,56 @@
+package com.example.raycastergame;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+
+// --- Co-op Benchmark ---
+// Plays a host and a client against each other over localhost at several packet loss rates and
+// reports what replication costs: snapshot bytes per tick (against the size of a full state),
+// input bytes per tick, how often the client saw a new snapshot, and the host's and client's tick
+// times. The host walks, turns and shoots through the maze; the guest does the same. The level
+// is regenerated every 1200 ticks so map resends are included.
+// Not a unit test; run its main() from the IDE or the test classpath.
+//
+// Usage: java com.example.raycastergame.CoopBenchmark [ticks]
+public class CoopBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int ticks = args.length >= 1 ? Integer.parseInt(args[0]) : 6000;
+        run(ticks, 0, false); // JIT warm-up
+        for (int loss : new int[] { 0, 5, 20, 40 }) run(ticks, loss, true);
+    }
+
+    static void run(int ticks, int lossPercent, boolean report) throws IOException {
+        InetSocketAddress loopback = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        GameWorld world = TestWorlds.maze(11);
+        try (CoopHost host = new CoopHost(world, loopback, 1);
+             CoopClient client = new CoopClient(3, host.link.localAddress(), loopback, 2)) {
+            host.link.lossPercent = lossPercent;
+            client.link.lossPercent = lossPercent;
+            long fullBytes = 0;
+            int fullSamples = 0;
+            for (int i = 0; i < ticks; i++) {
+                client.tick((i / 60) % 2 == 0 ? -0.5f : 0.5f, 1f, (i % 90) < 15 ? -0.04f : 0f, i % 9 == 0);
+                world.playerHealth = 100;
+                if (i % 1200 == 1199) world.generateLevel();
+                host.tick(TestWorlds.moveX(i), TestWorlds.moveY(i), TestWorlds.look(i), TestWorlds.shoot(i));
+                if (i % 100 == 0 && host.hasGuest()) {
+                    BitBuffer full = new BitBuffer(2048);
+                    host.sentState(host.tick()).encode(null, full);
+                    fullBytes += full.bytes();
+                    fullSamples++;
+                }
+            }
+            if (!report) return;
+            System.out.println(String.format(Locale.US,
+                    "loss %2d%%: snapshots %6.1f B/tick (full %5.0f B, %d full sent), inputs %5.1f B/tick, "
+                            + "%3.0f%% snapshots received, %d mispredicted, host %.3f ms/tick, client %.3f ms/tick",
+                    lossPercent, host.snapshotBytes / (double)host.ticks, fullBytes / (double)Math.max(1, fullSamples),
+                    host.fullSnapshots, client.link.bytesSent / (double)client.ticks,
+                    100.0 * client.snapshotsReceived / host.ticks, client.mispredictions,
+                    host.tickNanosTotal / 1e6 / host.ticks, client.tickNanosTotal / 1e6 / client.ticks));
+        }
+    }
+}
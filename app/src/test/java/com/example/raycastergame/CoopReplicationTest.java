@@ -0,0 +1,398 @@
+package com.example.raycastergame;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs a CoopHost and a CoopClient against each other over localhost UDP with packets dropped
+ * both ways, and checks the client against the host's world: every snapshot it decodes against
+ * what the host sent, the predicted guest against where the host has it, the interpolated host
+ * player for jumps, a level change, the client's light map through a pickup and a new level, and
+ * a guest leaving or falling silent. Also round-trips the delta encoding directly, and checks on
+ * the host's world alone that enemies, rockets, medkits and the portal treat the guest as a
+ * player.
+ */
+public class CoopReplicationTest {
+
+    private static InetSocketAddress loopback() {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+    }
+
+    private static void assertSameState(NetState expected, NetState actual) {
+        assertEquals(expected.tick, actual.tick);
+        assertEquals(expected.lastGuestInput, actual.lastGuestInput);
+        assertEquals(expected.level, actual.level);
+        assertEquals(expected.score, actual.score);
+        assertEquals(expected.health, actual.health);
+        assertEquals(expected.guestHealth, actual.guestHealth);
+        assertEquals(expected.gameOver, actual.gameOver);
+        assertEquals(expected.mapVersion, actual.mapVersion);
+        assertArrayEquals(expected.cells, actual.cells);
+        assertEquals(expected.hostX, actual.hostX);
+        assertEquals(expected.hostY, actual.hostY);
+        assertEquals(expected.hostAngle, actual.hostAngle);
+        assertEquals(expected.guestX, actual.guestX, 0);
+        assertEquals(expected.guestY, actual.guestY, 0);
+        assertEquals(expected.guestAngle, actual.guestAngle, 0);
+        int n = expected.spriteCount;
+        assertEquals(n, actual.spriteCount);
+        assertArrayEquals(Arrays.copyOf(expected.ids, n), Arrays.copyOf(actual.ids, n));
+        assertArrayEquals(Arrays.copyOf(expected.types, n), Arrays.copyOf(actual.types, n));
+        assertArrayEquals(Arrays.copyOf(expected.xs, n), Arrays.copyOf(actual.xs, n));
+        assertArrayEquals(Arrays.copyOf(expected.ys, n), Arrays.copyOf(actual.ys, n));
+        assertArrayEquals(Arrays.copyOf(expected.healths, n), Arrays.copyOf(actual.healths, n));
+    }
+
+    private static int encodedBytes(NetState state, NetState base) {
+        BitBuffer out = new BitBuffer(256);
+        state.encode(base, out);
+        return out.bytes();
+    }
+
+    // The host walks the maze as TestWorlds.step does, and doesn't die
+    private static void hostStep(CoopHost host, int i) throws IOException {
+        host.world.playerHealth = 100;
+        host.tick(TestWorlds.moveX(i), TestWorlds.moveY(i), TestWorlds.look(i), TestWorlds.shoot(i));
+    }
+
+    private static void guestStep(CoopClient client, int i) throws IOException {
+        float moveX = (i / 60) % 2 == 0 ? -0.5f : 0.5f;
+        float look = (i % 90) < 15 ? -0.04f : 0f;
+        client.tick(moveX, 1.0f, look, i % 9 == 0);
+    }
+
+    @Test
+    public void deltasRoundTripAgainstAnyRecentBaseline() {
+        GameWorld world = TestWorlds.maze(8);
+        world.guest.joined = true;
+        Random random = new Random(3);
+        NetState[] states = new NetState[CoopHost.HISTORY];
+        long fullBytes = 0, deltaBytes = 0;
+        int seq = 0;
+        for (int tick = 1; tick <= 900; tick++) {
+            world.playerHealth = 100;
+            world.guest.queue(++seq, random.nextFloat() - 0.5f, 1f, (random.nextFloat() - 0.5f) * 0.1f, random.nextInt(8) == 0);
+            world.tick(0.3f, (float)Math.sin(tick * 0.02), 0.02f, tick % 10 == 0);
+            NetState state = new NetState();
+            state.capture(world, tick);
+            states[tick % CoopHost.HISTORY] = state;
+
+            int back = random.nextInt(Math.min(tick, CoopHost.HISTORY));
+            NetState base = back == 0 ? null : states[(tick - back) % CoopHost.HISTORY];
+            BitBuffer packet = new BitBuffer(16);
+            state.encode(base, packet);
+            packet.flip(packet.bytes());
+            NetState decoded = new NetState();
+            decoded.decode(tick, base, packet);
+            assertSameState(state, decoded);
+            assertTrue("bits left over: " + packet.remainingBits(), packet.remainingBits() < 8);
+
+            if (tick > 1) {
+                fullBytes += encodedBytes(state, null);
+                deltaBytes += encodedBytes(state, states[(tick - 1) % CoopHost.HISTORY]);
+            }
+        }
+        assertTrue("delta " + deltaBytes + " vs full " + fullBytes + " bytes", deltaBytes * 10 < fullBytes);
+    }
+
+    // One open room: only the border is wall, nothing else in it.
+    private static GameWorld openRoom(long seed) {
+        GameWorld world = TestWorlds.maze(seed);
+        int n = GameWorld.MAP_SIZE;
+        for (int y = 1; y < n - 1; y++) {
+            for (int x = 1; x < n - 1; x++) world.worldMap[y][x] = 0;
+        }
+        world.sprites.clear();
+        world.rebuildAfterRestore();
+        world.guest.joined = true;
+        return world;
+    }
+
+    @Test
+    public void guestIsShotAtHitHealedAndCanTakeThePortal() {
+        GameWorld world = openRoom(12);
+        world.playerX = world.playerY = 60.5f; // Far out of every enemy's range
+        world.guest.x = world.guest.y = 10.5f;
+        world.sprites.add(world.new Enemy(14.5f, 10.5f));
+
+        // The enemy only sees the guest, so its rockets fly at the guest until one lands
+        int i = 0;
+        for (; i < 400 && world.guest.health == 100; i++) {
+            world.tick(0, 0, 0, false);
+            for (GameWorld.Sprite s : world.sprites) {
+                if (!(s instanceof GameWorld.Rocket)) continue;
+                GameWorld.Rocket rocket = (GameWorld.Rocket) s;
+                assertTrue("rocket flying away from the guest", rocket.velX < 0 && Math.abs(rocket.velY) < 1e-6);
+            }
+        }
+        assertEquals(90, world.guest.health);
+        assertEquals(100, world.playerHealth);
+
+        // Nearer of the two wins once both are in sight
+        world.playerX = 18.5f;
+        world.playerY = 10.5f;
+        world.guest.x = world.guest.y = 6.5f; // Still in sight, but twice as far, and off the line of the rockets already out
+        for (; i < 1200 && world.playerHealth == 100; i++) world.tick(0, 0, 0, false);
+        assertEquals(90, world.playerHealth);
+        assertEquals(90, world.guest.health);
+
+        // Out of health: back to the start with a full bar, and the run goes on
+        world.sprites.clear();
+        world.guest.health = 5;
+        world.guest.x = world.guest.y = 30.5f;
+        world.spawnRocket(30.5f, 33.5f, 30.5f, 30.5f, 0.2f);
+        for (int k = 0; k < 30; k++) world.tick(0, 0, 0, false);
+        assertEquals(100, world.guest.health);
+        assertEquals(1.5f, world.guest.x, 0);
+        assertEquals(1.5f, world.guest.y, 0);
+        assertTrue(!world.gameOver);
+
+        // A medkit under the guest heals the guest, not the player
+        world.guest.health = 50;
+        world.guest.x = world.guest.y = 20.5f;
+        world.sprites.add(world.new Medkit(20.5f, 20.5f));
+        world.tick(0, 0, 0, false);
+        assertEquals(75, world.guest.health);
+        assertEquals(90, world.playerHealth);
+        assertEquals(0, world.sprites.size());
+
+        // And the portal takes both to the next level
+        world.sprites.add(world.new Portal(20.5f, 20.5f));
+        world.tick(0, 0, 0, false);
+        assertEquals(2, world.level);
+    }
+
+    @Test
+    public void clientTracksHostOverLossyLoopback() throws IOException {
+        GameWorld world = TestWorlds.maze(5);
+        try (CoopHost host = new CoopHost(world, loopback(), 1);
+             CoopClient client = new CoopClient(TestWorlds.WALL_TEXTURES, host.link.localAddress(), loopback(), 2)) {
+            host.link.lossPercent = 20;
+            client.link.lossPercent = 20;
+
+            int checked = 0;
+            float lastX = Float.NaN, lastY = Float.NaN, maxStep = 0;
+            for (int i = 0; i < 1800; i++) {
+                int before = client.connected() ? client.newestState().tick : 0;
+                guestStep(client, i);
+                hostStep(host, i);
+                if (!client.connected()) continue;
+                NetState state = client.newestState();
+                if (state.tick != before) {
+                    assertSameState(host.sentState(state.tick), state);
+                    checked++;
+                }
+                // The host's player as the client shows it never jumps, whatever was lost
+                float x = client.view.guest.x, y = client.view.guest.y;
+                if (!Float.isNaN(lastX)) maxStep = Math.max(maxStep, (float)Math.hypot(x - lastX, y - lastY));
+                lastX = x;
+                lastY = y;
+            }
+            assertEquals("the run must stay on one level", 1, world.level);
+            assertTrue(client.link.packetsDropped > 100 && host.link.packetsDropped > 100);
+            assertTrue("snapshots checked: " + checked, checked > 1000);
+            assertTrue(maxStep + " cells in one tick", maxStep < 0.05f * 1.1f + 2 / NetState.POSITION_SCALE);
+
+            // Stop losing packets and let everything in flight arrive
+            host.link.lossPercent = client.link.lossPercent = 0;
+            for (int i = 0; i < 10; i++) {
+                client.tick(0, 0, 0, false);
+                host.tick(0, 0, 0, false);
+            }
+            client.tick(0, 0, 0, false); // Reads the host's last snapshot
+            NetState state = client.newestState();
+            assertEquals(host.tick(), state.tick);
+            assertSameState(host.sentState(state.tick), state);
+            assertEquals(world.guest.health, client.view.playerHealth); // Each end's HUD shows its own player
+            assertEquals(world.playerHealth, client.view.guest.health);
+
+            // Prediction: the guest is exactly where the host has it, and never had to be corrected
+            assertEquals(client.inputSequence() - 1, world.guest.lastInput); // The newest input is still on its way
+            assertEquals(0, client.mispredictions);
+            assertTrue("the guest walked", Math.hypot(world.guest.x - 1.5, world.guest.y - 1.5) > 2);
+            host.tick(0, 0, 0, false);
+            assertEquals(client.inputSequence(), world.guest.lastInput);
+            assertEquals(world.guest.x, client.view.playerX, 0);
+            assertEquals(world.guest.y, client.view.playerY, 0);
+            assertEquals(world.guest.angle, client.view.playerAngle, 0);
+
+            // Mostly deltas, and they are small
+            assertTrue(host.fullSnapshots + " full snapshots", host.deltaSnapshots > 50 * host.fullSnapshots);
+            double bytesPerTick = host.snapshotBytes / (double)host.ticks;
+            int fullBytes = encodedBytes(host.sentState(host.tick()), null);
+            assertTrue(bytesPerTick + " bytes per tick, " + fullBytes + " for a full state", bytesPerTick * 8 < fullBytes);
+            assertTrue(host.tickNanosTotal > 0 && client.tickNanosTotal > 0);
+            assertEquals(0, host.badPackets + client.badPackets);
+        }
+    }
+
+    // Both ends step with no input until everything the host did has reached the client's view.
+    private static void settle(CoopHost host, CoopClient client) throws IOException {
+        for (int k = 0; k < CoopClient.INTERPOLATION_TICKS * 4; k++) {
+            client.tick(0, 0, 0, false);
+            host.tick(0, 0, 0, false);
+        }
+    }
+
+    // The client's light map against the host's, at every portal and medkit the host has and at
+    // the extra cells given, then everywhere.
+    private static void assertSameLights(GameWorld world, CoopClient client, int... cells) {
+        int[] expected = world.lightMap.packed, actual = client.view.lightMap.packed;
+        int lit = 0;
+        for (GameWorld.Sprite s : world.sprites) {
+            if (!(s instanceof GameWorld.Portal || s instanceof GameWorld.Medkit)) continue;
+            int floor = LightMap.index((int)s.x, (int)s.y, LightMap.FLOOR);
+            assertEquals("floor under " + s.getClass().getSimpleName(), Integer.toHexString(expected[floor]), Integer.toHexString(actual[floor]));
+            if (expected[floor] != 0x808080) lit++;
+        }
+        assertTrue("nothing lit to compare", lit > 0);
+        for (int cell : cells) assertEquals(Integer.toHexString(expected[cell]), Integer.toHexString(actual[cell]));
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void clientLightsFollowPickupsAndLevelChanges() throws IOException {
+        GameWorld world = TestWorlds.maze(9);
+        world.sprites.removeIf(s -> s instanceof GameWorld.Enemy); // No rockets, so every light stands still
+        try (CoopHost host = new CoopHost(world, loopback(), 5);
+             CoopClient client = new CoopClient(TestWorlds.WALL_TEXTURES, host.link.localAddress(), loopback(), 6)) {
+            settle(host, client);
+            assertTrue(client.connected());
+            assertSameLights(world, client);
+
+            // A medkit the host picks up goes dark on the client too
+            GameWorld.Sprite medkit = null, portal = null;
+            for (GameWorld.Sprite s : world.sprites) {
+                if (s instanceof GameWorld.Medkit) medkit = s;
+                if (s instanceof GameWorld.Portal) portal = s;
+            }
+            assertNotNull(medkit);
+            int medkitCell = LightMap.index((int)medkit.x, (int)medkit.y, LightMap.FLOOR);
+            world.playerHealth = 50;
+            world.playerX = medkit.x;
+            world.playerY = medkit.y;
+            settle(host, client);
+            assertTrue(!world.sprites.contains(medkit));
+            assertSameLights(world, client, medkitCell);
+
+            // And after the portal, nothing of the old level's lights is left on the client
+            int portalCell = LightMap.index((int)portal.x, (int)portal.y, LightMap.FLOOR);
+            world.playerX = portal.x;
+            world.playerY = portal.y;
+            client.tick(0, 0, 0, false);
+            host.tick(0, 0, 0, false);
+            assertEquals(2, world.level);
+            world.sprites.removeIf(s -> s instanceof GameWorld.Enemy); // Before any of the new level's enemies fires
+            settle(host, client);
+            assertEquals(2, client.view.level);
+            assertSameLights(world, client, portalCell);
+        }
+    }
+
+    @Test
+    public void guestThatLeavesOrVanishesIsDropped() throws IOException {
+        GameWorld world = TestWorlds.maze(7);
+        try (CoopHost host = new CoopHost(world, loopback(), 7)) {
+            // Closing sends a leave, and the host lets the guest go at once
+            CoopClient first = new CoopClient(TestWorlds.WALL_TEXTURES, host.link.localAddress(), loopback(), 8);
+            for (int i = 0; i < 30; i++) {
+                guestStep(first, i);
+                hostStep(host, i);
+            }
+            assertTrue(host.hasGuest() && world.guest.joined);
+            first.close();
+            first.close(); // Twice is harmless
+            hostStep(host, 30);
+            assertTrue(!host.hasGuest() && !world.guest.joined);
+            assertEquals(1, host.guestsLeft);
+            assertEquals(0, host.bytesLastTick);
+
+            try (CoopClient second = new CoopClient(TestWorlds.WALL_TEXTURES, host.link.localAddress(), loopback(), 9)) {
+                int i = 31;
+                for (int k = 0; k < 30; k++, i++) {
+                    guestStep(second, i);
+                    hostStep(host, i);
+                }
+                assertTrue(host.hasGuest() && world.guest.joined);
+                assertEquals(second.inputSequence(), world.guest.lastInput);
+
+                // Gone quiet without a word: dropped once the timeout passes, and no more snapshots
+                for (int k = 0; k <= CoopHost.GUEST_TIMEOUT_TICKS; k++, i++) {
+                    hostStep(host, i);
+                    assertTrue("dropped too early", host.hasGuest() || k == CoopHost.GUEST_TIMEOUT_TICKS);
+                }
+                assertTrue(!host.hasGuest() && !world.guest.joined);
+                assertEquals(1, host.guestsTimedOut);
+                assertEquals(0, host.bytesLastTick);
+
+                // Back again, it is taken up where its own inputs left off and predicted exactly from there
+                for (int k = 0; k < 30; k++, i++) {
+                    guestStep(second, i);
+                    hostStep(host, i);
+                }
+                assertTrue(host.hasGuest());
+                assertEquals(second.inputSequence(), world.guest.lastInput);
+                host.tick(0, 0, 0, false);
+                second.tick(0, 0, 0, false);
+                host.tick(0, 0, 0, false);
+                second.tick(0, 0, 0, false);
+                assertEquals(world.guest.x, second.view.playerX, 0);
+                assertEquals(world.guest.y, second.view.playerY, 0);
+            }
+        }
+    }
+
+    @Test
+    public void levelChangeReachesClientThroughHeavyLoss() throws IOException {
+        GameWorld world = TestWorlds.maze(6);
+        try (CoopHost host = new CoopHost(world, loopback(), 3);
+             CoopClient client = new CoopClient(TestWorlds.WALL_TEXTURES, host.link.localAddress(), loopback(), 4)) {
+            host.link.lossPercent = 50;
+            client.link.lossPercent = 50;
+            for (int i = 0; i < 120; i++) {
+                guestStep(client, i);
+                hostStep(host, i);
+            }
+            assertTrue(client.connected());
+            int version = client.newestState().mapVersion;
+
+            GameWorld.Sprite portal = null;
+            for (GameWorld.Sprite s : world.sprites) if (s instanceof GameWorld.Portal) portal = s;
+            assertNotNull(portal);
+            world.playerX = portal.x;
+            world.playerY = portal.y;
+            int i = 120;
+            for (; i < 400 && client.newestState().mapVersion == version; i++) {
+                guestStep(client, i);
+                hostStep(host, i);
+            }
+            assertEquals(2, world.level);
+            assertTrue("map never arrived", client.newestState().mapVersion != version);
+            assertEquals(2, client.view.level);
+            assertTrue(Arrays.deepEquals(world.worldMap, client.view.worldMap));
+
+            // Once the blend has moved past the old level, the view shows the new level's portal
+            for (int k = 0; k < CoopClient.INTERPOLATION_TICKS * 4; k++, i++) {
+                guestStep(client, i);
+                hostStep(host, i);
+            }
+            GameWorld.Sprite newPortal = null, shown = null;
+            for (GameWorld.Sprite s : world.sprites) if (s instanceof GameWorld.Portal) newPortal = s;
+            for (GameWorld.Sprite s : client.view.sprites) if (s instanceof GameWorld.Portal) shown = s;
+            assertNotNull(shown);
+            assertEquals(newPortal.id, shown.id);
+            assertEquals(newPortal.x, shown.x, 1 / NetState.POSITION_SCALE);
+            assertEquals(newPortal.y, shown.y, 1 / NetState.POSITION_SCALE);
+        }
+    }
+}
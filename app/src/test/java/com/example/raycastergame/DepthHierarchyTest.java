@@ -0,0 +1,68 @@
+package com.example.raycastergame;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the depth hierarchy against the per-column test it short-cuts: over random depth
+ * buffers of awkward widths, every range and depth must classify exactly as comparing each
+ * column would.
+ */
+public class DepthHierarchyTest {
+
+    // The answer from testing every column, as drawSprites used to
+    private static int bruteForce(double[] depth, int width, int left, int right, double d) {
+        left = Math.max(0, left);
+        right = Math.min(width, right);
+        boolean anyVisible = false, anyHidden = false;
+        for (int x = left; x < right; x++) {
+            if (depth[x] > d) anyVisible = true;
+            else anyHidden = true;
+        }
+        if (anyVisible && anyHidden) return DepthHierarchy.PARTIAL;
+        return anyVisible ? DepthHierarchy.VISIBLE : DepthHierarchy.HIDDEN;
+    }
+
+    @Test
+    public void classifyMatchesPerColumnTest() {
+        Random random = new Random(5);
+        DepthHierarchy hierarchy = new DepthHierarchy();
+        for (int width : new int[] { 1, 2, 3, 7, 64, 100, 257 }) {
+            double[] depth = new double[width + 8]; // Longer than the screen, like after a resize
+            for (int x = 0; x < depth.length; x++) depth[x] = 1 + random.nextInt(12) + random.nextDouble();
+            hierarchy.build(depth, width);
+            assertEquals(width, hierarchy.width);
+            for (int i = 0; i < 2000; i++) {
+                int left = random.nextInt(width + 20) - 10;
+                int right = left + random.nextInt(width + 10);
+                double d = random.nextInt(3) == 0 ? depth[Math.max(0, Math.min(width - 1, left))] : random.nextDouble() * 15;
+                assertEquals("width " + width + " [" + left + ", " + right + ") at " + d,
+                        bruteForce(depth, width, left, right, d), hierarchy.classify(left, right, d));
+            }
+        }
+    }
+
+    @Test
+    public void equalDepthCountsAsHiddenAndOffScreenIsHidden() {
+        double[] depth = { 4, 4, 4, 4, 2, 2 };
+        DepthHierarchy hierarchy = new DepthHierarchy();
+        hierarchy.build(depth, depth.length);
+        assertEquals(DepthHierarchy.HIDDEN, hierarchy.classify(0, 4, 4.0));
+        assertEquals(DepthHierarchy.VISIBLE, hierarchy.classify(0, 4, 3.9));
+        assertEquals(DepthHierarchy.PARTIAL, hierarchy.classify(3, 5, 3.0));
+        assertEquals(DepthHierarchy.VISIBLE, hierarchy.classify(-50, 50, 1.0));
+        assertEquals(DepthHierarchy.HIDDEN, hierarchy.classify(6, 20, 0.5));
+        assertEquals(DepthHierarchy.HIDDEN, hierarchy.classify(-20, 0, 0.5));
+        assertEquals(2.0, hierarchy.nearest(), 0);
+        assertEquals(4.0, hierarchy.farthest(), 0);
+        assertEquals(4, hierarchy.levels); // 8 leaves: 8, 4, 2, 1
+
+        // Rebuilding over a narrower screen forgets the old columns
+        hierarchy.build(depth, 4);
+        assertEquals(DepthHierarchy.VISIBLE, hierarchy.classify(0, 6, 3.0));
+        assertEquals(4.0, hierarchy.nearest(), 0);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.raycastergame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the Chebyshev distance field against brute force, and that rays which skip empty cells
+ * with it hit exactly the same walls as the plain one-cell-at-a-time DDA.
+ */
+public class DistanceFieldTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 360;
+
+    @Test
+    public void distance_matchesBruteForce() {
+        for (GameWorld world : new GameWorld[] { TestWorlds.maze(1), TestWorlds.arena(2) }) {
+            int n = GameWorld.MAP_SIZE;
+            for (int y = 0; y < n; y++) {
+                for (int x = 0; x < n; x++) {
+                    // The map edge counts as a wall one cell outside the map
+                    int expected = Math.min(Math.min(x + 1, y + 1), Math.min(n - x, n - y));
+                    for (int wy = 0; wy < n; wy++) {
+                        for (int wx = 0; wx < n; wx++) {
+                            if (world.worldMap[wy][wx] > 0) expected = Math.min(expected, Math.max(Math.abs(wx - x), Math.abs(wy - y)));
+                        }
+                    }
+                    assertEquals("cell " + x + "," + y, expected, world.distanceField.distance[y * n + x]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void fixedPointSkipping_hitsSameWalls() {
+        compareSkipping(true);
+    }
+
+    @Test
+    public void doubleSkipping_hitsSameWalls() {
+        compareSkipping(false);
+    }
+
+    private static void compareSkipping(boolean fixedPoint) {
+        Raycaster stepping = new Raycaster();
+        Raycaster skipping = new Raycaster();
+        stepping.resize(WIDTH, HEIGHT);
+        skipping.resize(WIDTH, HEIGHT);
+        stepping.fixedPoint = skipping.fixedPoint = fixedPoint;
+        stepping.skipEmptyCells = false;
+        Camera camera = new Camera();
+        camera.setViewport(WIDTH, HEIGHT);
+        camera.setFieldOfView(66f);
+
+        for (long seed = 0; seed < 4; seed++) {
+            GameWorld world = TestWorlds.arena(seed);
+            for (float[] pose : TestWorlds.randomPoses(world, 50, seed)) {
+                world.playerX = pose[0];
+                world.playerY = pose[1];
+                world.playerAngle = pose[2];
+                stepping.cast(world, camera, 1);
+                skipping.cast(world, camera, 1);
+                assertArrayEquals(stepping.textureId, skipping.textureId);
+                assertArrayEquals(stepping.side, skipping.side);
+                assertArrayEquals(stepping.lineHeight, skipping.lineHeight);
+                assertArrayEquals(stepping.depthBuffer, skipping.depthBuffer, 1e-9);
+            }
+        }
+        assertTrue("skipping should visit fewer cells", skipping.cellsVisited * 2 < stepping.cellsVisited);
+    }
+
+    @Test
+    public void castRay_matchesRaycasterDepth() {
+        Raycaster raycaster = new Raycaster();
+        raycaster.resize(WIDTH, HEIGHT);
+        raycaster.skipEmptyCells = false;
+        Camera camera = new Camera();
+        camera.setViewport(WIDTH, HEIGHT);
+        camera.setFieldOfView(66f);
+
+        for (GameWorld world : new GameWorld[] { TestWorlds.maze(3), TestWorlds.arena(3) }) {
+            for (float[] pose : TestWorlds.randomPoses(world, 20, 11L)) {
+                world.playerX = pose[0];
+                world.playerY = pose[1];
+                world.playerAngle = pose[2];
+                raycaster.cast(world, camera, 1);
+                for (int x = 0; x < WIDTH; x += 7) {
+                    double rayDirX = camera.dirX - camera.dirY * camera.raySide[x];
+                    double rayDirY = camera.dirY + camera.dirX * camera.raySide[x];
+                    double dist = world.distanceField.castRay(world.playerX, world.playerY, rayDirX, rayDirY, 1000);
+                    if (raycaster.depthBuffer[x] > 0.01) assertEquals("column " + x, raycaster.depthBuffer[x], dist, 1e-9);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.raycastergame;
+
+import java.io.IOException;
+import java.util.Locale;
+
+// --- Game Snapshot Benchmark ---
+// Times GameSnapshot.capture and restore on a level-1 world with the usual sprite count. capture
+// runs on the UI thread in onPause, so it should stay well under a millisecond on a phone; the
+// JVM figure here is a lower bound for that. Also prints the snapshot size.
+// Not a unit test; run its main() from the IDE or the test classpath.
+//
+// Usage: java com.example.raycastergame.GameSnapshotBenchmark [iterations]
+public class GameSnapshotBenchmark {
+
+    static volatile long sink; // Keeps results alive past the JIT
+
+    public static void main(String[] args) throws IOException {
+        int iterations = args.length >= 1 ? Integer.parseInt(args[0]) : 2000;
+        GameWorld world = TestWorlds.maze(8L);
+        GameWorld restored = new GameWorld(TestWorlds.WALL_TEXTURES);
+
+        for (int round = 0; round < 3; round++) { // The first round is JIT warm-up
+            long start = System.nanoTime();
+            byte[] bytes = null;
+            for (int i = 0; i < iterations; i++) {
+                bytes = GameSnapshot.capture(world);
+                sink += bytes.length;
+            }
+            double captureUs = (System.nanoTime() - start) / 1e3 / iterations;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                GameSnapshot.restore(restored, bytes);
+                sink += restored.sprites.size();
+            }
+            double restoreUs = (System.nanoTime() - start) / 1e3 / iterations;
+            if (round > 0) {
+                System.out.println(String.format(Locale.US, "%6d bytes, %3d sprites: capture %7.1f us, restore %7.1f us",
+                        bytes.length, world.sprites.size(), captureUs, restoreUs));
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.raycastergame;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Interrupts a run with a snapshot, restores it into a fresh world and checks that both worlds
+ * carry on identically, including into the next generated level.
+ */
+public class GameSnapshotTest {
+
+    private static void assertSameWorld(GameWorld expected, GameWorld actual) {
+        assertEquals(expected.tick, actual.tick);
+        assertEquals(expected.level, actual.level);
+        assertEquals(expected.score, actual.score);
+        assertEquals(expected.playerHealth, actual.playerHealth);
+        assertEquals(expected.playerX, actual.playerX, 0);
+        assertEquals(expected.playerY, actual.playerY, 0);
+        assertEquals(expected.playerAngle, actual.playerAngle, 0);
+        assertTrue(Arrays.deepEquals(expected.worldMap, actual.worldMap));
+        assertEquals(expected.sprites.size(), actual.sprites.size());
+        for (int i = 0; i < expected.sprites.size(); i++) {
+            GameWorld.Sprite a = expected.sprites.get(i), b = actual.sprites.get(i);
+            assertEquals(a.getClass(), b.getClass());
+            assertEquals(a.x, b.x, 0);
+            assertEquals(a.y, b.y, 0);
+        }
+        assertArrayEquals(expected.lightMap.packed, actual.lightMap.packed);
+    }
+
+    private static GameWorld.Sprite portal(GameWorld world) {
+        for (GameWorld.Sprite s : world.sprites) if (s instanceof GameWorld.Portal) return s;
+        throw new AssertionError("no portal");
+    }
+
+    @Test
+    public void restoredRun_continuesExactlyIntoTheNextLevel() throws IOException {
+        GameWorld original = TestWorlds.maze(21L);
+        for (int i = 0; i < 1500 && !original.gameOver; i++) TestWorlds.step(original, i);
+
+        GameWorld restored = TestWorlds.maze(99L); // Different run, fully replaced by the restore
+        GameSnapshot.restore(restored, GameSnapshot.capture(original));
+        assertSameWorld(original, restored);
+
+        for (int i = 1500; i < 2500 && !original.gameOver; i++) {
+            TestWorlds.step(original, i);
+            TestWorlds.step(restored, i);
+        }
+        assertSameWorld(original, restored);
+
+        // Walk both onto the portal: the next level comes from the restored random state
+        int level = original.level;
+        for (GameWorld world : new GameWorld[] { original, restored }) {
+            GameWorld.Sprite exit = portal(world);
+            world.playerX = exit.x;
+            world.playerY = exit.y;
+            world.tick(0, 0, 0, false);
+        }
+        assertEquals(level + 1, original.level);
+        assertSameWorld(original, restored);
+    }
+
+    @Test
+    public void snapshot_roundTripsThroughAFile() throws IOException {
+        GameWorld world = TestWorlds.maze(4L);
+        for (int i = 0; i < 600; i++) TestWorlds.step(world, i);
+        File file = File.createTempFile("snapshot", ".dcsn");
+        file.deleteOnExit();
+        byte[] bytes = GameSnapshot.capture(world);
+        GameSnapshot.write(bytes, file);
+        assertArrayEquals(bytes, GameSnapshot.read(file));
+        assertEquals(null, GameSnapshot.read(new File(file.getPath() + ".missing")));
+    }
+
+    // How long capture takes is measured by GameSnapshotBenchmark; only the size is a test
+    @Test
+    public void capture_staysSmall() {
+        GameWorld world = TestWorlds.maze(8L);
+        for (int i = 0; i < 600; i++) TestWorlds.step(world, i);
+        int bytes = GameSnapshot.capture(world).length;
+        assertTrue(bytes + " bytes", bytes < 16 * 1024);
+    }
+
+    @Test
+    public void damagedOrForeignSnapshots_areRejected() {
+        GameWorld world = TestWorlds.maze(3L);
+        byte[] bytes = GameSnapshot.capture(world);
+
+        GameWorld otherTextures = new GameWorld(TestWorlds.WALL_TEXTURES + 1);
+        otherTextures.startGame(3L);
+        for (byte[] bad : new byte[][] { Arrays.copyOf(bytes, bytes.length - 5), Arrays.copyOf(bytes, 10), new byte[0] }) {
+            try {
+                GameSnapshot.restore(new GameWorld(TestWorlds.WALL_TEXTURES), bad);
+                fail("restored " + bad.length + " bytes");
+            } catch (IOException expected) {
+                // Rejected, as it should be
+            }
+        }
+        try {
+            GameSnapshot.restore(otherTextures, bytes);
+            fail("restored into a world with a different texture count");
+        } catch (IOException expected) {
+            // Rejected, as it should be
+        }
+    }
+
+    @Test
+    public void gameRandom_matchesJavaUtilRandomAndResumesFromItsState() {
+        Random reference = new Random(1234L);
+        GameRandom random = new GameRandom(1234L);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(reference.nextInt(61), random.nextInt(61));
+            assertEquals(reference.nextFloat(), random.nextFloat(), 0);
+            assertEquals(reference.nextLong(), random.nextLong());
+        }
+        GameRandom resumed = new GameRandom(0L);
+        resumed.setState(random.getState());
+        for (int i = 0; i < 100; i++) assertEquals(random.nextInt(), resumed.nextInt());
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.raycastergame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exercises the touch input queue: time-bounded polling, overflow and a real producer thread
+ * racing the consumer.
+ */
+public class InputQueueTest {
+
+    @Test
+    public void poll_stopsAtSamplesNewerThanTheTick() {
+        InputQueue queue = new InputQueue(8);
+        InputQueue.Event e = new InputQueue.Event();
+        queue.offer(InputQueue.DOWN, 1, 10, 20, 100);
+        queue.offer(InputQueue.MOVE, 1, 11, 21, 200);
+        queue.offer(InputQueue.MOVE, 1, 12, 22, 300);
+
+        assertTrue(queue.poll(250, e));
+        assertEquals(InputQueue.DOWN, e.type);
+        assertTrue(queue.poll(250, e));
+        assertEquals(200, e.timeNanos);
+        assertFalse(queue.poll(250, e));
+        assertTrue(queue.poll(Long.MAX_VALUE, e));
+        assertEquals(12f, e.x, 0);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void offer_dropsWhenFull() {
+        InputQueue queue = new InputQueue(4);
+        for (int i = 0; i < 6; i++) queue.offer(InputQueue.MOVE, 0, i, 0, i);
+        assertEquals(4, queue.size());
+        assertEquals(2, queue.dropped);
+    }
+
+    @Test
+    public void producerThread_deliversEverySampleInOrder() throws InterruptedException {
+        final int count = 50_000;
+        final InputQueue queue = new InputQueue(256);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                while (!queue.offer(InputQueue.MOVE, i & 7, i, -i, i)) Thread.yield();
+            }
+        });
+        producer.start();
+
+        InputQueue.Event e = new InputQueue.Event();
+        int received = 0;
+        while (received < count) {
+            if (!queue.poll(Long.MAX_VALUE, e)) continue;
+            assertEquals(received, e.timeNanos);
+            assertEquals(received, e.x, 0);
+            assertEquals(-received, e.y, 0);
+            assertEquals(received & 7, e.pointerId);
+            received++;
+        }
+        producer.join();
+        assertEquals(0, queue.size());
+    }
+}
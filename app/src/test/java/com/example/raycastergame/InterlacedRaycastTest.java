@@ -0,0 +1,147 @@
+package com.example.raycastergame;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Walks and turns through generated levels rendering each frame twice, once from a full raycast
+ * and once interlaced, and bounds how far the interlaced image strays from the
+ * full one. Frames are drawn headlessly into an int[] with a checkered texture tinted per lit face,
+ * so a wrong face, distance or texture coordinate all show up as differing pixels.
+ */
+public class InterlacedRaycastTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 360;
+    private static final int TEXTURE_SIZE = 64;
+
+    // Textured wall columns over a black floor and ceiling, as the HIGH path samples them
+    private static void render(Raycaster r, int[] image) {
+        Arrays.fill(image, 0);
+        for (int x = 0; x < WIDTH; x++) {
+            int texX = Math.min(TEXTURE_SIZE - 1, (int)(r.wallX[x] * TEXTURE_SIZE));
+            for (int y = r.drawStart[x]; y < r.drawEnd[x]; y++) {
+                int d = y * 256 - HEIGHT * 128 + r.lineHeight[x] * 128;
+                int texY = Math.max(0, Math.min(TEXTURE_SIZE - 1, (d * TEXTURE_SIZE / r.lineHeight[x]) / 256));
+                int checker = ((texX >> 3) + (texY >> 3)) & 1;
+                int shade = (r.lightIndex[x] * 0x9E3779B1) >>> 8; // Stands in for the light map lookup
+                image[y * WIDTH + x] = 0xFF000000 | ((r.textureId[x] * 0x402010) ^ shade ^ (checker << 7) ^ (r.side[x] << 15)) & 0xFFFFFF;
+            }
+        }
+    }
+
+    private static Camera camera() {
+        Camera camera = new Camera();
+        camera.setViewport(WIDTH, HEIGHT);
+        camera.setFieldOfView(66f);
+        return camera;
+    }
+
+    @Test
+    public void interlacedImageStaysCloseToFullRaycast() {
+        Raycaster full = new Raycaster();
+        Raycaster interlaced = new Raycaster();
+        full.resize(WIDTH, HEIGHT);
+        interlaced.resize(WIDTH, HEIGHT);
+        Camera fullCamera = camera(), interlacedCamera = camera();
+        int[] expected = new int[WIDTH * HEIGHT];
+        int[] actual = new int[WIDTH * HEIGHT];
+
+        Random random = new Random(7);
+        long differing = 0, frames = 0;
+        double worstFrame = 0;
+        for (int seed = 0; seed < 4; seed++) {
+            GameWorld world = TestWorlds.maze(seed);
+            double turnRate = 0.03;
+            for (int tick = 0; tick < 300; tick++) {
+                // Walk forward at running speed, turning, and bounce off walls
+                if (tick % 40 == 0) turnRate = (random.nextDouble() - 0.5) * 0.08;
+                world.playerAngle += turnRate;
+                double nx = world.playerX + Math.cos(world.playerAngle) * 0.06;
+                double ny = world.playerY + Math.sin(world.playerAngle) * 0.06;
+                if (world.worldMap[(int)ny][(int)nx] == 0) {
+                    world.playerX = (float)nx;
+                    world.playerY = (float)ny;
+                } else {
+                    world.playerAngle += Math.PI / 2;
+                }
+
+                full.cast(world, fullCamera, 1);
+                interlaced.castInterlaced(world, interlacedCamera);
+                render(full, expected);
+                render(interlaced, actual);
+                int diff = 0;
+                for (int i = 0; i < expected.length; i++) if (expected[i] != actual[i]) diff++;
+                differing += diff;
+                frames++;
+                worstFrame = Math.max(worstFrame, diff / (double)expected.length);
+            }
+        }
+        double mean = differing / (double)(frames * WIDTH * HEIGHT);
+        assertTrue("mean differing pixels " + mean, mean < 0.002);
+        assertTrue("worst frame differing pixels " + worstFrame, worstFrame < 0.02);
+
+        // Roughly half the rays
+        double raysPerFrame = interlaced.raysCast / (double)frames;
+        assertTrue("rays per frame " + raysPerFrame, raysPerFrame < WIDTH * 0.6);
+        assertTrue(interlaced.reprojected > interlaced.reprojectMisses * 4);
+    }
+
+    @Test
+    public void reprojectedColumnsMatchTheRayTheyReplace() {
+        Raycaster full = new Raycaster();
+        Raycaster interlaced = new Raycaster();
+        full.resize(WIDTH, HEIGHT);
+        interlaced.resize(WIDTH, HEIGHT);
+        Camera fullCamera = camera(), interlacedCamera = camera();
+        GameWorld world = TestWorlds.maze(2);
+
+        int columns = 0, otherFace = 0;
+        for (int tick = 0; tick < 120; tick++) {
+            world.playerAngle += 0.02;
+            full.cast(world, fullCamera, 1);
+            long before = interlaced.reprojected;
+            interlaced.castInterlaced(world, interlacedCamera);
+            assertTrue(interlaced.reprojected > before);
+            for (int x = 0; x < WIDTH; x++) {
+                columns++;
+                if (full.lightIndex[x] != interlaced.lightIndex[x]) { // Grazing a corner
+                    otherFace++;
+                    continue;
+                }
+                double depth = full.depthBuffer[x];
+                assertEquals("depth at x=" + x, depth, interlaced.depthBuffer[x], depth * 1e-9);
+                assertEquals("lineHeight at x=" + x, full.lineHeight[x], interlaced.lineHeight[x], 1);
+                assertEquals("wallX at x=" + x, full.wallX[x], interlaced.wallX[x], 1e-6);
+            }
+        }
+        assertTrue(otherFace + " of " + columns + " columns hit a different face", otherFace * 1000 < columns);
+    }
+
+    @Test
+    public void everyColumnIsFilledFromAboutHalfTheRays() {
+        Raycaster raycaster = new Raycaster();
+        raycaster.resize(WIDTH, HEIGHT);
+        Camera camera = camera();
+        GameWorld world = TestWorlds.maze(1);
+
+        for (int frame = 0; frame < 4; frame++) {
+            Arrays.fill(raycaster.lineHeight, -1);
+            raycaster.reprojected = raycaster.reprojectMisses = 0;
+            long before = raycaster.raysCast;
+            raycaster.castInterlaced(world, camera);
+            for (int x = 0; x < WIDTH; x++) assertTrue("column " + x, raycaster.lineHeight[x] >= 0);
+
+            assertEquals(WIDTH / 2, raycaster.reprojected + raycaster.reprojectMisses);
+            assertEquals(WIDTH / 2 + raycaster.reprojectMisses, raycaster.raysCast - before);
+            // Whichever edge column isn't cast this frame has only one neighbour, so it is cast anyway
+            assertTrue(raycaster.reprojectMisses >= 1);
+            world.playerAngle += 0.1;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.raycastergame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that incremental light updates leave exactly the state a fresh bake would, and that a
+ * light only touches the cells within its radius.
+ */
+public class LightMapTest {
+
+    private static float[] emptyCellCentre(GameWorld world, int start) {
+        for (int i = start; i < GameWorld.MAP_SIZE * GameWorld.MAP_SIZE; i++) {
+            int x = i % GameWorld.MAP_SIZE, y = i / GameWorld.MAP_SIZE;
+            if (world.worldMap[y][x] == 0) return new float[] { x + 0.5f, y + 0.5f };
+        }
+        throw new AssertionError("no empty cell");
+    }
+
+    @Test
+    public void movingLight_endsInSameStateAsPlacingItOnce() {
+        GameWorld moved = TestWorlds.maze(5L);
+        GameWorld placed = TestWorlds.maze(5L);
+        LightMap.Light a = new LightMap.Light(0xFFA030, 3f, true);
+        LightMap.Light b = new LightMap.Light(0xFFA030, 3f, true);
+
+        float[] end = emptyCellCentre(moved, 600);
+        for (int i = 0; i < 200; i += 7) {
+            float[] p = emptyCellCentre(moved, 300 + i * 5);
+            moved.lightMap.set(a, p[0], p[1], 1f - i / 400f);
+        }
+        moved.lightMap.set(a, end[0], end[1], 0.75f);
+        placed.lightMap.set(b, end[0], end[1], 0.75f);
+
+        assertArrayEquals(placed.lightMap.packed, moved.lightMap.packed);
+    }
+
+    @Test
+    public void removingLights_restoresBakedMap() {
+        GameWorld world = TestWorlds.maze(5L);
+        int[] baked = world.lightMap.packed.clone();
+        LightMap.Light[] lights = new LightMap.Light[8];
+        for (int i = 0; i < lights.length; i++) {
+            lights[i] = new LightMap.Light(0x30A0FF, 2f + i, i % 2 == 0);
+            float[] p = emptyCellCentre(world, 200 + i * 300);
+            world.lightMap.set(lights[i], p[0], p[1], 1f);
+        }
+        for (LightMap.Light light : lights) world.lightMap.remove(light);
+        assertArrayEquals(baked, world.lightMap.packed);
+    }
+
+    @Test
+    public void light_onlyTouchesCellsWithinRadius() {
+        GameWorld world = TestWorlds.maze(5L);
+        int[] before = world.lightMap.packed.clone();
+        float[] p = emptyCellCentre(world, 2000);
+        LightMap.Light light = new LightMap.Light(0xFFFFFF, 4f, false);
+        world.lightMap.set(light, p[0], p[1], 1f);
+
+        int changed = 0;
+        for (int i = 0; i < before.length; i++) {
+            if (before[i] == world.lightMap.packed[i]) continue;
+            changed++;
+            int cell = i / LightMap.ENTRIES;
+            int x = cell % GameWorld.MAP_SIZE, y = cell / GameWorld.MAP_SIZE;
+            assertTrue("cell " + x + "," + y, Math.abs(x + 0.5f - p[0]) <= 4.5f && Math.abs(y + 0.5f - p[1]) <= 4.5f);
+        }
+        assertTrue(changed > 0);
+    }
+
+    @Test
+    public void watchedVersion_onlyMovesForLightsOnTheWatchedFaces() {
+        GameWorld world = TestWorlds.maze(5L);
+        Raycaster raycaster = new Raycaster();
+        raycaster.resize(320, 180);
+        Camera camera = new Camera();
+        camera.setViewport(320, 180);
+        camera.setFieldOfView(66f);
+        raycaster.cast(world, camera, 1);
+        world.lightMap.watch(raycaster.lightIndex, 320, 1);
+
+        // A light whose radius can't reach any face the camera sees
+        LightMap.Light light = new LightMap.Light(0xFFFFFF, 2f, false);
+        float[] far = emptyCellCentre(world, GameWorld.MAP_SIZE * GameWorld.MAP_SIZE - 200);
+        int version = world.lightMap.version, watched = world.lightMap.watchedVersion;
+        world.lightMap.set(light, far[0], far[1], 1f);
+        world.lightMap.remove(light);
+        assertEquals(version + 2, world.lightMap.version);
+        assertEquals(watched, world.lightMap.watchedVersion);
+
+        // The same light at the camera
+        world.lightMap.set(light, world.playerX, world.playerY, 1f);
+        assertEquals(watched + 1, world.lightMap.watchedVersion);
+        world.lightMap.remove(light);
+        assertEquals(watched + 2, world.lightMap.watchedVersion);
+    }
+
+    // Rockets flying all over the level while the player stands still and looks around now and
+    // then: how often the wall cache would survive a tick keyed on version against watchedVersion.
+    @Test
+    public void watchedVersion_keepsTheWallCacheThroughCombatOffScreen() {
+        GameWorld world = TestWorlds.maze(9L);
+        world.sprites.clear(); // No portal and no enemies; the rockets below are the combat
+        Raycaster raycaster = new Raycaster();
+        raycaster.resize(320, 180);
+        Camera camera = new Camera();
+        camera.setViewport(320, 180);
+        camera.setFieldOfView(66f);
+        float[][] cells = TestWorlds.randomPoses(world, 256, 3L);
+        int ticks = 0, anyChange = 0, watchedChange = 0;
+        int version = world.lightMap.version, watched = world.lightMap.watchedVersion;
+        for (int i = 0; i < 3000; i++) {
+            world.playerHealth = 100;
+            if (i % 3 == 0) {
+                float[] from = cells[i % cells.length], to = cells[(i * 7 + 1) % cells.length];
+                world.spawnRocket(from[0], from[1], to[0], to[1], 0.2f);
+            }
+            boolean turn = (i % 200) < 10;
+            world.tick(0f, 0f, turn ? 0.3f : 0f, false);
+            if (turn) {
+                raycaster.cast(world, camera, 1);
+                world.lightMap.watch(raycaster.lightIndex, 320, 1);
+            } else {
+                ticks++;
+                if (world.lightMap.version != version) anyChange++;
+                if (world.lightMap.watchedVersion != watched) watchedChange++;
+            }
+            version = world.lightMap.version;
+            watched = world.lightMap.watchedVersion;
+        }
+        String counts = ticks + " still ticks: lights changed in " + anyChange + ", watched faces in " + watchedChange;
+        assertTrue(counts, anyChange > ticks * 9 / 10);
+        assertTrue(counts, watchedChange > 0 && watchedChange * 4 < anyChange);
+    }
+
+    @Test
+    public void shade_unitLightKeepsColour() {
+        int light = (LightMap.UNIT << 16) | (LightMap.UNIT << 8) | LightMap.UNIT;
+        assertEquals(0xFF336699, LightMap.shade(0xFF336699, light));
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.raycastergame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the same seed and input serially and across worker threads and checks the worlds stay
+ * identical tick by tick, sprite by sprite.
+ */
+public class ParallelUpdateTest {
+
+    @Test
+    public void parallelUpdate_matchesSerialEveryTick() {
+        GameWorld serial = TestWorlds.maze(7L);
+        GameWorld parallel = TestWorlds.maze(7L);
+        parallel.setParallelism(4);
+        parallel.minChunkSize = 8; // Force several chunks with the sprite counts a level has
+        assertTrue(parallel.sprites.size() >= 4 * parallel.minChunkSize);
+
+        try {
+            for (int i = 0; i < 4000 && !serial.gameOver; i++) {
+                TestWorlds.step(serial, i);
+                TestWorlds.step(parallel, i);
+                assertEquals("score @" + i, serial.score, parallel.score);
+                assertEquals("health @" + i, serial.playerHealth, parallel.playerHealth);
+                assertEquals("level @" + i, serial.level, parallel.level);
+                assertEquals("sprites @" + i, serial.sprites.size(), parallel.sprites.size());
+                for (int s = 0; s < serial.sprites.size(); s++) {
+                    GameWorld.Sprite a = serial.sprites.get(s);
+                    GameWorld.Sprite b = parallel.sprites.get(s);
+                    assertEquals(a.getClass(), b.getClass());
+                    assertEquals(a.x, b.x, 0);
+                    assertEquals(a.y, b.y, 0);
+                }
+            }
+            assertEquals(serial.gameOver, parallel.gameOver);
+        } finally {
+            parallel.setParallelism(1);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.raycastergame;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Steps the particle pool headlessly: the per-frame budget, oldest-first recycling, lifetimes,
+ * wall and floor collisions, and an update loop that allocates nothing.
+ */
+public class ParticleSystemTest {
+
+    // An open 8x8 room with solid walls around it
+    private static int[][] room() {
+        int[][] map = new int[8][8];
+        for (int i = 0; i < 8; i++) {
+            map[0][i] = map[7][i] = map[i][0] = map[i][7] = 1;
+        }
+        return map;
+    }
+
+    @Test
+    public void spawnsPastTheFrameBudget_areDroppedAndCounted() {
+        ParticleSystem particles = new ParticleSystem(64, 10);
+        particles.burst(ParticleSystem.EXPLOSION, 4, 4, 0.5f, 25);
+        assertEquals(10, particles.live);
+        assertEquals(10, particles.spawnedThisFrame);
+        assertEquals(15, particles.droppedThisFrame);
+
+        particles.beginFrame();
+        assertEquals(10, particles.spawnedLastFrame);
+        assertEquals(15, particles.droppedLastFrame);
+        assertTrue(particles.spawn(4, 4, 0.5f, 0, 0, 0, 0.1f, 0xFFFFFF, 30));
+        assertEquals(11, particles.live);
+    }
+
+    @Test
+    public void fullPool_recyclesTheOldestParticleFirst() {
+        ParticleSystem particles = new ParticleSystem(4, 100);
+        for (int i = 0; i < 4; i++) particles.spawn(1 + i, 1, 0.5f, 0, 0, 0, 0.1f, i, 100);
+        particles.spawn(6, 1, 0.5f, 0, 0, 0, 0.1f, 4, 100);
+        assertEquals(4, particles.live);
+        assertEquals(1, particles.recycled);
+        boolean[] colors = new boolean[5];
+        for (int i = 0; i < particles.capacity; i++) colors[particles.color[i]] = true;
+        assertFalse(colors[0]); // The first one spawned is the one replaced
+        for (int c = 1; c <= 4; c++) assertTrue(colors[c]);
+    }
+
+    @Test
+    public void particlesExpireStopAtWallsAndBounceOnTheFloor() {
+        int[][] map = room();
+        ParticleSystem particles = new ParticleSystem(16, 100);
+        particles.spawn(6.5f, 4, 0.5f, 0.6f, 0, 0, 0.1f, 0, 20);  // Flies into the east wall
+        particles.spawn(3.5f, 3.5f, 0.05f, 0, 0, -0.1f, 0.1f, 0, 5); // Falls through the floor
+        particles.update(map);
+        assertEquals(6.5f, particles.x[0], 0); // Stopped short of the wall cell
+        assertEquals(0f, particles.velX[0], 0);
+        assertEquals(0f, particles.z[1], 0);
+        assertTrue(particles.velZ[1] > 0); // Bounced
+
+        for (int t = 0; t < 4; t++) particles.update(map);
+        assertEquals(1, particles.live); // The 5-tick one is gone
+        for (int t = 0; t < 15; t++) particles.update(map);
+        assertEquals(0, particles.live);
+        for (int i = 0; i < 16; i++) assertEquals(0, particles.life[i]);
+    }
+
+    @Test
+    public void burstsAndUpdates_doNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int[][] map = room();
+        ParticleSystem particles = new ParticleSystem(1024, 160);
+        Runnable frame = () -> {
+            particles.beginFrame();
+            particles.burst(ParticleSystem.EXPLOSION, 3.5f, 3.5f, 0.5f, 14);
+            particles.burst(ParticleSystem.SPARK, 3.5f, 3.5f, 0.5f, 10);
+            particles.burst(ParticleSystem.BLOOD, 4.5f, 4.5f, 0.5f, 24);
+            particles.update(map);
+        };
+        for (int i = 0; i < 20000; i++) frame.run(); // JIT warm-up, so compilation doesn't count
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 1000; i++) frame.run();
+        assertEquals("bytes allocated over 1000 frames", 0, threads.getThreadAllocatedBytes(thread) - before);
+        assertTrue(particles.live > 0);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.raycastergame;
+
+import java.util.Locale;
+import java.util.Random;
+
+// --- Post Processor Benchmark ---
+// JVM microbenchmark of the post-processing passes on a 1280x720 frame: each pass on its own and
+// all four together, serial and split into bands over 2 and 4 threads. The band split only pays
+// off with that many free cores. Not a unit test; run its main() from the IDE or the test
+// classpath.
+//
+// Usage: java com.example.raycastergame.PostProcessorBenchmark [frames]
+public class PostProcessorBenchmark {
+
+    private static final int WIDTH = 1280, HEIGHT = 720;
+
+    static volatile long sink; // Keeps results alive past the JIT
+
+    public static void main(String[] args) {
+        int frames = args.length >= 1 ? Integer.parseInt(args[0]) : 200;
+        Random random = new Random(9L);
+        int[] source = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < source.length; i++) source[i] = 0xFF000000 | random.nextInt(0x1000000);
+        double[] depth = new double[WIDTH];
+        for (int x = 0; x < WIDTH; x++) depth[x] = 1 + random.nextDouble() * 15;
+        int[] frame = new int[source.length];
+
+        long tableStart = System.nanoTime();
+        PostProcessor.PalettePass palette = new PostProcessor.PalettePass(PostProcessor.PalettePass.rampPalette());
+        System.out.println(String.format(Locale.US, "palette table built in %.1f ms", (System.nanoTime() - tableStart) / 1e6));
+        PostProcessor.FogPass fog = new PostProcessor.FogPass(0x121018, 2.5f, 14f);
+        fog.setDepth(depth, WIDTH, HEIGHT);
+        PostProcessor.DamageFlashPass flash = new PostProcessor.DamageFlashPass();
+        flash.setStrength(0.6f);
+        PostProcessor.ScanlinePass scan = new PostProcessor.ScanlinePass(0.7f);
+
+        for (int threads : new int[] { 1, 2, 4 }) {
+            PostProcessor post = new PostProcessor();
+            int[] ids = {
+                    post.addPass("fog", fog), post.addPass("flash", flash),
+                    post.addPass("palette", palette), post.addPass("scan", scan)
+            };
+            post.setParallelism(threads);
+            for (int round = 0; round < 2; round++) { // The first round is JIT warm-up
+                for (int only = -1; only < ids.length; only++) {
+                    for (int id : ids) post.setEnabled(id, only < 0 || id == only);
+                    long start = System.nanoTime();
+                    for (int f = 0; f < frames; f++) {
+                        System.arraycopy(source, 0, frame, 0, frame.length);
+                        post.process(frame, WIDTH, HEIGHT);
+                        sink += frame[f];
+                    }
+                    double ms = (System.nanoTime() - start) / 1e6 / frames;
+                    if (round > 0) {
+                        System.out.println(String.format(Locale.US, "%d thread(s)  %-8s %6.2f ms/frame (incl. %.2f ms copy)",
+                                threads, only < 0 ? "all" : post.passNames[only], ms, copyMs(source, frame)));
+                    }
+                }
+            }
+            post.shutdown();
+        }
+    }
+
+    private static double copyMs(int[] source, int[] frame) {
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) System.arraycopy(source, 0, frame, 0, frame.length);
+        return (System.nanoTime() - start) / 1e6 / 20;
+    }
+}
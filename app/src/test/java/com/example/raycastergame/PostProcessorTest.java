@@ -0,0 +1,139 @@
+package com.example.raycastergame;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the post-processing passes over synthetic frames: the zero-pass fast path, banded runs
+ * matching a serial run pixel for pixel, and what each table-driven pass does to a colour.
+ */
+public class PostProcessorTest {
+
+    private static final int WIDTH = 160, HEIGHT = 97; // Odd height so bands are uneven
+
+    private static int[] noiseFrame(long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        return pixels;
+    }
+
+    private static double[] depths() {
+        double[] depth = new double[WIDTH];
+        for (int x = 0; x < WIDTH; x++) depth[x] = 1 + x * 0.1;
+        return depth;
+    }
+
+    private static PostProcessor allPasses(PostProcessor.PalettePass palette, int threads) {
+        PostProcessor post = new PostProcessor();
+        PostProcessor.FogPass fog = new PostProcessor.FogPass(0x101018, 2f, 12f);
+        fog.setDepth(depths(), WIDTH, HEIGHT);
+        PostProcessor.DamageFlashPass flash = new PostProcessor.DamageFlashPass();
+        flash.setStrength(0.5f);
+        post.setEnabled(post.addPass("fog", fog), true);
+        post.setEnabled(post.addPass("flash", flash), true);
+        post.setEnabled(post.addPass("palette", palette), true);
+        post.setEnabled(post.addPass("scan", new PostProcessor.ScanlinePass(0.7f)), true);
+        post.setParallelism(threads);
+        return post;
+    }
+
+    @Test
+    public void noEnabledPasses_leavesTheFrameAlone() {
+        PostProcessor post = new PostProcessor();
+        int scan = post.addPass("scan", new PostProcessor.ScanlinePass(0.5f));
+        int[] frame = noiseFrame(1);
+        int[] copy = frame.clone();
+        assertFalse(post.process(frame, WIDTH, HEIGHT));
+        assertArrayEquals(copy, frame);
+
+        post.setEnabled(scan, true);
+        assertTrue(post.process(frame, WIDTH, HEIGHT));
+        assertNotEquals(copy[WIDTH], frame[WIDTH]); // Row 1 darkened
+        assertEquals(copy[0], frame[0]);            // Row 0 untouched
+    }
+
+    @Test
+    public void bandedRun_matchesSerialRunExactly() {
+        PostProcessor.PalettePass palette = new PostProcessor.PalettePass(PostProcessor.PalettePass.rampPalette());
+        int[] serial = noiseFrame(2);
+        int[] banded = serial.clone();
+        PostProcessor one = allPasses(palette, 1);
+        PostProcessor four = allPasses(palette, 4);
+        one.process(serial, WIDTH, HEIGHT);
+        four.process(banded, WIDTH, HEIGHT);
+        four.shutdown();
+        assertArrayEquals(serial, banded);
+    }
+
+    @Test
+    public void palettePass_snapsToPaletteColoursAndKeepsThemExactly() {
+        int[] palette = PostProcessor.PalettePass.rampPalette();
+        Set<Integer> colours = new HashSet<>();
+        for (int c : palette) colours.add(0xFF000000 | c);
+        PostProcessor.PalettePass pass = new PostProcessor.PalettePass(palette);
+
+        int[] frame = noiseFrame(3);
+        pass.run(frame, WIDTH, HEIGHT, 0, HEIGHT);
+        for (int c : frame) assertTrue(Integer.toHexString(c), colours.contains(c));
+
+        // Colours already on the 5-bit grid centres come back unchanged
+        int grey = 0xFF000000 | (0x84 << 16) | (0x84 << 8) | 0x84;
+        int[] one = { grey };
+        new PostProcessor.PalettePass(new int[] { grey & 0xFFFFFF, 0 }).run(one, 1, 1, 0, 1);
+        assertEquals(grey, one[0]);
+    }
+
+    @Test
+    public void fogPass_blendsFarColumnsAndRowsNearTheHorizon() {
+        PostProcessor.FogPass fog = new PostProcessor.FogPass(0x000000, 2f, 12f);
+        double[] depth = new double[WIDTH];
+        Arrays.fill(depth, 1.0);
+        depth[WIDTH - 1] = 50.0;
+        fog.setDepth(depth, WIDTH, HEIGHT);
+        int[] frame = new int[WIDTH * HEIGHT];
+        Arrays.fill(frame, 0xFFFFFFFF);
+        fog.run(frame, WIDTH, HEIGHT, 0, HEIGHT);
+        int horizon = HEIGHT / 2;
+        assertEquals(0xFFFFFFFF, frame[horizon * WIDTH]);                // Near wall
+        assertEquals(0xFF000000, frame[horizon * WIDTH + WIDTH - 1]);    // Far wall, fully fogged
+        assertEquals(0xFFFFFFFF, frame[(HEIGHT - 1) * WIDTH + WIDTH - 1]); // Floor right at the feet
+    }
+
+    @Test
+    public void damageFlash_tintsRedAndIsOffAtZero() {
+        PostProcessor.DamageFlashPass flash = new PostProcessor.DamageFlashPass();
+        assertFalse(flash.setStrength(0f));
+        assertTrue(flash.setStrength(1f));
+        int[] pixel = { 0xFF808080 };
+        flash.run(pixel, 1, 1, 0, 1);
+        int r = (pixel[0] >> 16) & 0xFF, g = (pixel[0] >> 8) & 0xFF, b = pixel[0] & 0xFF;
+        assertTrue(r > 0x80);
+        assertTrue(g < 0x80);
+        assertEquals(g, b);
+    }
+
+    @Test
+    public void playpalLump_readsTheFirstPalette() {
+        byte[] lump = new byte[768 * 14];
+        lump[3] = (byte)0xFF; // Colour 1 is pure red
+        lump[767] = (byte)0x7F;
+        int[] palette = PostProcessor.PalettePass.fromPlaypal(lump, lump.length);
+        assertEquals(256, palette.length);
+        assertEquals(0, palette[0]);
+        assertEquals(0xFF0000, palette[1]);
+        assertEquals(0x7F, palette[255]);
+        assertNull(PostProcessor.PalettePass.fromPlaypal(lump, 767));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.raycastergame;
+
+import java.util.Locale;
+import java.util.Random;
+
+// --- Projectile Stress ---
+// Fills the open arena with thousands of live rockets, topped back up every tick, and reports how
+// many projectiles the sprite phase updates per millisecond, serially and across worker threads,
+// at normal and at fast (several cells per tick) speeds. The whole-tick figure includes the
+// light map, which relights up to GameWorld.MAX_LIT_ROCKETS of them every tick.
+// Not a unit test; run its main() from the IDE or the test classpath.
+//
+// Usage: java com.example.raycastergame.ProjectileStress [projectiles [ticks]]
+public class ProjectileStress {
+
+    public static void main(String[] args) {
+        int count = args.length >= 1 ? Integer.parseInt(args[0]) : 4000;
+        int ticks = args.length >= 2 ? Integer.parseInt(args[1]) : 600;
+        int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+        int[] threadCounts = threads > 1 ? new int[] { 1, threads } : new int[] { 1 };
+
+        for (int round = 0; round < 3; round++) { // The first round is JIT warm-up
+            for (float speed : new float[] { GameWorld.Rocket.ROCKET_SPEED, 2.5f }) {
+                for (int t : threadCounts) {
+                    long[] result = run(count, ticks, speed, t);
+                    if (round == 0) continue;
+                    double spriteMs = result[1] / 1e6;
+                    double tickMs = result[2] / 1e6;
+                    System.out.println(String.format(Locale.US,
+                            "%5d rockets @ %.2f/tick, %d thread(s): %8.0f projectiles/ms update, %7.0f projectiles/ms tick, %.3f ms/tick",
+                            count, speed, t, result[0] / spriteMs, result[0] / tickMs, tickMs / ticks));
+                }
+            }
+        }
+    }
+
+    // Returns { projectile updates, sprite phase nanos, whole tick nanos }.
+    static long[] run(int count, int ticks, float speed, int threads) {
+        GameWorld world = TestWorlds.arena(1L);
+        world.setParallelism(threads);
+        world.sprites.clear();
+        world.lightMap.reset(world.worldMap, world.distanceField);
+        world.playerX = GameWorld.MAP_SIZE / 2f + 0.5f;
+        world.playerY = GameWorld.MAP_SIZE / 2f + 0.5f;
+        world.worldMap[(int)world.playerY][(int)world.playerX] = 0;
+        world.distanceField.build(world.worldMap);
+
+        Random random = new Random(3L);
+        float[][] cells = TestWorlds.randomPoses(world, 1024, 4L);
+        long updates = 0;
+        long tickNanos = 0;
+        world.phaseTimingEnabled = true;
+        for (int i = 0; i < ticks; i++) {
+            while (world.sprites.size() < count) {
+                float[] from = cells[random.nextInt(cells.length)];
+                float[] to = cells[random.nextInt(cells.length)];
+                world.spawnRocket(from[0], from[1], to[0], to[1], speed);
+            }
+            world.playerHealth = Integer.MAX_VALUE / 2; // Keep the target standing
+            updates += world.sprites.size();
+            long start = System.nanoTime();
+            world.tick(0, 0, 0, false);
+            tickNanos += System.nanoTime() - start;
+        }
+        world.setParallelism(1);
+        return new long[] { updates, world.phaseNanos[GameWorld.PHASE_SPRITES], tickNanos };
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.raycastergame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that rockets collide along their whole step, so fast ones neither tunnel through thin
+ * walls nor fly past the player between two ticks.
+ */
+public class ProjectileTest {
+
+    // Open room with a one-cell-thick wall at x == 10 and the player well away from the rockets.
+    private static GameWorld corridor() {
+        GameWorld world = TestWorlds.maze(1L);
+        int n = GameWorld.MAP_SIZE;
+        for (int y = 0; y < n; y++) {
+            for (int x = 0; x < n; x++) {
+                boolean border = x == 0 || y == 0 || x == n - 1 || y == n - 1;
+                world.worldMap[y][x] = border || x == 10 ? 1 : 0;
+            }
+        }
+        world.distanceField.build(world.worldMap);
+        world.sprites.clear();
+        world.lightMap.reset(world.worldMap, world.distanceField);
+        world.playerX = 40.5f;
+        world.playerY = 40.5f;
+        return world;
+    }
+
+    @Test
+    public void fastRocket_stopsAtThinWall() {
+        GameWorld world = corridor();
+        GameWorld.Sprite rocket = world.spawnRocket(8.5f, 5.5f, 30.5f, 5.5f, 3.0f);
+        world.tick(0, 0, 0, false);
+        assertFalse(rocket.isAlive);
+        assertEquals(10f, rocket.x, 1e-4);
+        assertEquals(0, world.sprites.size());
+    }
+
+    @Test
+    public void fastRocket_hitsPlayerItWouldOtherwiseStepOver() {
+        GameWorld world = corridor();
+        // 2.0 per tick lands either side of the player's 0.5 radius
+        GameWorld.Sprite rocket = world.spawnRocket(39.4f, 40.5f, 50.5f, 40.5f, 2.0f);
+        world.tick(0, 0, 0, false);
+        assertFalse(rocket.isAlive);
+        assertEquals(90, world.playerHealth);
+    }
+
+    @Test
+    public void slowRocket_fliesUntilTheWall() {
+        GameWorld world = corridor();
+        GameWorld.Sprite rocket = world.spawnRocket(5.5f, 20.5f, 9.5f, 20.5f, GameWorld.Rocket.ROCKET_SPEED);
+        int ticks = 0;
+        while (rocket.isAlive && ticks < 1000) {
+            world.tick(0, 0, 0, false);
+            ticks++;
+            assertTrue(rocket.x <= 10f + 1e-4);
+        }
+        assertFalse(rocket.isAlive);
+        assertEquals(10f, rocket.x, 1e-4);
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.raycastergame;
+
+import java.util.Locale;
+
+// --- Ray Query Benchmark ---
+// JVM microbenchmark of the batched RayQuery against the ray code it replaced, on the same
+// generated maze and sprites:
+//   sight   - every enemy's line of sight: the old 0.2-step march with trig, one castRay per
+//             enemy, and one batched walls-only query
+//   shot    - an 8-pellet volley: the old 0.1-step march scanning every sprite per step, and one
+//             batched walls+sprites query
+//   columns - one frame of screen columns: Raycaster.cast against the same rays as a batch
+// Not a unit test; run its main() from the IDE or the test classpath.
+//
+// Usage: java com.example.raycastergame.RayQueryBenchmark [iterations]
+public class RayQueryBenchmark {
+
+    private static final int PELLETS = 8;
+    private static final int WIDTH = 1280;
+
+    static volatile long sink; // Keeps results alive past the JIT
+
+    public static void main(String[] args) {
+        int iterations = args.length >= 1 ? Integer.parseInt(args[0]) : 2000;
+        GameWorld world = TestWorlds.maze(1L);
+        float[][] poses = TestWorlds.randomPoses(world, 256, 5L);
+        RayQuery query = new RayQuery(256);
+        Raycaster raycaster = new Raycaster();
+        raycaster.resize(WIDTH, 720);
+        Camera camera = new Camera();
+        camera.setViewport(WIDTH, 720);
+        camera.setFieldOfView(66f);
+
+        int enemies = 0;
+        for (GameWorld.Sprite s : world.sprites) if (s.hitRadius > 0) enemies++;
+        System.out.println(world.sprites.size() + " sprites, " + enemies + " enemies");
+
+        for (int round = 0; round < 3; round++) { // The first round is JIT warm-up
+            boolean print = round > 0;
+
+            long start = System.nanoTime();
+            for (int it = 0; it < iterations; it++) sink += legacySight(world, poses[it & 255]);
+            report(print, "sight   legacy 0.2 march", start, iterations, enemies);
+            start = System.nanoTime();
+            for (int it = 0; it < iterations; it++) sink += castRaySight(world, poses[it & 255]);
+            report(print, "sight   castRay per enemy", start, iterations, enemies);
+            start = System.nanoTime();
+            for (int it = 0; it < iterations; it++) sink += batchedSight(world, query, poses[it & 255]);
+            report(print, "sight   RayQuery batch", start, iterations, enemies);
+
+            start = System.nanoTime();
+            for (int it = 0; it < iterations; it++) sink += legacyShot(world, poses[it & 255]);
+            report(print, "shot    legacy 0.1 march", start, iterations, PELLETS);
+            start = System.nanoTime();
+            for (int it = 0; it < iterations; it++) sink += batchedShot(world, query, poses[it & 255]);
+            report(print, "shot    RayQuery batch", start, iterations, PELLETS);
+
+            int frames = iterations / 10;
+            start = System.nanoTime();
+            for (int it = 0; it < frames; it++) {
+                float[] pose = poses[it & 255];
+                world.playerX = pose[0];
+                world.playerY = pose[1];
+                world.playerAngle = pose[2];
+                raycaster.cast(world, camera, 1);
+                sink += raycaster.lineHeight[WIDTH / 2];
+            }
+            report(print, "columns Raycaster.cast", start, frames, WIDTH);
+            start = System.nanoTime();
+            for (int it = 0; it < frames; it++) sink += batchedColumns(world, query, camera, poses[it & 255]);
+            report(print, "columns RayQuery batch", start, frames, WIDTH);
+        }
+    }
+
+    private static void report(boolean print, String name, long start, int iterations, int raysPerIteration) {
+        long elapsed = System.nanoTime() - start;
+        if (!print) return;
+        System.out.println(String.format(Locale.US, "%-28s %8.1f ns/ray", name, (double)elapsed / iterations / raysPerIteration));
+    }
+
+    // --- The replaced implementations, kept here as the baseline ---
+
+    private static int legacySight(GameWorld world, float[] player) {
+        int visible = 0;
+        for (GameWorld.Sprite s : world.sprites) {
+            if (s.hitRadius <= 0) continue;
+            double distToPlayer = Math.hypot(player[0] - s.x, player[1] - s.y);
+            double angleToPlayer = Math.atan2(player[1] - s.y, player[0] - s.x);
+            double rayDirX = Math.cos(angleToPlayer);
+            double rayDirY = Math.sin(angleToPlayer);
+            boolean blocked = false;
+            for (double d = 0; d < distToPlayer && !blocked; d += 0.2) {
+                int mapX = (int)(float)(s.x + rayDirX * d);
+                int mapY = (int)(float)(s.y + rayDirY * d);
+                blocked = mapX < 0 || mapX >= GameWorld.MAP_SIZE || mapY < 0 || mapY >= GameWorld.MAP_SIZE
+                        || world.worldMap[mapY][mapX] > 0;
+            }
+            if (!blocked) visible++;
+        }
+        return visible;
+    }
+
+    private static int legacyShot(GameWorld world, float[] player) {
+        int hits = 0;
+        for (int p = 0; p < PELLETS; p++) {
+            double angle = player[2] + (p - (PELLETS - 1) / 2.0) * GameWorld.PELLET_SPREAD;
+            double eyeX = Math.cos(angle), eyeY = Math.sin(angle);
+            march:
+            for (double d = 0; d < 20; d += 0.1) {
+                double testX = player[0] + eyeX * d, testY = player[1] + eyeY * d;
+                int mapX = (int)testX, mapY = (int)testY;
+                if (mapX < 0 || mapX >= GameWorld.MAP_SIZE || mapY < 0 || mapY >= GameWorld.MAP_SIZE) break;
+                if (world.worldMap[mapY][mapX] > 0) break;
+                for (GameWorld.Sprite s : world.sprites) {
+                    if (s.hitRadius > 0 && s.isAlive && Math.hypot(s.x - testX, s.y - testY) < 0.5) {
+                        hits++;
+                        break march;
+                    }
+                }
+            }
+        }
+        return hits;
+    }
+
+    // --- Current paths ---
+
+    private static int castRaySight(GameWorld world, float[] player) {
+        int visible = 0;
+        for (GameWorld.Sprite s : world.sprites) {
+            if (s.hitRadius <= 0) continue;
+            double toX = player[0] - s.x, toY = player[1] - s.y;
+            double dist = Math.hypot(toX, toY);
+            if (world.distanceField.castRay(s.x, s.y, toX / dist, toY / dist, dist) >= dist) visible++;
+        }
+        return visible;
+    }
+
+    private static int batchedSight(GameWorld world, RayQuery query, float[] player) {
+        query.clear();
+        for (GameWorld.Sprite s : world.sprites) {
+            if (s.hitRadius <= 0) continue;
+            double toX = player[0] - s.x, toY = player[1] - s.y;
+            double dist = Math.hypot(toX, toY);
+            query.add(s.x, s.y, toX / dist, toY / dist, dist, RayQuery.WALLS);
+        }
+        query.run(world);
+        int visible = 0;
+        for (int i = 0; i < query.count; i++) if (query.distance[i] >= query.maxDist[i]) visible++;
+        return visible;
+    }
+
+    private static int batchedShot(GameWorld world, RayQuery query, float[] player) {
+        query.clear();
+        for (int p = 0; p < PELLETS; p++) {
+            double angle = player[2] + (p - (PELLETS - 1) / 2.0) * GameWorld.PELLET_SPREAD;
+            query.add(player[0], player[1], Math.cos(angle), Math.sin(angle), 20, RayQuery.WALLS | RayQuery.SPRITES);
+        }
+        query.run(world);
+        int hits = 0;
+        for (int i = 0; i < query.count; i++) if (query.sprite[i] >= 0) hits++;
+        return hits;
+    }
+
+    private static int batchedColumns(GameWorld world, RayQuery query, Camera camera, float[] pose) {
+        camera.setAngle(pose[2]);
+        query.clear();
+        for (int x = 0; x < WIDTH; x++) {
+            double dirX = camera.dirX + camera.planeX * camera.cameraX[x];
+            double dirY = camera.dirY + camera.planeY * camera.cameraX[x];
+            double length = Math.hypot(dirX, dirY);
+            query.add(pose[0], pose[1], dirX / length, dirY / length, 64, RayQuery.WALLS);
+        }
+        query.run(world);
+        return query.cell[WIDTH / 2];
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.raycastergame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks batched ray queries against single distance-field rays and against hand-placed sprites.
+ */
+public class RayQueryTest {
+
+    @Test
+    public void wallRays_matchCastRayAndReportTheCellAndFaceHit() {
+        GameWorld world = TestWorlds.maze(11L);
+        float[][] poses = TestWorlds.randomPoses(world, 512, 2L);
+        RayQuery query = new RayQuery(4); // Small on purpose so the batch has to grow
+        for (float[] pose : poses) query.add(pose[0], pose[1], Math.cos(pose[2]), Math.sin(pose[2]), 64, RayQuery.WALLS);
+        query.run(world);
+
+        assertEquals(poses.length, query.count);
+        for (int i = 0; i < poses.length; i++) {
+            double expected = world.distanceField.castRay(poses[i][0], poses[i][1], query.dirX[i], query.dirY[i], 64);
+            assertEquals(expected, query.distance[i], 0);
+            assertEquals(-1, query.sprite[i]);
+            double hitX = query.originX[i] + query.dirX[i] * query.distance[i];
+            double hitY = query.originY[i] + query.dirY[i] * query.distance[i];
+            if (query.cell[i] < 0) { // The maze can open onto the map edge, which stops rays with no cell
+                assertEquals(-1, query.face[i]);
+                double edge = GameWorld.MAP_SIZE;
+                assertTrue(Math.abs(hitX) < 1e-9 || Math.abs(hitY) < 1e-9 || Math.abs(hitX - edge) < 1e-9 || Math.abs(hitY - edge) < 1e-9);
+                continue;
+            }
+            int cellX = query.cell[i] % GameWorld.MAP_SIZE, cellY = query.cell[i] / GameWorld.MAP_SIZE;
+            assertTrue(world.worldMap[cellY][cellX] > 0);
+
+            // The hit point lies on the reported face of the reported cell
+            switch (query.face[i]) {
+                case LightMap.FACE_WEST: assertEquals(cellX, hitX, 1e-9); break;
+                case LightMap.FACE_EAST: assertEquals(cellX + 1, hitX, 1e-9); break;
+                case LightMap.FACE_NORTH: assertEquals(cellY, hitY, 1e-9); break;
+                case LightMap.FACE_SOUTH: assertEquals(cellY + 1, hitY, 1e-9); break;
+                default: throw new AssertionError("face " + query.face[i]);
+            }
+        }
+    }
+
+    @Test
+    public void spriteRays_reportNearestEnemyBeforeTheWall() {
+        GameWorld world = TestWorlds.maze(11L);
+        world.sprites.clear();
+        for (int y = 1; y < 4; y++) for (int x = 1; x < 30; x++) world.worldMap[y][x] = 0;
+        world.worldMap[2][20] = 1;
+        world.distanceField.build(world.worldMap);
+        GameWorld.Sprite far = world.new Enemy(12.5f, 2.5f);
+        GameWorld.Sprite near = world.new Enemy(8.5f, 2.7f);
+        GameWorld.Sprite walled = world.new Enemy(24.5f, 1.5f);
+        GameWorld.Sprite medkit = world.new Medkit(5.5f, 2.5f); // Not hittable
+        world.sprites.add(far);
+        world.sprites.add(near);
+        world.sprites.add(walled);
+        world.sprites.add(medkit);
+
+        RayQuery query = new RayQuery(4);
+        int straight = query.add(2.5, 2.5, 1, 0, 40, RayQuery.WALLS | RayQuery.SPRITES);
+        int wallsOnly = query.add(2.5, 2.5, 1, 0, 40, RayQuery.WALLS);
+        int blocked = query.add(18.5, 1.5, 1, 0, 40, RayQuery.WALLS | RayQuery.SPRITES);
+        int inside = query.add(12.4, 2.5, 0, 1, 40, RayQuery.SPRITES);
+        query.run(world);
+
+        assertEquals(1, query.sprite[straight]);
+        assertEquals(6 - Math.sqrt(0.25 - 0.04), query.distance[straight], 1e-6);
+        assertEquals(-1, query.sprite[wallsOnly]);
+        assertEquals(17.5, query.distance[wallsOnly], 1e-9);
+        assertEquals(2 * GameWorld.MAP_SIZE + 20, query.cell[wallsOnly]);
+        assertEquals(LightMap.FACE_WEST, query.face[wallsOnly]);
+        assertEquals(2, query.sprite[blocked]); // Row 1 has no wall between
+        assertEquals(0, query.sprite[inside]);
+        assertEquals(0, query.distance[inside], 0);
+
+        world.worldMap[1][22] = 1;
+        world.distanceField.build(world.worldMap);
+        query.run(world);
+        assertEquals(-1, query.sprite[blocked]);
+        assertEquals(3.5, query.distance[blocked], 1e-9);
+    }
+
+    @Test
+    public void shooting_damagesTheEnemyInFrontOfThePlayer() {
+        GameWorld world = TestWorlds.maze(11L);
+        GameWorld.Sprite enemy = null;
+        for (GameWorld.Sprite s : world.sprites) if (s.hitRadius > 0) { enemy = s; break; }
+        world.playerX = enemy.x - 0.3f;
+        world.playerY = enemy.y;
+        world.playerAngle = 0;
+        world.tick(0, 0, 0, true);
+        assertEquals(10, world.score);
+    }
+}
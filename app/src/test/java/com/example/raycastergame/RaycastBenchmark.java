@@ -0,0 +1,85 @@
+package com.example.raycastergame;
+
+import java.util.Locale;
+
+// --- Raycast Benchmark ---
+// JVM microbenchmark of the raycaster over the same random poses: double vs 16.16 fixed point,
+// with and without distance-field skipping, on a generated maze and on an open arena. Reports
+// time per column and the average number of map cells each ray visits. Then full against
+// interlaced casting over a turning camera, where consecutive frames can reuse each other.
+// Not a unit test; run its main() from the IDE or the test classpath.
+//
+// Usage: java com.example.raycastergame.RaycastBenchmark [width height [frames]]
+public class RaycastBenchmark {
+
+    public static void main(String[] args) {
+        int width = args.length >= 2 ? Integer.parseInt(args[0]) : 1280;
+        int height = args.length >= 2 ? Integer.parseInt(args[1]) : 720;
+        int frames = args.length >= 3 ? Integer.parseInt(args[2]) : 2000;
+
+        GameWorld maze = TestWorlds.maze(1L);
+        GameWorld arena = TestWorlds.arena(1L);
+
+        Raycaster raycaster = new Raycaster();
+        raycaster.resize(width, height);
+        Camera camera = new Camera();
+        camera.setViewport(width, height);
+        camera.setFieldOfView(66f);
+        for (GameWorld world : new GameWorld[] { maze, arena }) {
+            String layout = world == maze ? "maze" : "arena";
+            float[][] poses = TestWorlds.randomPoses(world, 256, 5L);
+            for (int round = 0; round < 3; round++) { // The first round is JIT warm-up
+                for (int mode = 0; mode < 4; mode++) {
+                    raycaster.fixedPoint = (mode & 1) != 0;
+                    raycaster.skipEmptyCells = (mode & 2) != 0;
+                    raycaster.cellsVisited = 0;
+                    raycaster.raysCast = 0;
+                    long start = System.nanoTime();
+                    for (int f = 0; f < frames; f++) {
+                        float[] pose = poses[f & (poses.length - 1)];
+                        world.playerX = pose[0];
+                        world.playerY = pose[1];
+                        world.playerAngle = pose[2];
+                        raycaster.cast(world, camera, 1);
+                    }
+                    long elapsed = System.nanoTime() - start;
+                    if (round > 0) {
+                        System.out.println(String.format(Locale.US, "%-5s %-6s %-4s %dx%d: %.3f ms/frame, %.1f ns/column, %.2f cells/ray",
+                                layout, raycaster.fixedPoint ? "fixed" : "double", raycaster.skipEmptyCells ? "skip" : "step",
+                                width, height, elapsed / 1e6 / frames, (double)elapsed / frames / width,
+                                (double)raycaster.cellsVisited / raycaster.raysCast));
+                    }
+                }
+            }
+        }
+
+        raycaster.fixedPoint = false;
+        raycaster.skipEmptyCells = true;
+        for (GameWorld world : new GameWorld[] { maze, arena }) {
+            String layout = world == maze ? "maze" : "arena";
+            float[][] poses = TestWorlds.randomPoses(world, 64, 6L);
+            for (int round = 0; round < 3; round++) {
+                for (int mode = 0; mode < 2; mode++) {
+                    boolean interlaced = mode == 1;
+                    raycaster.raysCast = 0;
+                    long start = System.nanoTime();
+                    for (int f = 0; f < frames; f++) {
+                        // Each pose held for 32 frames, turning as when looking around
+                        float[] pose = poses[(f >> 5) & (poses.length - 1)];
+                        world.playerX = pose[0];
+                        world.playerY = pose[1];
+                        world.playerAngle = pose[2] + (f & 31) * 0.02;
+                        if (interlaced) raycaster.castInterlaced(world, camera);
+                        else raycaster.cast(world, camera, 1);
+                    }
+                    long elapsed = System.nanoTime() - start;
+                    if (round > 0) {
+                        System.out.println(String.format(Locale.US, "%-5s %-10s %dx%d: %.3f ms/frame, %.0f rays/frame",
+                                layout, interlaced ? "interlaced" : "full", width, height,
+                                elapsed / 1e6 / frames, (double)raycaster.raysCast / frames));
+                    }
+                }
+            }
+        }
+    }
+}
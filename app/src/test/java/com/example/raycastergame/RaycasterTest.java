@@ -0,0 +1,98 @@
+package com.example.raycastergame;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the 16.16 fixed-point raycaster against the double-precision reference column by
+ * column over random poses in generated levels.
+ */
+public class RaycasterTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 360;
+
+    @Test
+    public void reciprocal_matchesDivision() {
+        for (int v = 1; v < (64 << Raycaster.FRAC_BITS); v += 37) {
+            double expected = Math.min((double)Raycaster.ONE * Raycaster.ONE / v, 1 << 30);
+            double actual = Raycaster.reciprocal(v);
+            assertTrue("1/" + v + ": " + actual + " vs " + expected,
+                    Math.abs(actual - expected) <= expected * 1e-5 + 1);
+        }
+    }
+
+    @Test
+    public void camera_projectionMatchesInverseOfPlaneDirMatrix() {
+        Camera camera = new Camera();
+        camera.setViewport(WIDTH, HEIGHT);
+        camera.setFieldOfView(66f);
+        Random random = new Random(9);
+        for (int i = 0; i < 1000; i++) {
+            camera.setAngle(random.nextDouble() * Math.PI * 2);
+            double dx = random.nextDouble() * 20 - 10, dy = random.nextDouble() * 20 - 10;
+            double invDet = 1.0 / (camera.planeX * camera.dirY - camera.dirX * camera.planeY);
+            assertEquals(invDet * (camera.dirY * dx - camera.dirX * dy), camera.m00 * dx + camera.m01 * dy, 1e-9);
+            assertEquals(invDet * (-camera.planeY * dx + camera.planeX * dy), camera.m10 * dx + camera.m11 * dy, 1e-9);
+        }
+    }
+
+    @Test
+    public void fixedPoint_matchesDoubleAtDefaultFov() {
+        compareColumns(66f);
+    }
+
+    @Test
+    public void fixedPoint_matchesDoubleAtWideFov() {
+        compareColumns(120f);
+    }
+
+    private static void compareColumns(float fov) {
+        Raycaster reference = new Raycaster();
+        Raycaster fixed = new Raycaster();
+        reference.resize(WIDTH, HEIGHT);
+        fixed.resize(WIDTH, HEIGHT);
+        fixed.fixedPoint = true;
+        Camera camera = new Camera();
+        camera.setViewport(WIDTH, HEIGHT);
+        camera.setFieldOfView(fov);
+
+        Random random = new Random(3);
+        int columns = 0, mismatches = 0;
+        for (int seed = 0; seed < 5; seed++) {
+            GameWorld world = TestWorlds.maze(seed);
+            for (int pose = 0; pose < 40; pose++) {
+                int cx, cy;
+                do {
+                    cx = 1 + random.nextInt(GameWorld.MAP_SIZE - 2);
+                    cy = 1 + random.nextInt(GameWorld.MAP_SIZE - 2);
+                } while (world.worldMap[cy][cx] != 0);
+                world.playerX = cx + random.nextFloat();
+                world.playerY = cy + random.nextFloat();
+                world.playerAngle = random.nextDouble() * Math.PI * 2;
+
+                reference.cast(world, camera, 1);
+                fixed.cast(world, camera, 1);
+                for (int x = 0; x < WIDTH; x++) {
+                    columns++;
+                    // A ray passing within rounding distance of a corner may legitimately hit the other face
+                    if (reference.side[x] != fixed.side[x] || reference.textureId[x] != fixed.textureId[x]) {
+                        mismatches++;
+                        continue;
+                    }
+                    double depth = reference.depthBuffer[x];
+                    assertEquals("depth at x=" + x, depth, fixed.depthBuffer[x], depth * 0.01);
+                    assertEquals("lineHeight at x=" + x, reference.lineHeight[x], fixed.lineHeight[x],
+                            reference.lineHeight[x] * 0.01 + 1);
+                    double wallDiff = Math.abs(reference.wallX[x] - fixed.wallX[x]);
+                    assertTrue("wallX at x=" + x, Math.min(wallDiff, 1 - wallDiff) < 0.01);
+                }
+            }
+        }
+        assertTrue(mismatches + " of " + columns + " columns hit a different face", mismatches * 1000 < columns);
+    }
+}
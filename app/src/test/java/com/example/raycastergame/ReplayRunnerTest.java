@@ -0,0 +1,52 @@
+package com.example.raycastergame;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Records a scripted run through GameWorld and checks that ReplayRunner reproduces it exactly,
+ * including after a round trip through the recording file format.
+ */
+public class ReplayRunnerTest {
+
+    private static InputRecording recordScriptedRun(long seed, int ticks) {
+        GameWorld world = TestWorlds.maze(seed);
+        InputRecording recording = new InputRecording(seed, TestWorlds.WALL_TEXTURES);
+        for (int i = 0; i < ticks && !world.gameOver; i++) {
+            recording.record(TestWorlds.moveX(i), TestWorlds.moveY(i), TestWorlds.look(i), TestWorlds.shoot(i));
+            TestWorlds.step(world, i);
+        }
+        recording.finish(world);
+        return recording;
+    }
+
+    @Test
+    public void replay_reproducesRecordedEndState() {
+        InputRecording recording = recordScriptedRun(42L, 5000);
+        ReplayRunner.Result result = ReplayRunner.run(recording);
+
+        assertTrue(result.toString(), result.matches);
+        assertEquals(recording.getTickCount(), result.ticks);
+        assertEquals(recording.endScore, result.score);
+        assertEquals(recording.endHealth, result.health);
+        assertEquals(recording.endLevel, result.level);
+    }
+
+    @Test
+    public void replay_survivesFileRoundTrip() throws IOException {
+        InputRecording recording = recordScriptedRun(7L, 3000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        recording.writeTo(bytes);
+        InputRecording loaded = InputRecording.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(recording.seed, loaded.seed);
+        assertEquals(recording.getTickCount(), loaded.getTickCount());
+        assertTrue(ReplayRunner.run(loaded).matches);
+    }
+}
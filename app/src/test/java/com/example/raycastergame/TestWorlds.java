@@ -0,0 +1,80 @@
+package com.example.raycastergame;
+
+import java.util.Random;
+
+// --- Test Worlds ---
+// The worlds, poses and scripted input the unit tests and benchmarks share: a generated maze, the
+// same maze opened up into an arena, random free-standing camera poses, and a player that walks
+// the maze turning and shooting. Everything is seeded, so a failing test reruns the same way.
+final class TestWorlds {
+
+    static final int WALL_TEXTURES = 3;
+
+    private TestWorlds() {}
+
+    static GameWorld maze(long seed) {
+        GameWorld world = new GameWorld(WALL_TEXTURES);
+        world.startGame(seed);
+        return world;
+    }
+
+    static GameWorld arena(long seed) {
+        GameWorld world = maze(seed);
+        makeArena(world, seed);
+        return world;
+    }
+
+    // Replaces the world's maze with one open room: border walls, a few solid blocks and
+    // scattered pillars, then rebuilds the distance field for it.
+    static void makeArena(GameWorld world, long seed) {
+        Random random = new Random(seed);
+        int n = GameWorld.MAP_SIZE;
+        for (int y = 0; y < n; y++) {
+            for (int x = 0; x < n; x++) {
+                boolean border = x == 0 || y == 0 || x == n - 1 || y == n - 1;
+                world.worldMap[y][x] = border || random.nextFloat() < 0.01f ? 1 + random.nextInt(3) : 0;
+            }
+        }
+        for (int b = 0; b < 6; b++) {
+            int bx = 4 + random.nextInt(n - 12), by = 4 + random.nextInt(n - 12);
+            int bw = 2 + random.nextInt(5), bh = 2 + random.nextInt(5);
+            for (int y = by; y < by + bh; y++) {
+                for (int x = bx; x < bx + bw; x++) world.worldMap[y][x] = 2;
+            }
+        }
+        world.worldMap[1][1] = 0;
+        world.mapVersion++;
+        world.distanceField.build(world.worldMap);
+    }
+
+    // { x, y, angle } in random empty cells of the world's map.
+    static float[][] randomPoses(GameWorld world, int count, long seed) {
+        float[][] poses = new float[count][3];
+        Random random = new Random(seed);
+        for (float[] pose : poses) {
+            int cx, cy;
+            do {
+                cx = 1 + random.nextInt(GameWorld.MAP_SIZE - 2);
+                cy = 1 + random.nextInt(GameWorld.MAP_SIZE - 2);
+            } while (world.worldMap[cy][cx] != 0);
+            pose[0] = cx + random.nextFloat();
+            pose[1] = cy + random.nextFloat();
+            pose[2] = (float)(random.nextDouble() * Math.PI * 2);
+        }
+        return poses;
+    }
+
+    // --- Scripted walker: forward at full speed, strafing one way then the other, turning now and then ---
+
+    static float moveX(int tick) { return (tick / 80) % 2 == 0 ? 0.35f : -0.35f; }
+
+    static float moveY(int tick) { return 1.0f; }
+
+    static float look(int tick) { return (tick % 110) < 20 ? 0.05f : 0f; }
+
+    static boolean shoot(int tick) { return tick % 14 == 0; }
+
+    static void step(GameWorld world, int tick) {
+        world.tick(moveX(tick), moveY(tick), look(tick), shoot(tick));
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.raycastergame;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round-trips the raw texture cache through a real file and checks that stale, foreign and damaged
+ * caches are treated as misses instead of errors.
+ */
+public class TextureCacheTest {
+
+    private static int[] pattern(int w, int h, int seed) {
+        int[] pixels = new int[w * h];
+        for (int i = 0; i < pixels.length; i++) pixels[i] = 0xFF000000 | (int)((i * 2654435761L + seed) >>> 8) & 0xFFFFFF;
+        return pixels;
+    }
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("textures", ".dctx");
+        file.deleteOnExit();
+        return file;
+    }
+
+    @Test
+    public void writeThenRead_returnsSamePixels() throws IOException {
+        File file = tempFile();
+        byte[] bricks = "bricks.png bytes".getBytes(StandardCharsets.UTF_8);
+        byte[] stone = "stone".getBytes(StandardCharsets.UTF_8);
+        TextureCache cache = new TextureCache();
+        cache.put("bricks.png", TextureCache.hash(bricks, bricks.length), 64, 64, pattern(64, 64, 1));
+        cache.put("stone_\u00fc.png", TextureCache.hash(stone, stone.length), 128, 32, pattern(128, 32, 2));
+        assertTrue(cache.dirty);
+        cache.write(file);
+        assertFalse(cache.dirty);
+
+        TextureCache read = TextureCache.read(file);
+        assertFalse(read.dirty);
+        assertEquals(2, read.size());
+        TextureCache.Entry entry = read.get("stone_\u00fc.png", TextureCache.hash(stone, stone.length));
+        assertNotNull(entry);
+        assertEquals(128, entry.width);
+        assertEquals(32, entry.height);
+        assertArrayEquals(pattern(128, 32, 2), entry.pixels);
+        assertArrayEquals(pattern(64, 64, 1), read.get("bricks.png", TextureCache.hash(bricks, bricks.length)).pixels);
+    }
+
+    @Test
+    public void changedAsset_missesAndRemovedAssetIsDropped() throws IOException {
+        File file = tempFile();
+        byte[] v1 = { 1, 2, 3, 4 };
+        byte[] v2 = { 1, 2, 3, 5 };
+        TextureCache cache = new TextureCache();
+        cache.put("a.png", TextureCache.hash(v1, v1.length), 4, 4, pattern(4, 4, 0));
+        cache.put("b.png", TextureCache.hash(v1, v1.length), 4, 4, pattern(4, 4, 1));
+        cache.write(file);
+
+        TextureCache read = TextureCache.read(file);
+        assertNull(read.get("a.png", TextureCache.hash(v2, v2.length)));
+        assertNull(read.get("a.png", TextureCache.hash(v1, 3)));
+        read.retainOnly(Collections.singletonList("a.png"));
+        assertTrue(read.dirty);
+        assertEquals(1, read.size());
+        assertNull(read.get("b.png", TextureCache.hash(v1, v1.length)));
+    }
+
+    @Test
+    public void wrongVersionOrTruncatedFile_readsAsEmpty() throws IOException {
+        File file = tempFile();
+        TextureCache cache = new TextureCache();
+        cache.put("a.png", 7L, 16, 16, pattern(16, 16, 3));
+        cache.write(file);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 100);
+        }
+        TextureCache truncated = TextureCache.read(file);
+        assertEquals(0, truncated.size());
+        assertTrue(truncated.dirty);
+
+        cache.write(file);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(4);
+            raf.write(new byte[] { 99, 0, 0, 0 }); // Version 99
+        }
+        assertEquals(0, TextureCache.read(file).size());
+        assertEquals(0, TextureCache.read(new File(file.getPath() + ".missing")).size());
+
+        // A header claiming the largest texture over a file that can't hold it is rejected up front
+        cache.write(file);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(32); // magic, version, count, name length, "a.png" + padding, hash
+            raf.write(new byte[] { 0, 16, 0, 0, 0, 16, 0, 0 }); // 4096 x 4096, little-endian
+        }
+        TextureCache oversized = TextureCache.read(file);
+        assertEquals(0, oversized.size());
+        assertTrue(oversized.dirty);
+    }
+
+    @Test
+    public void hash_dependsOnLengthAndContent() {
+        byte[] data = Arrays.copyOf("texture".getBytes(StandardCharsets.UTF_8), 16);
+        assertEquals(TextureCache.hash(data, 7), TextureCache.hash(data.clone(), 7));
+        assertFalse(TextureCache.hash(data, 7) == TextureCache.hash(data, 8));
+    }
+}